@@ -0,0 +1,20 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param enabled whether the provision, unprovision and update ACL operations of the API are run as jobs
+ * @param workers number of jobs run concurrently
+ * @param queueCapacity maximum number of jobs waiting for a worker
+ * @param retention time completed jobs are kept in the job table
+ * @param jobTimeout deadline of a job, counted from when it starts running
+ */
+@ConfigurationProperties(prefix = "async-provisioning")
+public record AsyncProvisioningConfig(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("8") int workers,
+        @DefaultValue("1000") int queueCapacity,
+        @DefaultValue("1h") Duration retention,
+        @DefaultValue("30m") Duration jobTimeout) {}
@@ -1,7 +1,19 @@
 package com.witboost.provisioning.bigquery.config;
 
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.ServiceOptions;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.witboost.provisioning.bigquery.util.BigQueryClientCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.function.Function;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,9 +21,51 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class BigQueryClientBean {
 
+    @Bean(destroyMethod = "shutdown")
+    public HttpTransport bigQueryHttpTransport(BigQueryClientConfig config) {
+        return new ApacheHttpTransport(ApacheHttpTransport.newDefaultHttpClientBuilder()
+                .setMaxConnTotal(config.maxConnections())
+                .setMaxConnPerRoute(config.maxConnections())
+                .build());
+    }
+
     @Bean
-    public Function<String, BigQuery> bigQueryClientSupplier() {
-        return projectId ->
-                BigQueryOptions.newBuilder().setProjectId(projectId).build().getService();
+    public Function<String, BigQuery> bigQueryClientSupplier(
+            BigQueryClientConfig config,
+            RequestDeadlineConfig deadlineConfig,
+            HttpTransport bigQueryHttpTransport,
+            MeterRegistry meterRegistry) {
+        // credentials are resolved once and shared by every client; a failed lookup is retried on the next call
+        Supplier<GoogleCredentials> credentials = Suppliers.memoize(() -> {
+            try {
+                return GoogleCredentials.getApplicationDefault();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // The BigQuery client takes its timeouts from these options, shared by every call, and has no way to pass a
+        // timeout per call. A call can't be bounded by the time left to its request: it may run for the whole call
+        // timeout even when the deadline of the request expires earlier. The deadline is only checked before the call
+        int callTimeoutMs = (int) deadlineConfig.callTimeout().toMillis();
+        HttpTransportOptions transportOptions = HttpTransportOptions.newBuilder()
+                .setHttpTransportFactory(() -> bigQueryHttpTransport)
+                .setConnectTimeout(callTimeoutMs)
+                .setReadTimeout(callTimeoutMs)
+                .build();
+        // RetryHelper is the only retry layer, so that retry budgets and backoff count actual attempts
+        RetrySettings retrySettings = ServiceOptions.getDefaultRetrySettings().toBuilder()
+                .setMaxAttempts(1)
+                .setTotalTimeoutDuration(deadlineConfig.callTimeout())
+                .build();
+        return new BigQueryClientCache(
+                config,
+                projectId -> BigQueryOptions.newBuilder()
+                        .setProjectId(projectId)
+                        .setCredentials(credentials.get())
+                        .setTransportOptions(transportOptions)
+                        .setRetrySettings(retrySettings)
+                        .build()
+                        .getService(),
+                meterRegistry);
     }
 }
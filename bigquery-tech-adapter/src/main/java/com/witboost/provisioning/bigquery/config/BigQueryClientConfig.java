@@ -0,0 +1,11 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "bigquery-client")
+public record BigQueryClientConfig(
+        @DefaultValue("100") long maxCachedClients,
+        @DefaultValue("30m") Duration idleEviction,
+        @DefaultValue("200") int maxConnections) {}
@@ -0,0 +1,14 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "circuit-breaker")
+public record CircuitBreakerConfig(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("20") int windowSize,
+        @DefaultValue("10") int minimumCalls,
+        @DefaultValue("50") int failureRateThreshold,
+        @DefaultValue("30s") Duration openDuration,
+        @DefaultValue("3") int halfOpenCalls) {}
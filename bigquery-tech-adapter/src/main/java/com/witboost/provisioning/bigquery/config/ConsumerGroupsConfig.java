@@ -0,0 +1,17 @@
+package com.witboost.provisioning.bigquery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consumer-groups")
+public record ConsumerGroupsConfig(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("in-memory") Backend backend,
+        @DefaultValue("witboost-consumers-") String groupPrefix,
+        String groupDomain) {
+
+    public enum Backend {
+        /** Memberships are kept in memory and lost on restart, meant for development and testing */
+        IN_MEMORY
+    }
+}
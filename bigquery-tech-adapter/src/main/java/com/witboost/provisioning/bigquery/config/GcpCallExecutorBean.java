@@ -0,0 +1,54 @@
+package com.witboost.provisioning.bigquery.config;
+
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.ProjectCircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+@Slf4j
+@Configuration
+public class GcpCallExecutorBean {
+
+    @Bean(destroyMethod = "shutdown")
+    public GcpCallExecutor gcpCallExecutor(
+            GcpCallsConfig config,
+            ProjectCircuitBreaker circuitBreaker,
+            Environment environment,
+            MeterRegistry meterRegistry) {
+        // spring.threads.virtual.enabled also switches Tomcat request handling to virtual threads,
+        // but only takes effect when running on Java 21 or later
+        if (Threading.VIRTUAL.isActive(environment)) {
+            ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+            if (virtualExecutor != null) {
+                log.info("Running GCP calls on virtual threads");
+                return new GcpCallExecutor(config, circuitBreaker, virtualExecutor, true, meterRegistry);
+            }
+        } else if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("Virtual threads are enabled but not supported by the running JVM, using platform threads");
+        }
+        return new GcpCallExecutor(
+                config,
+                circuitBreaker,
+                Executors.newFixedThreadPool(config.platformThreads(), new CustomizableThreadFactory("gcp-call-")),
+                false,
+                meterRegistry);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        // looked up reflectively since the sources are compiled for Java 17
+        try {
+            return (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual thread executor unavailable, using platform threads", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "gcp-calls")
+public record GcpCallsConfig(
+        @DefaultValue("32") int maxConcurrentCallsPerProject,
+        @DefaultValue("60s") Duration acquireTimeout,
+        @DefaultValue("64") int maxWaitingCallsPerProject,
+        @DefaultValue("64") int platformThreads) {}
@@ -0,0 +1,24 @@
+package com.witboost.provisioning.bigquery.config;
+
+import com.witboost.provisioning.bigquery.service.membership.GroupMembershipBackend;
+import com.witboost.provisioning.bigquery.service.membership.InMemoryGroupMembershipBackend;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class GroupMembershipBackendBean {
+
+    @Bean
+    public GroupMembershipBackend groupMembershipBackend(ConsumerGroupsConfig config) {
+        return switch (config.backend()) {
+            case IN_MEMORY -> {
+                if (config.enabled()) {
+                    log.warn("Consumer group memberships are kept in memory and will be lost on restart");
+                }
+                yield new InMemoryGroupMembershipBackend();
+            }
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "iam-write-coalescer")
+public record IamWriteCoalescerConfig(@DefaultValue("200ms") Duration window) {}
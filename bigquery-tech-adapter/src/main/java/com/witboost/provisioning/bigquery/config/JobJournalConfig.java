@@ -0,0 +1,20 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration of the provisioning journal
+ *
+ * @param path file the journal is appended to. When empty, the journal is only kept in memory and does not survive
+ *     restarts
+ * @param stepTtl how long completed steps of an unfinished provisioning are trusted before being run again
+ * @param compactThreshold size past which the journal file is compacted while running
+ */
+@ConfigurationProperties(prefix = "job-journal")
+public record JobJournalConfig(
+        @DefaultValue("") String path,
+        @DefaultValue("24h") Duration stepTtl,
+        @DefaultValue("16MB") DataSize compactThreshold) {}
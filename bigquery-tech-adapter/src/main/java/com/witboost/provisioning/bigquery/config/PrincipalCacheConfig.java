@@ -0,0 +1,11 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "principal-cache")
+public record PrincipalCacheConfig(
+        @DefaultValue("10000") long maxSize,
+        @DefaultValue("1h") Duration ttl,
+        @DefaultValue("5m") Duration negativeTtl) {}
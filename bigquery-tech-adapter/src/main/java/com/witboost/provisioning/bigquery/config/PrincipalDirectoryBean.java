@@ -0,0 +1,29 @@
+package com.witboost.provisioning.bigquery.config;
+
+import com.witboost.provisioning.bigquery.service.directory.FilePrincipalDirectory;
+import com.witboost.provisioning.bigquery.service.directory.NoOpPrincipalDirectory;
+import com.witboost.provisioning.bigquery.service.directory.PrincipalDirectory;
+import java.nio.file.Path;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class PrincipalDirectoryBean {
+
+    @Bean
+    public PrincipalDirectory principalDirectory(PrincipalDirectoryConfig config) {
+        return switch (config.type()) {
+            case NONE -> new NoOpPrincipalDirectory();
+            case FILE -> {
+                if (config.file() == null || config.file().isBlank()) {
+                    throw new IllegalStateException(
+                            "principal-directory.file is required when principal-directory.type is 'file'");
+                }
+                log.info("Looking up principals in the directory file {}", config.file());
+                yield new FilePrincipalDirectory(Path.of(config.file()));
+            }
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "principal-directory")
+public record PrincipalDirectoryConfig(
+        @DefaultValue("none") Type type,
+        String file,
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("4") int maxConcurrentLookups,
+        @DefaultValue("10s") Duration acquireTimeout) {
+
+    public enum Type {
+        /** Every mapped identity is assumed to exist */
+        NONE,
+        /** Identities are looked up in a local file, meant for development and testing */
+        FILE
+    }
+}
@@ -1,6 +1,36 @@
 package com.witboost.provisioning.bigquery.config;
 
+import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(prefix = "principal-mapping-service")
-public record PrincipalMappingServiceConfig(String groupMailDomain) {}
+public record PrincipalMappingServiceConfig(String groupMailDomain, List<Rule> rules) {
+
+    /**
+     * Maps the subjects starting with {@code prefix} to an identity of the given type. The value of the identity is
+     * the rest of the subject, rewritten by the optional steps in this order:
+     *
+     * <ol>
+     *   <li>the last occurrence of {@code mailSeparator} is replaced with {@code @}
+     *   <li>the value must fully match {@code pattern}, and is replaced with {@code replacement} ({@code $0} by
+     *       default), which can refer to the groups of the pattern
+     *   <li>{@code domain} is appended
+     * </ol>
+     *
+     * A rule whose separator or pattern doesn't match is skipped, and the next rule is tried.
+     */
+    public record Rule(
+            String prefix,
+            IdentityType type,
+            String mailSeparator,
+            String pattern,
+            String replacement,
+            String domain) {}
+
+    public enum IdentityType {
+        USER,
+        GROUP,
+        SERVICE_ACCOUNT,
+        DOMAIN
+    }
+}
@@ -0,0 +1,12 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "project-cache")
+public record ProjectCacheConfig(
+        @DefaultValue("1000") long maxSize,
+        @DefaultValue("1h") Duration ttl,
+        @DefaultValue("5m") Duration negativeTtl,
+        @DefaultValue("10m") Duration refreshAfter) {}
@@ -0,0 +1,15 @@
+package com.witboost.provisioning.bigquery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "rate-limit")
+public record RateLimitConfig(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("50") double bigqueryReadsPerSecond,
+        @DefaultValue("20") double bigqueryWritesPerSecond,
+        @DefaultValue("10") double tableIamWritesPerSecond,
+        @DefaultValue("1") double projectIamWritesPerSecond,
+        @DefaultValue("10") double resourceManagerReadsPerSecond,
+        @DefaultValue("0.5") double tableWritesPerSecond,
+        @DefaultValue("5") int tableWriteBurst) {}
@@ -0,0 +1,12 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "request-deadline")
+public record RequestDeadlineConfig(
+        @DefaultValue("5m") Duration defaultTimeout,
+        @DefaultValue("30m") Duration maxTimeout,
+        @DefaultValue("X-Request-Timeout") String header,
+        @DefaultValue("60s") Duration callTimeout) {}
@@ -1,8 +1,10 @@
 package com.witboost.provisioning.bigquery.config;
 
+import com.google.api.gax.retrying.RetrySettings;
 import com.google.cloud.resourcemanager.v3.ProjectsClient;
 import com.google.cloud.resourcemanager.v3.ProjectsSettings;
 import java.io.IOException;
+import java.time.Duration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -10,7 +12,26 @@ import org.springframework.context.annotation.Configuration;
 public class ResourceManagerBean {
 
     @Bean
-    public ProjectsClient projectsClient() throws IOException {
-        return ProjectsClient.create(ProjectsSettings.newBuilder().build());
+    public ProjectsClient projectsClient(RequestDeadlineConfig deadlineConfig) throws IOException {
+        Duration callTimeout = deadlineConfig.callTimeout();
+        ProjectsSettings.Builder settings = ProjectsSettings.newBuilder();
+        // bounds every call and turns off the retries of the client, RetryHelper is the only retry layer.
+        // GcpCallDeadline shortens the timeout of each call further to the time left to its request
+        settings.applyToAllUnaryMethods(method -> {
+            RetrySettings retrySettings = method.getRetrySettings();
+            method.setRetrySettings(retrySettings.toBuilder()
+                    .setMaxAttempts(1)
+                    .setInitialRpcTimeoutDuration(capped(retrySettings.getInitialRpcTimeoutDuration(), callTimeout))
+                    .setMaxRpcTimeoutDuration(capped(retrySettings.getMaxRpcTimeoutDuration(), callTimeout))
+                    .setTotalTimeoutDuration(capped(retrySettings.getTotalTimeoutDuration(), callTimeout))
+                    .build());
+            return null;
+        });
+        return ProjectsClient.create(settings.build());
+    }
+
+    private static Duration capped(Duration timeout, Duration max) {
+        // a zero timeout means no timeout at all
+        return timeout.isZero() || timeout.compareTo(max) > 0 ? max : timeout;
     }
 }
@@ -1,10 +1,34 @@
 package com.witboost.provisioning.bigquery.config;
 
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
+/**
+ * Configuration of the retries of GCP calls
+ *
+ * @param initialBackoffMs minimum wait before a retry
+ * @param maxBackoffMs maximum wait before a retry
+ * @param maxTotalWaitMs maximum time spent waiting between the attempts of a call
+ * @param maxConflictAttempts attempts of a read-modify-write cycle that keeps hitting concurrent modifications
+ * @param maxAttempts attempts of a call failing with transient or rate limiting errors
+ * @param requestRetryBudget retries allowed across all the calls made for the same request
+ * @param operations overrides of the settings above for specific operation types, keyed by the name of the type
+ */
 @ConfigurationProperties(prefix = "retry")
 public record RetryConfig(
         @DefaultValue("500") long initialBackoffMs,
         @DefaultValue("8000") long maxBackoffMs,
-        @DefaultValue("120000") long maxTotalWaitMs) {}
+        @DefaultValue("120000") long maxTotalWaitMs,
+        @DefaultValue("5") int maxConflictAttempts,
+        @DefaultValue("6") int maxAttempts,
+        @DefaultValue("30") int requestRetryBudget,
+        Map<String, Policy> operations) {
+
+    /** Settings of an operation type. Unset values fall back to the global ones */
+    public record Policy(Integer maxAttempts, Long initialBackoffMs, Long maxBackoffMs, Long maxTotalWaitMs) {}
+
+    public RetryConfig {
+        operations = operations == null ? Map.of() : Map.copyOf(operations);
+    }
+}
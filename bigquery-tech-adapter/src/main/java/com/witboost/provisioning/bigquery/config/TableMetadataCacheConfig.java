@@ -0,0 +1,9 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "table-metadata-cache")
+public record TableMetadataCacheConfig(
+        @DefaultValue("30s") Duration ttl, @DefaultValue("10m") Duration maxAge, @DefaultValue("10000") long maxSize) {}
@@ -0,0 +1,9 @@
+package com.witboost.provisioning.bigquery.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "validation-results")
+public record ValidationResultStoreConfig(
+        @DefaultValue("true") boolean enabled, @DefaultValue("2m") Duration ttl, @DefaultValue("10000") long maxSize) {}
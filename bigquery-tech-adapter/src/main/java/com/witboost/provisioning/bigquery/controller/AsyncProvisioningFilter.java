@@ -0,0 +1,223 @@
+package com.witboost.provisioning.bigquery.controller;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.witboost.provisioning.bigquery.config.AsyncProvisioningConfig;
+import com.witboost.provisioning.bigquery.model.AsyncProvisioningRequest;
+import com.witboost.provisioning.bigquery.model.AsyncUpdateAclRequest;
+import com.witboost.provisioning.bigquery.model.ProvisioningJob;
+import com.witboost.provisioning.bigquery.service.async.AsyncProvisioningService;
+import com.witboost.provisioning.bigquery.service.async.ProvisioningJobQueue;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.vavr.control.Either;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Serves the provision, unprovision and update ACL operations of the Tech Adapter API asynchronously when
+ * {@link AsyncProvisioningConfig#enabled()} is set.
+ *
+ * <p>The requests are parsed and validated before being queued, and invalid ones are answered with {@code 400} and
+ * the RequestValidationError of the API, as the synchronous operations are. Valid requests are answered with
+ * {@code 202} and the token of a job of the {@link ProvisioningJobQueue}, as defined by the Tech Adapter API 2.2.0.
+ * The Witboost coordinator then polls {@code /v1/provision/{token}/status}, which is answered from the job table.
+ * Tokens unknown to the job table are left to the framework.
+ *
+ * <p>The job table lives in the memory of the instance, so the status of a job can only be polled from the instance
+ * that accepted it, and the Tech Adapter must run as a single replica when the asynchronous operations are enabled.
+ * The filter runs after the {@link OperationContextFilter}, so the validation shares the deadline of the request.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class AsyncProvisioningFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncProvisioningFilter.class);
+
+    private static final String PROVISION_PATH = "/v1/provision";
+    private static final String UNPROVISION_PATH = "/v1/unprovision";
+    private static final String UPDATE_ACL_PATH = "/v1/updateacl";
+    private static final Pattern STATUS_PATH = Pattern.compile("^/v1/provision/([^/]+)/status$");
+    private static final String INVALID_REQUEST_MESSAGE = "The request is not valid";
+
+    private final AsyncProvisioningConfig config;
+    private final AsyncProvisioningService asyncProvisioningService;
+    private final ProvisioningJobQueue jobQueue;
+    private final ObjectMapper objectMapper;
+
+    public AsyncProvisioningFilter(
+            AsyncProvisioningConfig config,
+            AsyncProvisioningService asyncProvisioningService,
+            ProvisioningJobQueue jobQueue,
+            ObjectMapper objectMapper) {
+        this.config = config;
+        this.asyncProvisioningService = asyncProvisioningService;
+        this.jobQueue = jobQueue;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !config.enabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (HttpMethod.POST.matches(request.getMethod())) {
+            switch (path) {
+                case PROVISION_PATH -> {
+                    accepted(
+                            response,
+                            readBody(request)
+                                    .flatMap(body -> asyncProvisioningService.provision(
+                                            new AsyncProvisioningRequest(text(body, "descriptor"), false))));
+                    return;
+                }
+                case UNPROVISION_PATH -> {
+                    accepted(
+                            response,
+                            readBody(request)
+                                    .flatMap(body -> asyncProvisioningService.unprovision(new AsyncProvisioningRequest(
+                                            text(body, "descriptor"),
+                                            body.path("removeData").asBoolean(false)))));
+                    return;
+                }
+                case UPDATE_ACL_PATH -> {
+                    accepted(response, readBody(request).flatMap(this::updateAcl));
+                    return;
+                }
+                default -> {}
+            }
+        } else if (HttpMethod.GET.matches(request.getMethod())) {
+            Matcher matcher = STATUS_PATH.matcher(path);
+            Optional<ProvisioningJob> job = matcher.matches() ? jobQueue.get(matcher.group(1)) : Optional.empty();
+            if (job.isPresent()) {
+                write(response, HttpStatus.OK, provisioningStatus(job.get()));
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Either<FailedOperation, JsonNode> readBody(HttpServletRequest request) {
+        try {
+            JsonNode body = objectMapper.readTree(request.getInputStream());
+            if (body == null || !body.isObject()) {
+                return left(invalidRequest("The body of the request is not a JSON object"));
+            }
+            return right(body);
+        } catch (IOException e) {
+            logger.warn("Unable to read the body of the request to {}: {}", request.getRequestURI(), e.getMessage());
+            return left(invalidRequest(String.format("The body of the request is not valid JSON: %s", e.getMessage())));
+        }
+    }
+
+    private Either<FailedOperation, String> updateAcl(JsonNode body) {
+        JsonNode refs = body.path("refs");
+        if (!refs.isArray()) {
+            return left(invalidRequest("The request doesn't contain the refs to grant access to"));
+        }
+        List<String> users = new ArrayList<>();
+        for (JsonNode ref : refs) {
+            if (!ref.isTextual()) {
+                return left(invalidRequest(String.format("The ref %s is not a string", ref)));
+            }
+            users.add(ref.asText());
+        }
+        // the descriptor the component was provisioned with is sent back as the request of its info
+        return asyncProvisioningService.updateAcl(
+                new AsyncUpdateAclRequest(users, text(body.path("provisionInfo"), "request")));
+    }
+
+    private static FailedOperation invalidRequest(String error) {
+        return new FailedOperation(INVALID_REQUEST_MESSAGE, List.of(new Problem(error)));
+    }
+
+    private static String text(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+    private void accepted(HttpServletResponse response, Either<FailedOperation, String> token) throws IOException {
+        if (token.isRight()) {
+            write(response, HttpStatus.ACCEPTED, token.get());
+            return;
+        }
+        var status =
+                ProvisioningJobQueue.QUEUE_FULL_MESSAGE.equals(token.getLeft().message())
+                        ? HttpStatus.SERVICE_UNAVAILABLE
+                        : HttpStatus.BAD_REQUEST;
+        write(response, status, validationError(token.getLeft()));
+    }
+
+    /** Body of the ProvisioningStatus of the Tech Adapter API, where queued jobs are reported as running */
+    private static Map<String, Object> provisioningStatus(ProvisioningJob job) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        switch (job.status()) {
+            case QUEUED, RUNNING -> {
+                status.put("status", "RUNNING");
+                status.put("result", "");
+            }
+            case COMPLETED -> {
+                status.put("status", "COMPLETED");
+                status.put("result", "");
+                if (job.info() != null) {
+                    Map<String, Object> info = new LinkedHashMap<>();
+                    info.put("publicInfo", job.info().getPublicInfo().orElse(Map.of()));
+                    info.put("privateInfo", job.info().getPrivateInfo().orElse(Map.of()));
+                    status.put("info", info);
+                }
+            }
+            case FAILED -> {
+                status.put("status", "FAILED");
+                status.put("result", describe(job.error()));
+            }
+        }
+        return status;
+    }
+
+    /** Body of the RequestValidationError of the Tech Adapter API */
+    private static Map<String, Object> validationError(FailedOperation failedOperation) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put(
+                "errors",
+                failedOperation.problems().stream().map(Problem::description).toList());
+        error.put("userMessage", failedOperation.message());
+        return error;
+    }
+
+    private static String describe(FailedOperation failedOperation) {
+        List<String> lines = new ArrayList<>();
+        lines.add(failedOperation.message());
+        failedOperation.problems().forEach(problem -> lines.add(problem.description()));
+        return String.join("\n", lines);
+    }
+
+    private void write(HttpServletResponse response, HttpStatus status, Object body) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+}
@@ -0,0 +1,75 @@
+package com.witboost.provisioning.bigquery.controller;
+
+import com.witboost.provisioning.bigquery.config.RequestDeadlineConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.util.OperationContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Opens an {@link OperationContext} for every API request, shared by all the GCP calls made to serve it.
+ *
+ * <p>The deadline of the request is taken from the {@link RequestDeadlineConfig#header()} header when the caller
+ * sends it, e.g. {@code 90s}, {@code 2m} or a number of seconds, and from {@link RequestDeadlineConfig#defaultTimeout()}
+ * otherwise. It is capped by {@link RequestDeadlineConfig#maxTimeout()}.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class OperationContextFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(OperationContextFilter.class);
+
+    private final RetryConfig retryConfig;
+    private final RequestDeadlineConfig deadlineConfig;
+
+    public OperationContextFilter(RetryConfig retryConfig, RequestDeadlineConfig deadlineConfig) {
+        this.retryConfig = retryConfig;
+        this.deadlineConfig = deadlineConfig;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var context = new OperationContext(retryConfig.requestRetryBudget(), timeoutOf(request));
+        try (var ignored = context.enter()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    Duration timeoutOf(HttpServletRequest request) {
+        Duration timeout = deadlineConfig.defaultTimeout();
+        String header = request.getHeader(deadlineConfig.header());
+        if (header != null && !header.isBlank()) {
+            Duration requested = parse(header);
+            if (requested != null && !requested.isNegative() && !requested.isZero()) {
+                timeout = requested;
+            } else {
+                logger.warn(
+                        "Ignoring invalid {} header '{}', using the default timeout {}",
+                        deadlineConfig.header(),
+                        header,
+                        timeout);
+            }
+        }
+        return timeout.compareTo(deadlineConfig.maxTimeout()) > 0 ? deadlineConfig.maxTimeout() : timeout;
+    }
+
+    private static Duration parse(String header) {
+        try {
+            return DurationStyle.detectAndParse(header.strip(), ChronoUnit.SECONDS);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.witboost.provisioning.bigquery.controller;
+
+import com.witboost.provisioning.bigquery.service.GCPPrincipalMappingService;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admin endpoint of the principal mapping cache, available at {@code /actuator/principalcache} once exposed.
+ * {@code DELETE} drops every cached mapping, {@code DELETE /actuator/principalcache/{subject}} a single one.
+ */
+@Component
+@Endpoint(id = "principalcache")
+public class PrincipalCacheEndpoint {
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalCacheEndpoint.class);
+
+    private final GCPPrincipalMappingService principalMappingService;
+
+    public PrincipalCacheEndpoint(GCPPrincipalMappingService principalMappingService) {
+        this.principalMappingService = principalMappingService;
+    }
+
+    @ReadOperation
+    public Map<String, Long> size() {
+        return Map.of("size", principalMappingService.cachedMappings());
+    }
+
+    @DeleteOperation
+    public void invalidateAll() {
+        logger.info("Invalidating all the cached principal mappings");
+        principalMappingService.invalidateAll();
+    }
+
+    @DeleteOperation
+    public void invalidate(@Selector String subject) {
+        logger.info("Invalidating the cached principal mapping of {}", subject);
+        principalMappingService.invalidate(subject);
+    }
+}
@@ -0,0 +1,36 @@
+package com.witboost.provisioning.bigquery.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/** How the consumers of an output port are granted access to its view */
+public enum AccessMode {
+    /** The consumers are granted the read role on the view */
+    TABLE("table"),
+    /**
+     * The consumer group of the view can read the whole dataset of the view, which must be a dataset holding only
+     * output port views
+     */
+    DATASET("dataset");
+
+    private final String value;
+
+    AccessMode(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String value() {
+        return value;
+    }
+
+    @JsonCreator
+    public static AccessMode fromValue(String value) {
+        for (var mode : values()) {
+            if (mode.value.equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported access mode: " + value);
+    }
+}
@@ -0,0 +1,9 @@
+package com.witboost.provisioning.bigquery.model;
+
+/**
+ * Provision or unprovision request run as a job
+ *
+ * @param descriptor the component descriptor, in the same YAML format accepted by the synchronous API
+ * @param removeData whether unprovisioning should also remove the data of the component
+ */
+public record AsyncProvisioningRequest(String descriptor, boolean removeData) {}
@@ -0,0 +1,11 @@
+package com.witboost.provisioning.bigquery.model;
+
+import java.util.List;
+
+/**
+ * Update ACL request run as a job
+ *
+ * @param refs the users and groups that must have access to the component
+ * @param descriptor the descriptor the component was provisioned with
+ */
+public record AsyncUpdateAclRequest(List<String> refs, String descriptor) {}
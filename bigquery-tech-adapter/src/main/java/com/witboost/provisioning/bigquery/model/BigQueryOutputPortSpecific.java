@@ -27,4 +27,14 @@ public class BigQueryOutputPortSpecific extends Specific {
 
     @NotNull
     private List<String> ownerRoles;
+
+    /** Dataset of the view, when it is not the dataset of the source table */
+    private String viewDataset;
+
+    @NotNull
+    private AccessMode accessMode = AccessMode.TABLE;
+
+    public String getViewDataset() {
+        return viewDataset == null ? dataset : viewDataset;
+    }
 }
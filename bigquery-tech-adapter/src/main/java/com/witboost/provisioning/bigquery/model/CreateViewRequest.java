@@ -3,5 +3,22 @@ package com.witboost.provisioning.bigquery.model;
 import com.witboost.provisioning.model.Column;
 import java.util.List;
 
+/**
+ * @param dataset dataset of the source table
+ * @param viewDataset dataset of the view
+ */
 public record CreateViewRequest(
-        String project, String dataset, String table, String view, String description, List<Column> schema) {}
+        String project,
+        String dataset,
+        String table,
+        String viewDataset,
+        String view,
+        String description,
+        List<Column> schema) {
+
+    /** A view in the dataset of its source table */
+    public CreateViewRequest(
+            String project, String dataset, String table, String view, String description, List<Column> schema) {
+        this(project, dataset, table, dataset, view, description, schema);
+    }
+}
@@ -0,0 +1,37 @@
+package com.witboost.provisioning.bigquery.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+
+/**
+ * A line of the provisioning journal
+ *
+ * @param type what the entry records
+ * @param key the operation key for step entries, the job token for job entries
+ * @param step name of the completed step, only set on {@link Type#STEP_COMPLETED} entries
+ * @param operation name of the queued operation, only set on {@link Type#JOB_SUBMITTED} entries
+ * @param descriptor descriptor of the queued operation, only set on {@link Type#JOB_SUBMITTED} entries
+ * @param removeData whether the queued unprovisioning removes data, only set on {@link Type#JOB_SUBMITTED} entries
+ * @param refs identities of the queued ACL update, only set on {@link Type#JOB_SUBMITTED} entries
+ * @param timestamp when the entry was written, in milliseconds since the epoch
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record JournalEntry(
+        Type type,
+        String key,
+        String step,
+        String operation,
+        String descriptor,
+        Boolean removeData,
+        List<String> refs,
+        long timestamp) {
+
+    public enum Type {
+        STEP_COMPLETED,
+        OPERATION_COMPLETED,
+        JOB_SUBMITTED,
+        JOB_FINISHED
+    }
+}
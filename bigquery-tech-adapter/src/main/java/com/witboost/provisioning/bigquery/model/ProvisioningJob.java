@@ -0,0 +1,42 @@
+package com.witboost.provisioning.bigquery.model;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import java.time.Instant;
+
+/**
+ * Snapshot of an asynchronous provisioning operation, as stored in the job table and returned by the status endpoint
+ */
+public record ProvisioningJob(
+        String token,
+        String operation,
+        Status status,
+        Instant submittedAt,
+        Instant startedAt,
+        Instant completedAt,
+        ProvisionInfo info,
+        FailedOperation error) {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public boolean isDone() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public ProvisioningJob started(Instant at) {
+        return new ProvisioningJob(token, operation, Status.RUNNING, submittedAt, at, null, null, null);
+    }
+
+    public ProvisioningJob completed(Instant at, ProvisionInfo provisionInfo) {
+        return new ProvisioningJob(token, operation, Status.COMPLETED, submittedAt, startedAt, at, provisionInfo, null);
+    }
+
+    public ProvisioningJob failed(Instant at, FailedOperation failedOperation) {
+        return new ProvisioningJob(token, operation, Status.FAILED, submittedAt, startedAt, at, null, failedOperation);
+    }
+}
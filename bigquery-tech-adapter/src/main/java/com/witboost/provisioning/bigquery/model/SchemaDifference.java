@@ -0,0 +1,27 @@
+package com.witboost.provisioning.bigquery.model;
+
+/**
+ * A difference between two schemas found by the schema compatibility checks.
+ *
+ * @param path dotted path of the column, e.g. {@code address.city} for a field of the {@code address} record
+ * @param expected the type or mode the column should have, {@code null} when not relevant for the kind
+ * @param actual the type or mode the column has, {@code null} when not relevant for the kind
+ */
+public record SchemaDifference(Kind kind, String path, String expected, String actual) {
+
+    public enum Kind {
+        MISSING_COLUMN,
+        TYPE_MISMATCH,
+        MODE_MISMATCH,
+        REQUIRED_COLUMN_ADDED
+    }
+
+    public String description() {
+        return switch (kind) {
+            case MISSING_COLUMN -> String.format("column %s is missing", path);
+            case TYPE_MISMATCH, MODE_MISMATCH -> String.format("column %s is %s, expected %s", path, actual, expected);
+            case REQUIRED_COLUMN_ADDED -> String.format(
+                    "column %s is added as REQUIRED, only NULLABLE or REPEATED columns can be added", path);
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.witboost.provisioning.bigquery.model;
+
+import com.google.cloud.bigquery.Table;
+
+public record TableUpsertResult(Table table, Outcome outcome) {
+
+    public enum Outcome {
+        CREATED,
+        UPDATED,
+        UNCHANGED
+    }
+}
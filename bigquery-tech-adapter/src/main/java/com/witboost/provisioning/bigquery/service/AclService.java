@@ -6,20 +6,34 @@ import static io.vavr.control.Either.right;
 import com.google.cloud.Identity;
 import com.google.cloud.Policy;
 import com.google.cloud.Role;
+import com.google.cloud.bigquery.Acl;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.Dataset;
+import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.bigquery.TableId;
 import com.google.cloud.resourcemanager.v3.ProjectName;
 import com.google.cloud.resourcemanager.v3.ProjectsClient;
 import com.google.iam.v1.Binding;
 import com.google.iam.v1.GetIamPolicyRequest;
 import com.google.iam.v1.SetIamPolicyRequest;
+import com.witboost.provisioning.bigquery.util.EtagMismatchException;
+import com.witboost.provisioning.bigquery.util.GcpCallDeadline;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.GcpRateLimiter;
+import com.witboost.provisioning.bigquery.util.IamWriteCoalescer;
+import com.witboost.provisioning.bigquery.util.OperationContext;
 import com.witboost.provisioning.bigquery.util.RetryHelper;
+import com.witboost.provisioning.bigquery.util.RetryOperation;
 import com.witboost.provisioning.framework.common.ErrorConstants;
 import com.witboost.provisioning.model.common.FailedOperation;
 import com.witboost.provisioning.model.common.Problem;
 import io.vavr.control.Either;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,12 +46,26 @@ public class AclService {
     private final Function<String, BigQuery> bigQueryClientSupplier;
     private final RetryHelper retryHelper;
     private final ProjectsClient projectsClient;
+    private final IamWriteCoalescer iamWriteCoalescer;
+    private final GcpCallExecutor gcpCallExecutor;
+    private final GcpRateLimiter rateLimiter;
+    private final GcpCallDeadline callDeadline;
 
     public AclService(
-            Function<String, BigQuery> bigQueryClientSupplier, RetryHelper retryHelper, ProjectsClient projectsClient) {
+            Function<String, BigQuery> bigQueryClientSupplier,
+            RetryHelper retryHelper,
+            ProjectsClient projectsClient,
+            IamWriteCoalescer iamWriteCoalescer,
+            GcpCallExecutor gcpCallExecutor,
+            GcpRateLimiter rateLimiter,
+            GcpCallDeadline callDeadline) {
         this.bigQueryClientSupplier = bigQueryClientSupplier;
         this.retryHelper = retryHelper;
         this.projectsClient = projectsClient;
+        this.iamWriteCoalescer = iamWriteCoalescer;
+        this.gcpCallExecutor = gcpCallExecutor;
+        this.rateLimiter = rateLimiter;
+        this.callDeadline = callDeadline;
     }
 
     public Either<FailedOperation, Void> applyAcls(List<String> roles, List<Identity> principals, TableId tableOrView) {
@@ -45,14 +73,17 @@ public class AclService {
             logger.info("Assigning roles {} to principals {} for table/view {}", roles, principals, tableOrView);
             var gcpRoles = roles.stream().map(Role::of).toList();
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(tableOrView.getProject());
-            Policy policy = bigQueryClient.getIamPolicy(tableOrView);
-            var policyBuilder = policy.toBuilder();
-            for (var gcpRole : gcpRoles) {
-                for (var principal : principals) {
-                    policyBuilder.addIdentity(gcpRole, principal);
+            retryHelper.retryOnConflict("table-acl-grant", RetryOperation.TABLE_IAM, () -> {
+                Policy policy = readIamPolicy(bigQueryClient, tableOrView);
+                var policyBuilder = policy.toBuilder();
+                for (var gcpRole : gcpRoles) {
+                    for (var principal : principals) {
+                        policyBuilder.addIdentity(gcpRole, principal);
+                    }
                 }
-            }
-            bigQueryClient.setIamPolicy(tableOrView, policyBuilder.build());
+                return gcpTableWrite(
+                        tableOrView, () -> bigQueryClient.setIamPolicy(tableOrView, policyBuilder.build()));
+            });
             return right(null);
         } catch (Exception e) {
             String userMessage = "An unexpected error occurred";
@@ -66,18 +97,71 @@ public class AclService {
         }
     }
 
+    /**
+     * Makes the given principals the only members of the role on the table/view, in a single read-modify-write.
+     * The updated policy keeps the etag of the one that was read, so a concurrent change makes the write fail and
+     * the cycle is run again on the new policy. No write is performed if the role already has exactly these
+     * members.
+     *
+     * @param role the managed role
+     * @param principals the desired members of the role. An empty list removes the role binding
+     * @param tableOrView the table or view whose policy is updated
+     * @return true if the policy was written, false if it was already up to date
+     */
+    public Either<FailedOperation, Boolean> setRoleMembers(
+            String role, List<Identity> principals, TableId tableOrView) {
+        try {
+            BigQuery bigQueryClient = bigQueryClientSupplier.apply(tableOrView.getProject());
+            Role gcpRole = Role.of(role);
+            return right(retryHelper.retryOnConflict("table-acl-set", RetryOperation.TABLE_IAM, () -> {
+                Policy policy = readIamPolicy(bigQueryClient, tableOrView);
+                Map<Role, Set<Identity>> bindings = new HashMap<>(policy.getBindings());
+                if (principals.isEmpty()) {
+                    bindings.remove(gcpRole);
+                } else {
+                    bindings.put(gcpRole, new HashSet<>(principals));
+                }
+                if (bindings.equals(policy.getBindings())) {
+                    logger.info("Role {} on table/view {} is already assigned to {}", role, tableOrView, principals);
+                    return false;
+                }
+                logger.info("Setting members of role {} for table/view {} to {}", role, tableOrView, principals);
+                gcpTableWrite(
+                        tableOrView,
+                        () -> bigQueryClient.setIamPolicy(
+                                tableOrView,
+                                policy.toBuilder().setBindings(bindings).build()));
+                return true;
+            }));
+        } catch (Exception e) {
+            String userMessage = "An unexpected error occurred";
+            String error = String.format(
+                    "Failed to setup acls for table/view '%s.%s.%s': %s",
+                    tableOrView.getProject(), tableOrView.getDataset(), tableOrView.getTable(), e.getMessage());
+            logger.error(error, e);
+            return left(new FailedOperation(
+                    userMessage,
+                    List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION)))));
+        }
+    }
+
     public Either<FailedOperation, Void> revokeRoles(List<String> roles, TableId tableOrView) {
         try {
             logger.info("Revoking roles {} for table/view {}", roles, tableOrView);
             var gcpRoles = roles.stream().map(Role::of).toList();
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(tableOrView.getProject());
-            Policy policy = bigQueryClient.getIamPolicy(tableOrView);
-            Map<Role, Set<Identity>> bindings = new HashMap<>(policy.getBindings());
-            for (var gcpRole : gcpRoles) {
-                bindings.remove(gcpRole);
-            }
-            policy = policy.toBuilder().setBindings(bindings).build();
-            bigQueryClient.setIamPolicy(tableOrView, policy);
+            retryHelper.retryOnConflict("table-acl-revoke", RetryOperation.TABLE_IAM, () -> {
+                Policy policy = readIamPolicy(bigQueryClient, tableOrView);
+                Map<Role, Set<Identity>> bindings = new HashMap<>(policy.getBindings());
+                for (var gcpRole : gcpRoles) {
+                    bindings.remove(gcpRole);
+                }
+                return gcpTableWrite(
+                        tableOrView,
+                        () -> bigQueryClient.setIamPolicy(
+                                tableOrView,
+                                policy.toBuilder().setBindings(bindings).build()));
+            });
             return right(null);
         } catch (Exception e) {
             if (e instanceof BigQueryException bqe && bqe.getCode() == 404) {
@@ -96,50 +180,283 @@ public class AclService {
     }
 
     public Either<FailedOperation, Void> applyProjectAcls(String projectId, List<String> roles, List<String> members) {
-        try {
-            retryHelper.retryOnAbortedException(() -> {
-                logger.info("Assigning roles {} to members {} for project {}", roles, members, projectId);
-                String resource = ProjectName.of(projectId).toString();
-                com.google.iam.v1.Policy policy = projectsClient.getIamPolicy(
-                        GetIamPolicyRequest.newBuilder().setResource(resource).build());
-                com.google.iam.v1.Policy.Builder policyBuilder = policy.toBuilder();
-
-                for (String role : roles) {
-                    Set<String> mergedMembers = new HashSet<>();
-                    Binding existing = null;
-                    for (Binding binding : policyBuilder.getBindingsList()) {
-                        if (binding.getRole().equals(role)) {
-                            existing = binding;
-                            mergedMembers.addAll(binding.getMembersList());
-                            break;
-                        }
-                    }
-
-                    mergedMembers.addAll(members);
-                    if (existing != null) {
-                        policyBuilder.removeBindings(
-                                policyBuilder.getBindingsList().indexOf(existing));
-                    }
-                    policyBuilder.addBindings(Binding.newBuilder()
-                            .setRole(role)
-                            .addAllMembers(mergedMembers)
-                            .build());
-                }
+        return applyProjectAclsAsync(projectId, roles, members).join();
+    }
 
-                projectsClient.setIamPolicy(SetIamPolicyRequest.newBuilder()
-                        .setResource(resource)
-                        .setPolicy(policyBuilder.build())
-                        .build());
-                return null;
-            });
-            return right(null);
+    /**
+     * Grants the roles to the members on the project without blocking the caller. The update is coalesced with the
+     * concurrent ones for the same project and retried on transient errors, with the backoff scheduled on a timer.
+     *
+     * @return a future completed with the outcome of the update. It never completes exceptionally
+     */
+    public CompletableFuture<Either<FailedOperation, Void>> applyProjectAclsAsync(
+            String projectId, List<String> roles, List<String> members) {
+        logger.info("Assigning roles {} to members {} for project {}", roles, members, projectId);
+        CompletableFuture<Void> written;
+        try {
+            written = iamWriteCoalescer.submit(
+                    projectId,
+                    roles,
+                    members,
+                    // ABORTED means the policy changed since it was read: the whole cycle is run again after a
+                    // backoff, so that concurrent writers of the same project don't keep colliding
+                    additions -> retryHelper.retryOnConflictAsync(
+                            "project-acl-grant",
+                            RetryOperation.PROJECT_IAM,
+                            () -> retryHelper.retryAsync(RetryOperation.PROJECT_IAM, () -> rateLimiter
+                                    .acquireAsync(projectId, RetryOperation.PROJECT_IAM)
+                                    .thenCompose(permit -> gcpCallExecutor.submit(projectId, () -> {
+                                        writeProjectAcls(projectId, additions);
+                                        return null;
+                                    })))));
         } catch (Exception e) {
+            written = CompletableFuture.failedFuture(e);
+        }
+        return written.handle((ignored, failure) -> {
+            if (failure == null) {
+                return right(null);
+            }
+            Throwable e =
+                    failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
             String userMessage = "An unexpected error occurred while assigning project IAM roles";
             String error = String.format("Failed to setup project IAM roles for '%s': %s", projectId, e.getMessage());
             logger.error(error, e);
             return left(new FailedOperation(
                     userMessage,
                     List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION)))));
+        });
+    }
+
+    public Either<FailedOperation, Void> grantDatasetReaders(DatasetId datasetId, List<Identity> members) {
+        return grantDatasetReadersAsync(datasetId, members).join();
+    }
+
+    /**
+     * Grants read access on the dataset to the members without blocking the caller. Grants for the same dataset
+     * submitted within the coalescing window are merged into a single dataset update, and no update is done if the
+     * members can already read the dataset.
+     *
+     * @return a future completed with the outcome of the update. It never completes exceptionally
+     */
+    public CompletableFuture<Either<FailedOperation, Void>> grantDatasetReadersAsync(
+            DatasetId datasetId, List<Identity> members) {
+        logger.info("Granting read access on dataset {} to {}", datasetId, members);
+        CompletableFuture<Void> written;
+        try {
+            written = iamWriteCoalescer.submit(
+                    "dataset/" + datasetId.getProject() + "/" + datasetId.getDataset(),
+                    List.of(Acl.Role.READER.name()),
+                    members.stream().map(Identity::strValue).toList(),
+                    additions -> CompletableFuture.supplyAsync(
+                            OperationContext.propagate(() -> {
+                                try {
+                                    return updateDatasetAcl(datasetId, "dataset-acl-grant", acl -> {
+                                        for (var addition : additions.entrySet()) {
+                                            for (String member : addition.getValue()) {
+                                                Acl entry = Acl.of(
+                                                        toAclEntity(Identity.valueOf(member)),
+                                                        Acl.Role.valueOf(addition.getKey()));
+                                                if (!acl.contains(entry)) {
+                                                    acl.add(entry);
+                                                }
+                                            }
+                                        }
+                                    });
+                                } catch (Exception e) {
+                                    throw new CompletionException(e);
+                                }
+                            }),
+                            gcpCallExecutor.executor()));
+        } catch (Exception e) {
+            written = CompletableFuture.failedFuture(e);
+        }
+        return written.handle((ignored, failure) -> {
+            if (failure == null) {
+                return right(null);
+            }
+            Throwable e =
+                    failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            return left(datasetAclFailure("grant read access on", datasetId, e));
+        });
+    }
+
+    /** Removes the read access on the dataset of the members, without updating the dataset if they have none */
+    public Either<FailedOperation, Void> revokeDatasetReaders(DatasetId datasetId, List<Identity> members) {
+        logger.info("Revoking read access on dataset {} of {}", datasetId, members);
+        var entries = members.stream()
+                .map(member -> Acl.of(toAclEntity(member), Acl.Role.READER))
+                .toList();
+        return changeDatasetAcl(
+                datasetId, "dataset-acl-revoke", "revoke read access on", true, acl -> acl.removeAll(entries));
+    }
+
+    /**
+     * Authorizes the view on the dataset of its source table, so that the readers of the view can query it without
+     * being able to read the source table
+     */
+    public Either<FailedOperation, Void> authorizeView(DatasetId sourceDatasetId, TableId view) {
+        logger.info("Authorizing view {} on dataset {}", view, sourceDatasetId);
+        Acl entry = Acl.of(new Acl.View(view));
+        return changeDatasetAcl(sourceDatasetId, "dataset-view-authorize", "authorize a view on", false, acl -> {
+            if (!acl.contains(entry)) {
+                acl.add(entry);
+            }
+        });
+    }
+
+    /** Removes the authorization of the view on the dataset of its source table, if it has one */
+    public Either<FailedOperation, Void> removeViewAuthorization(DatasetId sourceDatasetId, TableId view) {
+        logger.info("Removing the authorization of view {} on dataset {}", view, sourceDatasetId);
+        Acl entry = Acl.of(new Acl.View(view));
+        return changeDatasetAcl(
+                sourceDatasetId,
+                "dataset-view-unauthorize",
+                "remove a view authorization from",
+                true,
+                acl -> acl.remove(entry));
+    }
+
+    private Either<FailedOperation, Void> changeDatasetAcl(
+            DatasetId datasetId, String operation, String action, boolean missingIsDone, Consumer<List<Acl>> change) {
+        try {
+            updateDatasetAcl(datasetId, operation, change);
+            return right(null);
+        } catch (Exception e) {
+            if (missingIsDone && e instanceof BigQueryException bqe && bqe.getCode() == 404) {
+                // dataset doesn't exist, no access to remove
+                return right(null);
+            }
+            return left(datasetAclFailure(action, datasetId, e));
+        }
+    }
+
+    private FailedOperation datasetAclFailure(String action, DatasetId datasetId, Throwable e) {
+        String userMessage = "An unexpected error occurred while updating the access to the dataset";
+        String error = String.format(
+                "Failed to %s dataset '%s.%s': %s",
+                action, datasetId.getProject(), datasetId.getDataset(), e.getMessage());
+        logger.error(error, e);
+        return new FailedOperation(
+                userMessage,
+                List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION))));
+    }
+
+    /**
+     * Read-modify-write of the access entries of the dataset, run again from a fresh read on concurrent changes.
+     * Dataset updates don't carry the etag, so the etag of the dataset is checked right before the write instead.
+     *
+     * @return true if the dataset was written, false if its entries were already up to date
+     */
+    private boolean updateDatasetAcl(DatasetId datasetId, String operation, Consumer<List<Acl>> change)
+            throws Exception {
+        String project = datasetId.getProject();
+        BigQuery bigQueryClient = bigQueryClientSupplier.apply(project);
+        return retryHelper.retryOnConflict(operation, RetryOperation.BIGQUERY_WRITE, () -> {
+            Dataset dataset =
+                    gcpCall(project, RetryOperation.BIGQUERY_READ, () -> bigQueryClient.getDataset(datasetId));
+            if (dataset == null) {
+                throw new BigQueryException(404, String.format("Dataset %s not found", datasetId));
+            }
+            List<Acl> current = dataset.getAcl() == null ? List.of() : dataset.getAcl();
+            List<Acl> acl = new ArrayList<>(current);
+            change.accept(acl);
+            if (acl.equals(current)) {
+                logger.info("Access entries of dataset {} are already up to date", datasetId);
+                return false;
+            }
+            gcpCall(project, RetryOperation.BIGQUERY_WRITE, () -> {
+                if (dataset.getEtag() != null) {
+                    Dataset probe = bigQueryClient.getDataset(
+                            datasetId, BigQuery.DatasetOption.fields(BigQuery.DatasetField.ETAG));
+                    String currentEtag = probe == null ? null : probe.getEtag();
+                    if (!dataset.getEtag().equals(currentEtag)) {
+                        throw new EtagMismatchException(datasetId.toString(), dataset.getEtag(), currentEtag);
+                    }
+                }
+                return bigQueryClient.update(dataset.toBuilder().setAcl(acl).build());
+            });
+            return true;
+        });
+    }
+
+    private static Acl.Entity toAclEntity(Identity identity) {
+        Identity.Type type = identity.getType();
+        if (type == Identity.Type.USER || type == Identity.Type.SERVICE_ACCOUNT) {
+            return new Acl.User(identity.getValue());
+        } else if (type == Identity.Type.GROUP) {
+            return new Acl.Group(identity.getValue());
+        } else if (type == Identity.Type.DOMAIN) {
+            return new Acl.Domain(identity.getValue());
         }
+        throw new IllegalArgumentException(
+                String.format("Identity %s can't be granted access on a dataset", identity.strValue()));
+    }
+
+    /** Runs a call within the rate and concurrency limits of its project, retrying it on transient errors */
+    private <T> T gcpCall(String project, RetryOperation operation, Callable<T> call) throws Exception {
+        return retryHelper.retry(operation, () -> {
+            rateLimiter.acquire(project, operation);
+            return gcpCallExecutor.call(project, call);
+        });
+    }
+
+    /** Reads the IAM policy of a table or view, retrying the call on transient errors */
+    private Policy readIamPolicy(BigQuery bigQueryClient, TableId tableOrView) throws Exception {
+        return gcpCall(
+                tableOrView.getProject(), RetryOperation.BIGQUERY_READ, () -> bigQueryClient.getIamPolicy(tableOrView));
+    }
+
+    /**
+     * Writes the IAM policy of a table or view, retrying the call on transient errors. Every attempt takes a permit of
+     * the IAM write rate of the project and a write permit of the table, then a call slot of the project. The permits
+     * come before the slot, so that waiting for a busy table never holds a slot needed by calls to other tables.
+     */
+    private <T> T gcpTableWrite(TableId tableId, Callable<T> call) throws Exception {
+        return retryHelper.retry(RetryOperation.TABLE_IAM, () -> {
+            rateLimiter.acquire(tableId.getProject(), RetryOperation.TABLE_IAM);
+            rateLimiter.acquireTableWrite(tableId);
+            return gcpCallExecutor.call(tableId.getProject(), call);
+        });
+    }
+
+    private void writeProjectAcls(String projectId, Map<String, Set<String>> additions) {
+        String resource = ProjectName.of(projectId).toString();
+        com.google.iam.v1.Policy policy = projectsClient
+                .getIamPolicyCallable()
+                .call(
+                        GetIamPolicyRequest.newBuilder().setResource(resource).build(),
+                        callDeadline.grpcContext("reading the IAM policy of " + resource));
+        com.google.iam.v1.Policy.Builder policyBuilder = policy.toBuilder();
+
+        for (var addition : additions.entrySet()) {
+            String role = addition.getKey();
+            Set<String> mergedMembers = new HashSet<>();
+            Binding existing = null;
+            for (Binding binding : policyBuilder.getBindingsList()) {
+                if (binding.getRole().equals(role)) {
+                    existing = binding;
+                    mergedMembers.addAll(binding.getMembersList());
+                    break;
+                }
+            }
+
+            mergedMembers.addAll(addition.getValue());
+            if (existing != null) {
+                policyBuilder.removeBindings(policyBuilder.getBindingsList().indexOf(existing));
+            }
+            policyBuilder.addBindings(Binding.newBuilder()
+                    .setRole(role)
+                    .addAllMembers(mergedMembers)
+                    .build());
+        }
+
+        projectsClient
+                .setIamPolicyCallable()
+                .call(
+                        SetIamPolicyRequest.newBuilder()
+                                .setResource(resource)
+                                .setPolicy(policyBuilder.build())
+                                .build(),
+                        callDeadline.grpcContext("writing the IAM policy of " + resource));
     }
 }
@@ -8,6 +8,17 @@ import com.witboost.provisioning.bigquery.model.CreateDatasetRequest;
 import com.witboost.provisioning.bigquery.model.CreateOrUpdateTableRequest;
 import com.witboost.provisioning.bigquery.model.CreateViewRequest;
 import com.witboost.provisioning.bigquery.model.DeleteTableRequest;
+import com.witboost.provisioning.bigquery.model.SchemaDifference;
+import com.witboost.provisioning.bigquery.model.TableUpsertResult;
+import com.witboost.provisioning.bigquery.util.DescriptorValidator;
+import com.witboost.provisioning.bigquery.util.EtagMismatchException;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.GcpRateLimiter;
+import com.witboost.provisioning.bigquery.util.RetryHelper;
+import com.witboost.provisioning.bigquery.util.RetryOperation;
+import com.witboost.provisioning.bigquery.util.SchemaCompatibilityChecker;
+import com.witboost.provisioning.bigquery.util.TableDefinitionDiffer;
+import com.witboost.provisioning.bigquery.util.TableMetadataCache;
 import com.witboost.provisioning.framework.common.ErrorConstants;
 import com.witboost.provisioning.model.Column;
 import com.witboost.provisioning.model.common.FailedOperation;
@@ -15,8 +26,10 @@ import com.witboost.provisioning.model.common.Problem;
 import io.vavr.control.Either;
 import io.vavr.control.Option;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -29,9 +42,22 @@ public class BigQueryService {
     private static final Logger logger = LoggerFactory.getLogger(BigQueryService.class);
 
     private final Function<String, BigQuery> bigQueryClientSupplier;
+    private final TableMetadataCache tableMetadataCache;
+    private final RetryHelper retryHelper;
+    private final GcpCallExecutor gcpCallExecutor;
+    private final GcpRateLimiter rateLimiter;
 
-    public BigQueryService(Function<String, BigQuery> bigQueryClientSupplier) {
+    public BigQueryService(
+            Function<String, BigQuery> bigQueryClientSupplier,
+            TableMetadataCache tableMetadataCache,
+            RetryHelper retryHelper,
+            GcpCallExecutor gcpCallExecutor,
+            GcpRateLimiter rateLimiter) {
         this.bigQueryClientSupplier = bigQueryClientSupplier;
+        this.tableMetadataCache = tableMetadataCache;
+        this.retryHelper = retryHelper;
+        this.gcpCallExecutor = gcpCallExecutor;
+        this.rateLimiter = rateLimiter;
     }
 
     public Either<FailedOperation, Option<Table>> getTable(String project, String dataset, String table) {
@@ -39,7 +65,8 @@ public class BigQueryService {
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(project);
             TableId tableId = TableId.of(project, dataset, table);
             logger.info("Checking existence of table {}", tableId);
-            var tableObj = bigQueryClient.getTable(tableId);
+            var tableObj = gcpCall(
+                    project, RetryOperation.BIGQUERY_READ, () -> tableMetadataCache.get(bigQueryClient, tableId));
             logger.info("Table {} exists: {}", tableId, tableObj != null);
             return right(Option.of(tableObj));
         } catch (Exception e) {
@@ -53,20 +80,22 @@ public class BigQueryService {
         }
     }
 
-    public Either<FailedOperation, Boolean> isViewSchemaCompatibleWithSourceTableSchema(
+    /**
+     * Compares the view columns with the source table schema: every column must exist in the table, with the same type
+     * and mode when they are declared.
+     *
+     * @return the differences found, empty when the view can be created over the table
+     */
+    public Either<FailedOperation, List<SchemaDifference>> diffViewSchema(
             Schema sourceTableSchema, List<Column> viewColumns) {
         try {
-            // we only check for column names
-            // if the dataType is not compatible it will break on view creation
-            // NTH: make the check here
             logger.info(
                     "Checking compatibility between table schema {} and view columns {}",
                     sourceTableSchema,
                     viewColumns);
-            var viewColumnNamesSet = viewColumns.stream().map(Column::getName).collect(Collectors.toSet());
-            var tableColumnNamesSet =
-                    sourceTableSchema.getFields().stream().map(Field::getName).collect(Collectors.toSet());
-            return right(tableColumnNamesSet.containsAll(viewColumnNamesSet));
+            var differences = SchemaCompatibilityChecker.diffView(sourceTableSchema, viewColumns);
+            logger.info("View columns differ from the table schema in: {}", differences);
+            return right(differences);
         } catch (Exception e) {
             String userMessage = "An unexpected error occurred";
             String error = String.format("Failed to check for the compatibility of the schema: %s", e.getMessage());
@@ -77,34 +106,58 @@ public class BigQueryService {
         }
     }
 
-    public Either<FailedOperation, Table> createOrUpdateView(CreateViewRequest createViewRequest) {
+    public Either<FailedOperation, TableUpsertResult> createOrUpdateView(CreateViewRequest createViewRequest) {
         try {
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(createViewRequest.project());
             TableId viewId =
-                    TableId.of(createViewRequest.project(), createViewRequest.dataset(), createViewRequest.view());
+                    TableId.of(createViewRequest.project(), createViewRequest.viewDataset(), createViewRequest.view());
             logger.info("Creating or updating view {}", viewId);
             String viewSchemaSql = generateViewSchemaSqlStatement(createViewRequest.schema());
             String query = String.format(
                     "SELECT %s FROM %s.%s.%s",
                     viewSchemaSql, createViewRequest.project(), createViewRequest.dataset(), createViewRequest.table());
-            var existingView = bigQueryClient.getTable(viewId);
-            Table createdOrUpdatedView;
-            if (existingView == null) {
-                ViewDefinition viewDefinition = ViewDefinition.of(query);
-                bigQueryClient.create(TableInfo.newBuilder(viewId, viewDefinition)
-                        .setDescription(createViewRequest.description())
-                        .build());
-            }
-            // we need to update the view after creation in order to set column descriptions
-            // else the API returns an error when creating it: "BigQueryException: Schema field shouldn't be used as
-            // input with a view"
-            createdOrUpdatedView = updateView(createViewRequest, query, viewId);
-            return right(createdOrUpdatedView);
+            return right(withConflictRetry(viewId, "view-upsert", () -> {
+                var existingView = readTable(bigQueryClient, viewId);
+                Table currentView = existingView;
+                if (existingView == null) {
+                    ViewDefinition viewDefinition = ViewDefinition.of(query);
+                    currentView = gcpTableWrite(
+                            viewId,
+                            RetryOperation.BIGQUERY_WRITE,
+                            () -> bigQueryClient.create(TableInfo.newBuilder(viewId, viewDefinition)
+                                    .setDescription(createViewRequest.description())
+                                    .build()));
+                    tableMetadataCache.evict(viewId);
+                }
+                // we need to update the view after creation in order to set column descriptions
+                // else the API returns an error when creating it: "BigQueryException: Schema field shouldn't be used
+                // as input with a view"
+                var differences = TableDefinitionDiffer.diffView(
+                        currentView,
+                        query,
+                        generateSchema(createViewRequest.schema()),
+                        createViewRequest.description());
+                if (differences.isEmpty()) {
+                    logger.info("View {} is already up to date, skipping update", viewId);
+                    return new TableUpsertResult(
+                            currentView,
+                            existingView == null
+                                    ? TableUpsertResult.Outcome.CREATED
+                                    : TableUpsertResult.Outcome.UNCHANGED);
+                }
+                logger.info("Updating view {}: {}", viewId, differences);
+                return new TableUpsertResult(
+                        updateView(bigQueryClient, viewId, currentView, createViewRequest, query),
+                        existingView == null ? TableUpsertResult.Outcome.CREATED : TableUpsertResult.Outcome.UPDATED);
+            }));
         } catch (Exception e) {
             String userMessage = "An unexpected error occurred";
             String error = String.format(
                     "Failed to create view '%s.%s.%s': %s",
-                    createViewRequest.project(), createViewRequest.dataset(), createViewRequest.view(), e.getMessage());
+                    createViewRequest.project(),
+                    createViewRequest.viewDataset(),
+                    createViewRequest.view(),
+                    e.getMessage());
             logger.error(error, e);
             return left(new FailedOperation(
                     userMessage,
@@ -117,7 +170,8 @@ public class BigQueryService {
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(project);
             TableId viewId = TableId.of(project, dataset, view);
             logger.info("Deleting view {}", viewId);
-            bigQueryClient.delete(viewId);
+            gcpTableWrite(viewId, RetryOperation.BIGQUERY_WRITE, () -> bigQueryClient.delete(viewId));
+            tableMetadataCache.evict(viewId);
             return right(null);
         } catch (Exception e) {
             String userMessage = "An unexpected error occurred";
@@ -130,15 +184,89 @@ public class BigQueryService {
         }
     }
 
-    private Table updateView(CreateViewRequest createViewRequest, String query, TableId viewId) {
-        BigQuery bigQueryClient = bigQueryClientSupplier.apply(createViewRequest.project());
+    private Table updateView(
+            BigQuery bigQueryClient,
+            TableId viewId,
+            Table currentView,
+            CreateViewRequest createViewRequest,
+            String query)
+            throws Exception {
         ViewDefinition viewDefinition = ViewDefinition.newBuilder(query)
                 .setSchema(generateSchema(createViewRequest.schema()))
                 .setUseLegacySql(false)
                 .build();
-        return bigQueryClient.update(TableInfo.newBuilder(viewId, viewDefinition)
-                .setDescription(createViewRequest.description())
-                .build());
+        Table updatedView = gcpTableWrite(viewId, RetryOperation.BIGQUERY_WRITE, () -> {
+            ensureUnchanged(bigQueryClient, viewId, currentView);
+            return bigQueryClient.update(TableInfo.newBuilder(viewId, viewDefinition)
+                    .setDescription(createViewRequest.description())
+                    .build());
+        });
+        tableMetadataCache.evict(viewId);
+        return updatedView;
+    }
+
+    /**
+     * Checks that the table still has the etag it had when it was read. The BigQuery client doesn't send the etag as a
+     * write precondition, so a lightweight etag read is done right before the write instead. This only narrows the
+     * window for a lost update: a change made between this read and the write is still overwritten.
+     *
+     * @throws EtagMismatchException if the table changed since it was read
+     */
+    private void ensureUnchanged(BigQuery bigQueryClient, TableId tableId, Table readTable) {
+        if (readTable.getEtag() == null) {
+            return;
+        }
+        Table probe = bigQueryClient.getTable(tableId, BigQuery.TableOption.fields(BigQuery.TableField.ETAG));
+        String currentEtag = probe == null ? null : probe.getEtag();
+        if (!Objects.equals(readTable.getEtag(), currentEtag)) {
+            throw new EtagMismatchException(tableId.toString(), readTable.getEtag(), currentEtag);
+        }
+    }
+
+    /**
+     * Runs a read-modify-write cycle on a table, retrying it from a fresh read when a concurrent modification is
+     * detected. The cycle makes its reads and writes as separate calls, so a write permit of the table is only taken
+     * by the cycles that actually write.
+     */
+    private <T> T withConflictRetry(TableId tableId, String operation, Callable<T> cycle) throws Exception {
+        return retryHelper.retryOnConflict(operation, RetryOperation.BIGQUERY_WRITE, () -> {
+            try {
+                return cycle.call();
+            } catch (Exception e) {
+                // never retry from a cached copy that may be the reason of the conflict
+                tableMetadataCache.evict(tableId);
+                throw e;
+            }
+        });
+    }
+
+    /** Reads a table or view through the metadata cache, null if it doesn't exist */
+    private Table readTable(BigQuery bigQueryClient, TableId tableId) throws Exception {
+        return gcpCall(
+                tableId.getProject(),
+                RetryOperation.BIGQUERY_READ,
+                () -> tableMetadataCache.get(bigQueryClient, tableId));
+    }
+
+    /** Runs a call within the rate and concurrency limits of its project, retrying it on transient errors */
+    private <T> T gcpCall(String project, RetryOperation operation, Callable<T> call) throws Exception {
+        return retryHelper.retry(operation, () -> {
+            rateLimiter.acquire(project, operation);
+            return gcpCallExecutor.call(project, call);
+        });
+    }
+
+    /**
+     * Runs a call writing a table like {@link #gcpCall(String, RetryOperation, Callable)}, also taking a write permit
+     * of the table. The permit is taken before the call slot of the project, so that waiting for a busy table never
+     * holds a slot needed by calls to other tables.
+     */
+    private <T> T gcpTableWrite(TableId tableId, RetryOperation operation, Callable<T> call) throws Exception {
+        return retryHelper.retry(operation, () -> {
+            rateLimiter.acquire(tableId.getProject(), operation);
+            rateLimiter.acquireTableWrite(tableId);
+            return gcpCallExecutor.call(tableId.getProject(), call);
+        });
     }
 
     private String generateViewSchemaSqlStatement(List<Column> schema) {
@@ -149,7 +277,11 @@ public class BigQueryService {
 
     private Schema generateSchema(List<Column> schema) {
         var fields = schema.stream()
-                .map(c -> Field.newBuilder(c.getName(), StandardSQLTypeName.valueOf(c.getDataType()))
+                .map(c -> Field.newBuilder(
+                                c.getName(),
+                                DescriptorValidator.sqlTypeOf(c.getDataType())
+                                        .orElseThrow(() -> new IllegalArgumentException(
+                                                "Unknown data type " + c.getDataType() + " for column " + c.getName())))
                         .setDescription(c.getDescription())
                         .setMaxLength(c.getDataLength().map(Long::valueOf).orElse(null))
                         .setScale(c.getScale().map(Long::valueOf).orElse(null))
@@ -160,18 +292,22 @@ public class BigQueryService {
         return Schema.of(fields);
     }
 
-    public Either<FailedOperation, Boolean> isTableSchemaCompatibleWithColumns(
+    /**
+     * Compares the existing table schema with the required columns: no column can be removed or change type, modes
+     * can only be relaxed and added columns can't be required.
+     *
+     * @return the differences found, empty when the table can be updated to the required columns
+     */
+    public Either<FailedOperation, List<SchemaDifference>> diffTableSchema(
             Schema actualTableSchema, List<Column> requiredColumns) {
         try {
             logger.info(
-                    "Checking if table schema {} contains all required columns {}", actualTableSchema, requiredColumns);
-            var requiredColumnNamesSet =
-                    requiredColumns.stream().map(Column::getName).collect(Collectors.toSet());
-            var tableColumnNamesSet =
-                    actualTableSchema.getFields().stream().map(Field::getName).collect(Collectors.toSet());
-            boolean allRequiredPresent = requiredColumnNamesSet.containsAll(tableColumnNamesSet);
-            logger.info("All table schema columns are covered by required columns: {}", allRequiredPresent);
-            return right(allRequiredPresent);
+                    "Checking if table schema {} can be updated to the required columns {}",
+                    actualTableSchema,
+                    requiredColumns);
+            var differences = SchemaCompatibilityChecker.diffTableUpdate(actualTableSchema, requiredColumns);
+            logger.info("Required columns differ from the table schema in: {}", differences);
+            return right(differences);
         } catch (Exception e) {
             String userMessage = ("Detected schema mismatch: provided schema is not compatible with existing table: {}"
                     + actualTableSchema);
@@ -188,14 +324,15 @@ public class BigQueryService {
             logger.info("Creating dataset {}.{}", createDatasetRequest.projectId(), createDatasetRequest.datasetName());
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(createDatasetRequest.projectId());
             DatasetId datasetId = DatasetId.of(createDatasetRequest.projectId(), createDatasetRequest.datasetName());
-            Dataset dataset = bigQueryClient.getDataset(datasetId);
-            if (dataset != null) {
-                return right(dataset);
-            }
+            return right(gcpCall(createDatasetRequest.projectId(), RetryOperation.BIGQUERY_WRITE, () -> {
+                Dataset dataset = bigQueryClient.getDataset(datasetId);
+                if (dataset != null) {
+                    return dataset;
+                }
 
-            DatasetInfo datasetInfo = DatasetInfo.newBuilder(datasetId).build();
-            Dataset createdDataset = bigQueryClient.create(datasetInfo);
-            return right(createdDataset);
+                DatasetInfo datasetInfo = DatasetInfo.newBuilder(datasetId).build();
+                return bigQueryClient.create(datasetInfo);
+            }));
         } catch (Exception e) {
             String userMessage = "An unexpected error occurred";
             String error = String.format(
@@ -208,41 +345,56 @@ public class BigQueryService {
         }
     }
 
-    public Either<FailedOperation, Table> createOrUpdateTable(CreateOrUpdateTableRequest createOrUpdateTableRequest) {
+    public Either<FailedOperation, TableUpsertResult> createOrUpdateTable(
+            CreateOrUpdateTableRequest createOrUpdateTableRequest) {
         try {
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(createOrUpdateTableRequest.projectId());
             TableId tableId = TableId.of(
                     createOrUpdateTableRequest.projectId(),
                     createOrUpdateTableRequest.datasetName(),
                     createOrUpdateTableRequest.tableName());
-            Table existingTable = bigQueryClient.getTable(tableId);
             Schema schema = generateSchema(createOrUpdateTableRequest.columns());
-            if (existingTable == null) {
-                logger.info(
-                        "Creating table {}.{}.{}",
-                        createOrUpdateTableRequest.projectId(),
-                        createOrUpdateTableRequest.datasetName(),
-                        createOrUpdateTableRequest.tableName());
-                TableDefinition tableDefinition = StandardTableDefinition.of(schema);
-                TableInfo tableInfo =
-                        TableInfo.newBuilder(tableId, tableDefinition).build();
-
-                Table table = bigQueryClient.create(tableInfo);
-                return right(table);
-            } else {
-                logger.info(
-                        "Updating table {}.{}.{}",
-                        createOrUpdateTableRequest.projectId(),
-                        createOrUpdateTableRequest.datasetName(),
-                        createOrUpdateTableRequest.tableName());
-                TableDefinition updatedDefinition = StandardTableDefinition.of(schema);
-                Table updatedTable = existingTable.toBuilder()
-                        .setDefinition(updatedDefinition)
-                        .build();
-
-                Table finalTable = bigQueryClient.update(updatedTable);
-                return right(finalTable);
-            }
+            return right(withConflictRetry(tableId, "table-upsert", () -> {
+                Table existingTable = readTable(bigQueryClient, tableId);
+                if (existingTable == null) {
+                    logger.info(
+                            "Creating table {}.{}.{}",
+                            createOrUpdateTableRequest.projectId(),
+                            createOrUpdateTableRequest.datasetName(),
+                            createOrUpdateTableRequest.tableName());
+                    TableDefinition tableDefinition = StandardTableDefinition.of(schema);
+                    TableInfo tableInfo =
+                            TableInfo.newBuilder(tableId, tableDefinition).build();
+
+                    Table table = gcpTableWrite(
+                            tableId, RetryOperation.BIGQUERY_WRITE, () -> bigQueryClient.create(tableInfo));
+                    tableMetadataCache.evict(tableId);
+                    return new TableUpsertResult(table, TableUpsertResult.Outcome.CREATED);
+                } else {
+                    var differences = TableDefinitionDiffer.diffTable(existingTable, schema);
+                    if (differences.isEmpty()) {
+                        logger.info("Table {} is already up to date, skipping update", tableId);
+                        return new TableUpsertResult(existingTable, TableUpsertResult.Outcome.UNCHANGED);
+                    }
+                    logger.info(
+                            "Updating table {}.{}.{}: {}",
+                            createOrUpdateTableRequest.projectId(),
+                            createOrUpdateTableRequest.datasetName(),
+                            createOrUpdateTableRequest.tableName(),
+                            differences);
+                    TableDefinition updatedDefinition = StandardTableDefinition.of(schema);
+                    Table updatedTable = existingTable.toBuilder()
+                            .setDefinition(updatedDefinition)
+                            .build();
+
+                    Table finalTable = gcpTableWrite(tableId, RetryOperation.BIGQUERY_WRITE, () -> {
+                        ensureUnchanged(bigQueryClient, tableId, existingTable);
+                        return bigQueryClient.update(updatedTable);
+                    });
+                    tableMetadataCache.evict(tableId);
+                    return new TableUpsertResult(finalTable, TableUpsertResult.Outcome.UPDATED);
+                }
+            }));
         } catch (Exception e) {
             String userMessage = "An unexpected error occurred";
             String error = String.format(
@@ -269,7 +421,8 @@ public class BigQueryService {
                     deleteTableRequest.projectId(), deleteTableRequest.datasetName(), deleteTableRequest.tableName());
 
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(deleteTableRequest.projectId());
-            bigQueryClient.delete(tableId);
+            gcpTableWrite(tableId, RetryOperation.BIGQUERY_WRITE, () -> bigQueryClient.delete(tableId));
+            tableMetadataCache.evict(tableId);
 
             return right(null);
 
@@ -293,7 +446,8 @@ public class BigQueryService {
             TableId tableId = TableId.of(project, dataset, table);
             logger.info("Retrieving schema for table {}", tableId);
             BigQuery bigQueryClient = bigQueryClientSupplier.apply(project);
-            Table tableObj = bigQueryClient.getTable(tableId);
+            Table tableObj = gcpCall(
+                    project, RetryOperation.BIGQUERY_READ, () -> tableMetadataCache.get(bigQueryClient, tableId));
             if (tableObj == null) {
                 String userMessage = "An unexpected error occurred";
                 String error = String.format(
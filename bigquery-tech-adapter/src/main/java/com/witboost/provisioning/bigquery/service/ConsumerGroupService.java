@@ -0,0 +1,147 @@
+package com.witboost.provisioning.bigquery.service;
+
+import static io.vavr.control.Either.left;
+
+import com.google.cloud.Identity;
+import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.config.ConsumerGroupsConfig;
+import com.witboost.provisioning.bigquery.service.membership.GroupMembershipBackend;
+import com.witboost.provisioning.framework.common.ErrorConstants;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.vavr.control.Either;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Manages one consumer group per output port view. When consumer groups are enabled, the consumers of a view are
+ * made members of its group and the view policy only grants access to the group. The policy then has the same size
+ * whatever the number of consumers, and each ACL update only adds and removes the members that changed.
+ */
+@Service
+public class ConsumerGroupService {
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerGroupService.class);
+
+    // the local part of a group email can't be longer than 64 characters
+    private static final int MAX_GROUP_NAME_LENGTH = 64;
+    private static final Pattern INVALID_GROUP_NAME_CHARS = Pattern.compile("[^a-z0-9._-]");
+
+    private final ConsumerGroupsConfig config;
+    private final GroupMembershipBackend membershipBackend;
+
+    public ConsumerGroupService(ConsumerGroupsConfig config, GroupMembershipBackend membershipBackend) {
+        if (config.enabled()
+                && (config.groupDomain() == null || config.groupDomain().isBlank())) {
+            throw new IllegalStateException(
+                    "consumer-groups.group-domain is required when consumer groups are enabled");
+        }
+        this.config = config;
+        this.membershipBackend = membershipBackend;
+    }
+
+    public boolean isEnabled() {
+        return config.enabled();
+    }
+
+    /** The email of the consumer group of the view */
+    public String groupOf(TableId view) {
+        String name = INVALID_GROUP_NAME_CHARS
+                .matcher((config.groupPrefix() + view.getProject() + "-" + view.getDataset() + "-" + view.getTable())
+                        .toLowerCase(Locale.ROOT))
+                .replaceAll("-");
+        if (name.length() > MAX_GROUP_NAME_LENGTH) {
+            // the hash of the full name keeps the truncated names of different views apart
+            String hash = sha256(name).substring(0, 8);
+            name = name.substring(0, MAX_GROUP_NAME_LENGTH - hash.length() - 1) + "-" + hash;
+        }
+        String domain = config.groupDomain().startsWith("@") ? config.groupDomain() : "@" + config.groupDomain();
+        return name + domain;
+    }
+
+    /**
+     * Makes the consumers the only members of the consumer group of the view. Only the members that changed are
+     * added or removed.
+     *
+     * @param view the output port view
+     * @param consumers the identities that must be able to read the view
+     * @return the consumer group, to be granted access on the view
+     */
+    public Either<FailedOperation, Identity> syncMembers(TableId view, Collection<Identity> consumers) {
+        String group = groupOf(view);
+        try {
+            return membershipBackend.listMembers(group).flatMap(members -> {
+                Set<Identity> additions = new HashSet<>(consumers);
+                additions.removeAll(members);
+                Set<Identity> removals = new HashSet<>(members);
+                removals.removeAll(consumers);
+                if (additions.isEmpty() && removals.isEmpty() && !members.isEmpty()) {
+                    logger.info("Consumer group {} of view {} is already up to date", group, view);
+                    return Either.right(Identity.group(group));
+                }
+                logger.info(
+                        "Updating consumer group {} of view {}: adding {} members, removing {} members",
+                        group,
+                        view,
+                        additions.size(),
+                        removals.size());
+                return membershipBackend
+                        .updateMembers(group, additions, removals)
+                        .map(ignored -> Identity.group(group));
+            });
+        } catch (Exception e) {
+            return left(updateFailure(group, view, e));
+        }
+    }
+
+    /**
+     * Removes every member of the consumer group of the view, so that a view provisioned again later doesn't give
+     * access back to its former consumers. Groups without members are left untouched.
+     *
+     * @param view the output port view
+     */
+    public Either<FailedOperation, Void> removeAllMembers(TableId view) {
+        String group = groupOf(view);
+        try {
+            return membershipBackend.listMembers(group).flatMap(members -> {
+                if (members.isEmpty()) {
+                    return Either.right(null);
+                }
+                logger.info("Removing the {} members of consumer group {} of view {}", members.size(), group, view);
+                return membershipBackend.updateMembers(group, Set.of(), members);
+            });
+        } catch (Exception e) {
+            return left(updateFailure(group, view, e));
+        }
+    }
+
+    private static FailedOperation updateFailure(String group, TableId view, Exception e) {
+        String error = String.format(
+                "Failed to update the members of the consumer group '%s' of view '%s.%s.%s': %s",
+                group, view.getProject(), view.getDataset(), view.getTable(), e.getMessage());
+        logger.error(error, e);
+        return new FailedOperation(
+                "An unexpected error occurred while updating the consumer group",
+                List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION))));
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of()
+                    .formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
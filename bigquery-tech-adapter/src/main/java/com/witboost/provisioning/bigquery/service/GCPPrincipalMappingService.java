@@ -3,93 +3,186 @@ package com.witboost.provisioning.bigquery.service;
 import static io.vavr.control.Either.left;
 import static io.vavr.control.Either.right;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.google.cloud.Identity;
+import com.witboost.provisioning.bigquery.config.PrincipalCacheConfig;
+import com.witboost.provisioning.bigquery.config.PrincipalDirectoryConfig;
 import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig;
+import com.witboost.provisioning.bigquery.service.directory.PrincipalDirectory;
+import com.witboost.provisioning.bigquery.util.OperationContext;
+import com.witboost.provisioning.bigquery.util.PrincipalMappingRules;
 import com.witboost.provisioning.model.common.FailedOperation;
 import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import io.vavr.control.Either;
-import java.util.AbstractMap;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+/**
+ * Maps Witboost users and groups to GCP identities, with the {@link PrincipalMappingRules} compiled at startup.
+ *
+ * <p>Mappings are memoized per subject, since the same owners and groups come with every request. Subjects that
+ * can't be mapped are cached too, for {@link PrincipalCacheConfig#negativeTtl()} only. Cache hits and misses are
+ * exported in the {@code cache.gets} metric tagged {@code cache=principal.mappings}.
+ *
+ * <p>The identities of the subjects that aren't cached are checked against the {@link PrincipalDirectory} in one
+ * batched lookup, so that a principal that doesn't exist fails the request before anything is written on GCP.
+ * Directory errors are not cached, since the directory may be reachable again on the next request.
+ */
 @Service
 public class GCPPrincipalMappingService implements PrincipalMappingService {
 
     private final Logger logger = LoggerFactory.getLogger(GCPPrincipalMappingService.class);
 
-    private final PrincipalMappingServiceConfig principalMappingServiceConfig;
+    private final PrincipalMappingRules rules;
+    private final PrincipalDirectory principalDirectory;
+    private final PrincipalDirectoryConfig principalDirectoryConfig;
+    private final Semaphore lookupPermits;
+    private final Cache<String, Either<FailedOperation, Identity>> mappings;
 
-    public GCPPrincipalMappingService(PrincipalMappingServiceConfig principalMappingServiceConfig) {
-        this.principalMappingServiceConfig = principalMappingServiceConfig;
+    public GCPPrincipalMappingService(
+            PrincipalMappingServiceConfig principalMappingServiceConfig,
+            PrincipalCacheConfig principalCacheConfig,
+            PrincipalDirectory principalDirectory,
+            PrincipalDirectoryConfig principalDirectoryConfig,
+            MeterRegistry meterRegistry) {
+        this.rules = PrincipalMappingRules.compile(principalMappingServiceConfig);
+        this.principalDirectory = principalDirectory;
+        this.principalDirectoryConfig = principalDirectoryConfig;
+        this.lookupPermits = new Semaphore(principalDirectoryConfig.maxConcurrentLookups(), true);
+        // malformed subjects are cached as well, for a shorter time
+        this.mappings = Caffeine.newBuilder()
+                .maximumSize(principalCacheConfig.maxSize())
+                .expireAfter(Expiry.<String, Either<FailedOperation, Identity>>writing((subject, mapping) ->
+                        mapping.isRight() ? principalCacheConfig.ttl() : principalCacheConfig.negativeTtl()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, mappings, "principal.mappings");
     }
 
     @Override
     public Map<String, Either<FailedOperation, Identity>> map(Set<String> subjects) {
-        return subjects.stream()
-                .map(s -> {
-                    if (isWitboostUser(s)) {
-                        var eitherMail = getMailFromWitboostIdentity(s);
-                        return eitherMail.fold(
-                                l -> new AbstractMap.SimpleEntry<String, Either<FailedOperation, Identity>>(s, left(l)),
-                                mail -> new AbstractMap.SimpleEntry<>(s, mapUser(mail)));
-                    } else if (isWitboostGroup(s)) {
-                        String group = getGroup(s);
-                        return new AbstractMap.SimpleEntry<>(s, mapGroup(group));
-                    } else {
-                        return new AbstractMap.SimpleEntry<>(s, mapUnkownIdentity(s));
-                    }
-                })
-                .collect(Collectors.toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue));
+        Map<String, Either<FailedOperation, Identity>> result = new HashMap<>(mappings.getAllPresent(subjects));
+        if (result.size() == subjects.size()) {
+            return result;
+        }
+        Set<String> missing = new HashSet<>(subjects.size() - result.size());
+        for (String subject : subjects) {
+            if (!result.containsKey(subject)) {
+                missing.add(subject);
+            }
+        }
+        result.putAll(resolve(missing));
+        return result;
     }
 
-    private Either<FailedOperation, String> getMailFromWitboostIdentity(String witboostIdentity) {
-        String user = getUser(witboostIdentity);
-        int underscoreIndex = user.lastIndexOf("_");
-        if (underscoreIndex == -1) {
-            String userMessage = "Received an invalid user";
-            String errorMessage =
-                    String.format("The subject %s has not the expected format for a user", witboostIdentity);
-            logger.error(errorMessage);
-            return left(new FailedOperation(userMessage, Collections.singletonList(new Problem(errorMessage))));
-        } else {
-            return right(user.substring(0, underscoreIndex) + "@" + user.substring(underscoreIndex + 1));
-        }
+    /** Drops the cached mapping of the subject, so that it is resolved again on the next request */
+    public void invalidate(String subject) {
+        mappings.invalidate(subject);
     }
 
-    private Either<FailedOperation, Identity> mapGroup(String group) {
-        // here we suppose GCP group has the same name present in Witboost followed by a configurable domain
-        return right(Identity.group(group + principalMappingServiceConfig.groupMailDomain()));
+    /** Drops all the cached mappings */
+    public void invalidateAll() {
+        mappings.invalidateAll();
     }
 
-    private Either<FailedOperation, Identity> mapUser(String mail) {
-        return right(Identity.user(mail));
+    public long cachedMappings() {
+        return mappings.estimatedSize();
     }
 
-    private Either<FailedOperation, Identity> mapUnkownIdentity(String s) {
-        String userMessage = "Received an unknown identity";
-        String errorMessage = String.format("The subject %s is neither a Witboost user nor a group", s);
-        logger.error(errorMessage);
-        return left(new FailedOperation(userMessage, Collections.singletonList(new Problem(errorMessage))));
+    /** Maps the subjects and checks with a single directory lookup that the resulting identities exist */
+    private Map<String, Either<FailedOperation, Identity>> resolve(Set<String> subjects) {
+        Map<String, Either<FailedOperation, Identity>> candidates = new HashMap<>(subjects.size());
+        Set<Identity> identities = new HashSet<>(subjects.size());
+        for (String subject : subjects) {
+            Either<FailedOperation, Identity> candidate = rules.map(subject);
+            candidates.put(subject, candidate);
+            if (candidate.isRight()) {
+                identities.add(candidate.get());
+            }
+        }
+        Either<FailedOperation, Set<Identity>> existing = identities.isEmpty() ? right(Set.of()) : lookup(identities);
+
+        Map<String, Either<FailedOperation, Identity>> resolved = new HashMap<>(subjects.size());
+        candidates.forEach((subject, candidate) -> {
+            if (candidate.isRight() && existing.isLeft()) {
+                resolved.put(subject, left(existing.getLeft()));
+                return;
+            }
+            Either<FailedOperation, Identity> mapping =
+                    candidate.isLeft() || existing.get().contains(candidate.get())
+                            ? candidate
+                            : mapMissingIdentity(subject, candidate.get());
+            resolved.put(subject, mapping);
+            mappings.put(subject, mapping);
+        });
+        return resolved;
     }
 
-    private String getUser(String witboostIdentity) {
-        return witboostIdentity.substring(5);
+    private Either<FailedOperation, Set<Identity>> lookup(Set<Identity> identities) {
+        List<Identity> pending = new ArrayList<>(identities);
+        Set<Identity> existing = new HashSet<>();
+        int batchSize = principalDirectoryConfig.batchSize();
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            var found = lookupBatch(Set.copyOf(pending.subList(from, Math.min(from + batchSize, pending.size()))));
+            if (found.isLeft()) {
+                return found;
+            }
+            existing.addAll(found.get());
+        }
+        return right(existing);
     }
 
-    private String getGroup(String witboostIdentity) {
-        return witboostIdentity.substring(6);
+    private Either<FailedOperation, Set<Identity>> lookupBatch(Set<Identity> batch) {
+        // never wait for a lookup slot past the request deadline
+        Duration timeout = OperationContext.current()
+                .flatMap(OperationContext::remainingTime)
+                .filter(remaining -> remaining.compareTo(principalDirectoryConfig.acquireTimeout()) < 0)
+                .orElse(principalDirectoryConfig.acquireTimeout());
+        try {
+            if (!lookupPermits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return left(lookupFailed(String.format(
+                        "No directory lookup could be started within %d ms, too many lookups are in progress",
+                        timeout.toMillis())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return left(lookupFailed("Interrupted while waiting to look up the principals in the directory"));
+        }
+        try {
+            logger.debug("Looking up {} principals in the directory", batch.size());
+            return principalDirectory.findExisting(batch);
+        } finally {
+            lookupPermits.release();
+        }
     }
 
-    private boolean isWitboostGroup(String witboostIdentity) {
-        return witboostIdentity.startsWith("group:");
+    private FailedOperation lookupFailed(String errorMessage) {
+        logger.error(errorMessage);
+        return new FailedOperation(
+                "An error occurred while looking up the principals",
+                Collections.singletonList(new Problem(errorMessage)));
     }
 
-    private boolean isWitboostUser(String witboostIdentity) {
-        return witboostIdentity.startsWith("user:");
+    private Either<FailedOperation, Identity> mapMissingIdentity(String s, Identity identity) {
+        String userMessage = "Received a principal that doesn't exist";
+        String errorMessage = String.format(
+                "The subject %s is mapped to %s, which doesn't exist in the directory", s, identity.strValue());
+        logger.error(errorMessage);
+        return left(new FailedOperation(userMessage, Collections.singletonList(new Problem(errorMessage))));
     }
 }
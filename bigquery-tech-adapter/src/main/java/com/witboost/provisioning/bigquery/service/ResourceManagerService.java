@@ -3,47 +3,112 @@ package com.witboost.provisioning.bigquery.service;
 import static io.vavr.control.Either.left;
 import static io.vavr.control.Either.right;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.api.gax.rpc.PermissionDeniedException;
+import com.google.cloud.resourcemanager.v3.GetProjectRequest;
+import com.google.cloud.resourcemanager.v3.Project;
 import com.google.cloud.resourcemanager.v3.ProjectName;
 import com.google.cloud.resourcemanager.v3.ProjectsClient;
+import com.witboost.provisioning.bigquery.config.ProjectCacheConfig;
+import com.witboost.provisioning.bigquery.util.GcpCallDeadline;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.GcpRateLimiter;
+import com.witboost.provisioning.bigquery.util.RetryHelper;
+import com.witboost.provisioning.bigquery.util.RetryOperation;
 import com.witboost.provisioning.framework.common.ErrorConstants;
 import com.witboost.provisioning.model.common.FailedOperation;
 import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import io.vavr.control.Either;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+/**
+ * Checks the existence of GCP projects through Resource Manager.
+ *
+ * <p>Lookups are cached per project. Existing projects are kept for {@link ProjectCacheConfig#ttl()}, projects that
+ * don't exist or aren't visible for {@link ProjectCacheConfig#negativeTtl()} only. Entries read again after {@link
+ * ProjectCacheConfig#refreshAfter()} are reloaded in the background while the cached value is still served, so hot
+ * projects never wait on Resource Manager. Concurrent lookups of a project that isn't cached share a single call.
+ * Errors are not cached. Cache hits, misses and loads are exported in the {@code cache.*} metrics tagged {@code
+ * cache=gcp.projects}.
+ */
 @Service
 public class ResourceManagerService {
 
     private static final Logger logger = LoggerFactory.getLogger(ResourceManagerService.class);
 
     private final ProjectsClient projectsClient;
+    private final GcpCallExecutor gcpCallExecutor;
+    private final RetryHelper retryHelper;
+    private final GcpRateLimiter rateLimiter;
+    private final GcpCallDeadline callDeadline;
+    private final LoadingCache<String, Optional<Project>> projects;
 
-    public ResourceManagerService(ProjectsClient projectsClient) {
+    public ResourceManagerService(
+            ProjectsClient projectsClient,
+            GcpCallExecutor gcpCallExecutor,
+            RetryHelper retryHelper,
+            GcpRateLimiter rateLimiter,
+            GcpCallDeadline callDeadline,
+            ProjectCacheConfig projectCacheConfig,
+            MeterRegistry meterRegistry) {
         this.projectsClient = projectsClient;
+        this.gcpCallExecutor = gcpCallExecutor;
+        this.retryHelper = retryHelper;
+        this.rateLimiter = rateLimiter;
+        this.callDeadline = callDeadline;
+        this.projects = Caffeine.newBuilder()
+                .maximumSize(projectCacheConfig.maxSize())
+                .expireAfter(Expiry.<String, Optional<Project>>writing((projectId, project) ->
+                        project.isPresent() ? projectCacheConfig.ttl() : projectCacheConfig.negativeTtl()))
+                .refreshAfterWrite(projectCacheConfig.refreshAfter())
+                .executor(gcpCallExecutor.executor())
+                .recordStats()
+                .build(this::fetchProject);
+        CaffeineCacheMetrics.monitor(meterRegistry, projects, "gcp.projects");
     }
 
     public Either<FailedOperation, Boolean> isProjectExisting(String projectId) {
         try {
-            logger.info("Checking if project {} exists", projectId);
-            projectsClient.getProject(ProjectName.of(projectId));
-            return right(true);
-        } catch (PermissionDeniedException e) {
-            logger.error(String.format("Project %s does not exist", projectId), e);
-
-            return right(false);
+            return right(projects.get(projectId).isPresent());
         } catch (Exception e) {
+            // checked exceptions of the lookup are wrapped by the cache
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
             String userMessage = "An unexpected error occurred while checking project existence";
-            String error = String.format("Failed to check project existence for %s: %s", projectId, e.getMessage());
-            logger.error(error, e);
+            String error = String.format("Failed to check project existence for %s: %s", projectId, cause.getMessage());
+            logger.error(error, cause);
             return left(new FailedOperation(
                     userMessage,
                     List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION)))));
         }
     }
+
+    private Optional<Project> fetchProject(String projectId) throws Exception {
+        try {
+            logger.info("Checking if project {} exists", projectId);
+            return Optional.of(retryHelper.retry(RetryOperation.RESOURCE_MANAGER_READ, () -> {
+                rateLimiter.acquire(projectId, RetryOperation.RESOURCE_MANAGER_READ);
+                return gcpCallExecutor.call(projectId, () -> {
+                    String name = ProjectName.of(projectId).toString();
+                    return projectsClient
+                            .getProjectCallable()
+                            .call(
+                                    GetProjectRequest.newBuilder().setName(name).build(),
+                                    callDeadline.grpcContext("reading the project " + name));
+                });
+            }));
+        } catch (PermissionDeniedException e) {
+            logger.error(String.format("Project %s does not exist", projectId), e);
+            return Optional.empty();
+        }
+    }
 }
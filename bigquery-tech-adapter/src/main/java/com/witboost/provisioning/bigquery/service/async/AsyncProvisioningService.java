@@ -0,0 +1,230 @@
+package com.witboost.provisioning.bigquery.service.async;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.witboost.provisioning.bigquery.model.AsyncProvisioningRequest;
+import com.witboost.provisioning.bigquery.model.AsyncUpdateAclRequest;
+import com.witboost.provisioning.bigquery.model.BigQueryOutputPortSpecific;
+import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
+import com.witboost.provisioning.bigquery.model.JournalEntry;
+import com.witboost.provisioning.bigquery.util.ProvisioningJournal;
+import com.witboost.provisioning.framework.service.ProvisionConfiguration;
+import com.witboost.provisioning.framework.service.ProvisionService;
+import com.witboost.provisioning.framework.service.validation.ComponentValidationService;
+import com.witboost.provisioning.framework.service.validation.ValidationConfiguration;
+import com.witboost.provisioning.model.OperationType;
+import com.witboost.provisioning.model.OutputPort;
+import com.witboost.provisioning.model.Specific;
+import com.witboost.provisioning.model.StorageArea;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import com.witboost.provisioning.model.request.AccessControlOperationRequest;
+import com.witboost.provisioning.model.request.ProvisionOperationRequest;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import com.witboost.provisioning.parser.Parser;
+import io.vavr.control.Either;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Asynchronous counterpart of the provisioning API. Descriptors are parsed and validated right away so invalid
+ * requests are rejected immediately, as the synchronous API does, while provisioning runs as a job of the
+ * {@link ProvisioningJobQueue}.
+ *
+ * <p>Jobs are recorded in the {@link ProvisioningJournal} until they finish, and the ones interrupted by a restart are
+ * queued again under their original token once the application is ready.
+ */
+@Service
+public class AsyncProvisioningService {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncProvisioningService.class);
+
+    private static final String INVALID_DESCRIPTOR_MESSAGE = "The descriptor of the request is not valid";
+
+    private static final String PROVISION = "provision";
+    private static final String UNPROVISION = "unprovision";
+    private static final String UPDATE_ACL = "updateAcl";
+
+    private record ParsedRequest(
+            ProvisionOperationRequest<?, ? extends Specific> request,
+            ProvisionService provisionService,
+            ComponentValidationService validationService) {}
+
+    private final ProvisionConfiguration provisionConfiguration;
+    private final ValidationConfiguration validationConfiguration;
+    private final ProvisioningJobQueue jobQueue;
+    private final ProvisioningJournal journal;
+
+    public AsyncProvisioningService(
+            ProvisionConfiguration provisionConfiguration,
+            ValidationConfiguration validationConfiguration,
+            ProvisioningJobQueue jobQueue,
+            ProvisioningJournal journal) {
+        this.provisionConfiguration = provisionConfiguration;
+        this.validationConfiguration = validationConfiguration;
+        this.jobQueue = jobQueue;
+        this.journal = journal;
+    }
+
+    public Either<FailedOperation, String> provision(AsyncProvisioningRequest request) {
+        return submit(UUID.randomUUID().toString(), PROVISION, request.descriptor(), false, List.of(), false);
+    }
+
+    public Either<FailedOperation, String> unprovision(AsyncProvisioningRequest request) {
+        return submit(
+                UUID.randomUUID().toString(),
+                UNPROVISION,
+                request.descriptor(),
+                request.removeData(),
+                List.of(),
+                false);
+    }
+
+    public Either<FailedOperation, String> updateAcl(AsyncUpdateAclRequest request) {
+        return submit(
+                UUID.randomUUID().toString(),
+                UPDATE_ACL,
+                request.descriptor(),
+                false,
+                Optional.ofNullable(request.refs()).orElse(List.of()),
+                false);
+    }
+
+    /** Queues again the jobs that were interrupted by a restart */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        for (JournalEntry job : journal.pendingJobs()) {
+            logger.info("Resuming {} job {} interrupted by a restart", job.operation(), job.key());
+            submit(
+                            job.key(),
+                            job.operation(),
+                            job.descriptor(),
+                            Boolean.TRUE.equals(job.removeData()),
+                            Optional.ofNullable(job.refs()).orElse(List.of()),
+                            true)
+                    .peekLeft(error -> {
+                        logger.error("Unable to resume job {}: {}", job.key(), error.message());
+                        journal.jobFinished(job.key());
+                    });
+        }
+    }
+
+    private Either<FailedOperation, String> submit(
+            String token, String operation, String descriptor, boolean removeData, List<String> refs, boolean resumed) {
+        // resumed jobs were validated when they were accepted
+        return parse(descriptor, removeData)
+                .flatMap(parsed -> resumed ? right(parsed) : validate(operation, parsed))
+                .flatMap(parsed -> {
+                    Supplier<Either<FailedOperation, ProvisionInfo>> work =
+                            switch (operation) {
+                                case PROVISION -> () ->
+                                        parsed.provisionService().provision(parsed.request());
+                                case UNPROVISION -> () ->
+                                        parsed.provisionService().unprovision(parsed.request());
+                                default -> {
+                                    var accessControlRequest = new AccessControlOperationRequest<>(
+                                            parsed.request().getDataProduct(),
+                                            parsed.request().getComponent(),
+                                            Set.copyOf(refs));
+                                    yield () -> parsed.provisionService().updateAcl(accessControlRequest);
+                                }
+                            };
+                    if (!resumed) {
+                        journal.jobSubmitted(token, operation, descriptor, removeData, refs);
+                    }
+                    return jobQueue.submit(token, operation, () -> {
+                                try {
+                                    return work.get();
+                                } finally {
+                                    journal.jobFinished(token);
+                                }
+                            })
+                            .peekLeft(error -> journal.jobFinished(token));
+                });
+    }
+
+    private static Either<FailedOperation, ParsedRequest> validate(String operation, ParsedRequest parsed) {
+        return switch (operation) {
+            case PROVISION -> parsed.validationService()
+                    .validate(parsed.request(), OperationType.PROVISION)
+                    .map(v -> parsed);
+            case UNPROVISION -> parsed.validationService()
+                    .validate(parsed.request(), OperationType.UNPROVISION)
+                    .map(v -> parsed);
+            default -> right(parsed);
+        };
+    }
+
+    private Either<FailedOperation, ParsedRequest> parse(String descriptor, boolean removeData) {
+        try {
+            if (descriptor == null || descriptor.isBlank()) {
+                return left(invalidDescriptor("The request doesn't contain a descriptor"));
+            }
+            var componentDescriptor = Parser.parseComponentDescriptor(descriptor, Specific.class);
+            if (componentDescriptor.isLeft()) {
+                return left(componentDescriptor.getLeft());
+            }
+            var dataProduct = componentDescriptor.get().getDataProduct();
+            var componentId = componentDescriptor.get().getComponentIdToProvision();
+            Optional<JsonNode> maybeComponent = dataProduct.getComponentToProvision(componentId);
+            if (maybeComponent.isEmpty()) {
+                return left(invalidDescriptor(
+                        String.format("Component '%s' was not found in the descriptor", componentId)));
+            }
+            var component = maybeComponent.get();
+            String kind = component.hasNonNull("kind") ? component.get("kind").asText() : "";
+            switch (kind) {
+                case "storage" -> {
+                    var parsed = Parser.parseComponent(component, StorageArea.class, BigQueryStorageSpecific.class);
+                    if (parsed.isLeft()) {
+                        return left(parsed.getLeft());
+                    }
+                    ProvisionOperationRequest<Specific, BigQueryStorageSpecific> request =
+                            new ProvisionOperationRequest<>(dataProduct, parsed.get(), removeData, Optional.empty());
+                    return right(new ParsedRequest(
+                            request,
+                            provisionConfiguration.getStorageProvisionService(),
+                            validationConfiguration.getStorageValidationService()));
+                }
+                case "outputport" -> {
+                    var parsed = Parser.parseComponent(component, OutputPort.class, BigQueryOutputPortSpecific.class);
+                    if (parsed.isLeft()) {
+                        return left(parsed.getLeft());
+                    }
+                    ProvisionOperationRequest<Specific, BigQueryOutputPortSpecific> request =
+                            new ProvisionOperationRequest<>(dataProduct, parsed.get(), removeData, Optional.empty());
+                    return right(new ParsedRequest(
+                            request,
+                            provisionConfiguration.getOutputPortProvisionService(),
+                            validationConfiguration.getOutputPortValidationService()));
+                }
+                default -> {
+                    return left(invalidDescriptor(String.format(
+                            "Component '%s' has kind '%s', which is not supported by this Tech Adapter",
+                            componentId, kind)));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to parse descriptor", e);
+            return left(invalidDescriptor(String.format("Failed to parse the descriptor: %s", e.getMessage())));
+        }
+    }
+
+    private static FailedOperation invalidDescriptor(String error) {
+        return new FailedOperation(
+                INVALID_DESCRIPTOR_MESSAGE,
+                List.of(new Problem(
+                        error,
+                        Optional.empty(),
+                        Set.of("Make sure the request contains a valid descriptor of a supported component"))));
+    }
+}
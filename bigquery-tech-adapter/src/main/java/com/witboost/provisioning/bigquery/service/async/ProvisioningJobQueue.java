@@ -0,0 +1,173 @@
+package com.witboost.provisioning.bigquery.service.async;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+
+import com.witboost.provisioning.bigquery.config.AsyncProvisioningConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.model.ProvisioningJob;
+import com.witboost.provisioning.bigquery.util.OperationContext;
+import com.witboost.provisioning.framework.common.ErrorConstants;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vavr.control.Either;
+import jakarta.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs provisioning operations in the background and keeps track of their status.
+ *
+ * <p>Operations are queued on a bounded worker pool and identified by a token. Their status is kept in an in-memory
+ * job table until {@link AsyncProvisioningConfig#retention()} after they complete. Queue depth, running jobs, the
+ * time jobs wait before starting and their duration are exported as metrics.
+ */
+@Service
+public class ProvisioningJobQueue {
+    private static final Logger logger = LoggerFactory.getLogger(ProvisioningJobQueue.class);
+
+    public static final String QUEUE_FULL_MESSAGE = "The Tech Adapter is busy, please retry later";
+
+    private final Map<String, ProvisioningJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor workers;
+    private final Duration retention;
+    private final int retryBudget;
+    private final Duration jobTimeout;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final Timer waitTime;
+
+    public ProvisioningJobQueue(AsyncProvisioningConfig config, RetryConfig retryConfig, MeterRegistry meterRegistry) {
+        this.workers = new ThreadPoolExecutor(
+                config.workers(),
+                config.workers(),
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.queueCapacity()),
+                new CustomizableThreadFactory("provisioning-job-"));
+        this.retention = config.retention();
+        this.retryBudget = retryConfig.requestRetryBudget();
+        this.jobTimeout = config.jobTimeout();
+        this.clock = Clock.systemUTC();
+        this.meterRegistry = meterRegistry;
+        this.waitTime = Timer.builder("provisioning.jobs.wait")
+                .description("Time jobs spend in the queue before a worker picks them up")
+                .register(meterRegistry);
+        Gauge.builder("provisioning.jobs.queue.depth", workers, e -> e.getQueue()
+                        .size())
+                .description("Number of jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("provisioning.jobs.running", workers, ThreadPoolExecutor::getActiveCount)
+                .description("Number of jobs being run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues an operation
+     *
+     * @param operation name of the operation, used in the job status and as metric tag
+     * @param work the operation to run
+     * @return the token identifying the job, or a failure if the queue is full
+     */
+    public Either<FailedOperation, String> submit(
+            String operation, Supplier<Either<FailedOperation, ProvisionInfo>> work) {
+        return submit(UUID.randomUUID().toString(), operation, work);
+    }
+
+    /**
+     * Queues an operation under the given token, used to resume journaled jobs with the token their caller already
+     * knows
+     *
+     * @param token the token identifying the job
+     * @param operation name of the operation, used in the job status and as metric tag
+     * @param work the operation to run
+     * @return the token identifying the job, or a failure if the queue is full
+     */
+    public Either<FailedOperation, String> submit(
+            String token, String operation, Supplier<Either<FailedOperation, ProvisionInfo>> work) {
+        evictExpired();
+        Instant submittedAt = clock.instant();
+        jobs.put(
+                token,
+                new ProvisioningJob(
+                        token, operation, ProvisioningJob.Status.QUEUED, submittedAt, null, null, null, null));
+        try {
+            workers.execute(() -> run(token, operation, submittedAt, work));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(token);
+            String error = String.format(
+                    "The provisioning queue is full (%d jobs waiting), the %s request was rejected",
+                    workers.getQueue().size(), operation);
+            logger.warn(error);
+            return left(new FailedOperation(
+                    QUEUE_FULL_MESSAGE,
+                    List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION)))));
+        }
+        logger.info("Queued {} job {}", operation, token);
+        return right(token);
+    }
+
+    public Optional<ProvisioningJob> get(String token) {
+        return Optional.ofNullable(jobs.get(token));
+    }
+
+    private void run(
+            String token,
+            String operation,
+            Instant submittedAt,
+            Supplier<Either<FailedOperation, ProvisionInfo>> work) {
+        Instant startedAt = clock.instant();
+        waitTime.record(Duration.between(submittedAt, startedAt));
+        jobs.computeIfPresent(token, (k, job) -> job.started(startedAt));
+        long start = System.nanoTime();
+        Either<FailedOperation, ProvisionInfo> result;
+        try (var ignored = new OperationContext(retryBudget, jobTimeout).enter()) {
+            result = work.get();
+        } catch (Exception e) {
+            String error = String.format("Job %s failed unexpectedly: %s", token, e.getMessage());
+            logger.error(error, e);
+            result = left(new FailedOperation(
+                    "An unexpected error occurred",
+                    List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION)))));
+        }
+        Instant completedAt = clock.instant();
+        Either<FailedOperation, ProvisionInfo> outcome = result;
+        jobs.computeIfPresent(
+                token,
+                (k, job) -> outcome.isRight()
+                        ? job.completed(completedAt, outcome.get())
+                        : job.failed(completedAt, outcome.getLeft()));
+        Timer.builder("provisioning.jobs.duration")
+                .tag("operation", operation)
+                .tag("outcome", result.isRight() ? "completed" : "failed")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        logger.info("{} job {} {}", operation, token, result.isRight() ? "completed" : "failed");
+    }
+
+    private void evictExpired() {
+        Instant threshold = clock.instant().minus(retention);
+        jobs.values().removeIf(job -> job.isDone() && job.completedAt().isBefore(threshold));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
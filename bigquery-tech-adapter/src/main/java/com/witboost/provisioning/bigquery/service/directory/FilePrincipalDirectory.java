@@ -0,0 +1,70 @@
+package com.witboost.provisioning.bigquery.service.directory;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+
+import com.google.cloud.Identity;
+import com.witboost.provisioning.framework.common.ErrorConstants;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.vavr.control.Either;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Directory backed by a local file, meant to run the Tech Adapter without access to a real directory. The file
+ * holds one identity per line in the {@code user:name@example.com} or {@code group:name@example.com} format. Blank
+ * lines and lines starting with {@code #} are ignored. The file is read again whenever it is modified.
+ */
+public class FilePrincipalDirectory implements PrincipalDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilePrincipalDirectory.class);
+
+    private final Path file;
+    private Snapshot snapshot;
+
+    private record Snapshot(FileTime lastModified, Set<Identity> identities) {}
+
+    public FilePrincipalDirectory(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public Either<FailedOperation, Set<Identity>> findExisting(Set<Identity> identities) {
+        try {
+            Set<Identity> known = load();
+            return right(identities.stream().filter(known::contains).collect(Collectors.toSet()));
+        } catch (Exception e) {
+            String error = String.format("Failed to read the principal directory file '%s': %s", file, e.getMessage());
+            logger.error(error, e);
+            return left(new FailedOperation(
+                    "An error occurred while looking up the principals",
+                    List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION)))));
+        }
+    }
+
+    private synchronized Set<Identity> load() throws IOException {
+        FileTime lastModified = Files.getLastModifiedTime(file);
+        if (snapshot == null || !snapshot.lastModified().equals(lastModified)) {
+            Set<Identity> identities = new HashSet<>();
+            for (String line : Files.readAllLines(file)) {
+                String entry = line.strip();
+                if (!entry.isEmpty() && !entry.startsWith("#")) {
+                    identities.add(Identity.valueOf(entry));
+                }
+            }
+            logger.info("Loaded {} principals from the directory file {}", identities.size(), file);
+            snapshot = new Snapshot(lastModified, Set.copyOf(identities));
+        }
+        return snapshot.identities();
+    }
+}
@@ -0,0 +1,20 @@
+package com.witboost.provisioning.bigquery.service.directory;
+
+import static io.vavr.control.Either.right;
+
+import com.google.cloud.Identity;
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.vavr.control.Either;
+import java.util.Set;
+
+/**
+ * Directory that doesn't look anything up and reports every identity as existing. Identities that don't exist are
+ * then only rejected by GCP when they are written in an IAM policy.
+ */
+public class NoOpPrincipalDirectory implements PrincipalDirectory {
+
+    @Override
+    public Either<FailedOperation, Set<Identity>> findExisting(Set<Identity> identities) {
+        return right(identities);
+    }
+}
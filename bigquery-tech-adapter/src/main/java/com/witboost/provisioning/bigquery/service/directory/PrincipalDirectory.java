@@ -0,0 +1,19 @@
+package com.witboost.provisioning.bigquery.service.directory;
+
+import com.google.cloud.Identity;
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.vavr.control.Either;
+import java.util.Set;
+
+/***
+ * Directory of the users and groups that can be granted access on GCP
+ */
+public interface PrincipalDirectory {
+    /**
+     * Looks up all the identities with a single request to the directory
+     *
+     * @param identities the user and group identities to look up
+     * @return return a FailedOperation if the directory can't be queried, or the subset of identities that exist
+     */
+    Either<FailedOperation, Set<Identity>> findExisting(Set<Identity> identities);
+}
@@ -0,0 +1,29 @@
+package com.witboost.provisioning.bigquery.service.membership;
+
+import com.google.cloud.Identity;
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.vavr.control.Either;
+import java.util.Set;
+
+/***
+ * Backend managing the members of the consumer groups
+ */
+public interface GroupMembershipBackend {
+    /**
+     * Lists the members of a group
+     *
+     * @param group the email of the group
+     * @return return a FailedOperation or the members of the group, empty if the group doesn't exist yet
+     */
+    Either<FailedOperation, Set<Identity>> listMembers(String group);
+
+    /**
+     * Adds and removes members of a group, creating the group if it doesn't exist
+     *
+     * @param group the email of the group
+     * @param additions the identities to add to the group
+     * @param removals the identities to remove from the group
+     * @return return a FailedOperation if the membership could not be updated
+     */
+    Either<FailedOperation, Void> updateMembers(String group, Set<Identity> additions, Set<Identity> removals);
+}
@@ -0,0 +1,36 @@
+package com.witboost.provisioning.bigquery.service.membership;
+
+import static io.vavr.control.Either.right;
+
+import com.google.cloud.Identity;
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.vavr.control.Either;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Group membership backend keeping the groups in memory. It lets the consumer groups be used without access to a
+ * real directory, but the memberships are lost when the Tech Adapter is restarted.
+ */
+public class InMemoryGroupMembershipBackend implements GroupMembershipBackend {
+
+    private final Map<String, Set<Identity>> groups = new ConcurrentHashMap<>();
+
+    @Override
+    public Either<FailedOperation, Set<Identity>> listMembers(String group) {
+        return right(Set.copyOf(groups.getOrDefault(group, Set.of())));
+    }
+
+    @Override
+    public Either<FailedOperation, Void> updateMembers(String group, Set<Identity> additions, Set<Identity> removals) {
+        groups.compute(group, (name, members) -> {
+            Set<Identity> updated = members == null ? new HashSet<>() : new HashSet<>(members);
+            updated.removeAll(removals);
+            updated.addAll(additions);
+            return Set.copyOf(updated);
+        });
+        return right(null);
+    }
+}
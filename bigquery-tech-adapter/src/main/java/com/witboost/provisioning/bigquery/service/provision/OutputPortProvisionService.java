@@ -2,13 +2,17 @@ package com.witboost.provisioning.bigquery.service.provision;
 
 import static io.vavr.control.Either.right;
 
+import com.google.cloud.Identity;
+import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.model.AccessMode;
 import com.witboost.provisioning.bigquery.model.BigQueryOutputPortReverseProvisioningSpecific;
 import com.witboost.provisioning.bigquery.model.BigQueryOutputPortSpecific;
 import com.witboost.provisioning.bigquery.model.CreateViewRequest;
 import com.witboost.provisioning.bigquery.service.AclService;
 import com.witboost.provisioning.bigquery.service.BigQueryService;
+import com.witboost.provisioning.bigquery.service.ConsumerGroupService;
 import com.witboost.provisioning.bigquery.service.PrincipalMappingService;
 import com.witboost.provisioning.framework.service.ProvisionService;
 import com.witboost.provisioning.model.OutputPort;
@@ -34,14 +38,19 @@ public class OutputPortProvisionService implements ProvisionService {
     private final BigQueryService bigQueryService;
     private final PrincipalMappingService principalMappingService;
     private final AclService aclService;
+    private final ConsumerGroupService consumerGroupService;
 
     private static final String READ_ROLE = "roles/bigquery.dataViewer";
 
     public OutputPortProvisionService(
-            BigQueryService bigQueryService, PrincipalMappingService principalMappingService, AclService aclService) {
+            BigQueryService bigQueryService,
+            PrincipalMappingService principalMappingService,
+            AclService aclService,
+            ConsumerGroupService consumerGroupService) {
         this.bigQueryService = bigQueryService;
         this.principalMappingService = principalMappingService;
         this.aclService = aclService;
+        this.consumerGroupService = consumerGroupService;
     }
 
     @Override
@@ -59,10 +68,12 @@ public class OutputPortProvisionService implements ProvisionService {
                 opSpecific.getProject(),
                 opSpecific.getDataset(),
                 opSpecific.getTableName(),
+                opSpecific.getViewDataset(),
                 opSpecific.getViewName(),
                 op.getDescription(),
                 op.getDataContract().getSchema());
-        return bigQueryService.createOrUpdateView(viewRequest).flatMap(view -> {
+        return bigQueryService.createOrUpdateView(viewRequest).flatMap(viewResult -> {
+            var view = viewResult.table();
             var mappedPrincipals = List.ofAll(principalMappingService
                     .map(List.of(system.getDataProductOwner(), system.getDevGroup())
                             .toJavaSet())
@@ -70,6 +81,11 @@ public class OutputPortProvisionService implements ProvisionService {
             var identities = Either.sequenceRight(mappedPrincipals.map(Map.Entry::getValue));
             return identities.flatMap(ids -> aclService
                     .applyAcls(opSpecific.getOwnerRoles(), ids.asJava(), view.getTableId())
+                    .flatMap(v -> hasOwnDataset(opSpecific)
+                            ? aclService.authorizeView(
+                                    DatasetId.of(opSpecific.getProject(), opSpecific.getDataset()), view.getTableId())
+                            : right(null))
+                    .flatMap(v -> removeUnusedConsumerAccess(opSpecific, view.getTableId()))
                     .flatMap(v -> right(toProvisionInfo(view))));
         });
     }
@@ -85,13 +101,18 @@ public class OutputPortProvisionService implements ProvisionService {
                 operationRequest.getComponent().get();
         var opSpecific = op.getSpecific();
 
-        var viewId = TableId.of(opSpecific.getProject(), opSpecific.getDataset(), opSpecific.getViewName());
-        return aclService
-                .revokeRoles(java.util.List.of(READ_ROLE), viewId)
-                .flatMap(v -> operationRequest.isRemoveData()
-                        ? bigQueryService.deleteView(
-                                opSpecific.getProject(), opSpecific.getDataset(), opSpecific.getViewName())
-                        : right(null))
+        var viewId = TableId.of(opSpecific.getProject(), opSpecific.getViewDataset(), opSpecific.getViewName());
+        Either<FailedOperation, Void> datasetAccessRevoked = opSpecific.getAccessMode() == AccessMode.DATASET
+                ? aclService.revokeDatasetReaders(
+                        DatasetId.of(opSpecific.getProject(), opSpecific.getViewDataset()),
+                        java.util.List.of(Identity.group(consumerGroupService.groupOf(viewId))))
+                : right(null);
+        return datasetAccessRevoked
+                .flatMap(v -> aclService.revokeRoles(java.util.List.of(READ_ROLE), viewId))
+                // the group outlives the grants, so its members would get the view back if it were granted again
+                .flatMap(v ->
+                        consumerGroupService.isEnabled() ? consumerGroupService.removeAllMembers(viewId) : right(null))
+                .flatMap(v -> operationRequest.isRemoveData() ? deleteView(opSpecific, viewId) : right(null))
                 .map(v -> ProvisionInfo.builder().build());
     }
 
@@ -104,15 +125,27 @@ public class OutputPortProvisionService implements ProvisionService {
                 operationRequest.getComponent().get();
         var opSpecific = op.getSpecific();
 
-        var viewId = TableId.of(opSpecific.getProject(), opSpecific.getDataset(), opSpecific.getViewName());
-        return aclService.revokeRoles(java.util.List.of(READ_ROLE), viewId).flatMap(v -> {
-            var mappedPrincipals = List.ofAll(
-                    principalMappingService.map(operationRequest.getRefs()).entrySet());
-            var identities = Either.sequenceRight(mappedPrincipals.map(Map.Entry::getValue));
-            return identities.flatMap(ids -> aclService
-                    .applyAcls(java.util.List.of(READ_ROLE), ids.asJava(), viewId)
-                    .flatMap(ignored -> right(ProvisionInfo.builder().build())));
-        });
+        var viewId = TableId.of(opSpecific.getProject(), opSpecific.getViewDataset(), opSpecific.getViewName());
+        var mappedPrincipals = List.ofAll(
+                principalMappingService.map(operationRequest.getRefs()).entrySet());
+        var identities = Either.sequenceRight(mappedPrincipals.map(Map.Entry::getValue));
+        if (opSpecific.getAccessMode() == AccessMode.DATASET) {
+            // the group of the view is granted on the dataset of the view once, then only its members change
+            return identities
+                    .flatMap(ids -> consumerGroupService.syncMembers(viewId, ids.asJava()))
+                    .flatMap(group -> aclService.grantDatasetReaders(
+                            DatasetId.of(opSpecific.getProject(), opSpecific.getViewDataset()),
+                            java.util.List.of(group)))
+                    .flatMap(ignored -> right(ProvisionInfo.builder().build()));
+        }
+        // with consumer groups the consumers are members of the group, and only the group is granted on the view
+        Either<FailedOperation, java.util.List<Identity>> members = consumerGroupService.isEnabled()
+                ? identities.flatMap(ids ->
+                        consumerGroupService.syncMembers(viewId, ids.asJava()).map(group -> java.util.List.of(group)))
+                : identities.map(ids -> ids.asJava());
+        return members.flatMap(ids -> aclService
+                .setRoleMembers(READ_ROLE, ids, viewId)
+                .flatMap(ignored -> right(ProvisionInfo.builder().build())));
     }
 
     @Override
@@ -127,6 +160,37 @@ public class OutputPortProvisionService implements ProvisionService {
                         .build()));
     }
 
+    /** Whether the view lives in a dataset other than the one of its source table */
+    private static boolean hasOwnDataset(BigQueryOutputPortSpecific opSpecific) {
+        return !opSpecific.getViewDataset().equals(opSpecific.getDataset());
+    }
+
+    /** Removes the consumer grants left on the view or on the dataset by the access mode that is not in use */
+    private Either<FailedOperation, Void> removeUnusedConsumerAccess(
+            BigQueryOutputPortSpecific opSpecific, TableId viewId) {
+        if (opSpecific.getAccessMode() == AccessMode.DATASET) {
+            return aclService
+                    .setRoleMembers(READ_ROLE, java.util.List.of(), viewId)
+                    .map(changed -> null);
+        }
+        // the dataset access mode is only allowed for views in a dataset of their own
+        if (consumerGroupService.isEnabled() && hasOwnDataset(opSpecific)) {
+            return aclService.revokeDatasetReaders(
+                    DatasetId.of(opSpecific.getProject(), opSpecific.getViewDataset()),
+                    java.util.List.of(Identity.group(consumerGroupService.groupOf(viewId))));
+        }
+        return right(null);
+    }
+
+    private Either<FailedOperation, Void> deleteView(BigQueryOutputPortSpecific opSpecific, TableId viewId) {
+        Either<FailedOperation, Void> authorizationRemoved = hasOwnDataset(opSpecific)
+                ? aclService.removeViewAuthorization(
+                        DatasetId.of(opSpecific.getProject(), opSpecific.getDataset()), viewId)
+                : right(null);
+        return authorizationRemoved.flatMap(v -> bigQueryService.deleteView(
+                opSpecific.getProject(), opSpecific.getViewDataset(), opSpecific.getViewName()));
+    }
+
     private ProvisionInfo toProvisionInfo(Table view) {
         var url = String.format(
                 "https://console.cloud.google.com/bigquery?project=%s&ws=!1m5!1m4!4m3!1s%s!2s%s!3s%s",
@@ -1,15 +1,16 @@
 package com.witboost.provisioning.bigquery.service.provision;
 
-import static io.vavr.control.Either.left;
 import static io.vavr.control.Either.right;
 
 import com.google.cloud.Identity;
-import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableId;
 import com.witboost.provisioning.bigquery.model.*;
 import com.witboost.provisioning.bigquery.service.AclService;
 import com.witboost.provisioning.bigquery.service.BigQueryService;
 import com.witboost.provisioning.bigquery.service.PrincipalMappingService;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.ProvisioningJournal;
+import com.witboost.provisioning.bigquery.util.StepGraph;
 import com.witboost.provisioning.framework.service.ProvisionService;
 import com.witboost.provisioning.model.Specific;
 import com.witboost.provisioning.model.StorageArea;
@@ -20,6 +21,9 @@ import io.vavr.collection.List;
 import io.vavr.control.Either;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -31,12 +35,27 @@ public class StorageAreaProvisionService implements ProvisionService {
     private final BigQueryService bigQueryService;
     private final PrincipalMappingService principalMappingService;
     private final AclService aclService;
+    private final GcpCallExecutor gcpCallExecutor;
+    private final ProvisioningJournal journal;
+
+    private record ProvisionKey(
+            String operation,
+            String componentId,
+            String dataProductOwner,
+            String devGroup,
+            BigQueryStorageSpecific specific) {}
 
     public StorageAreaProvisionService(
-            BigQueryService bigQueryService, PrincipalMappingService principalMappingService, AclService aclService) {
+            BigQueryService bigQueryService,
+            PrincipalMappingService principalMappingService,
+            AclService aclService,
+            GcpCallExecutor gcpCallExecutor,
+            ProvisioningJournal journal) {
         this.bigQueryService = bigQueryService;
         this.principalMappingService = principalMappingService;
         this.aclService = aclService;
+        this.gcpCallExecutor = gcpCallExecutor;
+        this.journal = journal;
     }
 
     @Override
@@ -48,40 +67,108 @@ public class StorageAreaProvisionService implements ProvisionService {
         var st = (StorageArea<BigQueryStorageSpecific>)
                 operationRequest.getComponent().get();
         var stSpecific = st.getSpecific();
-
-        var datasetResult = bigQueryService.createDatasetIfNotExists(
-                new CreateDatasetRequest(stSpecific.getProject(), stSpecific.getDataset()));
-
-        if (datasetResult.isLeft()) return left(datasetResult.getLeft());
-
-        var updateTableRequest = new CreateOrUpdateTableRequest(
-                stSpecific.getProject(), stSpecific.getDataset(), stSpecific.getTableName(), stSpecific.getSchema());
-
-        return bigQueryService.createOrUpdateTable(updateTableRequest).flatMap(table -> {
+        var key = ProvisioningJournal.operationKey(
+                st.getId(),
+                new ProvisionKey(
+                        "provision", st.getId(), system.getDataProductOwner(), system.getDevGroup(), stSpecific));
+
+        // project IAM only depends on the principals, so it runs alongside the dataset, table and table IAM chain.
+        // The dataset and table steps are not journaled: they are no-ops when the resources are up to date, and
+        // running them is how a resource removed since the previous attempt is noticed
+        var graph = new StepGraph(gcpCallExecutor.executor());
+        var dataset = graph.step(
+                "dataset",
+                () -> bigQueryService.createDatasetIfNotExists(
+                        new CreateDatasetRequest(stSpecific.getProject(), stSpecific.getDataset())));
+        var table = graph.step(
+                "table",
+                java.util.List.of(dataset),
+                r -> bigQueryService.createOrUpdateTable(new CreateOrUpdateTableRequest(
+                        stSpecific.getProject(),
+                        stSpecific.getDataset(),
+                        stSpecific.getTableName(),
+                        stSpecific.getSchema())));
+        var principals = graph.step("principals", () -> {
             var mappedPrincipals = List.ofAll(principalMappingService
                     .map(List.of(system.getDataProductOwner(), system.getDevGroup())
                             .toJavaSet())
                     .entrySet());
-            var identities = Either.sequenceRight(mappedPrincipals.map(Map.Entry::getValue));
-            return identities
-                    .flatMap(ids -> aclService
-                            .applyAcls(
-                                    stSpecific.getIam().developmentGroupRoles().stream()
-                                            .filter(role -> role.scope() == IamScope.OWNER)
-                                            .map(ScopedIamRole::role)
-                                            .toList(),
-                                    ids.asJava(),
-                                    table.getTableId())
-                            .flatMap(ignored -> right(ids)))
-                    .flatMap(ids -> aclService.applyProjectAcls(
-                            stSpecific.getProject(),
-                            stSpecific.getIam().developmentGroupRoles().stream()
-                                    .filter(role -> role.scope() == IamScope.PROJECT)
-                                    .map(ScopedIamRole::role)
-                                    .toList(),
-                            ids.asJava().stream().map(Identity::strValue).toList()))
-                    .flatMap(v -> right(toProvisionInfo(table)));
+            return Either.sequenceRight(mappedPrincipals.map(Map.Entry::getValue))
+                    .map(ids -> ids.asJava());
         });
+        graph.step(
+                "table-acls",
+                java.util.List.of(table, principals),
+                // a table created by this attempt has none of the grants a previous attempt made
+                r -> journaled(
+                                key,
+                                "table-acls",
+                                r.get(table).outcome() == TableUpsertResult.Outcome.CREATED,
+                                () -> aclService.applyAcls(
+                                        stSpecific.getIam().developmentGroupRoles().stream()
+                                                .filter(role -> role.scope() == IamScope.OWNER)
+                                                .map(ScopedIamRole::role)
+                                                .toList(),
+                                        r.get(principals),
+                                        r.get(table).table().getTableId()))
+                        .get());
+        graph.asyncStep(
+                "project-acls",
+                java.util.List.of(principals),
+                journaledAsync(
+                        key,
+                        "project-acls",
+                        r -> aclService.applyProjectAclsAsync(
+                                stSpecific.getProject(),
+                                stSpecific.getIam().developmentGroupRoles().stream()
+                                        .filter(role -> role.scope() == IamScope.PROJECT)
+                                        .map(ScopedIamRole::role)
+                                        .toList(),
+                                r.get(principals).stream()
+                                        .map(Identity::strValue)
+                                        .toList())));
+
+        var result = graph.run().map(r -> toProvisionInfo(r.get(table).table().getTableId()));
+        if (result.isRight()) {
+            key.ifPresent(journal::operationCompleted);
+        }
+        return result;
+    }
+
+    /**
+     * Skips a step already completed by a previous attempt of the same request, unless it must be run again, and
+     * records the step once it succeeds
+     */
+    private Supplier<Either<FailedOperation, Boolean>> journaled(
+            Optional<String> key, String step, boolean runAgain, Supplier<Either<FailedOperation, ?>> action) {
+        return () -> {
+            if (key.isEmpty()) {
+                return action.get().map(r -> true);
+            }
+            if (!runAgain && journal.isStepCompleted(key.get(), step)) {
+                logger.info("Skipping step '{}' already completed by a previous attempt", step);
+                return right(true);
+            }
+            var result = action.get().map(r -> true);
+            result.forEach(r -> journal.stepCompleted(key.get(), step));
+            return result;
+        };
+    }
+
+    private Function<StepGraph.Results, CompletableFuture<Either<FailedOperation, Boolean>>> journaledAsync(
+            Optional<String> key,
+            String step,
+            Function<StepGraph.Results, CompletableFuture<Either<FailedOperation, Void>>> action) {
+        return r -> {
+            if (key.isPresent() && journal.isStepCompleted(key.get(), step)) {
+                logger.info("Skipping step '{}' already completed by a previous attempt", step);
+                return CompletableFuture.completedFuture(right(true));
+            }
+            return action.apply(r).thenApply(result -> {
+                result.forEach(ignored -> key.ifPresent(k -> journal.stepCompleted(k, step)));
+                return result.map(ignored -> true);
+            });
+        };
     }
 
     @Override
@@ -93,6 +180,8 @@ public class StorageAreaProvisionService implements ProvisionService {
         var st = (StorageArea<BigQueryStorageSpecific>)
                 operationRequest.getComponent().get();
         var stSpecific = st.getSpecific();
+        // the grants recorded by failed provisioning attempts are about to be revoked
+        journal.scopeCompleted(st.getId());
 
         var deleteRequest =
                 new DeleteTableRequest(stSpecific.getProject(), stSpecific.getDataset(), stSpecific.getTableName());
@@ -110,38 +199,14 @@ public class StorageAreaProvisionService implements ProvisionService {
                 .map(t -> ProvisionInfo.builder().build());
     }
 
-    private ProvisionInfo toProvisionInfo(Table table) {
+    private ProvisionInfo toProvisionInfo(TableId tableId) {
         var url = String.format(
                 "https://console.cloud.google.com/bigquery?project=%s&ws=!1m5!1m4!4m3!1s%s!2s%s!3s%s",
-                table.getTableId().getProject(),
-                table.getTableId().getProject(),
-                table.getTableId().getDataset(),
-                table.getTableId().getTable());
+                tableId.getProject(), tableId.getProject(), tableId.getDataset(), tableId.getTable());
         var publicInfo = Map.of(
-                "project",
-                        Map.of(
-                                "type",
-                                "string",
-                                "label",
-                                "Project",
-                                "value",
-                                table.getTableId().getProject()),
-                "dataset",
-                        Map.of(
-                                "type",
-                                "string",
-                                "label",
-                                "Dataset",
-                                "value",
-                                table.getTableId().getDataset()),
-                "table",
-                        Map.of(
-                                "type",
-                                "string",
-                                "label",
-                                "Table",
-                                "value",
-                                table.getTableId().getTable()),
+                "project", Map.of("type", "string", "label", "Project", "value", tableId.getProject()),
+                "dataset", Map.of("type", "string", "label", "Dataset", "value", tableId.getDataset()),
+                "table", Map.of("type", "string", "label", "Table", "value", tableId.getTable()),
                 "url", Map.of("type", "string", "label", "Url", "value", "Open in BigQuery", "href", url));
 
         return ProvisionInfo.builder().publicInfo(Optional.of(publicInfo)).build();
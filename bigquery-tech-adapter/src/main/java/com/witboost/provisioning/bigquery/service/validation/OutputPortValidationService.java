@@ -3,8 +3,11 @@ package com.witboost.provisioning.bigquery.service.validation;
 import static io.vavr.control.Either.left;
 import static io.vavr.control.Either.right;
 
+import com.witboost.provisioning.bigquery.model.AccessMode;
 import com.witboost.provisioning.bigquery.model.BigQueryOutputPortSpecific;
 import com.witboost.provisioning.bigquery.service.BigQueryService;
+import com.witboost.provisioning.bigquery.service.ConsumerGroupService;
+import com.witboost.provisioning.bigquery.util.DescriptorValidator;
 import com.witboost.provisioning.framework.service.validation.ComponentValidationService;
 import com.witboost.provisioning.model.OperationType;
 import com.witboost.provisioning.model.OutputPort;
@@ -14,6 +17,7 @@ import com.witboost.provisioning.model.common.Problem;
 import com.witboost.provisioning.model.request.OperationRequest;
 import io.vavr.control.Either;
 import jakarta.validation.Valid;
+import java.util.ArrayList;
 import java.util.Collections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,11 +31,18 @@ public class OutputPortValidationService implements ComponentValidationService {
     private static final Logger logger = LoggerFactory.getLogger(OutputPortValidationService.class);
 
     private final BigQueryService bigQueryService;
+    private final ValidationResultStore validationResultStore;
+    private final ConsumerGroupService consumerGroupService;
 
     private final String VALIDATION_ERROR_USER_MESSAGE = "One or more validation errors occurred";
 
-    public OutputPortValidationService(BigQueryService bigQueryService) {
+    public OutputPortValidationService(
+            BigQueryService bigQueryService,
+            ValidationResultStore validationResultStore,
+            ConsumerGroupService consumerGroupService) {
         this.bigQueryService = bigQueryService;
+        this.validationResultStore = validationResultStore;
+        this.consumerGroupService = consumerGroupService;
     }
 
     @Override
@@ -49,44 +60,70 @@ public class OutputPortValidationService implements ComponentValidationService {
         var component = maybeComponent.get();
         if (component instanceof OutputPort<? extends Specific> op) {
             if (component.getSpecific() instanceof BigQueryOutputPortSpecific bigQueryOPSpecific) {
-                return bigQueryService
-                        .getTable(
-                                bigQueryOPSpecific.getProject(),
-                                bigQueryOPSpecific.getDataset(),
-                                bigQueryOPSpecific.getTableName())
-                        .flatMap(optTable -> optTable.fold(
-                                () -> {
-                                    String errorMessage = String.format(
-                                            "The specified source table %s.%s.%s doesn't exist",
-                                            bigQueryOPSpecific.getProject(),
-                                            bigQueryOPSpecific.getDataset(),
-                                            bigQueryOPSpecific.getTableName());
-                                    return left(new FailedOperation(
-                                            VALIDATION_ERROR_USER_MESSAGE,
-                                            Collections.singletonList(new Problem(errorMessage))));
-                                },
-                                table -> {
-                                    return bigQueryService
-                                            .isViewSchemaCompatibleWithSourceTableSchema(
-                                                    table.getDefinition().getSchema(),
-                                                    op.getDataContract().getSchema())
-                                            .flatMap(isCompatible -> {
-                                                if (isCompatible) return right(null);
-                                                String errorMessage = String.format(
-                                                        "View schema of component %s is not compatible with schema of the source table %s.%s.%s",
-                                                        component.getId(),
-                                                        bigQueryOPSpecific.getProject(),
-                                                        bigQueryOPSpecific.getDataset(),
-                                                        bigQueryOPSpecific.getTableName());
-                                                logger.error(errorMessage);
-                                                return left(new FailedOperation(
-                                                        VALIDATION_ERROR_USER_MESSAGE,
-                                                        Collections.singletonList(new Problem(errorMessage))));
-                                            });
-                                }));
+                // local checks first, so that a descriptor which can't be provisioned doesn't consume API quota
+                var descriptorProblems = DescriptorValidator.validateOutputPort(
+                        bigQueryOPSpecific,
+                        op.getDataContract() == null
+                                ? null
+                                : op.getDataContract().getSchema());
+                // without a group per view, the consumers of a view can't be told apart on the dataset ACL
+                if (bigQueryOPSpecific.getAccessMode() == AccessMode.DATASET && !consumerGroupService.isEnabled()) {
+                    descriptorProblems = new ArrayList<>(descriptorProblems);
+                    descriptorProblems.add(new Problem(String.format(
+                            "Component %s uses the dataset access mode, which requires consumer groups to be enabled",
+                            component.getId())));
+                }
+                if (!descriptorProblems.isEmpty()) {
+                    logger.error("Descriptor of component {} is not valid: {}", component.getId(), descriptorProblems);
+                    return left(new FailedOperation(VALIDATION_ERROR_USER_MESSAGE, descriptorProblems));
+                }
+                return validationResultStore.reuseOrValidate(
+                        component, operationType, () -> validateRemotely(op, bigQueryOPSpecific));
             }
         }
         // If we arrive here, provisioner errors, so we call the super implementation
         return ComponentValidationService.super.validate(operationRequest, operationType);
     }
+
+    private Either<FailedOperation, Void> validateRemotely(
+            OutputPort<? extends Specific> op, BigQueryOutputPortSpecific bigQueryOPSpecific) {
+        return bigQueryService
+                .getTable(
+                        bigQueryOPSpecific.getProject(),
+                        bigQueryOPSpecific.getDataset(),
+                        bigQueryOPSpecific.getTableName())
+                .flatMap(optTable -> optTable.fold(
+                        () -> {
+                            String errorMessage = String.format(
+                                    "The specified source table %s.%s.%s doesn't exist",
+                                    bigQueryOPSpecific.getProject(),
+                                    bigQueryOPSpecific.getDataset(),
+                                    bigQueryOPSpecific.getTableName());
+                            return left(new FailedOperation(
+                                    VALIDATION_ERROR_USER_MESSAGE,
+                                    Collections.singletonList(new Problem(errorMessage))));
+                        },
+                        table -> {
+                            return bigQueryService
+                                    .diffViewSchema(
+                                            table.getDefinition().getSchema(),
+                                            op.getDataContract().getSchema())
+                                    .flatMap(differences -> {
+                                        if (differences.isEmpty()) return right(null);
+                                        String errorMessage = String.format(
+                                                "View schema of component %s is not compatible with schema of the source table %s.%s.%s",
+                                                op.getId(),
+                                                bigQueryOPSpecific.getProject(),
+                                                bigQueryOPSpecific.getDataset(),
+                                                bigQueryOPSpecific.getTableName());
+                                        logger.error("{}: {}", errorMessage, differences);
+                                        return left(new FailedOperation(
+                                                VALIDATION_ERROR_USER_MESSAGE,
+                                                differences.stream()
+                                                        .map(difference -> new Problem(
+                                                                errorMessage + ": " + difference.description()))
+                                                        .toList()));
+                                    });
+                        }));
+    }
 }
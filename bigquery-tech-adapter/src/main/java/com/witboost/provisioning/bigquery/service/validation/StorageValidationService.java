@@ -8,6 +8,9 @@ import com.google.cloud.bigquery.StandardTableDefinition;
 import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
 import com.witboost.provisioning.bigquery.service.BigQueryService;
 import com.witboost.provisioning.bigquery.service.ResourceManagerService;
+import com.witboost.provisioning.bigquery.util.DescriptorValidator;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.StepGraph;
 import com.witboost.provisioning.framework.service.validation.ComponentValidationService;
 import com.witboost.provisioning.model.OperationType;
 import com.witboost.provisioning.model.Specific;
@@ -33,11 +36,21 @@ public class StorageValidationService implements ComponentValidationService {
 
     private final ResourceManagerService resourceManagerService;
 
+    private final GcpCallExecutor gcpCallExecutor;
+
+    private final ValidationResultStore validationResultStore;
+
     private final String VALIDATION_ERROR_USER_MESSAGE = "One or more validation errors occurred";
 
-    public StorageValidationService(BigQueryService bigQueryService, ResourceManagerService resourceManagerService) {
+    public StorageValidationService(
+            BigQueryService bigQueryService,
+            ResourceManagerService resourceManagerService,
+            GcpCallExecutor gcpCallExecutor,
+            ValidationResultStore validationResultStore) {
         this.bigQueryService = bigQueryService;
         this.resourceManagerService = resourceManagerService;
+        this.gcpCallExecutor = gcpCallExecutor;
+        this.validationResultStore = validationResultStore;
     }
 
     @Override
@@ -55,56 +68,71 @@ public class StorageValidationService implements ComponentValidationService {
         var component = maybeComponent.get();
         if (component instanceof StorageArea<? extends Specific>) {
             if (component.getSpecific() instanceof BigQueryStorageSpecific bigQueryStorageSpecific) {
-                String projectId = bigQueryStorageSpecific.getProject();
-                String datasetId = bigQueryStorageSpecific.getDataset();
-                String tableId = bigQueryStorageSpecific.getTableName();
-
-                // Check if the project exists
-                var projectExists = resourceManagerService.isProjectExisting(projectId);
-                if (projectExists.isLeft()) {
-                    return left(projectExists.getLeft());
+                // local checks first, so that a descriptor which can't be provisioned doesn't consume API quota
+                var descriptorProblems = DescriptorValidator.validateStorage(bigQueryStorageSpecific);
+                if (!descriptorProblems.isEmpty()) {
+                    logger.warn("Descriptor of component {} is not valid: {}", component.getId(), descriptorProblems);
+                    return left(new FailedOperation(VALIDATION_ERROR_USER_MESSAGE, descriptorProblems));
                 }
-                if (!projectExists.get()) {
+                return validationResultStore.reuseOrValidate(
+                        component, operationType, () -> validateRemotely(bigQueryStorageSpecific));
+            }
+        }
+        // If we arrive here, provisioner errors, so we call the super implementation
+        return ComponentValidationService.super.validate(operationRequest, operationType);
+    }
+
+    private Either<FailedOperation, Void> validateRemotely(BigQueryStorageSpecific bigQueryStorageSpecific) {
+        String projectId = bigQueryStorageSpecific.getProject();
+        String datasetId = bigQueryStorageSpecific.getDataset();
+        String tableId = bigQueryStorageSpecific.getTableName();
+
+        // the checks are independent, so they run concurrently and all their problems are reported
+        var checks = new StepGraph(gcpCallExecutor.executor());
+        checks.step(
+                "project",
+                () -> resourceManagerService.isProjectExisting(projectId).flatMap(projectExists -> {
+                    if (projectExists) {
+                        return right(null);
+                    }
                     logger.warn("Project {} does not exist", projectId);
                     return left(new FailedOperation(
                             VALIDATION_ERROR_USER_MESSAGE,
                             Collections.singletonList(
                                     new Problem("The specified BigQuery project does not exist: " + projectId))));
-                }
-
-                // Check if the table exists
-                var tableOption = bigQueryService.getTable(projectId, datasetId, tableId);
-                if (tableOption.isRight()) {
-                    var maybeTable = tableOption.get();
-                    if (maybeTable.isDefined()) {
-                        var table = maybeTable.get();
-                        Schema actualSchema = ((StandardTableDefinition) table.getDefinition()).getSchema();
-
-                        // Check schema compatibility within the dataset
-                        var schemaCompatible = bigQueryService.isTableSchemaCompatibleWithColumns(
-                                actualSchema, bigQueryStorageSpecific.getSchema());
-                        if (schemaCompatible.isLeft()) {
-                            return left(schemaCompatible.getLeft());
-                        }
-                        if (!schemaCompatible.get()) {
-                            logger.warn(
-                                    "Detected schema mismatch: provided schema is not compatible with existing table: %s.%s.%s",
-                                    projectId, datasetId, tableId);
-                            return left(new FailedOperation(
-                                    VALIDATION_ERROR_USER_MESSAGE,
-                                    Collections.singletonList(new Problem(
-                                            "Detected schema mismatch: provided schema is not compatible with existing table: "
-                                                    + projectId + "." + datasetId + "." + tableId))));
-                        }
+                }));
+        checks.step(
+                "table",
+                () -> bigQueryService.getTable(projectId, datasetId, tableId).flatMap(maybeTable -> {
+                    if (maybeTable.isEmpty()) {
+                        return right(null);
                     }
-                } else {
-                    return left(tableOption.getLeft());
-                }
+                    Schema actualSchema =
+                            ((StandardTableDefinition) maybeTable.get().getDefinition()).getSchema();
 
-                return right(null);
-            }
-        }
-        // If we arrive here, provisioner errors, so we call the super implementation
-        return ComponentValidationService.super.validate(operationRequest, operationType);
+                    // Check schema compatibility within the dataset
+                    return bigQueryService
+                            .diffTableSchema(actualSchema, bigQueryStorageSpecific.getSchema())
+                            .flatMap(differences -> {
+                                if (differences.isEmpty()) {
+                                    return right(null);
+                                }
+                                logger.warn(
+                                        "Detected schema mismatch: provided schema is not compatible with existing table: {}.{}.{}: {}",
+                                        projectId,
+                                        datasetId,
+                                        tableId,
+                                        differences);
+                                return left(new FailedOperation(
+                                        VALIDATION_ERROR_USER_MESSAGE,
+                                        differences.stream()
+                                                .map(difference -> new Problem(
+                                                        "Detected schema mismatch: provided schema is not compatible with existing table: "
+                                                                + projectId + "." + datasetId + "." + tableId
+                                                                + ": " + difference.description()))
+                                                .toList()));
+                            });
+                }));
+        return checks.run().map(results -> null);
     }
 }
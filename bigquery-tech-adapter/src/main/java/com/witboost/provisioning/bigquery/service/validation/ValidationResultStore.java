@@ -0,0 +1,66 @@
+package com.witboost.provisioning.bigquery.service.validation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.witboost.provisioning.bigquery.config.ValidationResultStoreConfig;
+import com.witboost.provisioning.bigquery.util.ContentHash;
+import com.witboost.provisioning.model.Component;
+import com.witboost.provisioning.model.OperationType;
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vavr.control.Either;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Short-lived store of the components whose remote validation checks passed, keyed by a hash of the whole component.
+ *
+ * <p>A provision or unprovision validates the same descriptor that was just validated on its own. When it arrives
+ * within {@link ValidationResultStoreConfig#ttl()}, the stored verdict is reused and the remote checks are skipped.
+ * Explicit validations always run the checks, and only successful verdicts are stored, so a fixed descriptor is
+ * never rejected by a stale result.
+ */
+@Service
+public class ValidationResultStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValidationResultStore.class);
+
+    private final Cache<String, Boolean> validated;
+    private final boolean enabled;
+    private final MeterRegistry meterRegistry;
+
+    public ValidationResultStore(ValidationResultStoreConfig config, MeterRegistry meterRegistry) {
+        this.validated = Caffeine.newBuilder()
+                .maximumSize(config.maxSize())
+                .expireAfterWrite(config.ttl())
+                .build();
+        this.enabled = config.enabled();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the remote checks of a component, unless the component passed them within the TTL and the validation is
+     * part of a provisioning operation
+     */
+    public Either<FailedOperation, Void> reuseOrValidate(
+            Component<?> component, OperationType operationType, Supplier<Either<FailedOperation, Void>> remoteChecks) {
+        Optional<String> key = enabled ? ContentHash.of(component) : Optional.empty();
+        if (key.isEmpty()) {
+            return remoteChecks.get();
+        }
+        if (operationType != OperationType.VALIDATE && validated.getIfPresent(key.get()) != null) {
+            logger.info("Component {} passed validation recently, skipping the remote checks", component.getId());
+            record("hit");
+            return Either.right(null);
+        }
+        record("miss");
+        return remoteChecks.get().peek(v -> validated.put(key.get(), Boolean.TRUE));
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("validation.results.store", "result", result).increment();
+    }
+}
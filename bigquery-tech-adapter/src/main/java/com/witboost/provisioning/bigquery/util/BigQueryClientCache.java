@@ -0,0 +1,49 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.cloud.bigquery.BigQuery;
+import com.witboost.provisioning.bigquery.config.BigQueryClientConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded, thread-safe cache of BigQuery clients keyed by project ID.
+ *
+ * <p>Clients are built once per project through the provided factory and reused by every service, so
+ * credentials and the underlying HTTP connection pool are shared across operations. Clients not used for
+ * {@link BigQueryClientConfig#idleEviction()} are evicted, and at most {@link BigQueryClientConfig#maxCachedClients()}
+ * clients are kept. Hit, miss and eviction counts are exported under the {@code bigquery.clients} cache name.
+ */
+@Slf4j
+public class BigQueryClientCache implements Function<String, BigQuery> {
+
+    private final LoadingCache<String, BigQuery> clients;
+
+    public BigQueryClientCache(
+            BigQueryClientConfig config, Function<String, BigQuery> clientFactory, MeterRegistry meterRegistry) {
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(config.maxCachedClients())
+                .expireAfterAccess(config.idleEviction())
+                .removalListener((String projectId, BigQuery client, RemovalCause cause) ->
+                        log.info("Evicted BigQuery client for project {} ({})", projectId, cause))
+                .recordStats()
+                .build(projectId -> {
+                    log.info("Creating BigQuery client for project {}", projectId);
+                    return clientFactory.apply(projectId);
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, clients, "bigquery.clients");
+    }
+
+    @Override
+    public BigQuery apply(String projectId) {
+        return clients.get(projectId);
+    }
+
+    public void invalidateAll() {
+        clients.invalidateAll();
+    }
+}
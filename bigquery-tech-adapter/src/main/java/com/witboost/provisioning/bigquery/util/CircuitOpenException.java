@@ -0,0 +1,14 @@
+package com.witboost.provisioning.bigquery.util;
+
+import java.time.Duration;
+
+/** Thrown when a call to a project is rejected because the circuit breaker of the project is open */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String project, Duration retryAfter) {
+        super(String.format(
+                "Project '%s' is temporarily unavailable after repeated failures of its GCP calls, new calls are"
+                        + " suspended for %d more seconds",
+                project, Math.max(1, retryAfter.toSeconds())));
+    }
+}
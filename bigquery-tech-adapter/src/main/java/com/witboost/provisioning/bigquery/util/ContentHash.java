@@ -0,0 +1,44 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SHA-256 hash of the canonical JSON of an object, used to recognize identical requests and components. Properties
+ * and map entries are sorted, so the hash doesn't depend on their order and stays stable across restarts.
+ */
+public final class ContentHash {
+    private static final Logger logger = LoggerFactory.getLogger(ContentHash.class);
+
+    private static final ObjectMapper canonicalMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private ContentHash() {}
+
+    /**
+     * Hashes the canonical JSON of an object
+     *
+     * @return the hex encoded hash, or empty if the object can't be serialized
+     */
+    public static Optional<String> of(Object value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonicalMapper.writeValueAsBytes(value));
+            return Optional.of(HexFormat.of().formatHex(digest));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.warn("Unable to hash {}", value.getClass().getSimpleName(), e);
+            return Optional.empty();
+        }
+    }
+}
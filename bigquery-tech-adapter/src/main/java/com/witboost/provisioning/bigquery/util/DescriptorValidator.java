@@ -0,0 +1,221 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.witboost.provisioning.bigquery.model.AccessMode;
+import com.witboost.provisioning.bigquery.model.BigQueryOutputPortSpecific;
+import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
+import com.witboost.provisioning.model.Column;
+import com.witboost.provisioning.model.common.Problem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Local checks on the BigQuery part of a descriptor, run before any remote call so that a request which could never
+ * be provisioned fails without consuming API quota. Every method returns the list of problems found, which is empty
+ * when the descriptor passes.
+ *
+ * <p>The accepted type names are the same ones {@link #sqlTypeOf(String)} resolves when the schema is generated, so a
+ * column that passes here can't fail later on its type.
+ */
+public final class DescriptorValidator {
+
+    private static final Pattern PROJECT_ID = Pattern.compile("^([a-z0-9.-]+:)?[a-z][a-z0-9-]{4,28}[a-z0-9]$");
+    private static final Pattern DATASET_ID = Pattern.compile("^[A-Za-z0-9_]{1,1024}$");
+    private static final Pattern TABLE_ID = Pattern.compile("^[\\p{L}\\p{M}\\p{N}\\p{Pc}\\p{Pd}\\p{Zs}]{1,1024}$");
+    private static final Pattern COLUMN_NAME = Pattern.compile("^[A-Za-z_][A-Za-z0-9_]{0,299}$");
+    private static final Pattern RESERVED_COLUMN_PREFIX = Pattern.compile(
+            "^(_TABLE_|_FILE_|_PARTITION|_ROW_TIMESTAMP|__ROOT__|_COLIDENTIFIER)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ROLE =
+            Pattern.compile("^(roles/[A-Za-z0-9_.]+|projects/[a-z][a-z0-9-]{4,28}[a-z0-9]/roles/[A-Za-z0-9_.]{3,64}"
+                    + "|organizations/[0-9]+/roles/[A-Za-z0-9_.]{3,64})$");
+
+    private static final Map<String, StandardSQLTypeName> SQL_TYPES = sqlTypes();
+    // these types need nested fields or an element type, which a column descriptor can't declare
+    private static final Set<StandardSQLTypeName> UNSUPPORTED_TYPES =
+            EnumSet.of(StandardSQLTypeName.STRUCT, StandardSQLTypeName.ARRAY, StandardSQLTypeName.RANGE);
+    private static final Set<String> MODES = modes();
+
+    private static final int NUMERIC_MAX_SCALE = 9;
+    private static final int NUMERIC_MAX_INTEGER_DIGITS = 29;
+    private static final int BIGNUMERIC_MAX_SCALE = 38;
+    private static final int BIGNUMERIC_MAX_INTEGER_DIGITS = 38;
+
+    private DescriptorValidator() {}
+
+    public static List<Problem> validateStorage(BigQueryStorageSpecific specific) {
+        List<Problem> problems = new ArrayList<>();
+        checkTableLocation(specific.getProject(), specific.getDataset(), specific.getTableName(), problems);
+        checkColumns(specific.getSchema(), problems);
+        if (specific.getIam() != null && specific.getIam().developmentGroupRoles() != null) {
+            specific.getIam().developmentGroupRoles().forEach(role -> checkRole(role.role(), problems));
+        }
+        return problems;
+    }
+
+    public static List<Problem> validateOutputPort(BigQueryOutputPortSpecific specific, List<Column> schema) {
+        List<Problem> problems = new ArrayList<>();
+        checkTableLocation(specific.getProject(), specific.getDataset(), specific.getTableName(), problems);
+        if (!Objects.equals(specific.getViewDataset(), specific.getDataset())) {
+            check(specific.getViewDataset(), DATASET_ID, "view dataset name", problems);
+        }
+        check(specific.getViewName(), TABLE_ID, "view name", problems);
+        // consumers granted on the dataset of the view must not be able to read the source table
+        if (specific.getAccessMode() == AccessMode.DATASET
+                && Objects.equals(specific.getViewDataset(), specific.getDataset())) {
+            problems.add(new Problem(String.format(
+                    "The dataset access mode needs the view in a dedicated dataset, but the view dataset %s is the"
+                            + " dataset of the source table",
+                    specific.getViewDataset())));
+        }
+        checkColumns(schema, problems);
+        if (specific.getOwnerRoles() != null) {
+            specific.getOwnerRoles().forEach(role -> checkRole(role, problems));
+        }
+        return problems;
+    }
+
+    /**
+     * Resolves a column data type, accepting the standard SQL names and the legacy SQL ones (e.g. {@code INTEGER}) in
+     * any case.
+     *
+     * @return the type, or empty if the name isn't a BigQuery type
+     */
+    public static Optional<StandardSQLTypeName> sqlTypeOf(String dataType) {
+        return dataType == null
+                ? Optional.empty()
+                : Optional.ofNullable(SQL_TYPES.get(dataType.toUpperCase(Locale.ROOT)));
+    }
+
+    private static void checkTableLocation(String project, String dataset, String table, List<Problem> problems) {
+        check(project, PROJECT_ID, "project id", problems);
+        check(dataset, DATASET_ID, "dataset name", problems);
+        check(table, TABLE_ID, "table name", problems);
+    }
+
+    private static void checkColumns(List<Column> columns, List<Problem> problems) {
+        if (columns == null) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        for (Column column : columns) {
+            String name = column.getName();
+            if (!check(name, COLUMN_NAME, "column name", problems)) {
+                continue;
+            }
+            if (RESERVED_COLUMN_PREFIX.matcher(name).find()) {
+                problems.add(new Problem(String.format("The column name %s uses a prefix reserved by BigQuery", name)));
+            }
+            if (!names.add(name.toLowerCase(Locale.ROOT))) {
+                problems.add(new Problem(String.format(
+                        "The column %s is declared more than once (column names are case-insensitive)", name)));
+            }
+            checkColumnType(column, problems);
+            column.getConstraint().ifPresent(mode -> {
+                if (!MODES.contains(mode)) {
+                    problems.add(new Problem(String.format(
+                            "The column %s has the invalid constraint %s, expected one of %s", name, mode, MODES)));
+                }
+            });
+        }
+    }
+
+    private static void checkColumnType(Column column, List<Problem> problems) {
+        String name = column.getName();
+        Optional<StandardSQLTypeName> maybeType = sqlTypeOf(column.getDataType());
+        if (maybeType.isEmpty()) {
+            problems.add(new Problem(
+                    String.format("The column %s has the unknown data type %s", name, column.getDataType())));
+            return;
+        }
+        StandardSQLTypeName type = maybeType.get();
+        if (UNSUPPORTED_TYPES.contains(type)) {
+            problems.add(new Problem(String.format(
+                    "The column %s has the data type %s, which is not supported in a column descriptor", name, type)));
+            return;
+        }
+        column.getDataLength().ifPresent(length -> {
+            if (type != StandardSQLTypeName.STRING && type != StandardSQLTypeName.BYTES) {
+                problems.add(new Problem(String.format(
+                        "The column %s declares a length, which is only allowed for STRING and BYTES", name)));
+            } else if (length < 1) {
+                problems.add(new Problem(String.format("The column %s has the invalid length %d", name, length)));
+            }
+        });
+        if (column.getPrecision().isEmpty() && column.getScale().isEmpty()) {
+            return;
+        }
+        if (type == StandardSQLTypeName.NUMERIC) {
+            checkPrecisionAndScale(column, NUMERIC_MAX_SCALE, NUMERIC_MAX_INTEGER_DIGITS, problems);
+        } else if (type == StandardSQLTypeName.BIGNUMERIC) {
+            checkPrecisionAndScale(column, BIGNUMERIC_MAX_SCALE, BIGNUMERIC_MAX_INTEGER_DIGITS, problems);
+        } else {
+            problems.add(new Problem(String.format(
+                    "The column %s declares a precision or scale, which is only allowed for NUMERIC and BIGNUMERIC",
+                    name)));
+        }
+    }
+
+    /** Checks {@code max(1, scale) <= precision <= scale + maxIntegerDigits} and {@code 0 <= scale <= maxScale} */
+    private static void checkPrecisionAndScale(
+            Column column, int maxScale, int maxIntegerDigits, List<Problem> problems) {
+        if (column.getPrecision().isEmpty()) {
+            problems.add(
+                    new Problem(String.format("The column %s declares a scale without a precision", column.getName())));
+            return;
+        }
+        int precision = column.getPrecision().get();
+        int scale = column.getScale().orElse(0);
+        if (scale < 0 || scale > maxScale) {
+            problems.add(new Problem(String.format(
+                    "The column %s has the scale %d, expected between 0 and %d", column.getName(), scale, maxScale)));
+        } else if (precision < Math.max(1, scale) || precision > scale + maxIntegerDigits) {
+            problems.add(new Problem(String.format(
+                    "The column %s has the precision %d, expected between %d and %d for scale %d",
+                    column.getName(), precision, Math.max(1, scale), scale + maxIntegerDigits, scale)));
+        }
+    }
+
+    private static void checkRole(String role, List<Problem> problems) {
+        check(role, ROLE, "role", problems);
+    }
+
+    private static boolean check(String value, Pattern pattern, String what, List<Problem> problems) {
+        if (value == null || !pattern.matcher(value).matches()) {
+            problems.add(new Problem(String.format("The %s %s is not valid", what, value)));
+            return false;
+        }
+        return true;
+    }
+
+    private static Map<String, StandardSQLTypeName> sqlTypes() {
+        Map<String, StandardSQLTypeName> types = new HashMap<>();
+        for (StandardSQLTypeName type : StandardSQLTypeName.values()) {
+            types.put(type.name(), type);
+        }
+        types.put("INTEGER", StandardSQLTypeName.INT64);
+        types.put("FLOAT", StandardSQLTypeName.FLOAT64);
+        types.put("BOOLEAN", StandardSQLTypeName.BOOL);
+        types.put("RECORD", StandardSQLTypeName.STRUCT);
+        return Map.copyOf(types);
+    }
+
+    private static Set<String> modes() {
+        Set<String> modes = new LinkedHashSet<>();
+        for (Field.Mode mode : Field.Mode.values()) {
+            modes.add(mode.name());
+        }
+        return Collections.unmodifiableSet(modes);
+    }
+}
@@ -0,0 +1,11 @@
+package com.witboost.provisioning.bigquery.util;
+
+/** Thrown when a resource changed between the read and the write of a read-modify-write cycle */
+public class EtagMismatchException extends RuntimeException {
+
+    public EtagMismatchException(String resource, String expectedEtag, String actualEtag) {
+        super(String.format(
+                "Resource '%s' was modified concurrently (expected etag %s, found %s)",
+                resource, expectedEtag, actualEtag));
+    }
+}
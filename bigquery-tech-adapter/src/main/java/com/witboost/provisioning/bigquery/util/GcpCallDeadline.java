@@ -0,0 +1,48 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.witboost.provisioning.bigquery.config.RequestDeadlineConfig;
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounds single GCP calls by the deadline of the request they are made for.
+ *
+ * <p>A call may take at most {@link RequestDeadlineConfig#callTimeout()}, and never more than the time left to the
+ * {@link OperationContext} of the calling thread, so that a request close to its deadline doesn't hold a thread and a
+ * project call slot for a whole call timeout.
+ */
+@Component
+public class GcpCallDeadline {
+
+    private final Duration callTimeout;
+
+    public GcpCallDeadline(RequestDeadlineConfig deadlineConfig) {
+        this.callTimeout = deadlineConfig.callTimeout();
+    }
+
+    /**
+     * The timeout of a call started now
+     *
+     * @param action the call about to be made, used in the error message
+     * @throws RequestDeadlineExceededException if the deadline of the request already expired
+     */
+    public Duration timeout(String action) {
+        Optional<OperationContext> context = OperationContext.current();
+        if (context.isEmpty()) {
+            return callTimeout;
+        }
+        context.get().checkDeadline(action);
+        return context.get()
+                .remainingTime()
+                .filter(remaining -> remaining.compareTo(callTimeout) < 0)
+                .orElse(callTimeout);
+    }
+
+    /** Call context of a gRPC call started now, carrying its {@link #timeout(String)} */
+    public ApiCallContext grpcContext(String action) {
+        return GrpcCallContext.createDefault().withTimeoutDuration(timeout(action));
+    }
+}
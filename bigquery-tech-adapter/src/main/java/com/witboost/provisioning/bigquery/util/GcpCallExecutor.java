@@ -0,0 +1,184 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.witboost.provisioning.bigquery.config.GcpCallsConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs blocking GCP calls, capping the number of calls in flight towards each project.
+ *
+ * <p>Each project is isolated from the others: its calls hold at most
+ * {@link GcpCallsConfig#maxConcurrentCallsPerProject()} permits, at most
+ * {@link GcpCallsConfig#maxWaitingCallsPerProject()} more callers wait for one and any further call is rejected
+ * immediately. Calls also go through the {@link ProjectCircuitBreaker}, which fails them fast while the project is
+ * unhealthy.
+ *
+ * <p>Calls made through {@link #call(String, Callable)} run on the calling thread once a permit for the project is
+ * available, while {@link #submit(String, Callable)} runs them on the executor of this class. When virtual threads
+ * are enabled the executor starts one virtual thread per task, otherwise a bounded pool of platform threads is used.
+ * Nested calls for a project the current thread already holds a permit for don't take a second one, so they can't
+ * deadlock when all permits are in use.
+ */
+@Slf4j
+public class GcpCallExecutor {
+
+    private static final ThreadLocal<Set<String>> HELD_PROJECTS = ThreadLocal.withInitial(HashSet::new);
+
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> waiting = new ConcurrentHashMap<>();
+    private final ProjectCircuitBreaker circuitBreaker;
+    private final int maxConcurrentCallsPerProject;
+    private final int maxWaitingCallsPerProject;
+    private final long acquireTimeoutMs;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final Timer permitWait;
+    private final Counter permitTimeouts;
+    private final Counter bulkheadRejections;
+
+    public GcpCallExecutor(
+            GcpCallsConfig config,
+            ProjectCircuitBreaker circuitBreaker,
+            ExecutorService executor,
+            boolean virtualThreads,
+            MeterRegistry meterRegistry) {
+        this.circuitBreaker = circuitBreaker;
+        this.maxConcurrentCallsPerProject = config.maxConcurrentCallsPerProject();
+        this.maxWaitingCallsPerProject = config.maxWaitingCallsPerProject();
+        this.acquireTimeoutMs = config.acquireTimeout().toMillis();
+        this.executor = executor;
+        this.virtualThreads = virtualThreads;
+        this.permitWait = Timer.builder("gcp.calls.permit.wait")
+                .description("Time spent waiting for a per-project GCP call permit")
+                .register(meterRegistry);
+        this.permitTimeouts = Counter.builder("gcp.calls.permit.timeouts")
+                .description("GCP calls rejected because no per-project permit became available in time")
+                .register(meterRegistry);
+        this.bulkheadRejections = Counter.builder("gcp.calls.bulkhead.rejected")
+                .description("GCP calls rejected because too many calls were already waiting for their project")
+                .register(meterRegistry);
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** The executor used to fan work out, without any per-project limit */
+    public Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Runs the call on the current thread, waiting for a permit of the project first
+     *
+     * @param project the GCP project the call targets
+     * @param call the blocking call
+     * @return the result of the call
+     * @throws RequestDeadlineExceededException if the deadline of the request expired, including while waiting
+     * @throws CircuitOpenException if the circuit of the project is open
+     * @throws RejectedExecutionException if too many calls are already waiting for a permit of the project
+     * @throws TimeoutException if no permit became available within the configured timeout
+     * @throws Exception any exception thrown by the call
+     */
+    public <T> T call(String project, Callable<T> call) throws Exception {
+        Set<String> held = HELD_PROJECTS.get();
+        if (held.contains(project)) {
+            return call.call();
+        }
+        Optional<OperationContext> context = OperationContext.current();
+        context.ifPresent(c -> c.checkDeadline(callTo(project)));
+        circuitBreaker.acquire(project);
+        Semaphore semaphore;
+        try {
+            semaphore = acquirePermit(project, context);
+        } catch (Exception e) {
+            circuitBreaker.release(project);
+            throw e;
+        }
+        held.add(project);
+        try {
+            T result = call.call();
+            circuitBreaker.onSuccess(project);
+            return result;
+        } catch (Exception e) {
+            circuitBreaker.onFailure(project, e);
+            throw e;
+        } finally {
+            held.remove(project);
+            semaphore.release();
+        }
+    }
+
+    private Semaphore acquirePermit(String project, Optional<OperationContext> context)
+            throws InterruptedException, TimeoutException {
+        Semaphore semaphore = permits.computeIfAbsent(project, p -> new Semaphore(maxConcurrentCallsPerProject, true));
+        if (semaphore.tryAcquire()) {
+            permitWait.record(0, TimeUnit.NANOSECONDS);
+            return semaphore;
+        }
+        AtomicInteger waitingCalls = waiting.computeIfAbsent(project, p -> new AtomicInteger());
+        if (waitingCalls.incrementAndGet() > maxWaitingCallsPerProject) {
+            waitingCalls.decrementAndGet();
+            bulkheadRejections.increment();
+            throw new RejectedExecutionException(
+                    String.format("Too many calls waiting for project '%s', the call was rejected", project));
+        }
+        // never wait past the deadline of the request
+        long timeoutMs = context.flatMap(OperationContext::remainingTime)
+                .map(remaining -> Math.min(acquireTimeoutMs, remaining.toMillis()))
+                .orElse(acquireTimeoutMs);
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+        } finally {
+            waitingCalls.decrementAndGet();
+            permitWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            if (context.map(OperationContext::isExpired).orElse(false)) {
+                throw context.get().deadlineExceeded(callTo(project));
+            }
+            permitTimeouts.increment();
+            throw new TimeoutException(String.format(
+                    "Too many concurrent calls to project '%s', no permit available after %d ms",
+                    project, acquireTimeoutMs));
+        }
+        return semaphore;
+    }
+
+    private static String callTo(String project) {
+        return String.format("the call to project '%s'", project);
+    }
+
+    /**
+     * Runs the call on the executor, waiting for a permit of the project first
+     *
+     * @param project the GCP project the call targets
+     * @param call the blocking call
+     * @return a future completed with the result of the call
+     */
+    public <T> CompletableFuture<T> submit(String project, Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(OperationContext.propagate(() -> {
+            try {
+                future.complete(call(project, call));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }));
+        return future;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
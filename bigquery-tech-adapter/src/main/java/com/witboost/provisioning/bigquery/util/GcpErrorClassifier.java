@@ -0,0 +1,80 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.bigquery.BigQueryException;
+import java.io.IOException;
+import java.util.Set;
+
+/** Tells apart the errors of GCP calls that are worth retrying from the ones that will fail again */
+public final class GcpErrorClassifier {
+
+    public enum ErrorClass {
+        /** The service is temporarily unavailable or the connection failed */
+        TRANSIENT,
+        /** A rate limit was hit, the call can succeed once the quota refills */
+        RATE_LIMITED,
+        /** The resource was modified concurrently, the read-modify-write cycle must start over */
+        CONFLICT,
+        /** Retrying would fail again */
+        PERMANENT
+    }
+
+    private static final Set<String> RATE_LIMITED_REASONS = Set.of("rateLimitExceeded", "jobRateLimitExceeded");
+    private static final Set<String> TRANSIENT_REASONS = Set.of("backendError", "internalError");
+    private static final Set<Integer> TRANSIENT_CODES = Set.of(500, 502, 503, 504);
+
+    private GcpErrorClassifier() {}
+
+    public static ErrorClass classify(Throwable e) {
+        if (e instanceof EtagMismatchException) {
+            return ErrorClass.CONFLICT;
+        }
+        if (e instanceof BigQueryException bqe) {
+            return classify(bqe);
+        }
+        if (e instanceof ApiException apiException) {
+            return switch (apiException.getStatusCode().getCode()) {
+                case UNAVAILABLE, DEADLINE_EXCEEDED, INTERNAL -> ErrorClass.TRANSIENT;
+                case RESOURCE_EXHAUSTED -> ErrorClass.RATE_LIMITED;
+                case ABORTED -> ErrorClass.CONFLICT;
+                default -> ErrorClass.PERMANENT;
+            };
+        }
+        if (e instanceof IOException) {
+            return ErrorClass.TRANSIENT;
+        }
+        return ErrorClass.PERMANENT;
+    }
+
+    /** Whether the call was rejected because the credentials can't access the resource */
+    public static boolean isPermissionDenied(Throwable e) {
+        if (e instanceof BigQueryException bqe) {
+            return classify(bqe) == ErrorClass.PERMANENT && (bqe.getCode() == 401 || bqe.getCode() == 403);
+        }
+        if (e instanceof ApiException apiException) {
+            return switch (apiException.getStatusCode().getCode()) {
+                case PERMISSION_DENIED, UNAUTHENTICATED -> true;
+                default -> false;
+            };
+        }
+        return false;
+    }
+
+    private static ErrorClass classify(BigQueryException e) {
+        String reason = e.getReason() == null ? "" : e.getReason();
+        if (RATE_LIMITED_REASONS.contains(reason) || e.getCode() == 429) {
+            return ErrorClass.RATE_LIMITED;
+        }
+        if (e.getCode() == 409 || e.getCode() == 412) {
+            return ErrorClass.CONFLICT;
+        }
+        if (TRANSIENT_CODES.contains(e.getCode()) || TRANSIENT_REASONS.contains(reason)) {
+            return ErrorClass.TRANSIENT;
+        }
+        // the client reports connection failures with an unknown code and the IOException as cause
+        if (e.getCode() == BigQueryException.UNKNOWN_CODE && e.getCause() instanceof IOException) {
+            return ErrorClass.TRANSIENT;
+        }
+        return ErrorClass.PERMANENT;
+    }
+}
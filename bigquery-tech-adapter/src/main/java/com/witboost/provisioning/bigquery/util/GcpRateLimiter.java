@@ -0,0 +1,176 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.config.RateLimitConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Client-side token buckets keeping the GCP calls within the BigQuery and IAM quotas.
+ *
+ * <p>Every type of call has a bucket per project, refilled at the configured rate and holding up to one second of
+ * permits. Writes to a single table or view, including its IAM policy, also take a permit from a bucket of that
+ * table, since BigQuery limits metadata updates per table over a few seconds. Callers exceeding the rate are queued
+ * rather than rejected: each one reserves the next permit and waits until it becomes available, so bursts are spread
+ * over time instead of coming back as quota errors. A caller whose permit would only come after the deadline of its
+ * request fails right away instead. The time spent waiting is recorded in the
+ * {@code gcp.ratelimit.wait} metric, tagged with the limiter.
+ */
+@Slf4j
+@Component
+public class GcpRateLimiter {
+
+    private static final Duration IDLE_EXPIRY = Duration.ofMinutes(10);
+    private static final long REJECTED = -1;
+
+    /** Token bucket handing out reservations, possibly in advance of the refill */
+    private static final class Bucket {
+        private final double permitsPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt;
+
+        private Bucket(double permitsPerSecond, double capacity) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        /**
+         * Takes a permit, returning how long to wait in nanoseconds before it can be used, or {@code REJECTED}
+         * without taking it if the wait would not end before {@code maxWaitNanos}
+         */
+        private synchronized long reserve(long maxWaitNanos) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * permitsPerNano);
+            refilledAt = now;
+            // tokens go negative when callers are queued, pushing the permits of the next ones further away
+            long delay = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+            if (delay > 0 && delay >= maxWaitNanos) {
+                return REJECTED;
+            }
+            tokens -= 1;
+            return delay;
+        }
+    }
+
+    // an idle bucket is full again after a few seconds, so dropping it loses nothing
+    private final Cache<String, Bucket> buckets =
+            Caffeine.newBuilder().expireAfterAccess(IDLE_EXPIRY).build();
+    private final RateLimitConfig config;
+    private final MeterRegistry meterRegistry;
+
+    public GcpRateLimiter(RateLimitConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        if (!config.enabled()) {
+            log.warn("Client-side rate limiting of GCP calls is disabled");
+        }
+    }
+
+    /**
+     * Waits for a permit to make a call of the given type to the project
+     *
+     * @param project the GCP project the call targets
+     * @param operation type of the call
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire(String project, RetryOperation operation) throws InterruptedException {
+        waitFor(reserve(operation.configName(), project, permitsPerSecond(operation), 0), project);
+    }
+
+    /**
+     * Waits for a permit to write the metadata or the IAM policy of a table or view. Callers also need a permit of
+     * the project for the call itself, and must wait for both before taking a call slot of the project.
+     *
+     * @param tableId the table or view being written
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquireTableWrite(TableId tableId) throws InterruptedException {
+        waitFor(
+                reserve(
+                        "table-write",
+                        String.format("%s.%s.%s", tableId.getProject(), tableId.getDataset(), tableId.getTable()),
+                        config.tableWritesPerSecond(),
+                        config.tableWriteBurst()),
+                tableId.getProject());
+    }
+
+    /**
+     * Reserves a permit to make a call of the given type to the project without blocking
+     *
+     * @return a future completed once the permit can be used
+     */
+    public CompletableFuture<Void> acquireAsync(String project, RetryOperation operation) {
+        long delay = reserve(operation.configName(), project, permitsPerSecond(operation), 0);
+        if (delay == REJECTED) {
+            return CompletableFuture.failedFuture(
+                    OperationContext.current().get().deadlineExceeded(callTo(project)));
+        }
+        if (delay == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+    }
+
+    private long reserve(String limiter, String key, double permitsPerSecond, int burst) {
+        if (!config.enabled()) {
+            return 0;
+        }
+        double capacity = Math.max(1, burst > 0 ? burst : permitsPerSecond);
+        // a permit that would only come after the deadline is not taken, so it is left to the callers behind
+        long maxWait = OperationContext.current()
+                .flatMap(OperationContext::remainingTime)
+                .map(Duration::toNanos)
+                .orElse(Long.MAX_VALUE);
+        long delay = buckets.get(limiter + "/" + key, k -> new Bucket(permitsPerSecond, capacity))
+                .reserve(maxWait);
+        if (delay == REJECTED) {
+            log.debug("Rejecting {} call for {}, its permit would come after the deadline", limiter, key);
+            return REJECTED;
+        }
+        waitTimer(limiter).record(delay, TimeUnit.NANOSECONDS);
+        if (delay > 0) {
+            log.debug("Throttling {} call for {} by {} ms", limiter, key, TimeUnit.NANOSECONDS.toMillis(delay));
+        }
+        return delay;
+    }
+
+    private static void waitFor(long delayNanos, String project) throws InterruptedException {
+        if (delayNanos == REJECTED) {
+            throw OperationContext.current().get().deadlineExceeded(callTo(project));
+        }
+        if (delayNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        }
+    }
+
+    private static String callTo(String project) {
+        return String.format("the call to project '%s'", project);
+    }
+
+    private double permitsPerSecond(RetryOperation operation) {
+        return switch (operation) {
+            case BIGQUERY_READ -> config.bigqueryReadsPerSecond();
+            case BIGQUERY_WRITE -> config.bigqueryWritesPerSecond();
+            case TABLE_IAM -> config.tableIamWritesPerSecond();
+            case PROJECT_IAM -> config.projectIamWritesPerSecond();
+            case RESOURCE_MANAGER_READ -> config.resourceManagerReadsPerSecond();
+        };
+    }
+
+    private Timer waitTimer(String limiter) {
+        return Timer.builder("gcp.ratelimit.wait")
+                .description("Time GCP calls waited for a client-side rate limit permit")
+                .tag("limiter", limiter)
+                .register(meterRegistry);
+    }
+}
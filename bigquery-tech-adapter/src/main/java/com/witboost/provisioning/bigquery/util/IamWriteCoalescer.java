@@ -0,0 +1,153 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.witboost.provisioning.bigquery.config.IamWriteCoalescerConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Coalesces IAM policy additions targeting the same resource into a single read-modify-write.
+ *
+ * <p>The first request for a resource opens a batch which is written {@link IamWriteCoalescerConfig#window()}
+ * later; every addition submitted for the same resource in the meantime joins that batch. The writer of the opening
+ * request then runs once with the merged role to members map and every request of the batch receives its outcome.
+ * Writes to the same resource are chained one after the other, so requests arriving while a batch is being written
+ * are collected into the next one. No thread is held while a batch waits for its window or for the previous write.
+ *
+ * <p>A batch is written within its own {@link OperationContext}, holding the latest deadline and the largest retry
+ * budget left among its requests, so that a request with a short deadline can't fail the grants of the others.
+ */
+@Slf4j
+@Component
+public class IamWriteCoalescer {
+
+    /** Applies the merged additions of a batch in a single policy update */
+    @FunctionalInterface
+    public interface BatchWriter {
+        CompletableFuture<?> write(Map<String, Set<String>> additions);
+    }
+
+    private static final class Batch {
+        private final Map<String, Set<String>> additions = new LinkedHashMap<>();
+        private final List<Optional<OperationContext>> contexts = new ArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int requests;
+
+        private void merge(Collection<String> roles, Collection<String> members) {
+            for (String role : roles) {
+                additions.computeIfAbsent(role, r -> new LinkedHashSet<>()).addAll(members);
+            }
+            contexts.add(OperationContext.current());
+            requests++;
+        }
+
+        /** The context of the write, empty when a request has none and so puts no limit on it */
+        private Optional<OperationContext> context() {
+            int retryBudget = 0;
+            Duration timeout = Duration.ZERO;
+            for (Optional<OperationContext> maybeContext : contexts) {
+                if (maybeContext.isEmpty()) {
+                    return Optional.empty();
+                }
+                OperationContext context = maybeContext.get();
+                retryBudget = Math.max(retryBudget, context.remainingRetries());
+                Optional<Duration> remaining = context.remainingTime();
+                if (remaining.isEmpty()) {
+                    timeout = null;
+                } else if (timeout != null && remaining.get().compareTo(timeout) > 0) {
+                    timeout = remaining.get();
+                }
+            }
+            return Optional.of(new OperationContext(retryBudget, timeout));
+        }
+    }
+
+    private final Map<String, Batch> pending = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> lastWrites = new ConcurrentHashMap<>();
+    private final long windowMs;
+    private final DistributionSummary batchSize;
+
+    public IamWriteCoalescer(IamWriteCoalescerConfig config, MeterRegistry meterRegistry) {
+        this.windowMs = config.window().toMillis();
+        this.batchSize = DistributionSummary.builder("bigquery.iam.coalesced.batch.size")
+                .description("Number of IAM update requests merged into a single policy write")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Grants the roles to the members on the resource, merging the request with the concurrent ones for the same
+     * resource
+     *
+     * @param resource key identifying the IAM policy, e.g. the project id
+     * @param roles roles to grant
+     * @param members members to add to each role
+     * @param writer applies the merged additions. Only the writer of the request opening the batch is invoked, within
+     *     the {@link OperationContext} of the batch
+     * @return a future completed once the batch containing this request has been written, or with the error of the
+     *     writer of the batch
+     */
+    public CompletableFuture<Void> submit(
+            String resource, Collection<String> roles, Collection<String> members, BatchWriter writer) {
+        boolean[] opened = {false};
+        Batch batch = pending.compute(resource, (key, current) -> {
+            Batch target = current;
+            if (target == null) {
+                target = new Batch();
+                opened[0] = true;
+            }
+            target.merge(roles, members);
+            return target;
+        });
+        if (opened[0]) {
+            CompletableFuture.delayedExecutor(windowMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> enqueueWrite(resource, batch, writer));
+        }
+        return batch.done.copy();
+    }
+
+    /** Number of resources with a batch being written or waiting for the previous write */
+    int resourcesWriting() {
+        return lastWrites.size();
+    }
+
+    private void enqueueWrite(String resource, Batch batch, BatchWriter writer) {
+        CompletableFuture<Void> chained = lastWrites.compute(
+                resource,
+                (key, previous) -> (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous)
+                        .thenCompose(ignored -> write(resource, batch, writer)));
+        // the last write of a resource is forgotten once done, unless another one was chained to it meanwhile
+        chained.whenComplete((ignored, error) -> lastWrites.remove(resource, chained));
+    }
+
+    private CompletableFuture<Void> write(String resource, Batch batch, BatchWriter writer) {
+        // once removed no other request can join the batch, so its content is stable from here on
+        pending.remove(resource, batch);
+        batchSize.record(batch.requests);
+        log.debug("Writing {} coalesced IAM update(s) for {}", batch.requests, resource);
+        CompletableFuture<?> written;
+        Optional<OperationContext> context = batch.context();
+        try (OperationContext.Scope ignored =
+                context.isPresent() ? context.get().enter() : () -> {}) {
+            written = writer.write(Collections.unmodifiableMap(batch.additions));
+        } catch (Exception e) {
+            written = CompletableFuture.failedFuture(e);
+        }
+        // the chain of writes goes on whatever the outcome of this one
+        return written.handle((result, error) -> {
+            if (error == null) {
+                batch.done.complete(null);
+            } else {
+                batch.done.completeExceptionally(
+                        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,127 @@
+package com.witboost.provisioning.bigquery.util;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * State shared by all the GCP calls made on behalf of the same request, such as its retry budget and its deadline.
+ *
+ * <p>Once the deadline expired nobody reads the outcome of the request anymore, so new GCP calls, retries and
+ * provisioning steps are not started and fail with a {@link RequestDeadlineExceededException} instead.
+ *
+ * <p>The context is bound to the thread handling the request by {@link #enter()}, and must be carried over with
+ * {@link #propagate(Supplier)} to the work the request hands over to other threads.
+ */
+public final class OperationContext {
+
+    private static final ThreadLocal<OperationContext> current = new ThreadLocal<>();
+
+    private final AtomicInteger remainingRetries;
+    private final Duration timeout;
+    private final long deadlineNanos;
+
+    /** Restores the context that was bound before {@link #enter()} */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** Creates a context without deadline */
+    public OperationContext(int retryBudget) {
+        this(retryBudget, null);
+    }
+
+    /**
+     * @param retryBudget retries allowed across all the GCP calls of the request
+     * @param timeout time left to serve the request, null for no deadline
+     */
+    public OperationContext(int retryBudget, Duration timeout) {
+        this.remainingRetries = new AtomicInteger(retryBudget);
+        this.timeout = timeout;
+        this.deadlineNanos = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+    }
+
+    public static Optional<OperationContext> current() {
+        return Optional.ofNullable(current.get());
+    }
+
+    /** Binds this context to the current thread until the returned scope is closed */
+    public Scope enter() {
+        OperationContext previous = current.get();
+        current.set(this);
+        return () -> {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        };
+    }
+
+    /** Wraps an action so that it runs within the context of the calling thread, whichever thread runs it */
+    public static <T> Supplier<T> propagate(Supplier<T> action) {
+        OperationContext context = current.get();
+        if (context == null) {
+            return action;
+        }
+        return () -> {
+            try (Scope ignored = context.enter()) {
+                return action.get();
+            }
+        };
+    }
+
+    /** Wraps an action so that it runs within the context of the calling thread, whichever thread runs it */
+    public static Runnable propagate(Runnable action) {
+        Supplier<Void> wrapped = propagate(() -> {
+            action.run();
+            return null;
+        });
+        return wrapped::get;
+    }
+
+    /**
+     * Takes a retry from the budget of the request
+     *
+     * @return false if the budget is exhausted
+     */
+    public boolean tryConsumeRetry() {
+        return remainingRetries.getAndUpdate(r -> Math.max(0, r - 1)) > 0;
+    }
+
+    public int remainingRetries() {
+        return remainingRetries.get();
+    }
+
+    /** Time left before the deadline, empty if the request has no deadline. Never negative */
+    public Optional<Duration> remainingTime() {
+        if (timeout == null) {
+            return Optional.empty();
+        }
+        return Optional.of(Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())));
+    }
+
+    public boolean isExpired() {
+        return timeout != null && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Fails if the deadline expired
+     *
+     * @param action what was about to be done, used in the error message
+     * @throws RequestDeadlineExceededException if the deadline expired
+     */
+    public void checkDeadline(String action) {
+        if (isExpired()) {
+            throw deadlineExceeded(action);
+        }
+    }
+
+    /** The error reported when the work can't be done within the deadline */
+    public RequestDeadlineExceededException deadlineExceeded(String action) {
+        return new RequestDeadlineExceededException(
+                String.format("The request deadline of %d ms expired, %s was not started", timeout.toMillis(), action));
+    }
+}
@@ -0,0 +1,180 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+
+import com.google.cloud.Identity;
+import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig;
+import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig.IdentityType;
+import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig.Rule;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.vavr.control.Either;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Principal mapping rules compiled once at startup. The configured rules are tried in order, followed by the
+ * built-in ones that map {@code user:name.surname_example.com} to {@code user:name.surname@example.com} and
+ * {@code group:name} to the group {@code name} in the configured group mail domain. The first rule that applies to a
+ * subject maps it.
+ *
+ * <p>Mapping a subject only scans the prefixes of the rules and builds the identity value with a single copy, unless
+ * the rule needs a regular expression.
+ */
+public final class PrincipalMappingRules {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalMappingRules.class);
+
+    private final CompiledRule[] rules;
+
+    private PrincipalMappingRules(CompiledRule[] rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Compiles the configured rules followed by the built-in ones
+     *
+     * @throws IllegalArgumentException if a configured rule is not valid
+     */
+    public static PrincipalMappingRules compile(PrincipalMappingServiceConfig config) {
+        List<Rule> rules = new ArrayList<>();
+        if (config.rules() != null) {
+            rules.addAll(config.rules());
+        }
+        rules.add(new Rule("user:", IdentityType.USER, "_", null, null, null));
+        rules.add(new Rule("group:", IdentityType.GROUP, null, null, null, config.groupMailDomain()));
+
+        CompiledRule[] compiled = new CompiledRule[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            compiled[i] = compile(i, rules.get(i));
+        }
+        return new PrincipalMappingRules(compiled);
+    }
+
+    public Either<FailedOperation, Identity> map(String subject) {
+        CompiledRule prefixMatch = null;
+        for (CompiledRule rule : rules) {
+            if (subject.startsWith(rule.prefix())) {
+                String value = rule.rewrite(subject);
+                if (value != null) {
+                    return right(rule.identity(value));
+                }
+                if (prefixMatch == null) {
+                    prefixMatch = rule;
+                }
+            }
+        }
+        return prefixMatch == null ? mapUnknownIdentity(subject) : mapMalformedIdentity(subject, prefixMatch.type());
+    }
+
+    private static CompiledRule compile(int index, Rule rule) {
+        if (rule.prefix() == null || rule.prefix().isEmpty()) {
+            throw new IllegalArgumentException(String.format("Principal mapping rule %d has no prefix", index));
+        }
+        if (rule.type() == null) {
+            throw new IllegalArgumentException(
+                    String.format("Principal mapping rule %d for prefix '%s' has no type", index, rule.prefix()));
+        }
+        if (rule.mailSeparator() != null && rule.mailSeparator().isEmpty()) {
+            throw new IllegalArgumentException(String.format(
+                    "Principal mapping rule %d for prefix '%s' has an empty mail separator", index, rule.prefix()));
+        }
+        if (rule.pattern() == null && rule.replacement() != null) {
+            throw new IllegalArgumentException(String.format(
+                    "Principal mapping rule %d for prefix '%s' has a replacement but no pattern",
+                    index, rule.prefix()));
+        }
+        Pattern pattern = null;
+        if (rule.pattern() != null) {
+            try {
+                pattern = Pattern.compile(rule.pattern());
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException(
+                        String.format(
+                                "Principal mapping rule %d for prefix '%s' has an invalid pattern: %s",
+                                index, rule.prefix(), e.getMessage()),
+                        e);
+            }
+        }
+        return new CompiledRule(
+                rule.prefix(),
+                rule.type(),
+                rule.mailSeparator(),
+                pattern,
+                rule.replacement() == null ? "$0" : rule.replacement(),
+                rule.domain() == null ? "" : rule.domain());
+    }
+
+    private record CompiledRule(
+            String prefix,
+            IdentityType type,
+            String mailSeparator,
+            Pattern pattern,
+            String replacement,
+            String domain) {
+
+        /** The value of the identity, or null if the rule doesn't apply to the subject */
+        String rewrite(String subject) {
+            int start = prefix.length();
+            if (pattern == null) {
+                StringBuilder value = new StringBuilder(subject.length() + domain.length());
+                if (mailSeparator == null) {
+                    value.append(subject, start, subject.length());
+                } else {
+                    int separator = subject.lastIndexOf(mailSeparator);
+                    if (separator < start) {
+                        return null;
+                    }
+                    value.append(subject, start, separator)
+                            .append('@')
+                            .append(subject, separator + mailSeparator.length(), subject.length());
+                }
+                return value.append(domain).toString();
+            }
+            String value = subject.substring(start);
+            if (mailSeparator != null) {
+                int separator = value.lastIndexOf(mailSeparator);
+                if (separator == -1) {
+                    return null;
+                }
+                value = value.substring(0, separator) + "@" + value.substring(separator + mailSeparator.length());
+            }
+            Matcher matcher = pattern.matcher(value);
+            if (!matcher.matches()) {
+                return null;
+            }
+            return matcher.replaceFirst(replacement) + domain;
+        }
+
+        Identity identity(String value) {
+            return switch (type) {
+                case USER -> Identity.user(value);
+                case GROUP -> Identity.group(value);
+                case SERVICE_ACCOUNT -> Identity.serviceAccount(value);
+                case DOMAIN -> Identity.domain(value);
+            };
+        }
+    }
+
+    private static Either<FailedOperation, Identity> mapMalformedIdentity(String subject, IdentityType type) {
+        String label = type.name().toLowerCase().replace('_', ' ');
+        String userMessage = "Received an invalid " + label;
+        String errorMessage = String.format("The subject %s has not the expected format for a %s", subject, label);
+        logger.error(errorMessage);
+        return left(new FailedOperation(userMessage, Collections.singletonList(new Problem(errorMessage))));
+    }
+
+    private static Either<FailedOperation, Identity> mapUnknownIdentity(String subject) {
+        String userMessage = "Received an unknown identity";
+        String errorMessage = String.format("The subject %s is neither a Witboost user nor a group", subject);
+        logger.error(errorMessage);
+        return left(new FailedOperation(userMessage, Collections.singletonList(new Problem(errorMessage))));
+    }
+}
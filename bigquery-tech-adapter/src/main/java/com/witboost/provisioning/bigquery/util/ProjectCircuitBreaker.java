@@ -0,0 +1,206 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.witboost.provisioning.bigquery.config.CircuitBreakerConfig;
+import com.witboost.provisioning.bigquery.util.GcpErrorClassifier.ErrorClass;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops calling a project whose GCP calls keep failing, so that an unhealthy project can't tie up the threads and
+ * permits shared with every other project.
+ *
+ * <p>Each project has its own circuit, tracking the outcome of its last {@link CircuitBreakerConfig#windowSize()}
+ * calls. Transient errors and rate limits count as failures. Permission errors, conflicts and other errors don't:
+ * they come from a single request, not from an unhealthy project, and must not block its other tenants. When at
+ * least {@link CircuitBreakerConfig#minimumCalls()} calls were made and the failure rate reaches the threshold, the
+ * circuit opens and calls fail immediately with a {@link CircuitOpenException}. After
+ * {@link CircuitBreakerConfig#openDuration()} the circuit is half-open: up to
+ * {@link CircuitBreakerConfig#halfOpenCalls()} calls are let through as probes. The circuit closes once they all
+ * succeed and opens again as soon as one fails.
+ *
+ * <p>The state of each circuit is exposed in the {@code gcp.circuit.state} gauge (0 closed, 1 half-open, 2 open),
+ * state changes in {@code gcp.circuit.transitions} and rejected calls in {@code gcp.circuit.rejected}.
+ */
+@Slf4j
+@Component
+public class ProjectCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final class Circuit {
+        private final String project;
+        private final boolean[] outcomes = new boolean[config.windowSize()];
+        private int next;
+        private int recorded;
+        private int failures;
+        private State state = State.CLOSED;
+        private long openedAt;
+        private int probesInFlight;
+        private int probesSucceeded;
+
+        private Circuit(String project) {
+            this.project = project;
+            Gauge.builder("gcp.circuit.state", this, c -> c.state().ordinal())
+                    .description("State of the circuit breaker of a project: 0 closed, 1 half-open, 2 open")
+                    .tag("project", project)
+                    .register(meterRegistry);
+        }
+
+        private synchronized State state() {
+            return state;
+        }
+
+        private synchronized void acquire() {
+            if (state == State.OPEN) {
+                long remaining = openedAt + config.openDuration().toNanos() - System.nanoTime();
+                if (remaining > 0) {
+                    rejected(project).increment();
+                    throw new CircuitOpenException(project, Duration.ofNanos(remaining));
+                }
+                transition(State.HALF_OPEN);
+                probesInFlight = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight + probesSucceeded >= config.halfOpenCalls()) {
+                    rejected(project).increment();
+                    throw new CircuitOpenException(project, Duration.ZERO);
+                }
+                probesInFlight++;
+            }
+        }
+
+        private synchronized void release() {
+            if (state == State.HALF_OPEN) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+            }
+        }
+
+        private synchronized void record(boolean failed) {
+            if (state == State.HALF_OPEN) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+                if (failed) {
+                    open();
+                } else if (++probesSucceeded >= config.halfOpenCalls()) {
+                    reset();
+                    transition(State.CLOSED);
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                // a call started before the circuit opened
+                return;
+            }
+            if (recorded == outcomes.length) {
+                failures -= outcomes[next] ? 1 : 0;
+            } else {
+                recorded++;
+            }
+            outcomes[next] = failed;
+            failures += failed ? 1 : 0;
+            next = (next + 1) % outcomes.length;
+            if (recorded >= config.minimumCalls() && failures * 100 >= config.failureRateThreshold() * recorded) {
+                log.warn(
+                        "Opening the circuit of project {} after {} failures in {} calls", project, failures, recorded);
+                open();
+            }
+        }
+
+        private void open() {
+            openedAt = System.nanoTime();
+            reset();
+            transition(State.OPEN);
+        }
+
+        private void reset() {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+
+        private void transition(State target) {
+            if (state != target) {
+                log.info("Circuit of project {} is now {}", project, target);
+                state = target;
+                Counter.builder("gcp.circuit.transitions")
+                        .tag("project", project)
+                        .tag("state", target.name().toLowerCase())
+                        .register(meterRegistry)
+                        .increment();
+            }
+        }
+    }
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final CircuitBreakerConfig config;
+    private final MeterRegistry meterRegistry;
+
+    public ProjectCircuitBreaker(CircuitBreakerConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Lets a call to the project through, unless its circuit is open. Every call let through must report its
+     * outcome with {@link #onSuccess(String)} or {@link #onFailure(String, Throwable)}, or be given back with
+     * {@link #release(String)} if it wasn't made after all.
+     *
+     * @param project the GCP project the call targets
+     * @throws CircuitOpenException if the circuit is open, or half-open with all its probes already in flight
+     */
+    public void acquire(String project) {
+        if (config.enabled()) {
+            circuit(project).acquire();
+        }
+    }
+
+    /** Gives back a call let through by {@link #acquire(String)} but never made */
+    public void release(String project) {
+        if (config.enabled()) {
+            circuit(project).release();
+        }
+    }
+
+    public void onSuccess(String project) {
+        if (config.enabled()) {
+            circuit(project).record(false);
+        }
+    }
+
+    public void onFailure(String project, Throwable error) {
+        if (config.enabled()) {
+            circuit(project).record(isFailure(error));
+        }
+    }
+
+    public State state(String project) {
+        Circuit circuit = circuits.get(project);
+        return circuit == null ? State.CLOSED : circuit.state();
+    }
+
+    private Circuit circuit(String project) {
+        return circuits.computeIfAbsent(project, Circuit::new);
+    }
+
+    private static boolean isFailure(Throwable error) {
+        ErrorClass errorClass = GcpErrorClassifier.classify(error);
+        return errorClass == ErrorClass.TRANSIENT || errorClass == ErrorClass.RATE_LIMITED;
+    }
+
+    private Counter rejected(String project) {
+        return Counter.builder("gcp.circuit.rejected")
+                .description("GCP calls rejected because the circuit of their project is open")
+                .tag("project", project)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,349 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.witboost.provisioning.bigquery.config.JobJournalConfig;
+import com.witboost.provisioning.bigquery.model.JournalEntry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Append-only journal of provisioning progress.
+ *
+ * <p>It records the steps completed by each provisioning operation, identified by a key derived from the request,
+ * so that a retried request can skip them and resume from the first incomplete one. The steps of an operation are
+ * forgotten once it completes or once the resource it belongs to is removed, and are trusted for at most
+ * {@link JobJournalConfig#stepTtl()}. It also records the
+ * asynchronous jobs that were queued but not finished, so they can be resumed after a restart.
+ *
+ * <p>Entries are written as JSON lines and synced to disk before returning. The sync is done outside the lock of the
+ * journal and covers every entry appended so far, so concurrent writers share a single sync instead of queueing
+ * behind each other's. The file is compacted on startup and whenever it grows past
+ * {@link JobJournalConfig#compactThreshold()}, keeping only the entries that are still relevant. When no path is
+ * configured the journal is only kept in memory.
+ *
+ * <p>A journal file belongs to a single instance: it is locked while open, and an instance finding it locked by
+ * another one fails to start rather than resuming the jobs of the other.
+ */
+@Component
+public class ProvisioningJournal {
+    private static final Logger logger = LoggerFactory.getLogger(ProvisioningJournal.class);
+
+    private static final ObjectMapper mapper =
+            JsonMapper.builder().findAndAddModules().build();
+
+    private final Map<String, Map<String, Instant>> completedSteps = new LinkedHashMap<>();
+    private final Map<String, JournalEntry> pendingJobs = new LinkedHashMap<>();
+    private final Duration stepTtl;
+    private final long compactThreshold;
+    private final Clock clock;
+    private final Path path;
+    private final FileChannel lockChannel;
+    // replaced on compaction, while holding both the journal and the sync lock
+    private volatile FileChannel channel;
+    // size of the file and size it is compacted at, guarded by the journal lock
+    private long fileSize;
+    private long compactAt;
+    // bytes appended since startup, and how many of them are known to be on disk
+    private volatile long appended;
+    private final Object syncLock = new Object();
+    private long synced;
+
+    public ProvisioningJournal(JobJournalConfig config) {
+        this.stepTtl = config.stepTtl();
+        this.compactThreshold = config.compactThreshold().toBytes();
+        this.clock = Clock.systemUTC();
+        if (config.path() == null || config.path().isBlank()) {
+            logger.warn("No journal path configured, provisioning progress will not survive restarts");
+            this.path = null;
+            this.lockChannel = null;
+            this.channel = null;
+            return;
+        }
+        this.path = Path.of(config.path()).toAbsolutePath();
+        try {
+            Files.createDirectories(path.getParent());
+            this.lockChannel = lock(path);
+            if (Files.exists(path)) {
+                load(path);
+                fileSize = compact();
+            }
+            compactAt = Math.max(compactThreshold, 2 * fileSize);
+            this.channel = openForAppend();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to open the journal %s", path), e);
+        }
+        logger.info(
+                "Journal {} loaded with {} unfinished operations and {} pending jobs",
+                path,
+                completedSteps.size(),
+                pendingJobs.size());
+    }
+
+    /**
+     * Derives the key of an operation on a resource from everything that identifies the request, so that a request
+     * is only resumed from the steps of an identical one, and the steps of every operation on the resource can be
+     * forgotten at once with {@link #scopeCompleted(String)}
+     *
+     * @param scope identifier of the resource, e.g. the component id
+     * @return the key, or empty if the request can't be serialized, in which case its steps are not journaled
+     */
+    public static Optional<String> operationKey(String scope, Object request) {
+        return ContentHash.of(request).map(hash -> scope + "/" + hash);
+    }
+
+    public synchronized boolean isStepCompleted(String key, String step) {
+        Instant completedAt = completedSteps.getOrDefault(key, Map.of()).get(step);
+        return completedAt != null && completedAt.plus(stepTtl).isAfter(clock.instant());
+    }
+
+    public void stepCompleted(String key, String step) {
+        long position;
+        synchronized (this) {
+            Instant now = clock.instant();
+            completedSteps.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(step, now);
+            position = append(new JournalEntry(
+                    JournalEntry.Type.STEP_COMPLETED, key, step, null, null, null, null, now.toEpochMilli()));
+        }
+        sync(position);
+    }
+
+    public void operationCompleted(String key) {
+        long position = 0;
+        synchronized (this) {
+            if (completedSteps.remove(key) != null) {
+                position = append(new JournalEntry(
+                        JournalEntry.Type.OPERATION_COMPLETED, key, null, null, null, null, null, clock.millis()));
+            }
+        }
+        sync(position);
+    }
+
+    /** Forgets the steps of every operation whose key was derived within the scope */
+    public void scopeCompleted(String scope) {
+        long position = 0;
+        synchronized (this) {
+            String prefix = scope + "/";
+            var keys = completedSteps.keySet().stream()
+                    .filter(key -> key.startsWith(prefix))
+                    .toList();
+            for (String key : keys) {
+                completedSteps.remove(key);
+                position = append(new JournalEntry(
+                        JournalEntry.Type.OPERATION_COMPLETED, key, null, null, null, null, null, clock.millis()));
+            }
+        }
+        sync(position);
+    }
+
+    public void jobSubmitted(String token, String operation, String descriptor, boolean removeData, List<String> refs) {
+        long position;
+        synchronized (this) {
+            var entry = new JournalEntry(
+                    JournalEntry.Type.JOB_SUBMITTED,
+                    token,
+                    null,
+                    operation,
+                    descriptor,
+                    removeData,
+                    refs,
+                    clock.millis());
+            pendingJobs.put(token, entry);
+            position = append(entry);
+        }
+        sync(position);
+    }
+
+    public void jobFinished(String token) {
+        long position = 0;
+        synchronized (this) {
+            if (pendingJobs.remove(token) != null) {
+                position = append(new JournalEntry(
+                        JournalEntry.Type.JOB_FINISHED, token, null, null, null, null, null, clock.millis()));
+            }
+        }
+        sync(position);
+    }
+
+    /** Jobs that were submitted but not finished, in submission order */
+    public synchronized List<JournalEntry> pendingJobs() {
+        return List.copyOf(pendingJobs.values());
+    }
+
+    private void apply(JournalEntry entry) {
+        switch (entry.type()) {
+            case STEP_COMPLETED -> completedSteps
+                    .computeIfAbsent(entry.key(), k -> new LinkedHashMap<>())
+                    .put(entry.step(), Instant.ofEpochMilli(entry.timestamp()));
+            case OPERATION_COMPLETED -> completedSteps.remove(entry.key());
+            case JOB_SUBMITTED -> pendingJobs.put(entry.key(), entry);
+            case JOB_FINISHED -> pendingJobs.remove(entry.key());
+        }
+    }
+
+    private void load(Path path) throws IOException {
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            try {
+                apply(mapper.readValue(line, JournalEntry.class));
+            } catch (IOException e) {
+                // a crash while appending can leave a truncated last line
+                logger.warn("Skipping unreadable line {} of journal {}", lineNumber, path);
+            }
+        }
+    }
+
+    /** Rewrites the file with only the entries that are still relevant, synced to disk, and returns its size */
+    private long compact() throws IOException {
+        Instant threshold = clock.instant().minus(stepTtl);
+        completedSteps.values().forEach(steps -> steps.values().removeIf(at -> at.isBefore(threshold)));
+        completedSteps.values().removeIf(Map::isEmpty);
+        StringBuilder content = new StringBuilder();
+        completedSteps.forEach((key, steps) -> steps.forEach((step, at) -> content.append(toLine(new JournalEntry(
+                        JournalEntry.Type.STEP_COMPLETED, key, step, null, null, null, null, at.toEpochMilli())))
+                .append('\n')));
+        pendingJobs.values().forEach(entry -> content.append(toLine(entry)).append('\n'));
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+        long size = buffer.remaining();
+        try (FileChannel out = FileChannel.open(
+                tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    /** Compacts the file once it grew past the threshold. Must be called holding the journal lock */
+    private void compactIfTooLarge() {
+        if (fileSize < compactAt) return;
+        synchronized (syncLock) {
+            try {
+                long size = compact();
+                channel.close();
+                channel = openForAppend();
+                logger.info("Journal {} compacted from {} to {} bytes", path, fileSize, size);
+                fileSize = size;
+                // the compacted file holds every entry appended so far
+                synced = appended;
+            } catch (IOException e) {
+                logger.error("Failed to compact the journal {}", path, e);
+            }
+            // a journal whose live entries alone are near the threshold is not compacted on every append
+            compactAt = Math.max(compactThreshold, 2 * fileSize);
+        }
+    }
+
+    /**
+     * Writes the entry to the file, without syncing it. Must be called holding the journal lock
+     *
+     * @return the position {@link #sync(long)} has to reach for the entry to be on disk, 0 if it wasn't written
+     */
+    private long append(JournalEntry entry) {
+        if (channel == null) return 0;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap((toLine(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+            int length = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            fileSize += length;
+            appended += length;
+            long position = appended;
+            compactIfTooLarge();
+            return position;
+        } catch (IOException e) {
+            // losing an entry only means some work is repeated, it must not fail the provisioning
+            logger.error("Failed to append {} entry to the journal", entry.type(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Waits until the file is synced up to the position. Called without holding the journal lock: a single sync
+     * covers every entry appended before it started, so writers arriving meanwhile find their entry already synced
+     */
+    private void sync(long position) {
+        if (position == 0) return;
+        synchronized (syncLock) {
+            if (synced >= position) return;
+            long target = appended;
+            try {
+                channel.force(false);
+                synced = target;
+            } catch (IOException e) {
+                logger.error("Failed to sync the journal {}", path, e);
+            }
+        }
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /** Locks the journal for this instance, through a lock file that stays the same when the journal is compacted */
+    private static FileChannel lock(Path path) throws IOException {
+        Path lockPath = path.resolveSibling(path.getFileName() + ".lock");
+        FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another instance within this process
+            lock = null;
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException(String.format(
+                    "The journal %s is in use by another instance. Every instance needs its own journal path", path));
+        }
+        return lockChannel;
+    }
+
+    private static String toLine(JournalEntry entry) {
+        try {
+            return mapper.writeValueAsString(entry);
+        } catch (IOException e) {
+            throw new IllegalStateException("Journal entries are always serializable", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            synchronized (syncLock) {
+                channel.close();
+            }
+            // closing the channel releases the lock
+            lockChannel.close();
+        }
+    }
+}
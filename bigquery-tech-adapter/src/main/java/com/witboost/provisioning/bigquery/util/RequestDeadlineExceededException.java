@@ -0,0 +1,9 @@
+package com.witboost.provisioning.bigquery.util;
+
+/** Thrown when the deadline of the request expired before the work was done, so the remaining work is not started */
+public class RequestDeadlineExceededException extends RuntimeException {
+
+    public RequestDeadlineExceededException(String message) {
+        super(message);
+    }
+}
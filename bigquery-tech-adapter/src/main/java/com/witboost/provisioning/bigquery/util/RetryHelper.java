@@ -1,44 +1,408 @@
 package com.witboost.provisioning.bigquery.util;
 
-import com.google.api.gax.rpc.AbortedException;
 import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig.Policy;
+import com.witboost.provisioning.bigquery.util.GcpErrorClassifier.ErrorClass;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
 public class RetryHelper {
     private final RetryConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService timer;
 
-    public RetryHelper(RetryConfig config) {
+    public RetryHelper(RetryConfig config, MeterRegistry meterRegistry) {
         this.config = config;
+        this.meterRegistry = meterRegistry;
+        var threadFactory = new CustomizableThreadFactory("gcp-retry-timer-");
+        threadFactory.setDaemon(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
     }
 
-    public <T> T retryOnAbortedException(Callable<T> fn) throws Exception {
-        int attempt = 0;
-        long totalWaited = 0L;
+    /** Tracks the attempts of a call and decides whether and when it is retried */
+    private final class Attempts {
+        private final RetryOperation operation;
+        private final Policy policy;
+        private final Optional<OperationContext> context;
+        private int attempt;
+        private long totalWaited;
+        private long previousSleep;
+
+        private Attempts(RetryOperation operation, Optional<OperationContext> context) {
+            this.operation = operation;
+            this.policy = policyFor(operation);
+            this.context = context;
+            this.previousSleep = policy.initialBackoffMs();
+        }
+
+        private void started() {
+            attempt++;
+        }
+
+        private void succeeded() {
+            recordAttempts(operation, attempt, "success");
+        }
+
+        /**
+         * Decides whether the failed attempt is retried
+         *
+         * @return the wait before the next attempt in milliseconds, or -1 if the call must fail with the error
+         */
+        private long nextDelay(Throwable e) {
+            var errorClass = GcpErrorClassifier.classify(e);
+            if (errorClass != ErrorClass.TRANSIENT && errorClass != ErrorClass.RATE_LIMITED) {
+                recordAttempts(operation, attempt, "failure");
+                return -1;
+            }
+            // quotas refill over seconds, so rate limited calls never retry sooner than twice the initial backoff
+            long floor = errorClass == ErrorClass.RATE_LIMITED
+                    ? Math.min(policy.initialBackoffMs() * 2, policy.maxBackoffMs())
+                    : policy.initialBackoffMs();
+            long sleepMs = decorrelatedJitter(floor, previousSleep, policy.maxBackoffMs());
+            String outcome = null;
+            if (attempt >= policy.maxAttempts() || totalWaited + sleepMs > policy.maxTotalWaitMs()) {
+                outcome = "exhausted";
+            } else if (context.flatMap(OperationContext::remainingTime)
+                    .map(remaining -> remaining.toMillis() <= sleepMs)
+                    .orElse(false)) {
+                // the next attempt would start after the deadline of the request
+                outcome = "deadline_exceeded";
+            } else if (!context.map(OperationContext::tryConsumeRetry).orElse(true)) {
+                outcome = "budget_exhausted";
+            }
+            if (outcome != null) {
+                retryCounter(operation, errorClass, outcome).increment();
+                recordAttempts(operation, attempt, "failure");
+                log.warn("Giving up {} call after {} attempts ({})", operation.configName(), attempt, outcome);
+                return -1;
+            }
+            retryCounter(operation, errorClass, "retried").increment();
+            retryWait(operation).record(sleepMs, TimeUnit.MILLISECONDS);
+            log.info(
+                    "Retrying {} call in {} ms after {} error (attempt {}): {}",
+                    operation.configName(),
+                    sleepMs,
+                    errorClass,
+                    attempt,
+                    e.getMessage());
+            totalWaited += sleepMs;
+            previousSleep = sleepMs;
+            return sleepMs;
+        }
+    }
+
+    /**
+     * Runs a GCP call, retrying it when it fails with a transient or rate limiting error.
+     *
+     * <p>Retries wait with exponential backoff and decorrelated jitter, within the attempts and the total wait
+     * allowed by the policy of the operation type. When the call is made for a request, every retry also consumes the
+     * retry budget of its {@link OperationContext}, so that a struggling request gives up instead of retrying each
+     * of its calls to the limit. No retry is scheduled past the deadline of the request either. Conflicts and
+     * permanent errors are rethrown immediately.
+     *
+     * <p>The attempts of each call are recorded in the {@code gcp.calls.attempts} metric, retries in
+     * {@code gcp.retry.attempts} and the time spent waiting in {@code gcp.retry.wait}.
+     *
+     * <p>This variant blocks the calling thread during the backoff, see {@link #retryAsync(RetryOperation, Supplier)}
+     * for the one that doesn't.
+     *
+     * @param operation type of the call, selecting the retry policy
+     * @param call the call to run
+     * @return the result of the first successful attempt
+     * @throws Exception the last error once the call can't be retried anymore
+     */
+    public <T> T retry(RetryOperation operation, Callable<T> call) throws Exception {
+        var attempts = new Attempts(operation, OperationContext.current());
+        while (true) {
+            attempts.started();
+            try {
+                T result = call.call();
+                attempts.succeeded();
+                return result;
+            } catch (Exception e) {
+                long delay = attempts.nextDelay(e);
+                if (delay < 0) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ie;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an asynchronous GCP call with the same retry policy as {@link #retry(RetryOperation, Callable)}, without
+     * holding any thread during the backoff: the next attempt is scheduled on a shared timer once the wait is over.
+     *
+     * <p>Attempts are started within the {@link OperationContext} of the caller, so they share its retry budget.
+     *
+     * @param operation type of the call, selecting the retry policy
+     * @param attempt starts an attempt of the call. It runs on the timer thread from the second attempt on, so it
+     *     must hand the blocking work over to an executor instead of doing it itself
+     * @return a future completed with the result of the first successful attempt, or with the last error once the
+     *     call can't be retried anymore
+     */
+    public <T> CompletableFuture<T> retryAsync(RetryOperation operation, Supplier<CompletableFuture<T>> attempt) {
+        var context = OperationContext.current();
+        var result = new CompletableFuture<T>();
+        runAttempt(new Attempts(operation, context), context, attempt, result);
+        return result;
+    }
+
+    private <T> void runAttempt(
+            Attempts attempts,
+            Optional<OperationContext> context,
+            Supplier<CompletableFuture<T>> attempt,
+            CompletableFuture<T> result) {
+        attempts.started();
+        CompletableFuture<T> future;
+        try (var ignored = context.map(OperationContext::enter).orElse(null)) {
+            future = attempt.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                attempts.succeeded();
+                result.complete(value);
+                return;
+            }
+            Throwable cause =
+                    error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            long delay = attempts.nextDelay(cause);
+            if (delay < 0) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            try {
+                timer.schedule(() -> runAttempt(attempts, context, attempt, result), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /** Tracks the attempts of a read-modify-write cycle and decides whether and when it is run again */
+    private final class ConflictAttempts {
+        private final String operation;
+        private final Policy policy;
+        private final Optional<OperationContext> context;
+        private int attempt;
+        private long totalWaited;
+        private long previousSleep;
+
+        private ConflictAttempts(String operation, Policy policy, Optional<OperationContext> context) {
+            this.operation = operation;
+            this.policy = policy;
+            this.context = context;
+            this.previousSleep = policy.initialBackoffMs();
+        }
+
+        /**
+         * Decides whether the cycle is run again after the error
+         *
+         * @return the wait before the next cycle in milliseconds, or -1 if the cycle must fail with the error
+         */
+        private long nextDelay(Throwable e) {
+            if (!isConflict(e)) {
+                return -1;
+            }
+            attempt++;
+            // concurrent writers retrying in lockstep would conflict again, so the cycles are spread with jitter
+            long sleepMs = decorrelatedJitter(policy.initialBackoffMs(), previousSleep, policy.maxBackoffMs());
+            String outcome = null;
+            if (attempt >= config.maxConflictAttempts() || totalWaited + sleepMs > policy.maxTotalWaitMs()) {
+                outcome = "exhausted";
+            } else if (context.flatMap(OperationContext::remainingTime)
+                    .map(remaining -> remaining.toMillis() <= sleepMs)
+                    .orElse(false)) {
+                outcome = "deadline_exceeded";
+            } else if (!context.map(OperationContext::tryConsumeRetry).orElse(true)) {
+                outcome = "budget_exhausted";
+            }
+            if (outcome != null) {
+                conflictCounter(operation, outcome).increment();
+                log.warn("Giving up {} after {} conflicting attempts ({})", operation, attempt, outcome);
+                return -1;
+            }
+            conflictCounter(operation, "retried").increment();
+            log.info(
+                    "Concurrent modification detected during {}, re-reading in {} ms (attempt {})",
+                    operation,
+                    sleepMs,
+                    attempt);
+            totalWaited += sleepMs;
+            previousSleep = sleepMs;
+            return sleepMs;
+        }
+    }
+
+    /**
+     * Runs a read-modify-write cycle, running it again from the read when the write is rejected because the
+     * resource changed in the meantime. The cycle must read the current state on every invocation so that the
+     * retried write merges the concurrent change instead of overwriting it.
+     *
+     * <p>Cycles are spread with exponential backoff and decorrelated jitter, taken from the policy of the operation
+     * type, so that concurrent writers of the same resource don't keep colliding. The cycle is run at most
+     * {@link RetryConfig#maxConflictAttempts()} times, never past the deadline of the request, and each new cycle
+     * consumes its retry budget.
+     *
+     * <p>Conflicts are counted in the {@code bigquery.write.conflicts} metric, tagged with the operation and
+     * whether the cycle was retried or gave up.
+     *
+     * @param operation name of the operation, used as metric tag
+     * @param policyOperation type of the calls of the cycle, selecting the backoff
+     * @param readModifyWrite the cycle to run
+     * @return the result of the first cycle that completes without conflicts
+     * @throws Exception the last conflict once the cycle can't be run again, or any other exception immediately
+     */
+    public <T> T retryOnConflict(String operation, RetryOperation policyOperation, Callable<T> readModifyWrite)
+            throws Exception {
+        var attempts = new ConflictAttempts(operation, policyFor(policyOperation), OperationContext.current());
         while (true) {
             try {
-                return fn.call();
-            } catch (AbortedException e) {
-                attempt++;
-                log.info("Retrying to call function with attempt {}", attempt);
-                long exp = Math.min(config.initialBackoffMs() * (1L << (attempt - 1)), config.maxBackoffMs());
-                long jitter = ThreadLocalRandom.current().nextLong(0, Math.max(1, exp / 4));
-                long sleepMs = Math.min(exp + jitter, config.maxBackoffMs());
-                if (totalWaited + sleepMs > config.maxTotalWaitMs()) {
+                return readModifyWrite.call();
+            } catch (Exception e) {
+                long delay = attempts.nextDelay(e);
+                if (delay < 0) {
                     throw e;
                 }
                 try {
-                    Thread.sleep(sleepMs);
+                    Thread.sleep(delay);
                 } catch (InterruptedException ie) {
                     Thread.currentThread().interrupt();
                     throw ie;
                 }
-                totalWaited += sleepMs;
             }
         }
     }
+
+    /**
+     * Runs an asynchronous read-modify-write cycle like {@link #retryOnConflict(String, RetryOperation, Callable)},
+     * scheduling the next cycle on the shared timer instead of holding a thread during the backoff
+     *
+     * @param readModifyWrite starts a cycle. It runs on the timer thread from the second cycle on, so it must hand
+     *     the blocking work over to an executor
+     */
+    public <T> CompletableFuture<T> retryOnConflictAsync(
+            String operation, RetryOperation policyOperation, Supplier<CompletableFuture<T>> readModifyWrite) {
+        var context = OperationContext.current();
+        var result = new CompletableFuture<T>();
+        runCycle(
+                new ConflictAttempts(operation, policyFor(policyOperation), context), context, readModifyWrite, result);
+        return result;
+    }
+
+    private <T> void runCycle(
+            ConflictAttempts attempts,
+            Optional<OperationContext> context,
+            Supplier<CompletableFuture<T>> readModifyWrite,
+            CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try (var ignored = context.map(OperationContext::enter).orElse(null)) {
+            future = readModifyWrite.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause =
+                    error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            long delay = attempts.nextDelay(cause);
+            if (delay < 0) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            try {
+                timer.schedule(
+                        () -> runCycle(attempts, context, readModifyWrite, result), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private static boolean isConflict(Throwable e) {
+        return GcpErrorClassifier.classify(e) == ErrorClass.CONFLICT;
+    }
+
+    private static long decorrelatedJitter(long floor, long previousSleep, long cap) {
+        long upper = Math.max(floor, previousSleep * 3);
+        return Math.min(cap, ThreadLocalRandom.current().nextLong(floor, upper + 1));
+    }
+
+    private Policy policyFor(RetryOperation operation) {
+        Policy override = config.operations().get(operation.configName());
+        if (override == null) {
+            return new Policy(
+                    config.maxAttempts(), config.initialBackoffMs(), config.maxBackoffMs(), config.maxTotalWaitMs());
+        }
+        return new Policy(
+                Objects.requireNonNullElse(override.maxAttempts(), config.maxAttempts()),
+                Objects.requireNonNullElse(override.initialBackoffMs(), config.initialBackoffMs()),
+                Objects.requireNonNullElse(override.maxBackoffMs(), config.maxBackoffMs()),
+                Objects.requireNonNullElse(override.maxTotalWaitMs(), config.maxTotalWaitMs()));
+    }
+
+    private void recordAttempts(RetryOperation operation, int attempts, String outcome) {
+        DistributionSummary.builder("gcp.calls.attempts")
+                .description("Attempts needed by GCP calls")
+                .tag("operation", operation.configName())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(attempts);
+    }
+
+    private Counter retryCounter(RetryOperation operation, ErrorClass errorClass, String outcome) {
+        return Counter.builder("gcp.retry.attempts")
+                .tag("operation", operation.configName())
+                .tag("error", errorClass.name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Timer retryWait(RetryOperation operation) {
+        return Timer.builder("gcp.retry.wait")
+                .description("Time spent waiting before retrying GCP calls")
+                .tag("operation", operation.configName())
+                .register(meterRegistry);
+    }
+
+    private Counter conflictCounter(String operation, String outcome) {
+        return Counter.builder("bigquery.write.conflicts")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,21 @@
+package com.witboost.provisioning.bigquery.util;
+
+/** Types of GCP calls, each with its own retry policy */
+public enum RetryOperation {
+    BIGQUERY_READ("bigquery-read"),
+    BIGQUERY_WRITE("bigquery-write"),
+    TABLE_IAM("table-iam"),
+    PROJECT_IAM("project-iam"),
+    RESOURCE_MANAGER_READ("resource-manager-read");
+
+    private final String configName;
+
+    RetryOperation(String configName) {
+        this.configName = configName;
+    }
+
+    /** Name used for the operation in the configuration and in metric tags */
+    public String configName() {
+        return configName;
+    }
+}
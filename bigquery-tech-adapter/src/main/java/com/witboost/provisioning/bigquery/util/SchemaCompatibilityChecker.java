@@ -0,0 +1,202 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.witboost.provisioning.bigquery.model.SchemaDifference;
+import com.witboost.provisioning.bigquery.model.SchemaDifference.Kind;
+import com.witboost.provisioning.model.Column;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks whether a schema can be used where another one exists: a view over a source table, or an update of an
+ * existing table. Both schemas are flattened once into their columns, nested {@code RECORD} fields included under
+ * their dotted path, and indexed by path. The checks are then a single pass over the columns, comparing names, types
+ * and modes. Column names are matched ignoring case, as BigQuery does.
+ *
+ * <p>Every method returns the list of differences found, which is empty when the schemas are compatible. Once a column
+ * is missing or has a different type, its nested fields are not reported. Descriptor columns can't declare nested
+ * fields, so a record matched by a descriptor column is compared as a whole and its existing fields are kept.
+ */
+public final class SchemaCompatibilityChecker {
+
+    private SchemaCompatibilityChecker() {}
+
+    /**
+     * Checks that every view column exists in the source table with the declared type and mode. A column without a
+     * declared type or mode matches any.
+     */
+    public static List<SchemaDifference> diffView(Schema sourceTableSchema, List<Column> viewColumns) {
+        return diffView(flatten(sourceTableSchema), fromColumns(viewColumns));
+    }
+
+    public static List<SchemaDifference> diffView(Schema sourceTableSchema, Schema viewSchema) {
+        return diffView(flatten(sourceTableSchema), flatten(viewSchema));
+    }
+
+    /**
+     * Checks that an existing table can be updated to the desired columns: no column can be removed or change type,
+     * a mode can only be relaxed from {@code REQUIRED} to {@code NULLABLE}, and added columns can't be {@code REQUIRED}.
+     * A column without a declared mode is {@code NULLABLE}, one without a declared type matches any.
+     */
+    public static List<SchemaDifference> diffTableUpdate(Schema existingSchema, List<Column> desiredColumns) {
+        return diffTableUpdate(flatten(existingSchema), fromColumns(desiredColumns));
+    }
+
+    public static List<SchemaDifference> diffTableUpdate(Schema existingSchema, Schema desiredSchema) {
+        return diffTableUpdate(flatten(existingSchema), flatten(desiredSchema));
+    }
+
+    private static List<SchemaDifference> diffView(List<Node> source, List<Node> view) {
+        Map<String, Node> sourceIndex = index(source);
+        List<SchemaDifference> differences = new ArrayList<>();
+        Set<String> skipped = new HashSet<>();
+        for (Node viewNode : view) {
+            if (skipped.contains(viewNode.parentKey())) {
+                skipped.add(viewNode.key());
+                continue;
+            }
+            Node sourceNode = sourceIndex.get(viewNode.key());
+            if (sourceNode == null) {
+                differences.add(new SchemaDifference(Kind.MISSING_COLUMN, viewNode.path(), null, null));
+                skipped.add(viewNode.key());
+            } else if (viewNode.type() != null && viewNode.type() != sourceNode.type()) {
+                differences.add(typeMismatch(viewNode, sourceNode));
+                skipped.add(viewNode.key());
+            } else if (viewNode.mode() != null && viewNode.mode() != modeOf(sourceNode)) {
+                differences.add(modeMismatch(viewNode.path(), viewNode.mode(), modeOf(sourceNode)));
+            }
+        }
+        return differences;
+    }
+
+    private static List<SchemaDifference> diffTableUpdate(List<Node> existing, List<Node> desired) {
+        Map<String, Node> existingIndex = index(existing);
+        Map<String, Node> desiredIndex = index(desired);
+        List<SchemaDifference> differences = new ArrayList<>();
+        Set<String> skipped = new HashSet<>();
+        for (Node existingNode : existing) {
+            if (skipped.contains(existingNode.parentKey())) {
+                skipped.add(existingNode.key());
+                continue;
+            }
+            Node desiredNode = desiredIndex.get(existingNode.key());
+            if (desiredNode == null) {
+                differences.add(new SchemaDifference(Kind.MISSING_COLUMN, existingNode.path(), null, null));
+                skipped.add(existingNode.key());
+            } else if (desiredNode.type() != null && desiredNode.type() != existingNode.type()) {
+                differences.add(typeMismatch(desiredNode, existingNode));
+                skipped.add(existingNode.key());
+            } else {
+                Field.Mode existingMode = modeOf(existingNode);
+                Field.Mode desiredMode = modeOf(desiredNode);
+                boolean relaxed = existingMode == Field.Mode.REQUIRED && desiredMode == Field.Mode.NULLABLE;
+                if (existingMode != desiredMode && !relaxed) {
+                    differences.add(modeMismatch(existingNode.path(), desiredMode, existingMode));
+                }
+                // a record declared without its fields, like a descriptor column, keeps the existing ones
+                if (!desiredNode.declaresFields()) {
+                    skipped.add(existingNode.key());
+                }
+            }
+        }
+        for (Node desiredNode : desired) {
+            boolean added = !existingIndex.containsKey(desiredNode.key());
+            // fields of an added record are part of its addition, so only the record itself is reported
+            boolean parentExists =
+                    desiredNode.parentKey().isEmpty() || existingIndex.containsKey(desiredNode.parentKey());
+            if (added && parentExists && desiredNode.mode() == Field.Mode.REQUIRED) {
+                differences.add(new SchemaDifference(Kind.REQUIRED_COLUMN_ADDED, desiredNode.path(), null, null));
+            }
+        }
+        return differences;
+    }
+
+    private static SchemaDifference typeMismatch(Node expected, Node actual) {
+        return new SchemaDifference(
+                Kind.TYPE_MISMATCH, expected.path(), String.valueOf(expected.type()), String.valueOf(actual.type()));
+    }
+
+    private static SchemaDifference modeMismatch(String path, Field.Mode expected, Field.Mode actual) {
+        return new SchemaDifference(Kind.MODE_MISMATCH, path, expected.name(), actual.name());
+    }
+
+    private static Field.Mode modeOf(Node node) {
+        return node.mode() == null ? Field.Mode.NULLABLE : node.mode();
+    }
+
+    private static Map<String, Node> index(List<Node> nodes) {
+        Map<String, Node> index = new HashMap<>(nodes.size() * 4 / 3 + 1);
+        for (Node node : nodes) {
+            index.putIfAbsent(node.key(), node);
+        }
+        return index;
+    }
+
+    /** Lists the columns of a schema and the fields of its records, every record right before its fields */
+    private static List<Node> flatten(Schema schema) {
+        List<Node> nodes = new ArrayList<>();
+        if (schema != null && schema.getFields() != null) {
+            flatten("", "", schema.getFields(), nodes);
+        }
+        return nodes;
+    }
+
+    private static void flatten(String parentPath, String parentKey, FieldList fields, List<Node> nodes) {
+        for (Field field : fields) {
+            String path = parentPath.isEmpty() ? field.getName() : parentPath + "." + field.getName();
+            String key = path.toLowerCase(Locale.ROOT);
+            StandardSQLTypeName type =
+                    field.getType() == null ? null : field.getType().getStandardType();
+            boolean declaresFields = field.getSubFields() != null;
+            nodes.add(new Node(path, key, parentKey, type, field.getMode(), declaresFields));
+            if (declaresFields) {
+                flatten(path, key, field.getSubFields(), nodes);
+            }
+        }
+    }
+
+    private static List<Node> fromColumns(List<Column> columns) {
+        List<Node> nodes = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            nodes.add(new Node(
+                    column.getName(),
+                    column.getName().toLowerCase(Locale.ROOT),
+                    "",
+                    DescriptorValidator.sqlTypeOf(column.getDataType()).orElse(null),
+                    column.getConstraint()
+                            .map(SchemaCompatibilityChecker::parseMode)
+                            .orElse(null),
+                    false));
+        }
+        return nodes;
+    }
+
+    private static Field.Mode parseMode(String constraint) {
+        for (Field.Mode mode : Field.Mode.values()) {
+            if (mode.name().equals(constraint)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A column or record field, with its path lowercased as key. Type and mode are null when not declared, and
+     * {@code declaresFields} is false when the nested fields are unknown, as for a descriptor column.
+     */
+    private record Node(
+            String path,
+            String key,
+            String parentKey,
+            StandardSQLTypeName type,
+            Field.Mode mode,
+            boolean declaresFields) {}
+}
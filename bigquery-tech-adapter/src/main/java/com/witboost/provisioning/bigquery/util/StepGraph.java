@@ -0,0 +1,185 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+
+import com.witboost.provisioning.framework.common.ErrorConstants;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.vavr.control.Either;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small dependency graph of provisioning steps.
+ *
+ * <p>Each step starts on the executor as soon as all the steps it depends on have succeeded, so independent branches
+ * run concurrently and the overall latency is the one of the critical path. A step whose dependencies failed is
+ * skipped. Once the deadline of the {@link OperationContext} expired, the steps not started yet are cancelled and
+ * reported as failed. {@link #run()} waits for every step and merges the problems of all the failed steps into a single
+ * {@link FailedOperation}.
+ */
+public class StepGraph {
+    private static final Logger logger = LoggerFactory.getLogger(StepGraph.class);
+
+    /** Handle of a step, used to declare dependencies and to read its result */
+    public static final class Step<T> {
+        private final String name;
+        private final CompletableFuture<Either<FailedOperation, T>> result;
+
+        private Step(String name, CompletableFuture<Either<FailedOperation, T>> result) {
+            this.name = name;
+            this.result = result;
+        }
+
+        public String name() {
+            return name;
+        }
+    }
+
+    /** Results of the steps, available to the steps depending on them and once the graph completed */
+    public static final class Results {
+        private Results() {}
+
+        public <T> T get(Step<T> step) {
+            return step.result.join().get();
+        }
+    }
+
+    private static final Either<FailedOperation, ?> SKIPPED = left(new FailedOperation("skipped", List.of()));
+
+    private final Executor executor;
+    private final List<Step<?>> steps = new ArrayList<>();
+    private final Results results = new Results();
+
+    public StepGraph(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a step without dependencies
+     *
+     * @param name name of the step, used for logging
+     * @param action the step to run
+     */
+    public <T> Step<T> step(String name, Supplier<Either<FailedOperation, T>> action) {
+        return step(name, List.of(), r -> action.get());
+    }
+
+    /**
+     * Adds a step running once all its dependencies succeeded
+     *
+     * @param name name of the step, used for logging
+     * @param dependsOn steps that must succeed before this one
+     * @param action the step to run, reading the results of its dependencies
+     */
+    public <T> Step<T> step(
+            String name, List<Step<?>> dependsOn, Function<Results, Either<FailedOperation, T>> action) {
+        return asyncStep(name, dependsOn, r -> CompletableFuture.completedFuture(action.apply(r)));
+    }
+
+    /**
+     * Adds a step running once all its dependencies succeeded, whose action starts a non-blocking operation. The
+     * executor thread is released as soon as the operation has been started, and the step completes with it.
+     *
+     * @param name name of the step, used for logging
+     * @param dependsOn steps that must succeed before this one
+     * @param action starts the step, reading the results of its dependencies
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Step<T> asyncStep(
+            String name,
+            List<Step<?>> dependsOn,
+            Function<Results, CompletableFuture<Either<FailedOperation, T>>> action) {
+        CompletableFuture<?>[] dependencies =
+                dependsOn.stream().map(d -> d.result).toArray(CompletableFuture[]::new);
+        // steps run on the executor threads within the context of the request that built the graph
+        Supplier<CompletableFuture<Either<FailedOperation, T>>> run = OperationContext.propagate(() -> {
+            if (dependsOn.stream().anyMatch(d -> d.result.join().isLeft())) {
+                logger.info("Skipping step {} since one of its dependencies failed", name);
+                return CompletableFuture.completedFuture((Either<FailedOperation, T>) SKIPPED);
+            }
+            var expiredContext = OperationContext.current().filter(OperationContext::isExpired);
+            if (expiredContext.isPresent()) {
+                logger.warn("Cancelling step {} since the request deadline expired", name);
+                return CompletableFuture.completedFuture(
+                        left(cancelled(expiredContext.get().deadlineExceeded(String.format("step '%s'", name)))));
+            }
+            logger.debug("Running step {}", name);
+            return startSafely(name, () -> action.apply(results));
+        });
+        CompletableFuture<Either<FailedOperation, T>> result =
+                CompletableFuture.allOf(dependencies).thenComposeAsync(ignored -> run.get(), executor);
+        Step<T> step = new Step<>(name, result);
+        steps.add(step);
+        return step;
+    }
+
+    /**
+     * Waits for all the steps to complete
+     *
+     * @return the results of the steps, or a failure with the problems of every failed step
+     */
+    public Either<FailedOperation, Results> run() {
+        List<FailedOperation> failures = new ArrayList<>();
+        for (Step<?> step : steps) {
+            Either<FailedOperation, ?> result = joinSafely(step);
+            if (result.isLeft() && result != SKIPPED) {
+                failures.add(result.getLeft());
+            }
+        }
+        if (failures.isEmpty()) {
+            return right(results);
+        }
+        if (failures.size() == 1) {
+            return left(failures.get(0));
+        }
+        return left(new FailedOperation(
+                failures.get(0).message(),
+                failures.stream().flatMap(f -> f.problems().stream()).toList()));
+    }
+
+    private static <T> CompletableFuture<Either<FailedOperation, T>> startSafely(
+            String name, Supplier<CompletableFuture<Either<FailedOperation, T>>> action) {
+        try {
+            return action.get().exceptionally(e -> left(unexpectedFailure(name, unwrap(e))));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(left(unexpectedFailure(name, e)));
+        }
+    }
+
+    private static Either<FailedOperation, ?> joinSafely(Step<?> step) {
+        try {
+            return step.result.join();
+        } catch (CompletionException e) {
+            return left(unexpectedFailure(step.name, unwrap(e)));
+        }
+    }
+
+    private static FailedOperation cancelled(RequestDeadlineExceededException e) {
+        return new FailedOperation(
+                "The request took too long and was cancelled",
+                List.of(new Problem(
+                        e.getMessage(),
+                        Optional.empty(),
+                        Set.of("Retry the operation later. If the problem persists, contact the platform team"))));
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static FailedOperation unexpectedFailure(String name, Throwable e) {
+        String error = String.format("Step '%s' failed unexpectedly: %s", name, e.getMessage());
+        logger.error(error, e);
+        return new FailedOperation(
+                "An unexpected error occurred",
+                List.of(new Problem(error, Optional.empty(), Set.of(ErrorConstants.PLATFORM_TEAM_SOLUTION))));
+    }
+}
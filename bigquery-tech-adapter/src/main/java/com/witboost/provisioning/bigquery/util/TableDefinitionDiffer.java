@@ -0,0 +1,115 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableDefinition;
+import com.google.cloud.bigquery.ViewDefinition;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compares the definition of an existing table or view with the desired one, so that writes which would not
+ * change anything can be skipped. Every method returns the list of differences found, which is empty when the
+ * existing resource already matches.
+ */
+public final class TableDefinitionDiffer {
+
+    private TableDefinitionDiffer() {}
+
+    public static List<String> diffView(Table existingView, String query, Schema schema, String description) {
+        List<String> differences = new ArrayList<>();
+        TableDefinition definition = existingView.getDefinition();
+        if (!(definition instanceof ViewDefinition viewDefinition)) {
+            differences.add("existing definition is not a view definition");
+            return differences;
+        }
+        if (!Objects.equals(normalize(viewDefinition.getQuery()), normalize(query))) {
+            differences.add("query changed");
+        }
+        if (!Boolean.FALSE.equals(viewDefinition.useLegacySql())) {
+            differences.add("view is not using standard SQL");
+        }
+        if (!Objects.equals(normalize(existingView.getDescription()), normalize(description))) {
+            differences.add("description changed");
+        }
+        // when no columns are declared, the view schema is entirely derived from the query
+        if (!schema.getFields().isEmpty()) {
+            diffFields("", fieldsOf(viewDefinition.getSchema()), schema.getFields(), differences);
+        }
+        return differences;
+    }
+
+    public static List<String> diffTable(Table existingTable, Schema schema) {
+        List<String> differences = new ArrayList<>();
+        TableDefinition definition = existingTable.getDefinition();
+        if (definition == null) {
+            differences.add("existing definition is not available");
+            return differences;
+        }
+        diffFields("", fieldsOf(definition.getSchema()), schema.getFields(), differences);
+        return differences;
+    }
+
+    private static void diffFields(String prefix, FieldList existing, FieldList desired, List<String> differences) {
+        if (existing.size() != desired.size()) {
+            differences.add(String.format(
+                    "%scolumn count changed from %d to %d",
+                    prefix.isEmpty() ? "" : prefix + ": ", existing.size(), desired.size()));
+            return;
+        }
+        for (int i = 0; i < desired.size(); i++) {
+            Field existingField = existing.get(i);
+            Field desiredField = desired.get(i);
+            String path = prefix + desiredField.getName();
+            if (!existingField.getName().equalsIgnoreCase(desiredField.getName())) {
+                differences.add(String.format("column %s replaced %s", path, prefix + existingField.getName()));
+                continue;
+            }
+            if (standardType(existingField) != standardType(desiredField)) {
+                differences.add(String.format("column %s type changed", path));
+            }
+            if (mode(existingField) != mode(desiredField)) {
+                differences.add(String.format("column %s mode changed", path));
+            }
+            if (!Objects.equals(normalize(existingField.getDescription()), normalize(desiredField.getDescription()))) {
+                differences.add(String.format("column %s description changed", path));
+            }
+            if (!Objects.equals(existingField.getPrecision(), desiredField.getPrecision())
+                    || !Objects.equals(existingField.getScale(), desiredField.getScale())
+                    || !Objects.equals(existingField.getMaxLength(), desiredField.getMaxLength())) {
+                differences.add(String.format("column %s precision, scale or length changed", path));
+            }
+            if (existingField.getSubFields() != null || desiredField.getSubFields() != null) {
+                diffFields(
+                        path + ".",
+                        orEmpty(existingField.getSubFields()),
+                        orEmpty(desiredField.getSubFields()),
+                        differences);
+            }
+        }
+    }
+
+    private static FieldList fieldsOf(Schema schema) {
+        return schema == null ? FieldList.of() : orEmpty(schema.getFields());
+    }
+
+    private static FieldList orEmpty(FieldList fields) {
+        return fields == null ? FieldList.of() : fields;
+    }
+
+    private static StandardSQLTypeName standardType(Field field) {
+        return field.getType() == null ? null : field.getType().getStandardType();
+    }
+
+    private static Field.Mode mode(Field field) {
+        return field.getMode() == null ? Field.Mode.NULLABLE : field.getMode();
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.strip();
+    }
+}
@@ -0,0 +1,87 @@
+package com.witboost.provisioning.bigquery.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.config.TableMetadataCacheConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-through cache of table metadata keyed by {@link TableId}.
+ *
+ * <p>Entries younger than {@link TableMetadataCacheConfig#ttl()} are served as they are. Older entries are
+ * revalidated by fetching only the table etag: if it still matches, the cached metadata is reused, otherwise the
+ * full metadata is fetched again. Entries are dropped after {@link TableMetadataCacheConfig#maxAge()} regardless,
+ * and must be evicted by callers on every write to the table. Missing tables are never cached.
+ */
+@Slf4j
+@Component
+public class TableMetadataCache {
+
+    private record Entry(Table table, long validatedAtNanos) {}
+
+    private final Cache<TableId, Entry> entries;
+    private final long ttlNanos;
+    private final MeterRegistry meterRegistry;
+
+    public TableMetadataCache(TableMetadataCacheConfig config, MeterRegistry meterRegistry) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(config.maxSize())
+                .expireAfterWrite(config.maxAge())
+                .build();
+        this.ttlNanos = config.ttl().toNanos();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns the metadata of the table, using the cached copy when it is still valid
+     *
+     * @param bigQueryClient client used to fetch or revalidate the metadata
+     * @param tableId the table to look up
+     * @return the table metadata, or null if the table doesn't exist
+     */
+    public Table get(BigQuery bigQueryClient, TableId tableId) {
+        Entry entry = entries.getIfPresent(tableId);
+        if (entry != null) {
+            if (System.nanoTime() - entry.validatedAtNanos() < ttlNanos) {
+                record("hit");
+                return entry.table();
+            }
+            if (entry.table().getEtag() != null) {
+                Table probe = bigQueryClient.getTable(tableId, BigQuery.TableOption.fields(BigQuery.TableField.ETAG));
+                if (probe == null) {
+                    entries.invalidate(tableId);
+                    record("gone");
+                    return null;
+                }
+                if (Objects.equals(probe.getEtag(), entry.table().getEtag())) {
+                    entries.put(tableId, new Entry(entry.table(), System.nanoTime()));
+                    record("revalidated");
+                    return entry.table();
+                }
+            }
+            log.debug("Cached metadata of table {} is stale", tableId);
+            record("stale");
+        } else {
+            record("miss");
+        }
+        Table table = bigQueryClient.getTable(tableId);
+        if (table != null) {
+            entries.put(tableId, new Entry(table, System.nanoTime()));
+        }
+        return table;
+    }
+
+    public void evict(TableId tableId) {
+        entries.invalidate(tableId);
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("bigquery.table.metadata.cache", "result", result).increment();
+    }
+}
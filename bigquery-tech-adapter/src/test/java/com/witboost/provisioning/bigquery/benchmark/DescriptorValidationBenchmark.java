@@ -0,0 +1,95 @@
+package com.witboost.provisioning.bigquery.benchmark;
+
+import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
+import com.witboost.provisioning.bigquery.model.Iam;
+import com.witboost.provisioning.bigquery.model.IamScope;
+import com.witboost.provisioning.bigquery.model.ScopedIamRole;
+import com.witboost.provisioning.bigquery.util.DescriptorValidator;
+import com.witboost.provisioning.model.Column;
+import com.witboost.provisioning.model.common.Problem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the local {@link DescriptorValidator} checks on a storage descriptor which passes them and on one where every
+ * column has a problem, so the cost of the stage that runs before any remote call is known for large schemas.
+ *
+ * <p>See the Benchmarks section of the README on how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorValidationBenchmark {
+
+    private static final String[] TYPES = {"STRING", "INT64", "NUMERIC", "TIMESTAMP", "BOOL", "DATE"};
+
+    @Param({"100", "10000"})
+    private int columns;
+
+    private BigQueryStorageSpecific valid;
+    private BigQueryStorageSpecific invalid;
+
+    @Setup
+    public void setup() {
+        valid = storage(false);
+        invalid = storage(true);
+    }
+
+    @Benchmark
+    public List<Problem> validDescriptor() {
+        return DescriptorValidator.validateStorage(valid);
+    }
+
+    @Benchmark
+    public List<Problem> invalidDescriptor() {
+        return DescriptorValidator.validateStorage(invalid);
+    }
+
+    private BigQueryStorageSpecific storage(boolean withProblems) {
+        List<Column> schema = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            var column = new Column();
+            column.setName(withProblems ? i + "_column" : "column_" + i);
+            column.setDataType(withProblems ? "VARCHAR" : TYPES[i % TYPES.length]);
+            if ("NUMERIC".equals(column.getDataType())) {
+                column.setPrecision(Optional.of(18));
+                column.setScale(Optional.of(4));
+            }
+            column.setConstraint(Optional.of(i % 2 == 0 ? "NULLABLE" : "REQUIRED"));
+            schema.add(column);
+        }
+        var specific = new BigQueryStorageSpecific();
+        specific.setProject("my-project");
+        specific.setDataset("my_dataset");
+        specific.setTableName("my_table");
+        specific.setSchema(schema);
+        specific.setIam(new Iam(List.of(new ScopedIamRole("roles/bigquery.dataOwner", IamScope.OWNER))));
+        return specific;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(DescriptorValidationBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.witboost.provisioning.bigquery.benchmark;
+
+import com.google.cloud.Identity;
+import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig;
+import com.witboost.provisioning.bigquery.util.PrincipalMappingRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Maps an {@code updateAcl} sized list of refs with the compiled {@link PrincipalMappingRules} and with the string
+ * checks they replaced. The principal cache and directory are left out, so only the mapping itself is measured.
+ *
+ * <p>See the Benchmarks section of the README on how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrincipalMappingBenchmark {
+
+    @Param({"1000", "50000"})
+    private int refs;
+
+    private List<String> subjects;
+    private PrincipalMappingRules rules;
+
+    @Setup
+    public void setup() {
+        subjects = new ArrayList<>(refs);
+        for (int i = 0; i < refs; i++) {
+            subjects.add(i % 10 == 0 ? "group:team-" + i : "user:name.surname" + i + "_example.com");
+        }
+        rules = PrincipalMappingRules.compile(new PrincipalMappingServiceConfig("@example.com", List.of()));
+    }
+
+    @Benchmark
+    public void compiledRules(Blackhole blackhole) {
+        for (String subject : subjects) {
+            blackhole.consume(rules.map(subject));
+        }
+    }
+
+    @Benchmark
+    public void stringChecks(Blackhole blackhole) {
+        for (String subject : subjects) {
+            blackhole.consume(mapWithStringChecks(subject));
+        }
+    }
+
+    /** The mapping done before the rules were introduced */
+    private static Identity mapWithStringChecks(String subject) {
+        if (subject.startsWith("user:")) {
+            String user = subject.substring(5);
+            int underscoreIndex = user.lastIndexOf("_");
+            return underscoreIndex == -1
+                    ? null
+                    : Identity.user(user.substring(0, underscoreIndex) + "@" + user.substring(underscoreIndex + 1));
+        } else if (subject.startsWith("group:")) {
+            return Identity.group(subject.substring(6) + "@example.com");
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(PrincipalMappingBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
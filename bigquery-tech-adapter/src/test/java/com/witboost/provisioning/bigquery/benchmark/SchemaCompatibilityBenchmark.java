@@ -0,0 +1,112 @@
+package com.witboost.provisioning.bigquery.benchmark;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.witboost.provisioning.bigquery.model.SchemaDifference;
+import com.witboost.provisioning.bigquery.util.SchemaCompatibilityChecker;
+import com.witboost.provisioning.model.Column;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the {@link SchemaCompatibilityChecker} checks on wide tables where every tenth column is a record nested three
+ * levels deep, next to the top-level name set comparison they replaced. The schemas are compatible, so every column
+ * is visited.
+ *
+ * <p>See the Benchmarks section of the README on how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaCompatibilityBenchmark {
+
+    private static final StandardSQLTypeName[] TYPES = {
+        StandardSQLTypeName.STRING, StandardSQLTypeName.INT64, StandardSQLTypeName.NUMERIC, StandardSQLTypeName.DATE
+    };
+
+    @Param({"1000", "10000"})
+    private int columns;
+
+    private Schema tableSchema;
+    private List<Column> descriptorColumns;
+
+    @Setup
+    public void setup() {
+        List<Field> fields = new ArrayList<>(columns);
+        descriptorColumns = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            String name = "column_" + i;
+            if (i % 10 == 0) {
+                fields.add(Field.newBuilder(name, StandardSQLTypeName.STRUCT, nested(name, 3))
+                        .setMode(Field.Mode.REPEATED)
+                        .build());
+                continue;
+            }
+            StandardSQLTypeName type = TYPES[i % TYPES.length];
+            fields.add(Field.of(name, type));
+            var column = new Column();
+            column.setName(name);
+            column.setDataType(type.name());
+            column.setConstraint(Optional.of("NULLABLE"));
+            descriptorColumns.add(column);
+        }
+        tableSchema = Schema.of(fields);
+    }
+
+    @Benchmark
+    public List<SchemaDifference> viewColumns() {
+        return SchemaCompatibilityChecker.diffView(tableSchema, descriptorColumns);
+    }
+
+    @Benchmark
+    public List<SchemaDifference> nestedTableUpdate() {
+        return SchemaCompatibilityChecker.diffTableUpdate(tableSchema, tableSchema);
+    }
+
+    /** The top-level name check done before the compatibility checker was introduced */
+    @Benchmark
+    public boolean nameSets() {
+        var viewColumnNames = descriptorColumns.stream().map(Column::getName).collect(Collectors.toSet());
+        var tableColumnNames =
+                tableSchema.getFields().stream().map(Field::getName).collect(Collectors.toSet());
+        return tableColumnNames.containsAll(viewColumnNames);
+    }
+
+    private static Field[] nested(String prefix, int depth) {
+        List<Field> fields = new ArrayList<>();
+        fields.add(Field.of(prefix + "_id", StandardSQLTypeName.INT64));
+        fields.add(Field.of(prefix + "_value", StandardSQLTypeName.STRING));
+        if (depth > 1) {
+            fields.add(Field.of(prefix + "_child", StandardSQLTypeName.STRUCT, nested(prefix + "_child", depth - 1)));
+        }
+        return fields.toArray(Field[]::new);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(SchemaCompatibilityBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
@@ -10,8 +10,8 @@ class ProvisionConfigurationBeanTest {
 
     @Test
     void beanCreation() {
-        var outputPort = new OutputPortProvisionService(null, null, null);
-        var storageArea = new StorageAreaProvisionService(null, null, null);
+        var outputPort = new OutputPortProvisionService(null, null, null, null);
+        var storageArea = new StorageAreaProvisionService(null, null, null, null, null);
         var bean = new ProvisionConfigurationBean().provisionConfiguration(outputPort, storageArea);
 
         assertEquals(outputPort, bean.getOutputPortProvisionService());
@@ -10,8 +10,8 @@ class ValidationConfigurationBeanTest {
 
     @Test
     void beanCreation() {
-        var outputPort = new OutputPortValidationService(null);
-        var storage = new StorageValidationService(null, null);
+        var outputPort = new OutputPortValidationService(null, null, null);
+        var storage = new StorageValidationService(null, null, null, null);
         var bean = new ValidationConfigurationBean().validationConfiguration(outputPort, storage);
 
         assertEquals(outputPort, bean.getOutputPortValidationService());
@@ -0,0 +1,221 @@
+package com.witboost.provisioning.bigquery.controller;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.witboost.provisioning.bigquery.config.AsyncProvisioningConfig;
+import com.witboost.provisioning.bigquery.model.AsyncProvisioningRequest;
+import com.witboost.provisioning.bigquery.model.AsyncUpdateAclRequest;
+import com.witboost.provisioning.bigquery.model.ProvisioningJob;
+import com.witboost.provisioning.bigquery.service.async.AsyncProvisioningService;
+import com.witboost.provisioning.bigquery.service.async.ProvisioningJobQueue;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class AsyncProvisioningFilterTest {
+
+    private final AsyncProvisioningService asyncProvisioningService = mock(AsyncProvisioningService.class);
+    private final ProvisioningJobQueue jobQueue = mock(ProvisioningJobQueue.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private AsyncProvisioningFilter filter(boolean enabled) {
+        return new AsyncProvisioningFilter(
+                new AsyncProvisioningConfig(enabled, 8, 1000, Duration.ofHours(1), Duration.ofMinutes(30)),
+                asyncProvisioningService,
+                jobQueue,
+                objectMapper);
+    }
+
+    private static MockHttpServletRequest post(String path, String body) {
+        var request = new MockHttpServletRequest("POST", path);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes());
+        return request;
+    }
+
+    private static ProvisioningJob job(ProvisioningJob.Status status) {
+        var job = new ProvisioningJob(
+                "token-1", "provision", ProvisioningJob.Status.QUEUED, Instant.now(), null, null, null, null);
+        return switch (status) {
+            case QUEUED -> job;
+            case RUNNING -> job.started(Instant.now());
+            case COMPLETED -> job.started(Instant.now())
+                    .completed(
+                            Instant.now(),
+                            ProvisionInfo.builder()
+                                    .publicInfo(Optional.of(Map.of("table", "t1")))
+                                    .build());
+            case FAILED -> job.started(Instant.now())
+                    .failed(Instant.now(), new FailedOperation("Provisioning failed", List.of(new Problem("boom"))));
+        };
+    }
+
+    @Test
+    void provisionIsAcceptedWithTheTokenOfTheJob() throws Exception {
+        when(asyncProvisioningService.provision(any())).thenReturn(right("token-1"));
+        var response = new MockHttpServletResponse();
+        var chain = new MockFilterChain();
+
+        filter(true)
+                .doFilter(
+                        post("/v1/provision", "{\"descriptorKind\":\"COMPONENT_DESCRIPTOR\",\"descriptor\":\"d1\"}"),
+                        response,
+                        chain);
+
+        assertEquals(202, response.getStatus());
+        assertEquals("\"token-1\"", response.getContentAsString());
+        assertNull(chain.getRequest());
+        verify(asyncProvisioningService).provision(new AsyncProvisioningRequest("d1", false));
+    }
+
+    @Test
+    void unprovisionAndUpdateAclReadTheBodiesOfTheApi() throws Exception {
+        when(asyncProvisioningService.unprovision(any())).thenReturn(right("token-1"));
+        when(asyncProvisioningService.updateAcl(any())).thenReturn(right("token-2"));
+
+        filter(true)
+                .doFilter(
+                        post("/v1/unprovision", "{\"descriptor\":\"d1\",\"removeData\":true}"),
+                        new MockHttpServletResponse(),
+                        new MockFilterChain());
+        filter(true)
+                .doFilter(
+                        post(
+                                "/v1/updateacl",
+                                "{\"refs\":[\"user:a_email.com\"],\"provisionInfo\":{\"request\":\"d2\",\"result\":\"\"}}"),
+                        new MockHttpServletResponse(),
+                        new MockFilterChain());
+
+        verify(asyncProvisioningService).unprovision(new AsyncProvisioningRequest("d1", true));
+        var captor = ArgumentCaptor.forClass(AsyncUpdateAclRequest.class);
+        verify(asyncProvisioningService).updateAcl(captor.capture());
+        assertEquals(new AsyncUpdateAclRequest(List.of("user:a_email.com"), "d2"), captor.getValue());
+    }
+
+    @Test
+    void requestsAreRejectedWhenTheQueueIsFull() throws Exception {
+        when(asyncProvisioningService.provision(any()))
+                .thenReturn(left(new FailedOperation(
+                        ProvisioningJobQueue.QUEUE_FULL_MESSAGE, List.of(new Problem("The queue is full")))));
+        var response = new MockHttpServletResponse();
+
+        filter(true).doFilter(post("/v1/provision", "{\"descriptor\":\"d1\"}"), response, new MockFilterChain());
+
+        assertEquals(503, response.getStatus());
+        var body = objectMapper.readTree(response.getContentAsString());
+        assertEquals(
+                ProvisioningJobQueue.QUEUE_FULL_MESSAGE, body.get("userMessage").asText());
+        assertEquals("The queue is full", body.get("errors").get(0).asText());
+    }
+
+    @Test
+    void malformedRequestsAreRejectedWithoutBeingQueued() throws Exception {
+        for (var request : List.of(
+                post("/v1/updateacl", "{\"provisionInfo\":{\"request\":\"d2\",\"result\":\"\"}}"),
+                post("/v1/updateacl", "{\"refs\":[1],\"provisionInfo\":{\"request\":\"d2\",\"result\":\"\"}}"),
+                post("/v1/provision", "{\"descriptor\":"),
+                post("/v1/unprovision", "[\"d1\"]"))) {
+            var response = new MockHttpServletResponse();
+            var chain = new MockFilterChain();
+
+            filter(true).doFilter(request, response, chain);
+
+            assertEquals(400, response.getStatus());
+            var body = objectMapper.readTree(response.getContentAsString());
+            assertEquals("The request is not valid", body.get("userMessage").asText());
+            assertEquals(1, body.get("errors").size());
+            assertNull(chain.getRequest());
+        }
+        verifyNoInteractions(asyncProvisioningService);
+    }
+
+    @Test
+    void invalidDescriptorsAreRejectedWithTheErrorsOfTheValidation() throws Exception {
+        when(asyncProvisioningService.provision(any()))
+                .thenReturn(left(new FailedOperation(
+                        "Validation failed", List.of(new Problem("The dataset name data-set is not valid")))));
+        var response = new MockHttpServletResponse();
+
+        filter(true).doFilter(post("/v1/provision", "{\"descriptor\":\"d1\"}"), response, new MockFilterChain());
+
+        assertEquals(400, response.getStatus());
+        var body = objectMapper.readTree(response.getContentAsString());
+        assertEquals("Validation failed", body.get("userMessage").asText());
+        assertEquals(
+                "The dataset name data-set is not valid",
+                body.get("errors").get(0).asText());
+    }
+
+    @Test
+    void statusIsReportedInTheFormatOfTheApi() throws Exception {
+        for (var status : ProvisioningJob.Status.values()) {
+            when(jobQueue.get("token-1")).thenReturn(Optional.of(job(status)));
+            var response = new MockHttpServletResponse();
+
+            filter(true)
+                    .doFilter(
+                            new MockHttpServletRequest("GET", "/v1/provision/token-1/status"),
+                            response,
+                            new MockFilterChain());
+
+            assertEquals(200, response.getStatus());
+            var body = objectMapper.readTree(response.getContentAsString());
+            switch (status) {
+                case QUEUED, RUNNING -> assertEquals(
+                        "RUNNING", body.get("status").asText());
+                case COMPLETED -> {
+                    assertEquals("COMPLETED", body.get("status").asText());
+                    assertEquals(
+                            "t1",
+                            body.get("info").get("publicInfo").get("table").asText());
+                }
+                case FAILED -> {
+                    assertEquals("FAILED", body.get("status").asText());
+                    assertTrue(body.get("result").asText().contains("boom"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void unknownTokensAndOtherRoutesAreLeftToTheFramework() throws Exception {
+        when(jobQueue.get("other")).thenReturn(Optional.empty());
+        var chain = new MockFilterChain();
+
+        filter(true)
+                .doFilter(
+                        new MockHttpServletRequest("GET", "/v1/provision/other/status"),
+                        new MockHttpServletResponse(),
+                        chain);
+
+        assertNotNull(chain.getRequest());
+        chain = new MockFilterChain();
+        filter(true).doFilter(post("/v1/validate", "{\"descriptor\":\"d1\"}"), new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void disabledFilterLeavesEveryRequestToTheFramework() throws Exception {
+        var chain = new MockFilterChain();
+
+        filter(false).doFilter(post("/v1/provision", "{\"descriptor\":\"d1\"}"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        verifyNoInteractions(asyncProvisioningService);
+    }
+}
@@ -0,0 +1,71 @@
+package com.witboost.provisioning.bigquery.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.witboost.provisioning.bigquery.config.RequestDeadlineConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.util.OperationContext;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class OperationContextFilterTest {
+
+    private final OperationContextFilter filter = new OperationContextFilter(
+            new RetryConfig(500, 8000, 120000, 5, 6, 30, Map.of()),
+            new RequestDeadlineConfig(
+                    Duration.ofMinutes(5), Duration.ofMinutes(30), "X-Request-Timeout", Duration.ofSeconds(60)));
+
+    private Duration timeoutFor(String header) {
+        var request = new MockHttpServletRequest();
+        if (header != null) {
+            request.addHeader("X-Request-Timeout", header);
+        }
+        return filter.timeoutOf(request);
+    }
+
+    @Test
+    void usesTheDefaultTimeoutWithoutHeader() {
+        assertEquals(Duration.ofMinutes(5), timeoutFor(null));
+    }
+
+    @Test
+    void usesTheTimeoutOfTheHeader() {
+        assertEquals(Duration.ofSeconds(90), timeoutFor("90"));
+        assertEquals(Duration.ofMinutes(2), timeoutFor("2m"));
+        assertEquals(Duration.ofSeconds(45), timeoutFor("PT45S"));
+    }
+
+    @Test
+    void capsTheTimeoutOfTheHeader() {
+        assertEquals(Duration.ofMinutes(30), timeoutFor("2h"));
+    }
+
+    @Test
+    void ignoresInvalidHeaders() {
+        assertEquals(Duration.ofMinutes(5), timeoutFor("soon"));
+        assertEquals(Duration.ofMinutes(5), timeoutFor("-10s"));
+        assertEquals(Duration.ofMinutes(5), timeoutFor("0"));
+    }
+
+    @Test
+    void runsTheRequestWithinAContextWithItsDeadline() throws Exception {
+        var request = new MockHttpServletRequest();
+        request.addHeader("X-Request-Timeout", "10s");
+        var remaining = new AtomicReference<Duration>();
+
+        filter.doFilter(
+                request,
+                new MockHttpServletResponse(),
+                (req, res) -> remaining.set(OperationContext.current()
+                        .flatMap(OperationContext::remainingTime)
+                        .orElseThrow()));
+
+        assertTrue(remaining.get().compareTo(Duration.ofSeconds(10)) <= 0);
+        assertTrue(remaining.get().compareTo(Duration.ofSeconds(5)) > 0);
+        assertTrue(OperationContext.current().isEmpty());
+    }
+}
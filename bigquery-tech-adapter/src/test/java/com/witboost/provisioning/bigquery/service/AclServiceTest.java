@@ -1,25 +1,47 @@
 package com.witboost.provisioning.bigquery.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import com.google.api.gax.rpc.UnaryCallable;
 import com.google.cloud.Identity;
 import com.google.cloud.Policy;
+import com.google.cloud.Role;
 import com.google.cloud.bigquery.*;
 import com.google.cloud.resourcemanager.v3.ProjectsClient;
 import com.google.iam.v1.Binding;
 import com.google.iam.v1.GetIamPolicyRequest;
 import com.google.iam.v1.SetIamPolicyRequest;
+import com.witboost.provisioning.bigquery.config.CircuitBreakerConfig;
+import com.witboost.provisioning.bigquery.config.GcpCallsConfig;
+import com.witboost.provisioning.bigquery.config.IamWriteCoalescerConfig;
+import com.witboost.provisioning.bigquery.config.RateLimitConfig;
+import com.witboost.provisioning.bigquery.config.RequestDeadlineConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.util.GcpCallDeadline;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.GcpRateLimiter;
+import com.witboost.provisioning.bigquery.util.IamWriteCoalescer;
+import com.witboost.provisioning.bigquery.util.ProjectCircuitBreaker;
 import com.witboost.provisioning.bigquery.util.RetryHelper;
 import com.witboost.provisioning.framework.common.ErrorConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,15 +53,49 @@ public class AclServiceTest {
     @Mock
     private Function<String, BigQuery> bigQueryClientSupplier;
 
-    @Mock
-    private RetryHelper retryHelper;
+    @Spy
+    private RetryHelper retryHelper =
+            new RetryHelper(new RetryConfig(10, 50, 1000, 3, 3, 20, Map.of()), new SimpleMeterRegistry());
 
     @Mock
     private ProjectsClient projectsClient;
 
+    @Mock
+    private UnaryCallable<GetIamPolicyRequest, com.google.iam.v1.Policy> getIamPolicyCallable;
+
+    @Mock
+    private UnaryCallable<SetIamPolicyRequest, com.google.iam.v1.Policy> setIamPolicyCallable;
+
+    @Spy
+    private GcpCallDeadline callDeadline = new GcpCallDeadline(new RequestDeadlineConfig(
+            Duration.ofMinutes(5), Duration.ofMinutes(30), "X-Request-Timeout", Duration.ofSeconds(60)));
+
+    @Spy
+    private IamWriteCoalescer iamWriteCoalescer =
+            new IamWriteCoalescer(new IamWriteCoalescerConfig(Duration.ZERO), new SimpleMeterRegistry());
+
+    @Spy
+    private GcpCallExecutor gcpCallExecutor = new GcpCallExecutor(
+            new GcpCallsConfig(4, Duration.ofSeconds(5), 64, 2),
+            new ProjectCircuitBreaker(
+                    new CircuitBreakerConfig(true, 20, 10, 50, Duration.ofSeconds(30), 3), new SimpleMeterRegistry()),
+            Executors.newCachedThreadPool(),
+            false,
+            new SimpleMeterRegistry());
+
+    @Spy
+    private GcpRateLimiter rateLimiter = new GcpRateLimiter(
+            new RateLimitConfig(true, 1000, 1000, 1000, 1000, 1000, 1000, 1000), new SimpleMeterRegistry());
+
     @InjectMocks
     private AclService aclService;
 
+    @BeforeEach
+    void stubProjectPolicyCallables() {
+        lenient().when(projectsClient.getIamPolicyCallable()).thenReturn(getIamPolicyCallable);
+        lenient().when(projectsClient.setIamPolicyCallable()).thenReturn(setIamPolicyCallable);
+    }
+
     private final BigQueryException ex = new BigQueryException(401, "Unauthorized");
     private final String project = "project";
     private final String dataset = "dataset";
@@ -121,22 +177,87 @@ public class AclServiceTest {
         });
     }
 
+    @Test
+    public void testSetRoleMembersReplacesMembersInSingleWrite() {
+        Role role = Role.of(roles.get(0));
+        Policy currentPolicy = Policy.newBuilder()
+                .addIdentity(role, Identity.user("old@example.com"))
+                .addIdentity(Role.owner(), Identity.user("owner@example.com"))
+                .setEtag("etag-1")
+                .build();
+        when(bigQueryClientSupplier.apply(any())).thenReturn(bigQueryClient);
+        when(bigQueryClient.getIamPolicy(any())).thenReturn(currentPolicy);
+        when(bigQueryClient.setIamPolicy(any(), any())).thenReturn(currentPolicy);
+
+        var actualRes = aclService.setRoleMembers(roles.get(0), principals, tableOrViewId);
+
+        assertTrue(actualRes.isRight());
+        assertTrue(actualRes.get());
+        var captor = org.mockito.ArgumentCaptor.forClass(Policy.class);
+        verify(bigQueryClient, times(1)).getIamPolicy(tableOrViewId);
+        verify(bigQueryClient, times(1)).setIamPolicy(eq(tableOrViewId), captor.capture());
+        assertEquals("etag-1", captor.getValue().getEtag());
+        assertEquals(Set.copyOf(principals), captor.getValue().getBindings().get(role));
+        assertEquals(
+                Set.of(Identity.user("owner@example.com")),
+                captor.getValue().getBindings().get(Role.owner()));
+    }
+
+    @Test
+    public void testSetRoleMembersSkipsWriteWhenUnchanged() throws Exception {
+        Policy currentPolicy = Policy.newBuilder()
+                .addIdentity(Role.of(roles.get(0)), principals.get(0))
+                .build();
+        when(bigQueryClientSupplier.apply(any())).thenReturn(bigQueryClient);
+        when(bigQueryClient.getIamPolicy(any())).thenReturn(currentPolicy);
+
+        var actualRes = aclService.setRoleMembers(roles.get(0), principals, tableOrViewId);
+
+        assertTrue(actualRes.isRight());
+        assertFalse(actualRes.get());
+        verify(bigQueryClient, never()).setIamPolicy(any(), any());
+        verify(rateLimiter, never()).acquireTableWrite(any());
+    }
+
+    @Test
+    public void testSetRoleMembersRetriesOnConcurrentPolicyChange() {
+        when(bigQueryClientSupplier.apply(any())).thenReturn(bigQueryClient);
+        when(bigQueryClient.getIamPolicy(any())).thenReturn(emptyPolicy);
+        when(bigQueryClient.setIamPolicy(any(), any()))
+                .thenThrow(new BigQueryException(412, "Precondition Failed"))
+                .thenReturn(emptyPolicy);
+
+        var actualRes = aclService.setRoleMembers(roles.get(0), principals, tableOrViewId);
+
+        assertTrue(actualRes.isRight());
+        verify(bigQueryClient, times(2)).getIamPolicy(tableOrViewId);
+        verify(bigQueryClient, times(2)).setIamPolicy(eq(tableOrViewId), any());
+    }
+
+    @Test
+    public void testSetRoleMembersError() {
+        when(bigQueryClientSupplier.apply(any())).thenReturn(bigQueryClient);
+        when(bigQueryClient.getIamPolicy(any())).thenReturn(emptyPolicy);
+        when(bigQueryClient.setIamPolicy(any(), any())).thenThrow(ex);
+        String expectedDesc = "Failed to setup acls for table/view 'project.dataset.tableOrView': Unauthorized";
+
+        var actualRes = aclService.setRoleMembers(roles.get(0), principals, tableOrViewId);
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(1, actualRes.getLeft().problems().size());
+        assertEquals(expectedDesc, actualRes.getLeft().problems().get(0).description());
+    }
+
     @Test
     public void testApplyProjectAclsOk() throws Exception {
         com.google.iam.v1.Policy emptyIamPolicy =
                 com.google.iam.v1.Policy.newBuilder().build();
-        when(projectsClient.getIamPolicy(any(GetIamPolicyRequest.class))).thenReturn(emptyIamPolicy);
-        doAnswer(invocation -> {
-                    var callable = invocation.getArgument(0, java.util.concurrent.Callable.class);
-                    return callable.call();
-                })
-                .when(retryHelper)
-                .retryOnAbortedException(any());
+        when(getIamPolicyCallable.call(any(GetIamPolicyRequest.class), any())).thenReturn(emptyIamPolicy);
 
         var actualRes = aclService.applyProjectAcls(project, roles, members);
 
         assertTrue(actualRes.isRight());
-        verify(projectsClient).setIamPolicy(any(SetIamPolicyRequest.class));
+        verify(setIamPolicyCallable).call(any(SetIamPolicyRequest.class), any());
     }
 
     @Test
@@ -149,19 +270,13 @@ public class AclServiceTest {
                         .addMembers(existingMember)
                         .build())
                 .build();
-        when(projectsClient.getIamPolicy(any(GetIamPolicyRequest.class))).thenReturn(existingPolicy);
-        doAnswer(invocation -> {
-                    var callable = invocation.getArgument(0, java.util.concurrent.Callable.class);
-                    return callable.call();
-                })
-                .when(retryHelper)
-                .retryOnAbortedException(any());
+        when(getIamPolicyCallable.call(any(GetIamPolicyRequest.class), any())).thenReturn(existingPolicy);
 
         var actualRes = aclService.applyProjectAcls(project, roles, members);
 
         assertTrue(actualRes.isRight());
         var captor = org.mockito.ArgumentCaptor.forClass(SetIamPolicyRequest.class);
-        verify(projectsClient).setIamPolicy(captor.capture());
+        verify(setIamPolicyCallable).call(captor.capture(), any());
         var setPolicy = captor.getValue().getPolicy();
         var bindingForRole = setPolicy.getBindingsList().stream()
                 .filter(b -> b.getRole().equals(role))
@@ -173,13 +288,7 @@ public class AclServiceTest {
 
     @Test
     public void testApplyProjectAclsError() throws Exception {
-        doAnswer(invocation -> {
-                    var callable = invocation.getArgument(0, java.util.concurrent.Callable.class);
-                    return callable.call();
-                })
-                .when(retryHelper)
-                .retryOnAbortedException(any());
-        when(projectsClient.getIamPolicy(any(GetIamPolicyRequest.class)))
+        when(getIamPolicyCallable.call(any(GetIamPolicyRequest.class), any()))
                 .thenThrow(new RuntimeException("Permission denied"));
         String expectedDesc = "Failed to setup project IAM roles for 'project': Permission denied";
 
@@ -194,4 +303,102 @@ public class AclServiceTest {
             p.solutions().forEach(s -> assertEquals(expectedSolution, s));
         });
     }
+
+    @Test
+    public void testGrantDatasetReadersOk() {
+        var datasetId = DatasetId.of(project, dataset);
+        var group = Identity.group("consumers@example.com");
+        Acl existing = Acl.of(new Acl.User("owner@example.com"), Acl.Role.OWNER);
+        Dataset currentDataset = mock(Dataset.class);
+        Dataset.Builder builder = mock(Dataset.Builder.class);
+        Dataset updatedDataset = mock(Dataset.class);
+        when(bigQueryClientSupplier.apply(project)).thenReturn(bigQueryClient);
+        when(bigQueryClient.getDataset(datasetId)).thenReturn(currentDataset);
+        when(currentDataset.getAcl()).thenReturn(List.of(existing));
+        when(currentDataset.toBuilder()).thenReturn(builder);
+        when(builder.setAcl(any())).thenReturn(builder);
+        when(builder.build()).thenReturn(updatedDataset);
+
+        var actualRes = aclService.grantDatasetReaders(datasetId, List.of(group));
+
+        assertTrue(actualRes.isRight());
+        verify(builder).setAcl(List.of(existing, Acl.of(new Acl.Group("consumers@example.com"), Acl.Role.READER)));
+        verify(bigQueryClient).update(updatedDataset);
+    }
+
+    @Test
+    public void testGrantDatasetReadersAlreadyGranted() {
+        var datasetId = DatasetId.of(project, dataset);
+        Dataset currentDataset = mock(Dataset.class);
+        when(bigQueryClientSupplier.apply(project)).thenReturn(bigQueryClient);
+        when(bigQueryClient.getDataset(datasetId)).thenReturn(currentDataset);
+        when(currentDataset.getAcl())
+                .thenReturn(List.of(Acl.of(new Acl.Group("consumers@example.com"), Acl.Role.READER)));
+
+        var actualRes = aclService.grantDatasetReaders(datasetId, List.of(Identity.group("consumers@example.com")));
+
+        assertTrue(actualRes.isRight());
+        verify(bigQueryClient, never()).update(any(DatasetInfo.class));
+    }
+
+    @Test
+    public void testRevokeDatasetReadersRetriesOnConcurrentChange() {
+        var datasetId = DatasetId.of(project, dataset);
+        Acl reader = Acl.of(new Acl.Group("consumers@example.com"), Acl.Role.READER);
+        Dataset currentDataset = mock(Dataset.class);
+        Dataset probe = mock(Dataset.class);
+        Dataset.Builder builder = mock(Dataset.Builder.class);
+        Dataset updatedDataset = mock(Dataset.class);
+        when(bigQueryClientSupplier.apply(project)).thenReturn(bigQueryClient);
+        when(bigQueryClient.getDataset(datasetId)).thenReturn(currentDataset);
+        when(bigQueryClient.getDataset(eq(datasetId), any(BigQuery.DatasetOption.class)))
+                .thenReturn(probe);
+        when(currentDataset.getAcl()).thenReturn(List.of(reader));
+        when(currentDataset.getEtag()).thenReturn("etag-1");
+        when(probe.getEtag()).thenReturn("etag-2", "etag-1");
+        when(currentDataset.toBuilder()).thenReturn(builder);
+        when(builder.setAcl(any())).thenReturn(builder);
+        when(builder.build()).thenReturn(updatedDataset);
+
+        var actualRes = aclService.revokeDatasetReaders(datasetId, List.of(Identity.group("consumers@example.com")));
+
+        assertTrue(actualRes.isRight());
+        verify(builder).setAcl(List.of());
+        verify(bigQueryClient, times(1)).update(updatedDataset);
+    }
+
+    @Test
+    public void testAuthorizeViewOnTheSourceDataset() {
+        var sourceDatasetId = DatasetId.of(project, dataset);
+        var viewId = TableId.of(project, "views", "view1");
+        Dataset currentDataset = mock(Dataset.class);
+        Dataset.Builder builder = mock(Dataset.Builder.class);
+        Dataset updatedDataset = mock(Dataset.class);
+        when(bigQueryClientSupplier.apply(project)).thenReturn(bigQueryClient);
+        when(bigQueryClient.getDataset(sourceDatasetId)).thenReturn(currentDataset);
+        when(currentDataset.getAcl()).thenReturn(List.of());
+        when(currentDataset.toBuilder()).thenReturn(builder);
+        when(builder.setAcl(any())).thenReturn(builder);
+        when(builder.build()).thenReturn(updatedDataset);
+
+        var actualRes = aclService.authorizeView(sourceDatasetId, viewId);
+
+        assertTrue(actualRes.isRight());
+        verify(builder).setAcl(List.of(Acl.of(new Acl.View(viewId))));
+        verify(bigQueryClient).update(updatedDataset);
+    }
+
+    @Test
+    public void testAuthorizeViewOnAMissingDatasetFails() {
+        var sourceDatasetId = DatasetId.of(project, dataset);
+        when(bigQueryClientSupplier.apply(project)).thenReturn(bigQueryClient);
+        when(bigQueryClient.getDataset(sourceDatasetId)).thenReturn(null);
+
+        var actualRes = aclService.authorizeView(sourceDatasetId, TableId.of(project, "views", "view1"));
+
+        assertTrue(actualRes.isLeft());
+        assertTrue(aclService
+                .removeViewAuthorization(sourceDatasetId, TableId.of(project, "views", "view1"))
+                .isRight());
+    }
 }
@@ -6,19 +6,36 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import com.google.cloud.bigquery.*;
+import com.witboost.provisioning.bigquery.config.CircuitBreakerConfig;
+import com.witboost.provisioning.bigquery.config.GcpCallsConfig;
+import com.witboost.provisioning.bigquery.config.RateLimitConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.config.TableMetadataCacheConfig;
 import com.witboost.provisioning.bigquery.model.CreateDatasetRequest;
 import com.witboost.provisioning.bigquery.model.CreateOrUpdateTableRequest;
 import com.witboost.provisioning.bigquery.model.CreateViewRequest;
 import com.witboost.provisioning.bigquery.model.DeleteTableRequest;
+import com.witboost.provisioning.bigquery.model.SchemaDifference;
+import com.witboost.provisioning.bigquery.model.TableUpsertResult;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.GcpRateLimiter;
+import com.witboost.provisioning.bigquery.util.ProjectCircuitBreaker;
+import com.witboost.provisioning.bigquery.util.RetryHelper;
+import com.witboost.provisioning.bigquery.util.TableMetadataCache;
 import com.witboost.provisioning.framework.common.ErrorConstants;
 import com.witboost.provisioning.model.Column;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +47,28 @@ public class BigQueryServiceTest {
     @Mock
     private Function<String, BigQuery> bigQueryClientSupplier;
 
+    @Spy
+    private TableMetadataCache tableMetadataCache = new TableMetadataCache(
+            new TableMetadataCacheConfig(Duration.ofSeconds(30), Duration.ofMinutes(10), 100),
+            new SimpleMeterRegistry());
+
+    @Spy
+    private RetryHelper retryHelper =
+            new RetryHelper(new RetryConfig(10, 50, 1000, 3, 3, 20, Map.of()), new SimpleMeterRegistry());
+
+    @Spy
+    private GcpCallExecutor gcpCallExecutor = new GcpCallExecutor(
+            new GcpCallsConfig(4, Duration.ofSeconds(5), 64, 2),
+            new ProjectCircuitBreaker(
+                    new CircuitBreakerConfig(true, 20, 10, 50, Duration.ofSeconds(30), 3), new SimpleMeterRegistry()),
+            Executors.newCachedThreadPool(),
+            false,
+            new SimpleMeterRegistry());
+
+    @Spy
+    private GcpRateLimiter rateLimiter = new GcpRateLimiter(
+            new RateLimitConfig(true, 1000, 1000, 1000, 1000, 1000, 1000, 1000), new SimpleMeterRegistry());
+
     @InjectMocks
     private BigQueryService bigQueryService;
 
@@ -58,6 +97,21 @@ public class BigQueryServiceTest {
         assertEquals(mockedTable, actualRes.get().get());
     }
 
+    @Test
+    public void testGetTableIsServedFromCacheUntilWritten() {
+        final Table mockedTable = mock(Table.class);
+        when(bigQueryClient.getTable(any(TableId.class))).thenReturn(mockedTable);
+        when(bigQueryClient.delete(any(TableId.class))).thenReturn(true);
+
+        bigQueryService.getTable(project, dataset, table);
+        bigQueryService.getTable(project, dataset, table);
+        verify(bigQueryClient, times(1)).getTable(any(TableId.class));
+
+        bigQueryService.deleteTable(new DeleteTableRequest(project, dataset, table));
+        bigQueryService.getTable(project, dataset, table);
+        verify(bigQueryClient, times(2)).getTable(any(TableId.class));
+    }
+
     @Test
     public void testGetTableNotExists() {
         when(bigQueryClient.getTable(any(TableId.class))).thenReturn(null);
@@ -170,7 +224,7 @@ public class BigQueryServiceTest {
     }
 
     @Test
-    public void testIsViewSchemaCompatibleWithSourceTableSchema_SchemasAreEquals() {
+    public void testDiffViewSchema_SchemasAreEquals() {
         Schema schema = Schema.of(
                 Field.of("stringField", StandardSQLTypeName.STRING),
                 Field.of("booleanField", StandardSQLTypeName.BOOL));
@@ -180,14 +234,14 @@ public class BigQueryServiceTest {
         column2.setName("booleanField");
         var viewColumnNames = List.of(column1, column2);
 
-        var actualRes = bigQueryService.isViewSchemaCompatibleWithSourceTableSchema(schema, viewColumnNames);
+        var actualRes = bigQueryService.diffViewSchema(schema, viewColumnNames);
 
         assertTrue(actualRes.isRight());
-        assertTrue(actualRes.get());
+        assertTrue(actualRes.get().isEmpty());
     }
 
     @Test
-    public void testIsViewSchemaCompatibleWithSourceTableSchema_SchemaIsSubset() {
+    public void testDiffViewSchema_SchemaIsSubset() {
         Schema schema = Schema.of(
                 Field.of("stringField", StandardSQLTypeName.STRING),
                 Field.of("booleanField", StandardSQLTypeName.BOOL));
@@ -195,14 +249,14 @@ public class BigQueryServiceTest {
         column1.setName("stringField");
         var viewColumnNames = List.of(column1);
 
-        var actualRes = bigQueryService.isViewSchemaCompatibleWithSourceTableSchema(schema, viewColumnNames);
+        var actualRes = bigQueryService.diffViewSchema(schema, viewColumnNames);
 
         assertTrue(actualRes.isRight());
-        assertTrue(actualRes.get());
+        assertTrue(actualRes.get().isEmpty());
     }
 
     @Test
-    public void testIsViewSchemaCompatibleWithSourceTableSchema_SchemasAreIncompatible() {
+    public void testDiffViewSchema_SchemasAreIncompatible() {
         Schema schema = Schema.of(
                 Field.of("stringField", StandardSQLTypeName.STRING),
                 Field.of("booleanField", StandardSQLTypeName.BOOL));
@@ -212,10 +266,13 @@ public class BigQueryServiceTest {
         column2.setName("aNotExistingColumnInTable");
         var viewColumnNames = List.of(column1, column2);
 
-        var actualRes = bigQueryService.isViewSchemaCompatibleWithSourceTableSchema(schema, viewColumnNames);
+        var actualRes = bigQueryService.diffViewSchema(schema, viewColumnNames);
 
         assertTrue(actualRes.isRight());
-        assertFalse(actualRes.get());
+        assertEquals(
+                List.of(new SchemaDifference(
+                        SchemaDifference.Kind.MISSING_COLUMN, "aNotExistingColumnInTable", null, null)),
+                actualRes.get());
     }
 
     @Test
@@ -230,7 +287,7 @@ public class BigQueryServiceTest {
         var actualRes = bigQueryService.createOrUpdateView(createViewRequest);
 
         assertTrue(actualRes.isRight());
-        assertEquals(mockedTable, actualRes.get());
+        assertEquals(mockedTable, actualRes.get().table());
         verify(bigQueryClient, times(1)).getTable(any(TableId.class));
         verify(bigQueryClient, times(1)).create(any(TableInfo.class));
         verify(bigQueryClient, times(1)).update(any(TableInfo.class));
@@ -247,12 +304,72 @@ public class BigQueryServiceTest {
         var actualRes = bigQueryService.createOrUpdateView(createViewRequest);
 
         assertTrue(actualRes.isRight());
-        assertEquals(mockedTable, actualRes.get());
+        assertEquals(mockedTable, actualRes.get().table());
         verify(bigQueryClient, times(1)).getTable(any(TableId.class));
         verify(bigQueryClient, never()).create(any(TableInfo.class));
         verify(bigQueryClient, times(1)).update(any(TableInfo.class));
     }
 
+    @Test
+    public void testCreateOrUpdateViewUnchanged() {
+        final Table existingView = mock(Table.class);
+        String query = "SELECT day, top_term FROM project.dataset.table";
+        Schema schema = Schema.of(
+                Field.newBuilder("day", StandardSQLTypeName.DATE)
+                        .setDescription("day description")
+                        .build(),
+                Field.newBuilder("top_term", StandardSQLTypeName.STRING)
+                        .setDescription("top_term description")
+                        .build());
+        when(existingView.getDefinition())
+                .thenReturn(ViewDefinition.newBuilder(query)
+                        .setSchema(schema)
+                        .setUseLegacySql(false)
+                        .build());
+        when(existingView.getDescription()).thenReturn(viewDescription);
+        when(bigQueryClient.getTable(any(TableId.class))).thenReturn(existingView);
+        CreateViewRequest createViewRequest =
+                new CreateViewRequest(project, dataset, table, view, viewDescription, viewSchemaWithColumns);
+
+        var actualRes = bigQueryService.createOrUpdateView(createViewRequest);
+
+        assertTrue(actualRes.isRight());
+        assertEquals(existingView, actualRes.get().table());
+        assertEquals(TableUpsertResult.Outcome.UNCHANGED, actualRes.get().outcome());
+        verify(bigQueryClient, never()).create(any(TableInfo.class));
+        verify(bigQueryClient, never()).update(any(TableInfo.class));
+    }
+
+    @Test
+    public void testCreateOrUpdateViewChangedDescriptionIsUpdated() {
+        final Table existingView = mock(Table.class);
+        final Table updatedView = mock(Table.class);
+        String query = "SELECT day, top_term FROM project.dataset.table";
+        Schema schema = Schema.of(
+                Field.newBuilder("day", StandardSQLTypeName.DATE)
+                        .setDescription("an old description")
+                        .build(),
+                Field.newBuilder("top_term", StandardSQLTypeName.STRING)
+                        .setDescription("top_term description")
+                        .build());
+        when(existingView.getDefinition())
+                .thenReturn(ViewDefinition.newBuilder(query)
+                        .setSchema(schema)
+                        .setUseLegacySql(false)
+                        .build());
+        when(existingView.getDescription()).thenReturn(viewDescription);
+        when(bigQueryClient.getTable(any(TableId.class))).thenReturn(existingView);
+        when(bigQueryClient.update(any(TableInfo.class))).thenReturn(updatedView);
+        CreateViewRequest createViewRequest =
+                new CreateViewRequest(project, dataset, table, view, viewDescription, viewSchemaWithColumns);
+
+        var actualRes = bigQueryService.createOrUpdateView(createViewRequest);
+
+        assertTrue(actualRes.isRight());
+        assertEquals(updatedView, actualRes.get().table());
+        assertEquals(TableUpsertResult.Outcome.UPDATED, actualRes.get().outcome());
+    }
+
     @Test
     public void testCreateOrUpdateViewError() {
         final Table mockedTable = mock(Table.class);
@@ -316,7 +433,7 @@ public class BigQueryServiceTest {
     }
 
     @Test
-    public void testIsTableSchemaCompatibleWithColumns_AllPresent() {
+    public void testDiffTableSchema_AllPresent() {
         Schema schema =
                 Schema.of(Field.of("col1", StandardSQLTypeName.STRING), Field.of("col2", StandardSQLTypeName.INT64));
         Column col1 = new Column();
@@ -325,28 +442,30 @@ public class BigQueryServiceTest {
         col2.setName("col2");
         List<Column> requiredColumns = List.of(col1, col2);
 
-        var actualRes = bigQueryService.isTableSchemaCompatibleWithColumns(schema, requiredColumns);
+        var actualRes = bigQueryService.diffTableSchema(schema, requiredColumns);
 
         assertTrue(actualRes.isRight());
-        assertTrue(actualRes.get());
+        assertTrue(actualRes.get().isEmpty());
     }
 
     @Test
-    public void testIsTableSchemaCompatibleWithColumns_MissingColumn() {
+    public void testDiffTableSchema_MissingColumn() {
         Schema schema =
                 Schema.of(Field.of("col1", StandardSQLTypeName.STRING), Field.of("col2", StandardSQLTypeName.INT64));
         Column col1 = new Column();
         col1.setName("col1");
         List<Column> requiredColumns = List.of(col1);
 
-        var actualRes = bigQueryService.isTableSchemaCompatibleWithColumns(schema, requiredColumns);
+        var actualRes = bigQueryService.diffTableSchema(schema, requiredColumns);
 
         assertTrue(actualRes.isRight());
-        assertFalse(actualRes.get());
+        assertEquals(
+                List.of(new SchemaDifference(SchemaDifference.Kind.MISSING_COLUMN, "col2", null, null)),
+                actualRes.get());
     }
 
     @Test
-    public void testIsTableSchemaCompatibleWithColumns_AllPresentAndAdded() {
+    public void testDiffTableSchema_AllPresentAndAdded() {
         Schema schema =
                 Schema.of(Field.of("col1", StandardSQLTypeName.STRING), Field.of("col2", StandardSQLTypeName.INT64));
         Column col1 = new Column();
@@ -357,15 +476,15 @@ public class BigQueryServiceTest {
         col3.setName("col3");
         List<Column> requiredColumns = List.of(col1, col2, col3);
 
-        var actualRes = bigQueryService.isTableSchemaCompatibleWithColumns(schema, requiredColumns);
+        var actualRes = bigQueryService.diffTableSchema(schema, requiredColumns);
 
         assertTrue(actualRes.isRight());
-        assertTrue(actualRes.get());
+        assertTrue(actualRes.get().isEmpty());
     }
 
     @Test
-    public void testIsTableSchemaCompatibleWithColumns_Error() {
-        var actualRes = bigQueryService.isTableSchemaCompatibleWithColumns(null, null);
+    public void testDiffTableSchema_Error() {
+        var actualRes = bigQueryService.diffTableSchema(null, null);
 
         assertTrue(actualRes.isLeft());
         assertEquals(1, actualRes.getLeft().problems().size());
@@ -410,6 +529,21 @@ public class BigQueryServiceTest {
         assertEquals(expectedDesc, actualRes.getLeft().problems().get(0).description());
     }
 
+    @Test
+    public void testCreateDatasetIfNotExists_RetriesTransientErrors() {
+        final Dataset createdDataset = mock(Dataset.class);
+        when(bigQueryClient.getDataset(any(DatasetId.class)))
+                .thenThrow(new BigQueryException(503, "Service unavailable"))
+                .thenReturn(null);
+        when(bigQueryClient.create(any(DatasetInfo.class))).thenReturn(createdDataset);
+
+        var actualRes = bigQueryService.createDatasetIfNotExists(new CreateDatasetRequest(project, dataset));
+
+        assertTrue(actualRes.isRight());
+        assertEquals(createdDataset, actualRes.get());
+        verify(bigQueryClient, times(2)).getDataset(any(DatasetId.class));
+    }
+
     @Test
     public void testCreateOrUpdateTable_NewTable() {
         when(bigQueryClient.getTable(any(TableId.class))).thenReturn(null);
@@ -420,11 +554,12 @@ public class BigQueryServiceTest {
         var actualRes = bigQueryService.createOrUpdateTable(request);
 
         assertTrue(actualRes.isRight());
-        assertEquals(mockedTable, actualRes.get());
+        assertEquals(mockedTable, actualRes.get().table());
+        assertEquals(TableUpsertResult.Outcome.CREATED, actualRes.get().outcome());
     }
 
     @Test
-    public void testCreateOrUpdateTable_UpdateExisting() {
+    public void testCreateOrUpdateTable_UpdateExisting() throws Exception {
         final Table existingTable = mock(Table.class);
         final Table.Builder tableBuilder = mock(Table.Builder.class);
         final Table updatedTableBuilt = mock(Table.class);
@@ -441,13 +576,63 @@ public class BigQueryServiceTest {
         var actualRes = bigQueryService.createOrUpdateTable(request);
 
         assertTrue(actualRes.isRight());
-        assertEquals(updatedTableAfterUpdate, actualRes.get());
+        assertEquals(updatedTableAfterUpdate, actualRes.get().table());
+        assertEquals(TableUpsertResult.Outcome.UPDATED, actualRes.get().outcome());
 
         verify(bigQueryClient).getTable(TableId.of(project, dataset, table));
         verify(existingTable).toBuilder();
         verify(tableBuilder).setDefinition(any(StandardTableDefinition.class));
         verify(tableBuilder).build();
         verify(bigQueryClient).update(updatedTableBuilt);
+        verify(rateLimiter).acquireTableWrite(TableId.of(project, dataset, table));
+    }
+
+    @Test
+    public void testCreateOrUpdateTable_Unchanged() throws Exception {
+        final Table existingTable = mock(Table.class);
+        var column = new Column();
+        column.setName("col1");
+        column.setDataType("STRING");
+        when(existingTable.getDefinition())
+                .thenReturn(StandardTableDefinition.of(Schema.of(Field.of("col1", StandardSQLTypeName.STRING))));
+        when(bigQueryClient.getTable(any(TableId.class))).thenReturn(existingTable);
+
+        CreateOrUpdateTableRequest request = new CreateOrUpdateTableRequest(project, dataset, table, List.of(column));
+        var actualRes = bigQueryService.createOrUpdateTable(request);
+
+        assertTrue(actualRes.isRight());
+        assertEquals(existingTable, actualRes.get().table());
+        assertEquals(TableUpsertResult.Outcome.UNCHANGED, actualRes.get().outcome());
+        verify(bigQueryClient, never()).update(any(TableInfo.class));
+        verify(rateLimiter, never()).acquireTableWrite(any());
+    }
+
+    @Test
+    public void testCreateOrUpdateTable_ConcurrentModificationIsReReadAndMerged() {
+        final Table staleTable = mock(Table.class);
+        final Table freshTable = mock(Table.class);
+        final Table probe = mock(Table.class);
+        var column = new Column();
+        column.setName("col1");
+        column.setDataType("STRING");
+        when(staleTable.getEtag()).thenReturn("etag-1");
+        when(staleTable.getDefinition()).thenReturn(StandardTableDefinition.of(Schema.of()));
+        when(staleTable.toBuilder()).thenReturn(mock(Table.Builder.class, RETURNS_SELF));
+        when(probe.getEtag()).thenReturn("etag-2");
+        when(freshTable.getDefinition())
+                .thenReturn(StandardTableDefinition.of(Schema.of(Field.of("col1", StandardSQLTypeName.STRING))));
+        when(bigQueryClient.getTable(any(TableId.class))).thenReturn(staleTable, freshTable);
+        when(bigQueryClient.getTable(any(TableId.class), any(BigQuery.TableOption.class)))
+                .thenReturn(probe);
+
+        CreateOrUpdateTableRequest request = new CreateOrUpdateTableRequest(project, dataset, table, List.of(column));
+        var actualRes = bigQueryService.createOrUpdateTable(request);
+
+        assertTrue(actualRes.isRight());
+        assertEquals(freshTable, actualRes.get().table());
+        assertEquals(TableUpsertResult.Outcome.UNCHANGED, actualRes.get().outcome());
+        verify(bigQueryClient, times(2)).getTable(any(TableId.class));
+        verify(bigQueryClient, never()).update(any(TableInfo.class));
     }
 
     @Test
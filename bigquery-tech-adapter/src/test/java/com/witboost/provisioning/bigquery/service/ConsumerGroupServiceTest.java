@@ -0,0 +1,117 @@
+package com.witboost.provisioning.bigquery.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.cloud.Identity;
+import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.config.ConsumerGroupsConfig;
+import com.witboost.provisioning.bigquery.service.membership.GroupMembershipBackend;
+import com.witboost.provisioning.bigquery.service.membership.InMemoryGroupMembershipBackend;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class ConsumerGroupServiceTest {
+
+    @Spy
+    private ConsumerGroupsConfig config =
+            new ConsumerGroupsConfig(true, ConsumerGroupsConfig.Backend.IN_MEMORY, "consumers-", "example.com");
+
+    @Spy
+    private GroupMembershipBackend membershipBackend = new InMemoryGroupMembershipBackend();
+
+    @InjectMocks
+    private ConsumerGroupService consumerGroupService;
+
+    private final TableId viewId = TableId.of("project1", "dataset1", "View_Name1");
+    private final String group = "consumers-project1-dataset1-view_name1@example.com";
+    private final Identity user1 = Identity.user("user1@example.com");
+    private final Identity user2 = Identity.user("user2@example.com");
+    private final Identity user3 = Identity.user("user3@example.com");
+
+    @Test
+    public void testGroupOf() {
+        assertEquals(group, consumerGroupService.groupOf(viewId));
+
+        var longView = TableId.of("project1", "dataset1", "a".repeat(100));
+        var otherLongView = TableId.of("project1", "dataset1", "a".repeat(99) + "b");
+        String longGroup = consumerGroupService.groupOf(longView);
+        assertEquals(64 + "@example.com".length(), longGroup.length());
+        assertTrue(!longGroup.equals(consumerGroupService.groupOf(otherLongView)));
+    }
+
+    @Test
+    public void testSyncMembersAppliesOnlyTheDifferences() {
+        var created = consumerGroupService.syncMembers(viewId, List.of(user1, user2));
+        var updated = consumerGroupService.syncMembers(viewId, List.of(user2, user3));
+
+        assertEquals(Identity.group(group), created.get());
+        assertEquals(Identity.group(group), updated.get());
+        verify(membershipBackend).updateMembers(group, Set.of(user1, user2), Set.of());
+        verify(membershipBackend).updateMembers(group, Set.of(user3), Set.of(user1));
+        assertEquals(Set.of(user2, user3), membershipBackend.listMembers(group).get());
+    }
+
+    @Test
+    public void testSyncMembersSkipsUpToDateGroups() {
+        consumerGroupService.syncMembers(viewId, List.of(user1));
+        verify(membershipBackend).updateMembers(group, Set.of(user1), Set.of());
+
+        var actualRes = consumerGroupService.syncMembers(viewId, List.of(user1));
+
+        assertTrue(actualRes.isRight());
+        verify(membershipBackend, never()).updateMembers(group, Set.of(), Set.of());
+    }
+
+    @Test
+    public void testSyncMembersFailure() {
+        doThrow(new RuntimeException("Backend unavailable"))
+                .when(membershipBackend)
+                .listMembers(anyString());
+
+        var actualRes = consumerGroupService.syncMembers(viewId, List.of(user1));
+
+        assertTrue(actualRes.isLeft());
+        verify(membershipBackend, never()).updateMembers(anyString(), any(), any());
+    }
+
+    @Test
+    public void testRemoveAllMembersEmptiesTheGroup() {
+        consumerGroupService.syncMembers(viewId, List.of(user1, user2));
+
+        var actualRes = consumerGroupService.removeAllMembers(viewId);
+
+        assertTrue(actualRes.isRight());
+        verify(membershipBackend).updateMembers(group, Set.of(), Set.of(user1, user2));
+        assertEquals(Set.of(), membershipBackend.listMembers(group).get());
+    }
+
+    @Test
+    public void testRemoveAllMembersLeavesEmptyGroupsUntouched() {
+        var actualRes = consumerGroupService.removeAllMembers(viewId);
+
+        assertTrue(actualRes.isRight());
+        verify(membershipBackend, never()).updateMembers(anyString(), any(), any());
+    }
+
+    @Test
+    public void testGroupDomainIsRequiredWhenEnabled() {
+        assertThrows(
+                IllegalStateException.class,
+                () -> new ConsumerGroupService(
+                        new ConsumerGroupsConfig(true, ConsumerGroupsConfig.Backend.IN_MEMORY, "consumers-", null),
+                        membershipBackend));
+    }
+}
@@ -2,24 +2,52 @@ package com.witboost.provisioning.bigquery.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import com.google.cloud.Identity;
 import com.google.cloud.bigquery.BigQueryException;
+import com.witboost.provisioning.bigquery.config.PrincipalCacheConfig;
+import com.witboost.provisioning.bigquery.config.PrincipalDirectoryConfig;
 import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig;
+import com.witboost.provisioning.bigquery.service.directory.NoOpPrincipalDirectory;
+import com.witboost.provisioning.bigquery.service.directory.PrincipalDirectory;
+import com.witboost.provisioning.model.common.FailedOperation;
 import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vavr.control.Either;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
-import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
 public class GCPPrincipalMappingServiceTest {
 
-    @Mock
-    private PrincipalMappingServiceConfig principalMappingServiceConfig;
+    @Spy
+    private PrincipalMappingServiceConfig principalMappingServiceConfig =
+            new PrincipalMappingServiceConfig("@example.com", List.of());
+
+    @Spy
+    private PrincipalCacheConfig principalCacheConfig =
+            new PrincipalCacheConfig(100, Duration.ofHours(1), Duration.ofMinutes(5));
+
+    @Spy
+    private PrincipalDirectory principalDirectory = new NoOpPrincipalDirectory();
+
+    @Spy
+    private PrincipalDirectoryConfig principalDirectoryConfig =
+            new PrincipalDirectoryConfig(PrincipalDirectoryConfig.Type.NONE, null, 2, 1, Duration.ofSeconds(1));
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private GCPPrincipalMappingService principalMappingService;
@@ -42,7 +70,6 @@ public class GCPPrincipalMappingServiceTest {
 
     @Test
     public void testMapExistingGroup() {
-        when(principalMappingServiceConfig.groupMailDomain()).thenReturn("@example.com");
 
         var actualRes = principalMappingService.map(Collections.singleton(witboostGroupIdentity));
 
@@ -67,7 +94,6 @@ public class GCPPrincipalMappingServiceTest {
 
     @Test
     public void testMapExistingUserAndGroup() {
-        when(principalMappingServiceConfig.groupMailDomain()).thenReturn("@example.com");
 
         var actualRes = principalMappingService.map(Set.of(witboostUserIdentity, witboostGroupIdentity));
 
@@ -92,4 +118,83 @@ public class GCPPrincipalMappingServiceTest {
         assertEquals(1, actualRes.get(wrongUserIdentity).getLeft().problems().size());
         actualRes.get(wrongUserIdentity).getLeft().problems().forEach(p -> assertEquals(expectedWrongProblem, p));
     }
+
+    @Test
+    public void testMappingsAreCached() {
+        String wrongUserIdentity = "user:no-underscore.example.com";
+
+        principalMappingService.map(Set.of(witboostUserIdentity, witboostGroupIdentity, wrongUserIdentity));
+        var actualRes =
+                principalMappingService.map(Set.of(witboostUserIdentity, witboostGroupIdentity, wrongUserIdentity));
+
+        assertEquals(groupMail, actualRes.get(witboostGroupIdentity).get().getValue());
+        assertTrue(actualRes.get(wrongUserIdentity).isLeft());
+        verify(principalDirectory, times(1)).findExisting(any());
+        assertEquals(
+                3.0,
+                meterRegistry
+                        .get("cache.gets")
+                        .tag("cache", "principal.mappings")
+                        .tag("result", "hit")
+                        .functionCounter()
+                        .count());
+        assertEquals(3, principalMappingService.cachedMappings());
+    }
+
+    @Test
+    public void testInvalidatedMappingsAreResolvedAgain() {
+        principalMappingService.map(Set.of(witboostGroupIdentity));
+        principalMappingService.invalidate(witboostGroupIdentity);
+        var actualRes = principalMappingService.map(Set.of(witboostGroupIdentity));
+
+        assertEquals(groupMail, actualRes.get(witboostGroupIdentity).get().getValue());
+        verify(principalDirectory, times(2)).findExisting(Set.of(Identity.group(groupMail)));
+
+        principalMappingService.invalidateAll();
+        assertEquals(0, principalMappingService.cachedMappings());
+    }
+
+    @Test
+    public void testMissingIdentitiesAreRejected() {
+        doReturn(Either.right(Set.of(Identity.user(mail))))
+                .when(principalDirectory)
+                .findExisting(any());
+        Problem expectedMissingProblem = new Problem(
+                "The subject group:name is mapped to group:name@example.com, which doesn't exist in the directory");
+
+        var actualRes = principalMappingService.map(Set.of(witboostUserIdentity, witboostGroupIdentity));
+
+        assertTrue(actualRes.get(witboostUserIdentity).isRight());
+        assertTrue(actualRes.get(witboostGroupIdentity).isLeft());
+        assertEquals(
+                expectedMissingProblem,
+                actualRes.get(witboostGroupIdentity).getLeft().problems().get(0));
+        verify(principalDirectory).findExisting(Set.of(Identity.user(mail), Identity.group(groupMail)));
+    }
+
+    @Test
+    public void testIdentitiesAreLookedUpInBatches() {
+        var subjects = Set.of(witboostUserIdentity, witboostGroupIdentity, "user:other_example.com");
+
+        principalMappingService.map(subjects);
+        var actualRes = principalMappingService.map(subjects);
+
+        assertTrue(actualRes.values().stream().allMatch(Either::isRight));
+        verify(principalDirectory, times(2)).findExisting(any());
+    }
+
+    @Test
+    public void testDirectoryFailuresAreNotCached() {
+        var failure = new FailedOperation("Directory unavailable", Collections.singletonList(new Problem("Error")));
+        doReturn(Either.left(failure))
+                .doReturn(Either.right(Set.of(Identity.user(mail))))
+                .when(principalDirectory)
+                .findExisting(any());
+
+        var failedRes = principalMappingService.map(Set.of(witboostUserIdentity));
+        var actualRes = principalMappingService.map(Set.of(witboostUserIdentity));
+
+        assertEquals(failure, failedRes.get(witboostUserIdentity).getLeft());
+        assertEquals(mail, actualRes.get(witboostUserIdentity).get().getValue());
+    }
 }
@@ -6,14 +6,39 @@ import static org.mockito.Mockito.*;
 
 import com.google.api.gax.grpc.GrpcStatusCode;
 import com.google.api.gax.rpc.PermissionDeniedException;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.resourcemanager.v3.GetProjectRequest;
 import com.google.cloud.resourcemanager.v3.Project;
-import com.google.cloud.resourcemanager.v3.ProjectName;
 import com.google.cloud.resourcemanager.v3.ProjectsClient;
+import com.witboost.provisioning.bigquery.config.CircuitBreakerConfig;
+import com.witboost.provisioning.bigquery.config.GcpCallsConfig;
+import com.witboost.provisioning.bigquery.config.ProjectCacheConfig;
+import com.witboost.provisioning.bigquery.config.RateLimitConfig;
+import com.witboost.provisioning.bigquery.config.RequestDeadlineConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.util.GcpCallDeadline;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.GcpRateLimiter;
+import com.witboost.provisioning.bigquery.util.ProjectCircuitBreaker;
+import com.witboost.provisioning.bigquery.util.RetryHelper;
+import com.witboost.provisioning.model.common.FailedOperation;
 import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vavr.control.Either;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,13 +47,49 @@ public class ResourceManagerServiceTest {
     @Mock
     private ProjectsClient projectsClient;
 
+    @Mock
+    private UnaryCallable<GetProjectRequest, Project> getProjectCallable;
+
+    @Spy
+    private GcpCallDeadline callDeadline = new GcpCallDeadline(new RequestDeadlineConfig(
+            Duration.ofMinutes(5), Duration.ofMinutes(30), "X-Request-Timeout", Duration.ofSeconds(60)));
+
+    @Spy
+    private GcpCallExecutor gcpCallExecutor = new GcpCallExecutor(
+            new GcpCallsConfig(4, Duration.ofSeconds(5), 64, 2),
+            new ProjectCircuitBreaker(
+                    new CircuitBreakerConfig(true, 20, 10, 50, Duration.ofSeconds(30), 3), new SimpleMeterRegistry()),
+            Executors.newCachedThreadPool(),
+            false,
+            new SimpleMeterRegistry());
+
+    @Spy
+    private RetryHelper retryHelper =
+            new RetryHelper(new RetryConfig(10, 50, 1000, 3, 3, 20, Map.of()), new SimpleMeterRegistry());
+
+    @Spy
+    private GcpRateLimiter rateLimiter = new GcpRateLimiter(
+            new RateLimitConfig(true, 1000, 1000, 1000, 1000, 1000, 1000, 1000), new SimpleMeterRegistry());
+
+    @Spy
+    private ProjectCacheConfig projectCacheConfig =
+            new ProjectCacheConfig(100, Duration.ofHours(1), Duration.ofMinutes(5), Duration.ofMinutes(10));
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private ResourceManagerService resourceManagerService;
 
+    @BeforeEach
+    void stubProjectCallable() {
+        lenient().when(projectsClient.getProjectCallable()).thenReturn(getProjectCallable);
+    }
+
     @Test
     public void testIsProjectExisting_Exists() {
         Project mockedProject = mock(Project.class);
-        when(projectsClient.getProject(any(ProjectName.class))).thenReturn(mockedProject);
+        when(getProjectCallable.call(any(GetProjectRequest.class), any())).thenReturn(mockedProject);
 
         var actualRes = resourceManagerService.isProjectExisting("test-project");
 
@@ -38,7 +99,7 @@ public class ResourceManagerServiceTest {
 
     @Test
     public void testIsProjectExisting_PermissionDenied() {
-        when(projectsClient.getProject(any(ProjectName.class)))
+        when(getProjectCallable.call(any(GetProjectRequest.class), any()))
                 .thenThrow(new PermissionDeniedException(
                         "Access denied", new Exception(), GrpcStatusCode.of(Status.Code.PERMISSION_DENIED), false));
 
@@ -50,11 +111,109 @@ public class ResourceManagerServiceTest {
 
     @Test
     public void testIsProjectExisting_Error() {
-        when(projectsClient.getProject(any(ProjectName.class))).thenThrow(new RuntimeException("Some error"));
+        when(getProjectCallable.call(any(GetProjectRequest.class), any()))
+                .thenThrow(new RuntimeException("Some error"));
 
         var actualRes = resourceManagerService.isProjectExisting("test-project");
 
         assertTrue(actualRes.isLeft());
         assertEquals(1, actualRes.getLeft().problems().size());
     }
+
+    @Test
+    public void testIsProjectExisting_Cached() {
+        when(getProjectCallable.call(any(GetProjectRequest.class), any())).thenReturn(mock(Project.class));
+
+        assertTrue(resourceManagerService.isProjectExisting("test-project").get());
+        assertTrue(resourceManagerService.isProjectExisting("test-project").get());
+
+        verify(getProjectCallable, times(1)).call(any(GetProjectRequest.class), any());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("cache.gets")
+                        .tags("cache", "gcp.projects", "result", "hit")
+                        .functionCounter()
+                        .count());
+    }
+
+    @Test
+    public void testIsProjectExisting_NotExistingIsCachedForTheNegativeTtl() {
+        when(getProjectCallable.call(any(GetProjectRequest.class), any()))
+                .thenThrow(new PermissionDeniedException(
+                        "Access denied", new Exception(), GrpcStatusCode.of(Status.Code.PERMISSION_DENIED), false));
+
+        assertFalse(resourceManagerService.isProjectExisting("test-project").get());
+        assertFalse(resourceManagerService.isProjectExisting("test-project").get());
+        verify(getProjectCallable, times(1)).call(any(GetProjectRequest.class), any());
+
+        var withoutNegativeCaching =
+                service(new ProjectCacheConfig(100, Duration.ofHours(1), Duration.ZERO, Duration.ofMinutes(10)));
+        assertFalse(withoutNegativeCaching.isProjectExisting("test-project").get());
+        assertFalse(withoutNegativeCaching.isProjectExisting("test-project").get());
+        verify(getProjectCallable, times(3)).call(any(GetProjectRequest.class), any());
+    }
+
+    @Test
+    public void testIsProjectExisting_ErrorsAreNotCached() {
+        when(getProjectCallable.call(any(GetProjectRequest.class), any()))
+                .thenThrow(new RuntimeException("Some error"))
+                .thenReturn(mock(Project.class));
+
+        var firstRes = resourceManagerService.isProjectExisting("test-project");
+        var secondRes = resourceManagerService.isProjectExisting("test-project");
+
+        assertTrue(firstRes.isLeft());
+        assertTrue(firstRes.getLeft().problems().get(0).description().endsWith("Some error"));
+        assertTrue(secondRes.get());
+    }
+
+    @Test
+    public void testIsProjectExisting_ConcurrentLookupsShareOneCall() throws Exception {
+        var released = new CountDownLatch(1);
+        when(getProjectCallable.call(any(GetProjectRequest.class), any())).thenAnswer(invocation -> {
+            released.await(5, TimeUnit.SECONDS);
+            return mock(Project.class);
+        });
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Either<FailedOperation, Boolean>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> resourceManagerService.isProjectExisting("test-project")));
+            }
+            Thread.sleep(100);
+            released.countDown();
+            for (var result : results) {
+                assertTrue(result.get(5, TimeUnit.SECONDS).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(getProjectCallable, times(1)).call(any(GetProjectRequest.class), any());
+    }
+
+    @Test
+    public void testIsProjectExisting_HotProjectsAreRefreshedInTheBackground() throws Exception {
+        when(getProjectCallable.call(any(GetProjectRequest.class), any())).thenReturn(mock(Project.class));
+        var refreshing =
+                service(new ProjectCacheConfig(100, Duration.ofHours(1), Duration.ofMinutes(5), Duration.ofMillis(1)));
+
+        assertTrue(refreshing.isProjectExisting("test-project").get());
+        Thread.sleep(10);
+        assertTrue(refreshing.isProjectExisting("test-project").get());
+
+        verify(getProjectCallable, timeout(1000).times(2)).call(any(GetProjectRequest.class), any());
+    }
+
+    private ResourceManagerService service(ProjectCacheConfig config) {
+        return new ResourceManagerService(
+                projectsClient,
+                gcpCallExecutor,
+                retryHelper,
+                rateLimiter,
+                callDeadline,
+                config,
+                new SimpleMeterRegistry());
+    }
 }
@@ -0,0 +1,207 @@
+package com.witboost.provisioning.bigquery.service.async;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.witboost.provisioning.bigquery.config.AsyncProvisioningConfig;
+import com.witboost.provisioning.bigquery.config.JobJournalConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.model.AsyncProvisioningRequest;
+import com.witboost.provisioning.bigquery.model.AsyncUpdateAclRequest;
+import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
+import com.witboost.provisioning.bigquery.model.ProvisioningJob;
+import com.witboost.provisioning.bigquery.util.ProvisioningJournal;
+import com.witboost.provisioning.bigquery.util.ResourceUtils;
+import com.witboost.provisioning.framework.service.ProvisionConfiguration;
+import com.witboost.provisioning.framework.service.ProvisionService;
+import com.witboost.provisioning.framework.service.validation.ComponentValidationService;
+import com.witboost.provisioning.framework.service.validation.ValidationConfiguration;
+import com.witboost.provisioning.model.OperationType;
+import com.witboost.provisioning.model.StorageArea;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.request.AccessControlOperationRequest;
+import com.witboost.provisioning.model.request.ProvisionOperationRequest;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+class AsyncProvisioningServiceTest {
+
+    private final ProvisionService storageProvisionService = mock(ProvisionService.class);
+    private final ProvisionService outputPortProvisionService = mock(ProvisionService.class);
+    private final ComponentValidationService storageValidationService = mock(ComponentValidationService.class);
+    private final ComponentValidationService outputPortValidationService = mock(ComponentValidationService.class);
+    private ProvisioningJobQueue jobQueue;
+    private ProvisioningJournal journal;
+    private AsyncProvisioningService asyncProvisioningService;
+
+    @TempDir
+    Path journalDir;
+
+    @BeforeEach
+    void setUp() {
+        jobQueue = new ProvisioningJobQueue(
+                new AsyncProvisioningConfig(true, 2, 10, Duration.ofHours(1), Duration.ofMinutes(30)),
+                new RetryConfig(10, 50, 1000, 3, 3, 20, Map.of()),
+                new SimpleMeterRegistry());
+        journal = journalAt(journalDir.resolve("journal.jsonl"));
+        asyncProvisioningService = newService(journal);
+    }
+
+    private static ProvisioningJournal journalAt(Path path) {
+        return new ProvisioningJournal(
+                new JobJournalConfig(path.toString(), Duration.ofHours(1), DataSize.ofMegabytes(16)));
+    }
+
+    private AsyncProvisioningService newService(ProvisioningJournal journal) {
+        return new AsyncProvisioningService(
+                ProvisionConfiguration.builder()
+                        .storageProvisionService(storageProvisionService)
+                        .outputPortProvisionService(outputPortProvisionService)
+                        .build(),
+                ValidationConfiguration.builder()
+                        .storageValidationService(storageValidationService)
+                        .outputPortValidationService(outputPortValidationService)
+                        .build(),
+                jobQueue,
+                journal);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        jobQueue.shutdown();
+        journal.close();
+    }
+
+    private ProvisioningJob awaitDone(String token) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            var job = jobQueue.get(token).orElseThrow();
+            if (job.isDone()) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        fail("Job " + token + " did not complete");
+        return null;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void provisionValidatesAndProvisionsInTheBackground() throws Exception {
+        String descriptor = ResourceUtils.getContentFromResource("/pr_descriptor_bigquery_st.yml");
+        when(storageValidationService.validate(any(), eq(OperationType.PROVISION)))
+                .thenReturn(right(null));
+        when(storageProvisionService.provision(any()))
+                .thenReturn(right(ProvisionInfo.builder().build()));
+
+        var token = asyncProvisioningService.provision(new AsyncProvisioningRequest(descriptor, false));
+
+        assertTrue(token.isRight());
+        assertEquals(ProvisioningJob.Status.COMPLETED, awaitDone(token.get()).status());
+        var captor = ArgumentCaptor.forClass(ProvisionOperationRequest.class);
+        verify(storageProvisionService).provision(captor.capture());
+        var component = captor.getValue().getComponent().orElseThrow();
+        assertInstanceOf(StorageArea.class, component);
+        assertInstanceOf(BigQueryStorageSpecific.class, ((StorageArea<?>) component).getSpecific());
+        verifyNoInteractions(outputPortProvisionService);
+    }
+
+    @Test
+    void finishedJobsAreRemovedFromTheJournal() throws Exception {
+        String descriptor = ResourceUtils.getContentFromResource("/pr_descriptor_bigquery_st.yml");
+        when(storageValidationService.validate(any(), eq(OperationType.PROVISION)))
+                .thenReturn(right(null));
+        when(storageProvisionService.provision(any()))
+                .thenReturn(right(ProvisionInfo.builder().build()));
+
+        var token = asyncProvisioningService.provision(new AsyncProvisioningRequest(descriptor, false));
+
+        awaitDone(token.get());
+        assertTrue(journal.pendingJobs().isEmpty());
+    }
+
+    @Test
+    void jobsInterruptedByARestartAreResumedWithTheirToken() throws Exception {
+        String descriptor = ResourceUtils.getContentFromResource("/pr_descriptor_bigquery_st.yml");
+        journal.jobSubmitted("interrupted-token", "unprovision", descriptor, true, List.of());
+        journal.close();
+        when(storageValidationService.validate(any(), eq(OperationType.UNPROVISION)))
+                .thenReturn(right(null));
+        when(storageProvisionService.unprovision(any()))
+                .thenReturn(right(ProvisionInfo.builder().build()));
+
+        journal = journalAt(journalDir.resolve("journal.jsonl"));
+        newService(journal).resumePendingJobs();
+
+        assertEquals(
+                ProvisioningJob.Status.COMPLETED, awaitDone("interrupted-token").status());
+        var captor = ArgumentCaptor.forClass(ProvisionOperationRequest.class);
+        verify(storageProvisionService).unprovision(captor.capture());
+        assertTrue(captor.getValue().isRemoveData());
+        assertTrue(journal.pendingJobs().isEmpty());
+    }
+
+    @Test
+    void invalidRequestsAreRejectedBeforeBeingQueued() throws Exception {
+        String descriptor = ResourceUtils.getContentFromResource("/pr_descriptor_bigquery_st.yml");
+        when(storageValidationService.validate(any(), eq(OperationType.UNPROVISION)))
+                .thenReturn(left(new FailedOperation("invalid", List.of())));
+
+        var token = asyncProvisioningService.unprovision(new AsyncProvisioningRequest(descriptor, true));
+
+        assertTrue(token.isLeft());
+        assertEquals("invalid", token.getLeft().message());
+        assertTrue(journal.pendingJobs().isEmpty());
+        verify(storageProvisionService, never()).unprovision(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updateAclRunsOnTheOutputPortService() throws Exception {
+        String descriptor = ResourceUtils.getContentFromResource("/pr_descriptor_bigquery_op.yml");
+        when(outputPortProvisionService.updateAcl(any()))
+                .thenReturn(right(ProvisionInfo.builder().build()));
+
+        var token =
+                asyncProvisioningService.updateAcl(new AsyncUpdateAclRequest(List.of("user:a_email.com"), descriptor));
+
+        assertEquals(ProvisioningJob.Status.COMPLETED, awaitDone(token.get()).status());
+        var captor = ArgumentCaptor.forClass(AccessControlOperationRequest.class);
+        verify(outputPortProvisionService).updateAcl(captor.capture());
+        assertEquals(Set.of("user:a_email.com"), captor.getValue().getRefs());
+    }
+
+    @Test
+    void unsupportedComponentsAreRejectedImmediately() throws IOException {
+        String descriptor = ResourceUtils.getContentFromResource("/pr_descriptor_storage_wrong_componentKind.yml");
+
+        var token = asyncProvisioningService.provision(new AsyncProvisioningRequest(descriptor, false));
+
+        assertTrue(token.isLeft());
+        assertTrue(token.getLeft().problems().get(0).description().contains("kind 'wrong'"));
+    }
+
+    @Test
+    void missingComponentsAreRejectedImmediately() throws IOException {
+        String descriptor = ResourceUtils.getContentFromResource("/pr_descriptor_storage_missing_component.yml");
+
+        var token = asyncProvisioningService.unprovision(new AsyncProvisioningRequest(descriptor, true));
+
+        assertTrue(token.isLeft());
+        verifyNoInteractions(storageProvisionService);
+    }
+}
@@ -0,0 +1,133 @@
+package com.witboost.provisioning.bigquery.service.async;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.witboost.provisioning.bigquery.config.AsyncProvisioningConfig;
+import com.witboost.provisioning.bigquery.config.RetryConfig;
+import com.witboost.provisioning.bigquery.model.ProvisioningJob;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ProvisioningJobQueueTest {
+
+    private static final RetryConfig RETRY_CONFIG = new RetryConfig(10, 50, 1000, 3, 3, 20, Map.of());
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProvisioningJobQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    private ProvisioningJob awaitDone(String token) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            var job = queue.get(token).orElseThrow();
+            if (job.isDone()) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        fail("Job " + token + " did not complete");
+        return null;
+    }
+
+    @Test
+    void runsJobsInTheBackgroundAndTracksTheirStatus() throws Exception {
+        queue = new ProvisioningJobQueue(
+                new AsyncProvisioningConfig(true, 2, 10, Duration.ofHours(1), Duration.ofMinutes(30)),
+                RETRY_CONFIG,
+                meterRegistry);
+        var release = new CountDownLatch(1);
+        var info = ProvisionInfo.builder().build();
+
+        var token = queue.submit("provision", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return right(info);
+        });
+
+        assertTrue(token.isRight());
+        assertFalse(queue.get(token.get()).orElseThrow().isDone());
+        release.countDown();
+        var job = awaitDone(token.get());
+        assertEquals(ProvisioningJob.Status.COMPLETED, job.status());
+        assertEquals(info, job.info());
+        assertEquals(1, meterRegistry.get("provisioning.jobs.wait").timer().count());
+    }
+
+    @Test
+    void failedJobsKeepTheirError() throws Exception {
+        queue = new ProvisioningJobQueue(
+                new AsyncProvisioningConfig(true, 1, 10, Duration.ofHours(1), Duration.ofMinutes(30)),
+                RETRY_CONFIG,
+                meterRegistry);
+        var failure = new FailedOperation("error", List.of(new Problem("boom")));
+
+        var token = queue.submit("unprovision", () -> left(failure));
+
+        var job = awaitDone(token.get());
+        assertEquals(ProvisioningJob.Status.FAILED, job.status());
+        assertEquals(failure, job.error());
+    }
+
+    @Test
+    void rejectsJobsWhenTheQueueIsFull() throws Exception {
+        queue = new ProvisioningJobQueue(
+                new AsyncProvisioningConfig(true, 1, 1, Duration.ofHours(1), Duration.ofMinutes(30)),
+                RETRY_CONFIG,
+                meterRegistry);
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(1);
+        queue.submit("provision", () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return right(ProvisionInfo.builder().build());
+        });
+        started.await(5, TimeUnit.SECONDS);
+        queue.submit("provision", () -> right(ProvisionInfo.builder().build()));
+
+        var rejected =
+                queue.submit("provision", () -> right(ProvisionInfo.builder().build()));
+
+        assertTrue(rejected.isLeft());
+        assertEquals(ProvisioningJobQueue.QUEUE_FULL_MESSAGE, rejected.getLeft().message());
+        assertEquals(
+                1.0, meterRegistry.get("provisioning.jobs.queue.depth").gauge().value());
+        release.countDown();
+    }
+
+    @Test
+    void completedJobsAreEvictedAfterRetention() throws Exception {
+        queue = new ProvisioningJobQueue(
+                new AsyncProvisioningConfig(true, 1, 10, Duration.ZERO, Duration.ofMinutes(30)),
+                RETRY_CONFIG,
+                meterRegistry);
+        var token =
+                queue.submit("provision", () -> right(ProvisionInfo.builder().build()));
+        awaitDone(token.get());
+        Thread.sleep(5);
+
+        queue.submit("provision", () -> right(ProvisionInfo.builder().build()));
+
+        assertTrue(queue.get(token.get()).isEmpty());
+    }
+}
@@ -0,0 +1,59 @@
+package com.witboost.provisioning.bigquery.service.directory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.cloud.Identity;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FilePrincipalDirectoryTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private final Identity user = Identity.user("name.surname@example.com");
+    private final Identity group = Identity.group("dev@example.com");
+    private final Identity unknown = Identity.user("unknown@example.com");
+
+    @Test
+    public void testFindExisting() throws IOException {
+        Path file = Files.writeString(
+                tempDir.resolve("directory.txt"),
+                "# test directory\nuser:name.surname@example.com\n\n  group:dev@example.com  \n");
+        var directory = new FilePrincipalDirectory(file);
+
+        var actualRes = directory.findExisting(Set.of(user, group, unknown));
+
+        assertTrue(actualRes.isRight());
+        assertEquals(Set.of(user, group), actualRes.get());
+    }
+
+    @Test
+    public void testFileIsReadAgainWhenModified() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("directory.txt"), "user:name.surname@example.com\n");
+        var directory = new FilePrincipalDirectory(file);
+        assertEquals(Set.of(), directory.findExisting(Set.of(group)).get());
+
+        Files.writeString(file, "user:name.surname@example.com\ngroup:dev@example.com\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+
+        assertEquals(Set.of(group), directory.findExisting(Set.of(group)).get());
+    }
+
+    @Test
+    public void testMissingFile() {
+        var directory = new FilePrincipalDirectory(tempDir.resolve("missing.txt"));
+
+        var actualRes = directory.findExisting(Set.of(user));
+
+        assertTrue(actualRes.isLeft());
+        assertTrue(actualRes.getLeft().problems().get(0).description().contains("missing.txt"));
+    }
+}
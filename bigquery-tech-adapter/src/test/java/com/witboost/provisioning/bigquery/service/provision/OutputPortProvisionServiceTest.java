@@ -8,12 +8,17 @@ import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 import com.google.cloud.Identity;
+import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.model.AccessMode;
 import com.witboost.provisioning.bigquery.model.BigQueryOutputPortReverseProvisioningSpecific;
 import com.witboost.provisioning.bigquery.model.BigQueryOutputPortSpecific;
+import com.witboost.provisioning.bigquery.model.CreateViewRequest;
+import com.witboost.provisioning.bigquery.model.TableUpsertResult;
 import com.witboost.provisioning.bigquery.service.AclService;
 import com.witboost.provisioning.bigquery.service.BigQueryService;
+import com.witboost.provisioning.bigquery.service.ConsumerGroupService;
 import com.witboost.provisioning.bigquery.service.PrincipalMappingService;
 import com.witboost.provisioning.bigquery.util.ResourceUtils;
 import com.witboost.provisioning.model.Column;
@@ -32,6 +37,7 @@ import java.util.Optional;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -48,6 +54,9 @@ class OutputPortProvisionServiceTest {
     @Mock
     private AclService aclService;
 
+    @Mock
+    private ConsumerGroupService consumerGroupService;
+
     @InjectMocks
     private OutputPortProvisionService provisionService;
 
@@ -57,7 +66,8 @@ class OutputPortProvisionServiceTest {
     @Test
     void provisionOk() throws IOException {
         when(mockedView.getTableId()).thenReturn(viewId);
-        when(bigQueryService.createOrUpdateView(any())).thenReturn(right(mockedView));
+        when(bigQueryService.createOrUpdateView(any()))
+                .thenReturn(right(new TableUpsertResult(mockedView, TableUpsertResult.Outcome.CREATED)));
         when(principalMappingService.map(Set.of("user:name.surname_email.com", "group:dev")))
                 .thenReturn(Map.of(
                         "user:name.surname_email.com",
@@ -92,16 +102,70 @@ class OutputPortProvisionServiceTest {
         verifyNoInteractions(principalMappingService);
     }
 
+    @Test
+    void unprovisionWithConsumerGroupsEmptiesTheGroupOfTheView() throws IOException {
+        when(aclService.revokeRoles(anyList(), eq(viewId))).thenReturn(right(null));
+        when(consumerGroupService.isEnabled()).thenReturn(true);
+        when(consumerGroupService.removeAllMembers(viewId)).thenReturn(right(null));
+
+        var actualRes = provisionService.unprovision(getProvisionOperationRequest(false));
+
+        assertTrue(actualRes.isRight());
+        var inOrder = inOrder(aclService, consumerGroupService);
+        inOrder.verify(aclService).revokeRoles(anyList(), eq(viewId));
+        inOrder.verify(consumerGroupService).removeAllMembers(viewId);
+    }
+
+    @Test
+    void unprovisionFailsWhenTheGroupCantBeEmptied() throws IOException {
+        var failedOperation = new FailedOperation("Error", List.of(new Problem("Membership backend unavailable")));
+        when(aclService.revokeRoles(anyList(), eq(viewId))).thenReturn(right(null));
+        when(consumerGroupService.isEnabled()).thenReturn(true);
+        when(consumerGroupService.removeAllMembers(viewId)).thenReturn(left(failedOperation));
+
+        var actualRes = provisionService.unprovision(getProvisionOperationRequest(true));
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(failedOperation, actualRes.getLeft());
+        verifyNoInteractions(bigQueryService);
+    }
+
     @Test
     void updateAclOk() throws IOException {
-        when(aclService.revokeRoles(anyList(), any())).thenReturn(right(null));
         when(principalMappingService.map(Set.of("user:user1_email.com", "user:user2_email.com")))
                 .thenReturn(Map.of(
                         "user:user1_email.com",
                         right(Identity.user("user1@email.com")),
                         "user:user2_email.com",
                         right(Identity.user("user2@email.com"))));
-        when(aclService.applyAcls(anyList(), anyList(), any())).thenReturn(right(null));
+        when(aclService.setRoleMembers(anyString(), anyList(), any())).thenReturn(right(true));
+        var users = Set.of("user:user1_email.com", "user:user2_email.com");
+        var provisionOperationRequest = getProvisionOperationRequest(false);
+        var updateAclRequest = new AccessControlOperationRequest<>(
+                provisionOperationRequest.getDataProduct(), provisionOperationRequest.getComponent(), users);
+
+        var actualRes = provisionService.updateAcl(updateAclRequest);
+
+        assertTrue(actualRes.isRight());
+        verify(aclService, never()).revokeRoles(anyList(), any());
+    }
+
+    @Test
+    void updateAclWithConsumerGroupOk() throws IOException {
+        var consumers = List.of(Identity.user("user1@email.com"), Identity.user("user2@email.com"));
+        var group = Identity.group("witboost-consumers-project1-dataset1-viewname1@email.com");
+        when(principalMappingService.map(Set.of("user:user1_email.com", "user:user2_email.com")))
+                .thenReturn(Map.of(
+                        "user:user1_email.com",
+                        right(consumers.get(0)),
+                        "user:user2_email.com",
+                        right(consumers.get(1))));
+        when(consumerGroupService.isEnabled()).thenReturn(true);
+        when(consumerGroupService.syncMembers(
+                        eq(viewId), argThat(ids -> Set.copyOf(ids).equals(Set.copyOf(consumers)))))
+                .thenReturn(right(group));
+        when(aclService.setRoleMembers("roles/bigquery.dataViewer", List.of(group), viewId))
+                .thenReturn(right(false));
         var users = Set.of("user:user1_email.com", "user:user2_email.com");
         var provisionOperationRequest = getProvisionOperationRequest(false);
         var updateAclRequest = new AccessControlOperationRequest<>(
@@ -112,6 +176,100 @@ class OutputPortProvisionServiceTest {
         assertTrue(actualRes.isRight());
     }
 
+    @Test
+    void updateAclWithConsumerGroupFailure() throws IOException {
+        var failedOperation = new FailedOperation("Error", List.of(new Problem("Membership backend unavailable")));
+        when(principalMappingService.map(Set.of("user:user1_email.com")))
+                .thenReturn(Map.of("user:user1_email.com", right(Identity.user("user1@email.com"))));
+        when(consumerGroupService.isEnabled()).thenReturn(true);
+        when(consumerGroupService.syncMembers(eq(viewId), anyList())).thenReturn(left(failedOperation));
+        var provisionOperationRequest = getProvisionOperationRequest(false);
+        var updateAclRequest = new AccessControlOperationRequest<>(
+                provisionOperationRequest.getDataProduct(),
+                provisionOperationRequest.getComponent(),
+                Set.of("user:user1_email.com"));
+
+        var actualRes = provisionService.updateAcl(updateAclRequest);
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(failedOperation, actualRes.getLeft());
+        verifyNoInteractions(aclService);
+    }
+
+    private ProvisionOperationRequest<Specific, BigQueryOutputPortSpecific> getDatasetModeProvisionOperationRequest(
+            boolean removeData) throws IOException {
+        var provisionOperationRequest = getProvisionOperationRequest(removeData);
+        var specific = provisionOperationRequest.getComponent().get().getSpecific();
+        specific.setAccessMode(AccessMode.DATASET);
+        specific.setViewDataset("views1");
+        return provisionOperationRequest;
+    }
+
+    @Test
+    void provisionWithDatasetAccessModeAuthorizesTheViewOnTheSourceDataset() throws IOException {
+        var datasetModeViewId = TableId.of("project1", "views1", "viewName1");
+        when(mockedView.getTableId()).thenReturn(datasetModeViewId);
+        when(bigQueryService.createOrUpdateView(any()))
+                .thenReturn(right(new TableUpsertResult(mockedView, TableUpsertResult.Outcome.CREATED)));
+        when(principalMappingService.map(anySet()))
+                .thenReturn(Map.of("group:dev", right(Identity.group("dev@email.com"))));
+        when(aclService.applyAcls(anyList(), anyList(), any())).thenReturn(right(null));
+        when(aclService.authorizeView(DatasetId.of("project1", "dataset1"), datasetModeViewId))
+                .thenReturn(right(null));
+        when(aclService.setRoleMembers("roles/bigquery.dataViewer", List.of(), datasetModeViewId))
+                .thenReturn(right(false));
+
+        var actualRes = provisionService.provision(getDatasetModeProvisionOperationRequest(false));
+
+        assertTrue(actualRes.isRight());
+        var captor = ArgumentCaptor.forClass(CreateViewRequest.class);
+        verify(bigQueryService).createOrUpdateView(captor.capture());
+        assertEquals("dataset1", captor.getValue().dataset());
+        assertEquals("views1", captor.getValue().viewDataset());
+    }
+
+    @Test
+    void updateAclWithDatasetAccessModeOk() throws IOException {
+        var datasetModeViewId = TableId.of("project1", "views1", "viewName1");
+        var group = Identity.group("witboost-consumers-project1-views1-viewname1@email.com");
+        when(principalMappingService.map(Set.of("user:user1_email.com")))
+                .thenReturn(Map.of("user:user1_email.com", right(Identity.user("user1@email.com"))));
+        when(consumerGroupService.syncMembers(datasetModeViewId, List.of(Identity.user("user1@email.com"))))
+                .thenReturn(right(group));
+        when(aclService.grantDatasetReaders(DatasetId.of("project1", "views1"), List.of(group)))
+                .thenReturn(right(null));
+        var provisionOperationRequest = getDatasetModeProvisionOperationRequest(false);
+        var updateAclRequest = new AccessControlOperationRequest<>(
+                provisionOperationRequest.getDataProduct(),
+                provisionOperationRequest.getComponent(),
+                Set.of("user:user1_email.com"));
+
+        var actualRes = provisionService.updateAcl(updateAclRequest);
+
+        assertTrue(actualRes.isRight());
+        verify(aclService, never()).setRoleMembers(anyString(), anyList(), any());
+    }
+
+    @Test
+    void unprovisionWithDatasetAccessModeRevokesTheGroupAndTheViewAuthorization() throws IOException {
+        var datasetModeViewId = TableId.of("project1", "views1", "viewName1");
+        var group = "witboost-consumers-project1-views1-viewname1@email.com";
+        when(consumerGroupService.groupOf(datasetModeViewId)).thenReturn(group);
+        when(consumerGroupService.isEnabled()).thenReturn(true);
+        when(consumerGroupService.removeAllMembers(datasetModeViewId)).thenReturn(right(null));
+        when(aclService.revokeDatasetReaders(DatasetId.of("project1", "views1"), List.of(Identity.group(group))))
+                .thenReturn(right(null));
+        when(aclService.revokeRoles(anyList(), eq(datasetModeViewId))).thenReturn(right(null));
+        when(aclService.removeViewAuthorization(DatasetId.of("project1", "dataset1"), datasetModeViewId))
+                .thenReturn(right(null));
+        when(bigQueryService.deleteView("project1", "views1", "viewName1")).thenReturn(right(null));
+
+        var actualRes = provisionService.unprovision(getDatasetModeProvisionOperationRequest(true));
+
+        assertTrue(actualRes.isRight());
+        verify(bigQueryService).deleteView("project1", "views1", "viewName1");
+    }
+
     @Test
     void reverseProvisionOk() {
         Column col1 = new Column();
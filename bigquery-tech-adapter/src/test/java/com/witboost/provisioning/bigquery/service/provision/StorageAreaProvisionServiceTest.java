@@ -1,5 +1,6 @@
 package com.witboost.provisioning.bigquery.service.provision;
 
+import static io.vavr.control.Either.left;
 import static io.vavr.control.Either.right;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -9,24 +10,40 @@ import static org.mockito.Mockito.*;
 import com.google.cloud.Identity;
 import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.config.CircuitBreakerConfig;
+import com.witboost.provisioning.bigquery.config.GcpCallsConfig;
+import com.witboost.provisioning.bigquery.config.JobJournalConfig;
 import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
+import com.witboost.provisioning.bigquery.model.TableUpsertResult;
 import com.witboost.provisioning.bigquery.service.AclService;
 import com.witboost.provisioning.bigquery.service.BigQueryService;
 import com.witboost.provisioning.bigquery.service.PrincipalMappingService;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.ProjectCircuitBreaker;
+import com.witboost.provisioning.bigquery.util.ProvisioningJournal;
 import com.witboost.provisioning.bigquery.util.ResourceUtils;
 import com.witboost.provisioning.model.Specific;
 import com.witboost.provisioning.model.StorageArea;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
 import com.witboost.provisioning.model.request.ProvisionOperationRequest;
 import com.witboost.provisioning.parser.Parser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
 
 @ExtendWith(MockitoExtension.class)
 public class StorageAreaProvisionServiceTest {
@@ -40,6 +57,19 @@ public class StorageAreaProvisionServiceTest {
     @Mock
     private AclService aclService;
 
+    @Spy
+    private GcpCallExecutor gcpCallExecutor = new GcpCallExecutor(
+            new GcpCallsConfig(4, Duration.ofSeconds(5), 64, 2),
+            new ProjectCircuitBreaker(
+                    new CircuitBreakerConfig(true, 20, 10, 50, Duration.ofSeconds(30), 3), new SimpleMeterRegistry()),
+            Executors.newCachedThreadPool(),
+            false,
+            new SimpleMeterRegistry());
+
+    @Spy
+    private ProvisioningJournal journal =
+            new ProvisioningJournal(new JobJournalConfig("", Duration.ofHours(1), DataSize.ofMegabytes(16)));
+
     @InjectMocks
     private StorageAreaProvisionService provisionService;
 
@@ -52,7 +82,83 @@ public class StorageAreaProvisionServiceTest {
         when(bigQueryService.createDatasetIfNotExists(any()))
                 .thenReturn(
                         right(mock(mock(com.google.cloud.bigquery.Dataset.class).getClass())));
-        when(bigQueryService.createOrUpdateTable(any())).thenReturn(right(mockedTable));
+        when(bigQueryService.createOrUpdateTable(any()))
+                .thenReturn(right(new TableUpsertResult(mockedTable, TableUpsertResult.Outcome.CREATED)));
+        when(principalMappingService.map(Set.of("user:name.surname_email.com", "group:dev")))
+                .thenReturn(Map.of(
+                        "user:name.surname_email.com",
+                        right(Identity.user("name.username@email.com")),
+                        "group:dev",
+                        right(Identity.group("dev@email.com"))));
+        when(aclService.applyAcls(anyList(), anyList(), any())).thenReturn(right(null));
+        when(aclService.applyProjectAclsAsync(any(), anyList(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(right(null)));
+
+        var actualRes = provisionService.provision(getProvisionOperationRequest(false));
+
+        assertTrue(actualRes.isRight());
+    }
+
+    @Test
+    void provisionRunsProjectAclsEvenWhenTableAclsFailAndMergesErrors() throws IOException {
+        when(mockedTable.getTableId()).thenReturn(tableId);
+        when(bigQueryService.createDatasetIfNotExists(any()))
+                .thenReturn(
+                        right(mock(mock(com.google.cloud.bigquery.Dataset.class).getClass())));
+        when(bigQueryService.createOrUpdateTable(any()))
+                .thenReturn(right(new TableUpsertResult(mockedTable, TableUpsertResult.Outcome.CREATED)));
+        when(principalMappingService.map(Set.of("user:name.surname_email.com", "group:dev")))
+                .thenReturn(Map.of(
+                        "user:name.surname_email.com",
+                        right(Identity.user("name.username@email.com")),
+                        "group:dev",
+                        right(Identity.group("dev@email.com"))));
+        var tableAclProblem = new Problem("table acl error", Optional.empty(), Set.of());
+        var projectAclProblem = new Problem("project acl error", Optional.empty(), Set.of());
+        when(aclService.applyAcls(anyList(), anyList(), any()))
+                .thenReturn(left(new FailedOperation("error", List.of(tableAclProblem))));
+        when(aclService.applyProjectAclsAsync(any(), anyList(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(
+                        left(new FailedOperation("error", List.of(projectAclProblem)))));
+
+        var actualRes = provisionService.provision(getProvisionOperationRequest(false));
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(2, actualRes.getLeft().problems().size());
+        assertTrue(actualRes.getLeft().problems().containsAll(List.of(tableAclProblem, projectAclProblem)));
+    }
+
+    @Test
+    void provisionSkipsTableStepsWhenDatasetFails() throws IOException {
+        var datasetProblem = new Problem("dataset error", Optional.empty(), Set.of());
+        when(bigQueryService.createDatasetIfNotExists(any()))
+                .thenReturn(left(new FailedOperation("error", List.of(datasetProblem))));
+        when(principalMappingService.map(Set.of("user:name.surname_email.com", "group:dev")))
+                .thenReturn(Map.of(
+                        "user:name.surname_email.com",
+                        right(Identity.user("name.username@email.com")),
+                        "group:dev",
+                        right(Identity.group("dev@email.com"))));
+        when(aclService.applyProjectAclsAsync(any(), anyList(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(right(null)));
+
+        var actualRes = provisionService.provision(getProvisionOperationRequest(false));
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(List.of(datasetProblem), actualRes.getLeft().problems());
+        verify(bigQueryService, never()).createOrUpdateTable(any());
+        verify(aclService, never()).applyAcls(anyList(), anyList(), any());
+    }
+
+    private void mockSuccessfulSteps(TableUpsertResult.Outcome... tableOutcomes) {
+        when(mockedTable.getTableId()).thenReturn(tableId);
+        when(bigQueryService.createDatasetIfNotExists(any()))
+                .thenReturn(
+                        right(mock(mock(com.google.cloud.bigquery.Dataset.class).getClass())));
+        var tableStub = when(bigQueryService.createOrUpdateTable(any()));
+        for (var outcome : tableOutcomes) {
+            tableStub = tableStub.thenReturn(right(new TableUpsertResult(mockedTable, outcome)));
+        }
         when(principalMappingService.map(Set.of("user:name.surname_email.com", "group:dev")))
                 .thenReturn(Map.of(
                         "user:name.surname_email.com",
@@ -60,11 +166,62 @@ public class StorageAreaProvisionServiceTest {
                         "group:dev",
                         right(Identity.group("dev@email.com"))));
         when(aclService.applyAcls(anyList(), anyList(), any())).thenReturn(right(null));
-        when(aclService.applyProjectAcls(any(), anyList(), anyList())).thenReturn(right(null));
+    }
+
+    @Test
+    void provisionRetryResumesFromTheFirstIncompleteStep() throws IOException {
+        mockSuccessfulSteps(TableUpsertResult.Outcome.CREATED, TableUpsertResult.Outcome.UNCHANGED);
+        when(aclService.applyProjectAclsAsync(any(), anyList(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(left(new FailedOperation("error", List.of()))))
+                .thenReturn(CompletableFuture.completedFuture(right(null)));
 
+        assertTrue(
+                provisionService.provision(getProvisionOperationRequest(false)).isLeft());
         var actualRes = provisionService.provision(getProvisionOperationRequest(false));
 
         assertTrue(actualRes.isRight());
+        // the steps creating resources always run, the grants already made are skipped
+        verify(bigQueryService, times(2)).createDatasetIfNotExists(any());
+        verify(bigQueryService, times(2)).createOrUpdateTable(any());
+        verify(aclService, times(1)).applyAcls(anyList(), anyList(), any());
+        verify(aclService, times(2)).applyProjectAclsAsync(any(), anyList(), anyList());
+        verify(journal).operationCompleted(any());
+    }
+
+    @Test
+    void provisionRetryGrantsAgainOnATableCreatedSinceThePreviousAttempt() throws IOException {
+        mockSuccessfulSteps(TableUpsertResult.Outcome.CREATED, TableUpsertResult.Outcome.CREATED);
+        when(aclService.applyProjectAclsAsync(any(), anyList(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(left(new FailedOperation("error", List.of()))))
+                .thenReturn(CompletableFuture.completedFuture(right(null)));
+
+        assertTrue(
+                provisionService.provision(getProvisionOperationRequest(false)).isLeft());
+        // the table was deleted by hand before the retry
+        assertTrue(
+                provisionService.provision(getProvisionOperationRequest(false)).isRight());
+
+        verify(aclService, times(2)).applyAcls(anyList(), anyList(), any());
+    }
+
+    @Test
+    void unprovisionForgetsTheStepsOfFailedAttempts() throws IOException {
+        mockSuccessfulSteps(TableUpsertResult.Outcome.CREATED, TableUpsertResult.Outcome.UNCHANGED);
+        when(aclService.applyProjectAclsAsync(any(), anyList(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(left(new FailedOperation("error", List.of()))))
+                .thenReturn(CompletableFuture.completedFuture(right(null)));
+        when(aclService.revokeRoles(anyList(), any())).thenReturn(right(null));
+
+        assertTrue(
+                provisionService.provision(getProvisionOperationRequest(false)).isLeft());
+        assertTrue(provisionService
+                .unprovision(getProvisionOperationRequest(false))
+                .isRight());
+        assertTrue(
+                provisionService.provision(getProvisionOperationRequest(false)).isRight());
+
+        verify(aclService, times(2)).applyAcls(anyList(), anyList(), any());
+        verify(aclService, times(2)).applyProjectAclsAsync(any(), anyList(), anyList());
     }
 
     @Test
@@ -6,21 +6,29 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.google.cloud.bigquery.*;
+import com.witboost.provisioning.bigquery.config.ValidationResultStoreConfig;
+import com.witboost.provisioning.bigquery.model.AccessMode;
 import com.witboost.provisioning.bigquery.model.BigQueryOutputPortSpecific;
+import com.witboost.provisioning.bigquery.model.SchemaDifference;
 import com.witboost.provisioning.bigquery.service.BigQueryService;
+import com.witboost.provisioning.bigquery.service.ConsumerGroupService;
 import com.witboost.provisioning.bigquery.util.ResourceUtils;
 import com.witboost.provisioning.model.OperationType;
 import com.witboost.provisioning.model.OutputPort;
 import com.witboost.provisioning.model.Specific;
 import com.witboost.provisioning.model.request.ProvisionOperationRequest;
 import com.witboost.provisioning.parser.Parser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vavr.control.Option;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +37,13 @@ public class OutputPortValidationServiceTest {
     @Mock
     private BigQueryService bigQueryService;
 
+    @Spy
+    private ValidationResultStore validationResultStore = new ValidationResultStore(
+            new ValidationResultStoreConfig(true, Duration.ofMinutes(2), 100), new SimpleMeterRegistry());
+
+    @Mock
+    private ConsumerGroupService consumerGroupService;
+
     @InjectMocks
     private OutputPortValidationService outputPortValidationService;
 
@@ -56,8 +71,7 @@ public class OutputPortValidationServiceTest {
         Schema schema = Schema.of(Field.of("column1", StandardSQLTypeName.STRING));
         when(mockedTableDefinition.getSchema()).thenReturn(schema);
         when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
-        when(bigQueryService.isViewSchemaCompatibleWithSourceTableSchema(any(), anyList()))
-                .thenReturn(right(true));
+        when(bigQueryService.diffViewSchema(any(), anyList())).thenReturn(right(List.of()));
 
         var actualRes = outputPortValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
@@ -71,10 +85,11 @@ public class OutputPortValidationServiceTest {
         when(mockedTableDefinition.getSchema()).thenReturn(schema);
         when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
         when(mockedTable.getTableId()).thenReturn(TableId.of("project1", "dataset1", "tableName1"));
-        when(bigQueryService.isViewSchemaCompatibleWithSourceTableSchema(any(), anyList()))
-                .thenReturn(right(false));
+        when(bigQueryService.diffViewSchema(any(), anyList()))
+                .thenReturn(right(
+                        List.of(new SchemaDifference(SchemaDifference.Kind.MISSING_COLUMN, "column3", null, null))));
         String expectedDesc =
-                "View schema of component urn:dmb:cmp:healthcare:vaccinations:0:bigquery-output-port is not compatible with schema of the source table project1.dataset1.tableName1";
+                "View schema of component urn:dmb:cmp:healthcare:vaccinations:0:bigquery-output-port is not compatible with schema of the source table project1.dataset1.tableName1: column column3 is missing";
 
         var actualRes = outputPortValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
@@ -99,7 +114,56 @@ public class OutputPortValidationServiceTest {
             assertEquals(expectedDesc, p.description());
             assertTrue(p.cause().isEmpty());
         });
-        verify(bigQueryService, never()).isViewSchemaCompatibleWithSourceTableSchema(any(), anyList());
+        verify(bigQueryService, never()).diffViewSchema(any(), anyList());
+    }
+
+    @Test
+    public void testValidateInvalidDescriptorSkipsRemoteChecks() {
+        provisionOperationRequest.getComponent().get().getSpecific().setDataset("data-set");
+
+        var actualRes = outputPortValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(1, actualRes.getLeft().problems().size());
+        assertEquals(
+                "The dataset name data-set is not valid",
+                actualRes.getLeft().problems().get(0).description());
+        verifyNoInteractions(bigQueryService);
+    }
+
+    @Test
+    public void testValidateDatasetAccessModeWithoutConsumerGroups() {
+        var specific = provisionOperationRequest.getComponent().get().getSpecific();
+        specific.setAccessMode(AccessMode.DATASET);
+        specific.setViewDataset("views1");
+        when(consumerGroupService.isEnabled()).thenReturn(false);
+
+        var actualRes = outputPortValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
+
+        assertTrue(actualRes.isLeft());
+        assertTrue(actualRes.getLeft().problems().get(0).description().contains("requires consumer groups"));
+        verifyNoInteractions(bigQueryService);
+    }
+
+    @Test
+    public void testProvisionReusesRecentValidation() {
+        when(mockedTable.getDefinition()).thenReturn(mockedTableDefinition);
+        when(mockedTableDefinition.getSchema()).thenReturn(Schema.of(Field.of("column1", StandardSQLTypeName.STRING)));
+        when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
+        when(bigQueryService.diffViewSchema(any(), anyList())).thenReturn(right(List.of()));
+
+        assertTrue(outputPortValidationService
+                .validate(provisionOperationRequest, OperationType.VALIDATE)
+                .isRight());
+        assertTrue(outputPortValidationService
+                .validate(provisionOperationRequest, OperationType.PROVISION)
+                .isRight());
+        verify(bigQueryService, times(1)).getTable(anyString(), anyString(), anyString());
+
+        assertTrue(outputPortValidationService
+                .validate(provisionOperationRequest, OperationType.VALIDATE)
+                .isRight());
+        verify(bigQueryService, times(2)).getTable(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -6,9 +6,16 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.google.cloud.bigquery.*;
+import com.witboost.provisioning.bigquery.config.CircuitBreakerConfig;
+import com.witboost.provisioning.bigquery.config.GcpCallsConfig;
+import com.witboost.provisioning.bigquery.config.ValidationResultStoreConfig;
 import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
+import com.witboost.provisioning.bigquery.model.SchemaDifference;
 import com.witboost.provisioning.bigquery.service.BigQueryService;
 import com.witboost.provisioning.bigquery.service.ResourceManagerService;
+import com.witboost.provisioning.bigquery.util.GcpCallExecutor;
+import com.witboost.provisioning.bigquery.util.OperationContext;
+import com.witboost.provisioning.bigquery.util.ProjectCircuitBreaker;
 import com.witboost.provisioning.bigquery.util.ResourceUtils;
 import com.witboost.provisioning.model.OperationType;
 import com.witboost.provisioning.model.Specific;
@@ -17,15 +24,22 @@ import com.witboost.provisioning.model.common.FailedOperation;
 import com.witboost.provisioning.model.common.Problem;
 import com.witboost.provisioning.model.request.ProvisionOperationRequest;
 import com.witboost.provisioning.parser.Parser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vavr.control.Either;
 import io.vavr.control.Option;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +51,19 @@ public class StorageValidationServiceTest {
     @Mock
     private ResourceManagerService resourceManagerService;
 
+    @Spy
+    private GcpCallExecutor gcpCallExecutor = new GcpCallExecutor(
+            new GcpCallsConfig(4, Duration.ofSeconds(5), 64, 2),
+            new ProjectCircuitBreaker(
+                    new CircuitBreakerConfig(true, 20, 10, 50, Duration.ofSeconds(30), 3), new SimpleMeterRegistry()),
+            Executors.newCachedThreadPool(),
+            false,
+            new SimpleMeterRegistry());
+
+    @Spy
+    private ValidationResultStore validationResultStore = new ValidationResultStore(
+            new ValidationResultStoreConfig(true, Duration.ofMinutes(2), 100), new SimpleMeterRegistry());
+
     @InjectMocks
     private StorageValidationService storageValidationService;
 
@@ -73,8 +100,7 @@ public class StorageValidationServiceTest {
         when(mockedTable.getDefinition()).thenReturn(mockedTableDefinition);
         when(mockedTableDefinition.getSchema()).thenReturn(Schema.of(Field.of("column1", StandardSQLTypeName.STRING)));
         when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
-        when(bigQueryService.isTableSchemaCompatibleWithColumns(any(), anyList()))
-                .thenReturn(right(true));
+        when(bigQueryService.diffTableSchema(any(), anyList())).thenReturn(right(List.of()));
 
         var result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
@@ -91,7 +117,7 @@ public class StorageValidationServiceTest {
         when(mockedDefinition.getSchema()).thenReturn(Schema.of());
         when(mockedTable.getDefinition()).thenReturn(mockedDefinition);
         when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
-        when(bigQueryService.isTableSchemaCompatibleWithColumns(any(), any())).thenReturn(Either.right(true));
+        when(bigQueryService.diffTableSchema(any(), any())).thenReturn(Either.right(List.of()));
 
         var result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
@@ -102,6 +128,7 @@ public class StorageValidationServiceTest {
     @Test
     public void testValidateProjectNotExists() {
         when(resourceManagerService.isProjectExisting(anyString())).thenReturn(right(false));
+        when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.none()));
 
         var result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
@@ -120,7 +147,7 @@ public class StorageValidationServiceTest {
         when(mockedTable.getDefinition()).thenReturn(tableDefinition);
         when(tableDefinition.getSchema()).thenReturn(schema);
         when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
-        when(bigQueryService.isTableSchemaCompatibleWithColumns(any(), any())).thenReturn(Either.right(true));
+        when(bigQueryService.diffTableSchema(any(), any())).thenReturn(Either.right(List.of()));
 
         var result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
@@ -149,8 +176,8 @@ public class StorageValidationServiceTest {
 
         assertTrue(result.isRight());
 
-        // Check that never call isTableSchemaCompatibleWithColumns
-        verify(bigQueryService, never()).isTableSchemaCompatibleWithColumns(any(), anyList());
+        // Check that never call diffTableSchema
+        verify(bigQueryService, never()).diffTableSchema(any(), anyList());
     }
 
     // Test result true with compatibility between schema and list of columns
@@ -160,8 +187,7 @@ public class StorageValidationServiceTest {
         when(mockedTable.getDefinition()).thenReturn(mockedTableDefinition);
         when(mockedTableDefinition.getSchema()).thenReturn(Schema.of(Field.of("column1", StandardSQLTypeName.STRING)));
         when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
-        when(bigQueryService.isTableSchemaCompatibleWithColumns(any(), anyList()))
-                .thenReturn(right(true));
+        when(bigQueryService.diffTableSchema(any(), anyList())).thenReturn(right(List.of()));
 
         var result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
@@ -175,13 +201,17 @@ public class StorageValidationServiceTest {
         when(mockedTable.getDefinition()).thenReturn(mockedTableDefinition);
         when(mockedTableDefinition.getSchema()).thenReturn(Schema.of(Field.of("column1", StandardSQLTypeName.STRING)));
         when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
-        when(bigQueryService.isTableSchemaCompatibleWithColumns(any(), anyList()))
-                .thenReturn(right(false));
+        when(bigQueryService.diffTableSchema(any(), anyList()))
+                .thenReturn(right(
+                        List.of(new SchemaDifference(SchemaDifference.Kind.MISSING_COLUMN, "column1", null, null))));
 
         var result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
         assertTrue(result.isLeft());
         assertEquals("One or more validation errors occurred", result.getLeft().message());
+        assertEquals(
+                "Detected schema mismatch: provided schema is not compatible with existing table: project-name.datasetName.tableName: column column1 is missing",
+                result.getLeft().problems().get(0).description());
     }
 
     // Test check return error during the compatibility between schema and list of columns
@@ -196,8 +226,7 @@ public class StorageValidationServiceTest {
                 "Schema validation error",
                 Collections.singletonList(new Problem("Error while checking schema compatibility")));
 
-        when(bigQueryService.isTableSchemaCompatibleWithColumns(any(), anyList()))
-                .thenReturn(io.vavr.control.Either.left(failedOp));
+        when(bigQueryService.diffTableSchema(any(), anyList())).thenReturn(io.vavr.control.Either.left(failedOp));
 
         var result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
 
@@ -209,6 +238,60 @@ public class StorageValidationServiceTest {
                 result.getLeft().problems().get(0).description());
     }
 
+    @Test
+    public void testValidateReportsAllProblems() {
+        when(resourceManagerService.isProjectExisting(anyString())).thenReturn(right(false));
+        when(mockedTable.getDefinition()).thenReturn(mockedTableDefinition);
+        when(mockedTableDefinition.getSchema()).thenReturn(Schema.of(Field.of("column1", StandardSQLTypeName.STRING)));
+        when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenReturn(right(Option.of(mockedTable)));
+        when(bigQueryService.diffTableSchema(any(), anyList()))
+                .thenReturn(right(
+                        List.of(new SchemaDifference(SchemaDifference.Kind.MISSING_COLUMN, "column1", null, null))));
+
+        var result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
+
+        assertTrue(result.isLeft());
+        assertEquals("One or more validation errors occurred", result.getLeft().message());
+        assertEquals(2, result.getLeft().problems().size());
+        assertTrue(result.getLeft().problems().get(0).description().startsWith("The specified BigQuery project"));
+        assertTrue(result.getLeft().problems().get(1).description().startsWith("Detected schema mismatch"));
+    }
+
+    @Test
+    public void testValidateRunsChecksConcurrently() throws Exception {
+        var bothStarted = new CountDownLatch(2);
+        when(resourceManagerService.isProjectExisting(anyString())).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            return right(bothStarted.await(5, TimeUnit.SECONDS));
+        });
+        when(bigQueryService.getTable(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            bothStarted.await(5, TimeUnit.SECONDS);
+            return right(Option.none());
+        });
+
+        Either<FailedOperation, Void> result;
+        try (var scope = new OperationContext(3, Duration.ofSeconds(10)).enter()) {
+            result = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
+        }
+
+        assertTrue(result.isRight());
+    }
+
+    @Test
+    public void testValidateInvalidDescriptorSkipsRemoteChecks() {
+        provisionOperationRequest.getComponent().get().getSpecific().setDataset("data-set");
+
+        var actualRes = storageValidationService.validate(provisionOperationRequest, OperationType.VALIDATE);
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(1, actualRes.getLeft().problems().size());
+        assertEquals(
+                "The dataset name data-set is not valid",
+                actualRes.getLeft().problems().get(0).description());
+        verifyNoInteractions(bigQueryService, resourceManagerService);
+    }
+
     @Test
     public void testValidateNoComponent() {
         ProvisionOperationRequest<Specific, BigQueryStorageSpecific> provisionOperationRequestWithoutComponent =
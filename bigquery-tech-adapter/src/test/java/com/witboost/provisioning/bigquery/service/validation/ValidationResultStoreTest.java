@@ -0,0 +1,108 @@
+package com.witboost.provisioning.bigquery.service.validation;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.witboost.provisioning.bigquery.config.ValidationResultStoreConfig;
+import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
+import com.witboost.provisioning.model.OperationType;
+import com.witboost.provisioning.model.StorageArea;
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vavr.control.Either;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+public class ValidationResultStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger remoteChecks = new AtomicInteger();
+    private final Supplier<Either<FailedOperation, Void>> passingChecks = () -> {
+        remoteChecks.incrementAndGet();
+        return right(null);
+    };
+
+    @Test
+    public void testProvisionReusesPassedValidation() {
+        var store = store(true);
+        var component = component("table1");
+
+        store.reuseOrValidate(component, OperationType.VALIDATE, passingChecks);
+        var result = store.reuseOrValidate(component, OperationType.PROVISION, passingChecks);
+        store.reuseOrValidate(component, OperationType.UNPROVISION, passingChecks);
+
+        assertTrue(result.isRight());
+        assertEquals(1, remoteChecks.get());
+        assertEquals(
+                2.0,
+                meterRegistry
+                        .counter("validation.results.store", "result", "hit")
+                        .count());
+    }
+
+    @Test
+    public void testExplicitValidationAlwaysRunsTheChecks() {
+        var store = store(true);
+        var component = component("table1");
+
+        store.reuseOrValidate(component, OperationType.PROVISION, passingChecks);
+        store.reuseOrValidate(component, OperationType.VALIDATE, passingChecks);
+
+        assertEquals(2, remoteChecks.get());
+    }
+
+    @Test
+    public void testChangedComponentIsValidatedAgain() {
+        var store = store(true);
+
+        store.reuseOrValidate(component("table1"), OperationType.VALIDATE, passingChecks);
+        store.reuseOrValidate(component("table2"), OperationType.PROVISION, passingChecks);
+
+        assertEquals(2, remoteChecks.get());
+    }
+
+    @Test
+    public void testFailedValidationIsNotStored() {
+        var store = store(true);
+        var component = component("table1");
+
+        var failed = store.reuseOrValidate(
+                component, OperationType.VALIDATE, () -> left(new FailedOperation("invalid", List.of())));
+        store.reuseOrValidate(component, OperationType.PROVISION, passingChecks);
+
+        assertTrue(failed.isLeft());
+        assertEquals(1, remoteChecks.get());
+    }
+
+    @Test
+    public void testDisabledStore() {
+        var store = store(false);
+        var component = component("table1");
+
+        store.reuseOrValidate(component, OperationType.VALIDATE, passingChecks);
+        store.reuseOrValidate(component, OperationType.PROVISION, passingChecks);
+
+        assertEquals(2, remoteChecks.get());
+    }
+
+    private ValidationResultStore store(boolean enabled) {
+        return new ValidationResultStore(
+                new ValidationResultStoreConfig(enabled, Duration.ofMinutes(2), 100), meterRegistry);
+    }
+
+    private static StorageArea<BigQueryStorageSpecific> component(String tableName) {
+        var specific = new BigQueryStorageSpecific();
+        specific.setProject("project1");
+        specific.setDataset("dataset1");
+        specific.setTableName(tableName);
+        var storageArea = new StorageArea<BigQueryStorageSpecific>();
+        storageArea.setId("urn:dmb:cmp:healthcare:vaccinations:0:bigquery-storage");
+        storageArea.setSpecific(specific);
+        return storageArea;
+    }
+}
@@ -0,0 +1,86 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.witboost.provisioning.bigquery.config.BigQueryClientConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BigQueryClientCacheTest {
+
+    private final BigQueryClientConfig config = new BigQueryClientConfig(10, Duration.ofMinutes(5), 50);
+
+    @Test
+    void reusesClientForSameProject() {
+        var created = new AtomicInteger();
+        var cache = new BigQueryClientCache(
+                config,
+                projectId -> {
+                    created.incrementAndGet();
+                    return mock(BigQuery.class);
+                },
+                new SimpleMeterRegistry());
+
+        var first = cache.apply("project1");
+        var second = cache.apply("project1");
+
+        assertSame(first, second);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void buildsOneClientPerProject() {
+        var cache = new BigQueryClientCache(config, projectId -> mock(BigQuery.class), new SimpleMeterRegistry());
+
+        assertNotSame(cache.apply("project1"), cache.apply("project2"));
+    }
+
+    @Test
+    void buildsClientOnceUnderConcurrentAccess() {
+        var created = new AtomicInteger();
+        var cache = new BigQueryClientCache(
+                config,
+                projectId -> {
+                    created.incrementAndGet();
+                    return mock(BigQuery.class);
+                },
+                new SimpleMeterRegistry());
+        var seen = ConcurrentHashMap.<BigQuery>newKeySet();
+
+        IntStream.range(0, 64).parallel().forEach(i -> seen.add(cache.apply("project1")));
+
+        assertEquals(1, seen.size());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void exportsHitAndMissMetrics() {
+        var registry = new SimpleMeterRegistry();
+        var cache = new BigQueryClientCache(config, projectId -> mock(BigQuery.class), registry);
+
+        cache.apply("project1");
+        cache.apply("project1");
+        cache.apply("project2");
+
+        assertEquals(
+                1.0,
+                registry.get("cache.gets")
+                        .tag("cache", "bigquery.clients")
+                        .tag("result", "hit")
+                        .functionCounter()
+                        .count());
+        assertEquals(
+                2.0,
+                registry.get("cache.gets")
+                        .tag("cache", "bigquery.clients")
+                        .tag("result", "miss")
+                        .functionCounter()
+                        .count());
+    }
+}
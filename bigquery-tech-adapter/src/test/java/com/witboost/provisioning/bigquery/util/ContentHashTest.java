@@ -0,0 +1,31 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ContentHashTest {
+
+    record Request(String table, String dataset) {}
+
+    @Test
+    void hashIsStableAndDependsOnTheContent() {
+        var hash = ContentHash.of(Map.of("table", "t1", "dataset", "d1"));
+
+        assertTrue(hash.isPresent());
+        assertEquals(64, hash.get().length());
+        assertEquals(hash, ContentHash.of(Map.of("dataset", "d1", "table", "t1")));
+        assertNotEquals(hash, ContentHash.of(Map.of("dataset", "d1", "table", "t2")));
+    }
+
+    @Test
+    void propertiesAreHashedInAlphabeticalOrder() {
+        assertEquals(ContentHash.of(Map.of("table", "t1", "dataset", "d1")), ContentHash.of(new Request("t1", "d1")));
+    }
+
+    @Test
+    void unserializableObjectsHaveNoHash() {
+        assertTrue(ContentHash.of(new Object()).isEmpty());
+    }
+}
@@ -0,0 +1,194 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.witboost.provisioning.bigquery.model.AccessMode;
+import com.witboost.provisioning.bigquery.model.BigQueryOutputPortSpecific;
+import com.witboost.provisioning.bigquery.model.BigQueryStorageSpecific;
+import com.witboost.provisioning.bigquery.model.Iam;
+import com.witboost.provisioning.bigquery.model.IamScope;
+import com.witboost.provisioning.bigquery.model.ScopedIamRole;
+import com.witboost.provisioning.model.Column;
+import com.witboost.provisioning.model.common.Problem;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class DescriptorValidatorTest {
+
+    @Test
+    public void testValidStorage() {
+        var specific = storage(List.of(
+                column("id", "INT64"),
+                column("name", "string"),
+                column("amount", "NUMERIC", Optional.of(10), Optional.of(2)),
+                column("total", "BIGNUMERIC", Optional.of(76), Optional.of(38)),
+                column("rank", "INTEGER")));
+
+        assertTrue(DescriptorValidator.validateStorage(specific).isEmpty());
+    }
+
+    @Test
+    public void testInvalidIdentifiers() {
+        var specific = storage(List.of(column("id", "INT64")));
+        specific.setProject("My_Project");
+        specific.setDataset("data-set");
+        specific.setTableName("table.name");
+
+        assertEquals(
+                List.of(
+                        "The project id My_Project is not valid",
+                        "The dataset name data-set is not valid",
+                        "The table name table.name is not valid"),
+                descriptions(DescriptorValidator.validateStorage(specific)));
+    }
+
+    @Test
+    public void testDomainScopedProject() {
+        var specific = storage(List.of(column("id", "INT64")));
+        specific.setProject("example.com:my-project");
+
+        assertTrue(DescriptorValidator.validateStorage(specific).isEmpty());
+    }
+
+    @Test
+    public void testInvalidColumns() {
+        var required = column("day", "DATE");
+        required.setConstraint(Optional.of("NOT_NULL"));
+        var specific = storage(List.of(
+                column("1st", "STRING"),
+                column("_PARTITIONTIME", "TIMESTAMP"),
+                column("id", "INT64"),
+                column("ID", "INT64"),
+                column("value", "VARCHAR"),
+                column("nested", "RECORD"),
+                required));
+
+        assertEquals(
+                List.of(
+                        "The column name 1st is not valid",
+                        "The column name _PARTITIONTIME uses a prefix reserved by BigQuery",
+                        "The column ID is declared more than once (column names are case-insensitive)",
+                        "The column value has the unknown data type VARCHAR",
+                        "The column nested has the data type STRUCT, which is not supported in a column descriptor",
+                        "The column day has the invalid constraint NOT_NULL, expected one of [NULLABLE, REQUIRED, REPEATED]"),
+                descriptions(DescriptorValidator.validateStorage(specific)));
+    }
+
+    @Test
+    public void testInvalidPrecisionScaleAndLength() {
+        var withLength = column("code", "INT64");
+        withLength.setDataLength(Optional.of(10));
+        var emptyString = column("label", "STRING");
+        emptyString.setDataLength(Optional.of(0));
+        var specific = storage(List.of(
+                column("a", "NUMERIC", Optional.of(40), Optional.empty()),
+                column("b", "NUMERIC", Optional.of(10), Optional.of(12)),
+                column("c", "NUMERIC", Optional.of(2), Optional.of(5)),
+                column("d", "NUMERIC", Optional.empty(), Optional.of(2)),
+                column("e", "FLOAT64", Optional.of(10), Optional.empty()),
+                withLength,
+                emptyString));
+
+        assertEquals(
+                List.of(
+                        "The column a has the precision 40, expected between 1 and 29 for scale 0",
+                        "The column b has the scale 12, expected between 0 and 9",
+                        "The column c has the precision 2, expected between 5 and 34 for scale 5",
+                        "The column d declares a scale without a precision",
+                        "The column e declares a precision or scale, which is only allowed for NUMERIC and BIGNUMERIC",
+                        "The column code declares a length, which is only allowed for STRING and BYTES",
+                        "The column label has the invalid length 0"),
+                descriptions(DescriptorValidator.validateStorage(specific)));
+    }
+
+    @Test
+    public void testRoles() {
+        var specific = storage(List.of(column("id", "INT64")));
+        specific.setIam(new Iam(List.of(
+                new ScopedIamRole("roles/bigquery.dataOwner", IamScope.OWNER),
+                new ScopedIamRole("projects/my-project/roles/customViewer", IamScope.PROJECT),
+                new ScopedIamRole("organizations/123456/roles/custom.editor", IamScope.PROJECT),
+                new ScopedIamRole("bigquery.dataOwner", IamScope.OWNER))));
+
+        assertEquals(
+                List.of("The role bigquery.dataOwner is not valid"),
+                descriptions(DescriptorValidator.validateStorage(specific)));
+    }
+
+    @Test
+    public void testOutputPort() {
+        var specific = new BigQueryOutputPortSpecific();
+        specific.setProject("project1");
+        specific.setDataset("dataset1");
+        specific.setTableName("table1");
+        specific.setViewName("");
+        specific.setOwnerRoles(List.of("roles/bigquery.dataOwner", "owner"));
+
+        assertEquals(
+                List.of(
+                        "The view name  is not valid",
+                        "The column amount has the unknown data type DECIMAL",
+                        "The role owner is not valid"),
+                descriptions(DescriptorValidator.validateOutputPort(
+                        specific, List.of(column("id", "STRING"), column("amount", "DECIMAL")))));
+    }
+
+    @Test
+    public void testOutputPortDatasetAccessModeNeedsADedicatedViewDataset() {
+        var specific = new BigQueryOutputPortSpecific();
+        specific.setProject("project1");
+        specific.setDataset("dataset1");
+        specific.setTableName("table1");
+        specific.setViewName("view1");
+        specific.setOwnerRoles(List.of());
+        specific.setAccessMode(AccessMode.DATASET);
+
+        assertEquals(
+                List.of("The dataset access mode needs the view in a dedicated dataset, but the view dataset"
+                        + " dataset1 is the dataset of the source table"),
+                descriptions(DescriptorValidator.validateOutputPort(specific, List.of())));
+
+        specific.setViewDataset("views1");
+        assertEquals(List.of(), descriptions(DescriptorValidator.validateOutputPort(specific, List.of())));
+    }
+
+    @Test
+    public void testSqlTypeOf() {
+        assertEquals(Optional.of(StandardSQLTypeName.INT64), DescriptorValidator.sqlTypeOf("INT64"));
+        assertEquals(Optional.of(StandardSQLTypeName.INT64), DescriptorValidator.sqlTypeOf("integer"));
+        assertEquals(Optional.of(StandardSQLTypeName.FLOAT64), DescriptorValidator.sqlTypeOf("FLOAT"));
+        assertEquals(Optional.of(StandardSQLTypeName.BOOL), DescriptorValidator.sqlTypeOf("BOOLEAN"));
+        assertEquals(Optional.empty(), DescriptorValidator.sqlTypeOf("VARCHAR"));
+        assertEquals(Optional.empty(), DescriptorValidator.sqlTypeOf(null));
+    }
+
+    private static BigQueryStorageSpecific storage(List<Column> schema) {
+        var specific = new BigQueryStorageSpecific();
+        specific.setProject("project1");
+        specific.setDataset("dataset1");
+        specific.setTableName("table1");
+        specific.setSchema(schema);
+        return specific;
+    }
+
+    private static Column column(String name, String dataType) {
+        var column = new Column();
+        column.setName(name);
+        column.setDataType(dataType);
+        return column;
+    }
+
+    private static Column column(String name, String dataType, Optional<Integer> precision, Optional<Integer> scale) {
+        var column = column(name, dataType);
+        column.setPrecision(precision);
+        column.setScale(scale);
+        return column;
+    }
+
+    private static List<String> descriptions(List<Problem> problems) {
+        return problems.stream().map(Problem::description).toList();
+    }
+}
@@ -0,0 +1,37 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.witboost.provisioning.bigquery.config.RequestDeadlineConfig;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class GcpCallDeadlineTest {
+
+    private final GcpCallDeadline callDeadline = new GcpCallDeadline(new RequestDeadlineConfig(
+            Duration.ofMinutes(5), Duration.ofMinutes(30), "X-Request-Timeout", Duration.ofSeconds(60)));
+
+    @Test
+    void callsOutsideARequestTakeTheCallTimeout() {
+        assertEquals(Duration.ofSeconds(60), callDeadline.timeout("reading"));
+    }
+
+    @Test
+    void callsAreBoundedByTheTimeLeftToTheRequest() {
+        try (var ignored = new OperationContext(5, Duration.ofSeconds(10)).enter()) {
+            var timeout = callDeadline.timeout("reading");
+            assertTrue(timeout.compareTo(Duration.ofSeconds(10)) <= 0);
+            assertTrue(timeout.compareTo(Duration.ofSeconds(5)) > 0);
+        }
+        try (var ignored = new OperationContext(5, Duration.ofSeconds(600)).enter()) {
+            assertEquals(Duration.ofSeconds(60), callDeadline.timeout("reading"));
+        }
+    }
+
+    @Test
+    void callsAreNotStartedPastTheDeadline() {
+        try (var ignored = new OperationContext(5, Duration.ZERO).enter()) {
+            assertThrows(RequestDeadlineExceededException.class, () -> callDeadline.grpcContext("reading"));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.UnavailableException;
+import com.witboost.provisioning.bigquery.config.CircuitBreakerConfig;
+import com.witboost.provisioning.bigquery.config.GcpCallsConfig;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class GcpCallExecutorTest {
+
+    private GcpCallExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private final ProjectCircuitBreaker circuitBreaker = new ProjectCircuitBreaker(
+            new CircuitBreakerConfig(true, 4, 4, 50, Duration.ofMinutes(1), 1), new SimpleMeterRegistry());
+
+    private GcpCallExecutor newExecutor(int maxPerProject, Duration acquireTimeout, ExecutorService pool) {
+        return newExecutor(maxPerProject, 10000, acquireTimeout, pool);
+    }
+
+    private GcpCallExecutor newExecutor(
+            int maxPerProject, int maxWaitingPerProject, Duration acquireTimeout, ExecutorService pool) {
+        return new GcpCallExecutor(
+                new GcpCallsConfig(maxPerProject, acquireTimeout, maxWaitingPerProject, 1),
+                circuitBreaker,
+                pool,
+                false,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void capsInFlightCallsPerProject() throws Exception {
+        executor = newExecutor(3, Duration.ofSeconds(10), Executors.newFixedThreadPool(16));
+        Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> maxInFlight = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 60; i++) {
+            String project = "project-" + (i % 2);
+            futures.add(executor.submit(project, () -> {
+                int current = inFlight.computeIfAbsent(project, p -> new AtomicInteger())
+                        .incrementAndGet();
+                maxInFlight.computeIfAbsent(project, p -> new AtomicInteger()).accumulateAndGet(current, Math::max);
+                Thread.sleep(10);
+                inFlight.get(project).decrementAndGet();
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(3, maxInFlight.get("project-0").get());
+        assertEquals(3, maxInFlight.get("project-1").get());
+    }
+
+    @Test
+    void failsWhenNoPermitBecomesAvailableInTime() throws Exception {
+        executor = newExecutor(1, Duration.ofMillis(50), Executors.newCachedThreadPool());
+        var holding = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = executor.submit("project", () -> {
+            holding.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        holding.await(10, TimeUnit.SECONDS);
+
+        assertThrows(TimeoutException.class, () -> executor.call("project", () -> "never"));
+
+        release.countDown();
+        assertTrue(holder.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsCallsBeyondTheWaitingLimitOfTheProject() throws Exception {
+        executor = newExecutor(1, 1, Duration.ofSeconds(10), Executors.newCachedThreadPool());
+        var holding = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = executor.submit("project", () -> {
+            holding.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        holding.await(10, TimeUnit.SECONDS);
+        var waiter = executor.submit("project", () -> "waited");
+        while (!((ThreadPoolExecutor) executor.executor()).getQueue().isEmpty()
+                || ((ThreadPoolExecutor) executor.executor()).getActiveCount() < 2) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+
+        assertThrows(RejectedExecutionException.class, () -> executor.call("project", () -> "rejected"));
+        assertEquals("other", executor.call("other-project", () -> "other"));
+
+        release.countDown();
+        assertTrue(holder.get(10, TimeUnit.SECONDS));
+        assertEquals("waited", waiter.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failsFastOnceTheCircuitOfTheProjectIsOpen() throws Exception {
+        executor = newExecutor(4, Duration.ofSeconds(1), Executors.newCachedThreadPool());
+        var calls = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(
+                    UnavailableException.class,
+                    () -> executor.call("project", () -> {
+                        calls.incrementAndGet();
+                        throw new UnavailableException(
+                                new StatusRuntimeException(Status.UNAVAILABLE),
+                                GrpcStatusCode.of(Status.Code.UNAVAILABLE),
+                                true);
+                    }));
+        }
+
+        assertThrows(CircuitOpenException.class, () -> executor.call("project", calls::incrementAndGet));
+        assertEquals(4, calls.get());
+        assertEquals("ok", executor.call("other-project", () -> "ok"));
+    }
+
+    @Test
+    void doesNotStartCallsOnceTheRequestDeadlineExpired() throws Exception {
+        executor = newExecutor(1, Duration.ofSeconds(10), Executors.newCachedThreadPool());
+        var calls = new AtomicInteger();
+
+        try (var ignored = new OperationContext(10, Duration.ZERO).enter()) {
+            assertThrows(
+                    RequestDeadlineExceededException.class, () -> executor.call("project", calls::incrementAndGet));
+        }
+
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void stopsWaitingForAPermitAtTheRequestDeadline() throws Exception {
+        executor = newExecutor(1, Duration.ofSeconds(10), Executors.newCachedThreadPool());
+        var holding = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = executor.submit("project", () -> {
+            holding.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        holding.await(10, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        try (var ignored = new OperationContext(10, Duration.ofMillis(100)).enter()) {
+            assertThrows(RequestDeadlineExceededException.class, () -> executor.call("project", () -> "never"));
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        release.countDown();
+        assertTrue(holder.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void nestedCallsForTheSameProjectReuseThePermit() throws Exception {
+        executor = newExecutor(1, Duration.ofMillis(50), Executors.newCachedThreadPool());
+
+        String result = executor.call("project", () -> executor.call("project", () -> "nested"));
+
+        assertEquals("nested", result);
+    }
+
+    @Test
+    void completesThousandsOfConcurrentCalls() throws Exception {
+        ExecutorService pool = virtualThreadExecutorIfAvailable();
+        executor = newExecutor(32, Duration.ofSeconds(60), pool);
+        int calls = 5000;
+        var completed = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(calls);
+
+        for (int i = 0; i < calls; i++) {
+            futures.add(executor.submit("project-" + (i % 50), () -> {
+                // simulates a blocking round trip to GCP
+                Thread.sleep(5);
+                completed.incrementAndGet();
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+
+        assertEquals(calls, completed.get());
+    }
+
+    private static ExecutorService virtualThreadExecutorIfAvailable() {
+        try {
+            return (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(256);
+        }
+    }
+}
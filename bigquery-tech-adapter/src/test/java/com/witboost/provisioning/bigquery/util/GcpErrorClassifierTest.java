@@ -0,0 +1,61 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiExceptionFactory;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.witboost.provisioning.bigquery.util.GcpErrorClassifier.ErrorClass;
+import io.grpc.Status;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import org.junit.jupiter.api.Test;
+
+class GcpErrorClassifierTest {
+
+    private static ErrorClass classifyGrpc(Status.Code code) {
+        return GcpErrorClassifier.classify(
+                ApiExceptionFactory.createException(new Exception(), GrpcStatusCode.of(code), false));
+    }
+
+    @Test
+    void classifiesBigQueryErrors() {
+        assertEquals(
+                ErrorClass.RATE_LIMITED,
+                GcpErrorClassifier.classify(
+                        new BigQueryException(403, "rate", new BigQueryError("rateLimitExceeded", "", ""))));
+        assertEquals(ErrorClass.RATE_LIMITED, GcpErrorClassifier.classify(new BigQueryException(429, "too many")));
+        assertEquals(ErrorClass.TRANSIENT, GcpErrorClassifier.classify(new BigQueryException(503, "unavailable")));
+        assertEquals(
+                ErrorClass.TRANSIENT,
+                GcpErrorClassifier.classify(
+                        new BigQueryException(400, "backend", new BigQueryError("backendError", "", ""))));
+        assertEquals(ErrorClass.CONFLICT, GcpErrorClassifier.classify(new BigQueryException(409, "exists")));
+        assertEquals(ErrorClass.PERMANENT, GcpErrorClassifier.classify(new BigQueryException(403, "denied")));
+        assertEquals(
+                ErrorClass.PERMANENT,
+                GcpErrorClassifier.classify(
+                        new BigQueryException(403, "quota", new BigQueryError("quotaExceeded", "", ""))));
+        assertEquals(
+                ErrorClass.TRANSIENT,
+                GcpErrorClassifier.classify(new BigQueryException(new SocketTimeoutException("read timed out"))));
+    }
+
+    @Test
+    void classifiesGaxStatusCodes() {
+        assertEquals(ErrorClass.TRANSIENT, classifyGrpc(Status.Code.UNAVAILABLE));
+        assertEquals(ErrorClass.TRANSIENT, classifyGrpc(Status.Code.DEADLINE_EXCEEDED));
+        assertEquals(ErrorClass.RATE_LIMITED, classifyGrpc(Status.Code.RESOURCE_EXHAUSTED));
+        assertEquals(ErrorClass.CONFLICT, classifyGrpc(Status.Code.ABORTED));
+        assertEquals(ErrorClass.PERMANENT, classifyGrpc(Status.Code.PERMISSION_DENIED));
+        assertEquals(ErrorClass.PERMANENT, classifyGrpc(Status.Code.INVALID_ARGUMENT));
+    }
+
+    @Test
+    void classifiesOtherErrors() {
+        assertEquals(ErrorClass.CONFLICT, GcpErrorClassifier.classify(new EtagMismatchException("t", "a", "b")));
+        assertEquals(ErrorClass.TRANSIENT, GcpErrorClassifier.classify(new IOException("connection reset")));
+        assertEquals(ErrorClass.PERMANENT, GcpErrorClassifier.classify(new IllegalStateException("bug")));
+    }
+}
@@ -0,0 +1,120 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.config.RateLimitConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class GcpRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private static long elapsedMs(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    void queuesCallsBeyondTheRateOfTheProject() throws Exception {
+        var limiter = new GcpRateLimiter(new RateLimitConfig(true, 10, 10, 10, 10, 10, 10, 10), meterRegistry);
+
+        long start = System.nanoTime();
+        // the first 10 permits are the burst, the next 3 come at 100 ms intervals
+        for (int i = 0; i < 13; i++) {
+            limiter.acquire("project", RetryOperation.BIGQUERY_READ);
+        }
+
+        assertTrue(elapsedMs(start) >= 250, "waited only " + elapsedMs(start) + " ms");
+        var timer = meterRegistry
+                .get("gcp.ratelimit.wait")
+                .tag("limiter", "bigquery-read")
+                .timer();
+        assertEquals(13, timer.count());
+        assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) > 0);
+    }
+
+    @Test
+    void limitsProjectsAndOperationsSeparately() throws Exception {
+        var limiter = new GcpRateLimiter(new RateLimitConfig(true, 1, 1, 1, 1, 1, 1, 1), meterRegistry);
+
+        long start = System.nanoTime();
+        limiter.acquire("p1", RetryOperation.BIGQUERY_READ);
+        limiter.acquire("p2", RetryOperation.BIGQUERY_READ);
+        limiter.acquire("p1", RetryOperation.BIGQUERY_WRITE);
+        limiter.acquire("p1", RetryOperation.PROJECT_IAM);
+
+        assertTrue(elapsedMs(start) < 500, "waited " + elapsedMs(start) + " ms");
+    }
+
+    @Test
+    void tableWritesAllowTheBurstThenFollowTheTableRate() throws Exception {
+        var limiter = new GcpRateLimiter(new RateLimitConfig(true, 100, 100, 100, 100, 100, 5, 3), meterRegistry);
+        var table = TableId.of("project", "dataset", "table");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            limiter.acquireTableWrite(table);
+        }
+        assertTrue(elapsedMs(start) < 150, "burst waited " + elapsedMs(start) + " ms");
+
+        limiter.acquireTableWrite(TableId.of("project", "dataset", "other"));
+        limiter.acquireTableWrite(table);
+        assertTrue(elapsedMs(start) >= 150, "waited only " + elapsedMs(start) + " ms");
+    }
+
+    @Test
+    void acquireAsyncCompletesOnceThePermitIsAvailable() throws Exception {
+        var limiter = new GcpRateLimiter(new RateLimitConfig(true, 5, 5, 5, 5, 5, 5, 5), meterRegistry);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(
+                    limiter.acquireAsync("project", RetryOperation.PROJECT_IAM).isDone());
+        }
+
+        long start = System.nanoTime();
+        var permit = limiter.acquireAsync("project", RetryOperation.PROJECT_IAM);
+
+        assertFalse(permit.isDone());
+        permit.get(5, TimeUnit.SECONDS);
+        assertTrue(elapsedMs(start) >= 150, "waited only " + elapsedMs(start) + " ms");
+    }
+
+    @Test
+    void callersRejectedAtTheirDeadlineDoNotTakeAPermit() throws Exception {
+        var limiter = new GcpRateLimiter(new RateLimitConfig(true, 2, 2, 2, 2, 2, 2, 2), meterRegistry);
+        limiter.acquire("project", RetryOperation.PROJECT_IAM);
+        limiter.acquire("project", RetryOperation.PROJECT_IAM);
+
+        // the next permit comes in 500 ms, after the deadline of these callers
+        try (var ignored = new OperationContext(3, Duration.ofMillis(100)).enter()) {
+            for (int i = 0; i < 5; i++) {
+                assertThrows(
+                        RequestDeadlineExceededException.class,
+                        () -> limiter.acquire("project", RetryOperation.PROJECT_IAM));
+                var permit = limiter.acquireAsync("project", RetryOperation.PROJECT_IAM);
+                var error = assertThrows(ExecutionException.class, permit::get);
+                assertInstanceOf(RequestDeadlineExceededException.class, error.getCause());
+            }
+        }
+
+        long start = System.nanoTime();
+        limiter.acquire("project", RetryOperation.PROJECT_IAM);
+        assertTrue(elapsedMs(start) < 700, "waited " + elapsedMs(start) + " ms");
+    }
+
+    @Test
+    void disabledLimiterNeverWaits() throws Exception {
+        var limiter = new GcpRateLimiter(new RateLimitConfig(false, 1, 1, 1, 1, 1, 1, 1), meterRegistry);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("project", RetryOperation.BIGQUERY_WRITE);
+            limiter.acquireTableWrite(TableId.of("project", "dataset", "table"));
+        }
+
+        assertTrue(elapsedMs(start) < 500, "waited " + elapsedMs(start) + " ms");
+    }
+}
@@ -0,0 +1,151 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.witboost.provisioning.bigquery.config.IamWriteCoalescerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class IamWriteCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void concurrentRequestsForSameResourceAreWrittenOnce() throws Exception {
+        var coalescer = new IamWriteCoalescer(new IamWriteCoalescerConfig(Duration.ofMillis(300)), meterRegistry);
+        var writes = new AtomicInteger();
+        Map<String, Set<String>> written = new ConcurrentHashMap<>();
+        IamWriteCoalescer.BatchWriter writer = additions -> {
+            writes.incrementAndGet();
+            written.putAll(additions);
+            return CompletableFuture.completedFuture(null);
+        };
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String member = "user:u" + i + "@example.com";
+            futures.add(coalescer.submit("project", List.of("roles/viewer"), List.of(member), writer));
+        }
+        for (var future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, writes.get());
+        assertEquals(4, written.get("roles/viewer").size());
+        assertEquals(
+                4.0,
+                meterRegistry.get("bigquery.iam.coalesced.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void differentResourcesAreWrittenSeparately() throws Exception {
+        var coalescer = new IamWriteCoalescer(new IamWriteCoalescerConfig(Duration.ZERO), meterRegistry);
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+
+        var p1 = coalescer.submit("p1", List.of("roles/viewer"), List.of("user:a@example.com"), a -> {
+            writes.add("p1");
+            return CompletableFuture.completedFuture(null);
+        });
+        var p2 = coalescer.submit("p2", List.of("roles/viewer"), List.of("user:a@example.com"), a -> {
+            writes.add("p2");
+            return CompletableFuture.completedFuture(null);
+        });
+        CompletableFuture.allOf(p1, p2).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Set.of("p1", "p2"), new HashSet<>(writes));
+    }
+
+    @Test
+    void writesToSameResourceDoNotOverlap() throws Exception {
+        var coalescer = new IamWriteCoalescer(new IamWriteCoalescerConfig(Duration.ZERO), meterRegistry);
+        var firstWrite = new CompletableFuture<Void>();
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+
+        var first = coalescer.submit("project", List.of("roles/viewer"), List.of("user:a@example.com"), a -> {
+            writes.add("first");
+            return firstWrite;
+        });
+        // wait for the first batch to be closed, so that the second request opens a new one
+        while (writes.isEmpty()) {
+            Thread.sleep(10);
+        }
+        var second = coalescer.submit("project", List.of("roles/viewer"), List.of("user:b@example.com"), a -> {
+            writes.add("second");
+            return CompletableFuture.completedFuture(null);
+        });
+
+        Thread.sleep(200);
+        assertEquals(List.of("first"), writes);
+        assertFalse(second.isDone());
+
+        firstWrite.complete(null);
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("first", "second"), writes);
+    }
+
+    @Test
+    void writerFailureIsReturnedToEveryRequestOfTheBatch() {
+        var coalescer = new IamWriteCoalescer(new IamWriteCoalescerConfig(Duration.ofMillis(300)), meterRegistry);
+        IamWriteCoalescer.BatchWriter writer =
+                additions -> CompletableFuture.failedFuture(new IllegalStateException("Permission denied"));
+
+        var first = coalescer.submit("project", List.of("roles/viewer"), List.of("user:a@example.com"), writer);
+        var second = coalescer.submit("project", List.of("roles/viewer"), List.of("user:b@example.com"), writer);
+
+        for (var future : List.of(first, second)) {
+            var ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, ex.getCause());
+        }
+    }
+
+    @Test
+    void batchIsWrittenWithTheLatestDeadlineOfItsRequests() throws Exception {
+        var coalescer = new IamWriteCoalescer(new IamWriteCoalescerConfig(Duration.ofMillis(300)), meterRegistry);
+        var writeContext = new CompletableFuture<OperationContext>();
+        IamWriteCoalescer.BatchWriter writer = additions -> {
+            writeContext.complete(OperationContext.current().orElseThrow());
+            return CompletableFuture.completedFuture(null);
+        };
+
+        CompletableFuture<Void> first;
+        try (var ignored = new OperationContext(1, Duration.ofMillis(100)).enter()) {
+            first = coalescer.submit("project", List.of("roles/viewer"), List.of("user:a@example.com"), writer);
+        }
+        CompletableFuture<Void> second;
+        try (var ignored = new OperationContext(5, Duration.ofMinutes(1)).enter()) {
+            second = coalescer.submit("project", List.of("roles/viewer"), List.of("user:b@example.com"), writer);
+        }
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        // the opening request expired before the window closed, the batch runs within the deadline of the second one
+        var context = writeContext.get();
+        assertFalse(context.isExpired());
+        assertTrue(context.remainingTime().orElseThrow().compareTo(Duration.ofSeconds(30)) > 0);
+        assertEquals(5, context.remainingRetries());
+    }
+
+    @Test
+    void resourcesAreForgottenOnceWritten() throws Exception {
+        var coalescer = new IamWriteCoalescer(new IamWriteCoalescerConfig(Duration.ZERO), meterRegistry);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(coalescer.submit(
+                    "project" + i,
+                    List.of("roles/viewer"),
+                    List.of("user:a@example.com"),
+                    a -> CompletableFuture.completedFuture(null)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        // the cleanup runs right after the futures of the requests are completed
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.resourcesWriting() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, coalescer.resourcesWriting());
+    }
+}
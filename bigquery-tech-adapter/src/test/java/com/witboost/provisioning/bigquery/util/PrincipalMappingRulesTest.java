@@ -0,0 +1,91 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.cloud.Identity;
+import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig;
+import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig.IdentityType;
+import com.witboost.provisioning.bigquery.config.PrincipalMappingServiceConfig.Rule;
+import com.witboost.provisioning.model.common.Problem;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class PrincipalMappingRulesTest {
+
+    private final PrincipalMappingRules rules = PrincipalMappingRules.compile(new PrincipalMappingServiceConfig(
+            "@example.com",
+            List.of(
+                    new Rule("user:", IdentityType.USER, "_", "(.*)@contractors\\.com", "$1", "@example.com"),
+                    new Rule("partner:", IdentityType.GROUP, null, null, null, "@partner.com"),
+                    new Rule("sa:", IdentityType.SERVICE_ACCOUNT, null, "([a-z-]+)/([a-z-]+)", "$2@$1", null))));
+
+    @Test
+    public void testBuiltInRules() {
+        assertEquals(
+                Identity.user("name.surname@example.com"),
+                rules.map("user:name.surname_example.com").get());
+        assertEquals(
+                Identity.user("a_b@example.com"),
+                rules.map("user:a_b_example.com").get());
+        assertEquals(Identity.group("dev@example.com"), rules.map("group:dev").get());
+    }
+
+    @Test
+    public void testConfiguredRulesComeFirst() {
+        assertEquals(
+                Identity.user("name@example.com"),
+                rules.map("user:name_contractors.com").get());
+        assertEquals(Identity.group("dev@partner.com"), rules.map("partner:dev").get());
+        assertEquals(
+                Identity.serviceAccount("my-sa@my-project.iam.gserviceaccount.com"),
+                PrincipalMappingRules.compile(new PrincipalMappingServiceConfig(
+                                "",
+                                List.of(new Rule(
+                                        "sa:",
+                                        IdentityType.SERVICE_ACCOUNT,
+                                        null,
+                                        "([a-z-]+)/([a-z-]+)",
+                                        "$2@$1",
+                                        ".iam.gserviceaccount.com"))))
+                        .map("sa:my-project/my-sa")
+                        .get());
+    }
+
+    @Test
+    public void testSubjectNotMatchingTheRulesOfItsPrefix() {
+        var actualRes = rules.map("sa:MyProject");
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(
+                new Problem("The subject sa:MyProject has not the expected format for a service account"),
+                actualRes.getLeft().problems().get(0));
+    }
+
+    @Test
+    public void testUnknownPrefix() {
+        var actualRes = rules.map("robot:name");
+
+        assertTrue(actualRes.isLeft());
+        assertEquals(
+                new Problem("The subject robot:name is neither a Witboost user nor a group"),
+                actualRes.getLeft().problems().get(0));
+    }
+
+    @Test
+    public void testInvalidRulesFailAtCompileTime() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> PrincipalMappingRules.compile(new PrincipalMappingServiceConfig(
+                        "", List.of(new Rule("sa:", IdentityType.SERVICE_ACCOUNT, null, "([a-z", null, null)))));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> PrincipalMappingRules.compile(new PrincipalMappingServiceConfig(
+                        "", List.of(new Rule("", IdentityType.USER, null, null, null, null)))));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> PrincipalMappingRules.compile(
+                        new PrincipalMappingServiceConfig("", List.of(new Rule("sa:", null, null, null, null, null)))));
+    }
+}
@@ -0,0 +1,133 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.PermissionDeniedException;
+import com.google.cloud.bigquery.BigQueryException;
+import com.witboost.provisioning.bigquery.config.CircuitBreakerConfig;
+import com.witboost.provisioning.bigquery.util.ProjectCircuitBreaker.State;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class ProjectCircuitBreakerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ProjectCircuitBreaker newBreaker(Duration openDuration) {
+        return new ProjectCircuitBreaker(new CircuitBreakerConfig(true, 4, 4, 50, openDuration, 2), meterRegistry);
+    }
+
+    private void fail(ProjectCircuitBreaker breaker, String project, Throwable error) {
+        breaker.acquire(project);
+        breaker.onFailure(project, error);
+    }
+
+    private void succeed(ProjectCircuitBreaker breaker, String project) {
+        breaker.acquire(project);
+        breaker.onSuccess(project);
+    }
+
+    private double state(String project) {
+        return meterRegistry
+                .get("gcp.circuit.state")
+                .tag("project", project)
+                .gauge()
+                .value();
+    }
+
+    @Test
+    void opensWhenTheFailureRateReachesTheThreshold() {
+        var breaker = newBreaker(Duration.ofMinutes(1));
+
+        succeed(breaker, "project");
+        succeed(breaker, "project");
+        fail(breaker, "project", new BigQueryException(503, "Service unavailable"));
+        assertEquals(State.CLOSED, breaker.state("project"));
+        fail(breaker, "project", new BigQueryException(429, "Too many requests"));
+
+        assertEquals(State.OPEN, breaker.state("project"));
+        assertEquals(2.0, state("project"));
+        var ex = assertThrows(CircuitOpenException.class, () -> breaker.acquire("project"));
+        assertTrue(ex.getMessage().contains("Project 'project' is temporarily unavailable"));
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("gcp.circuit.rejected")
+                        .tag("project", "project")
+                        .counter()
+                        .count());
+        // other projects are not affected
+        succeed(breaker, "other");
+    }
+
+    @Test
+    void errorsOfSingleRequestsDontCount() {
+        var breaker = newBreaker(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 8; i++) {
+            fail(breaker, "project", new BigQueryException(404, "Not found"));
+            fail(breaker, "project", new BigQueryException(403, "Access denied"));
+            fail(
+                    breaker,
+                    "project",
+                    new PermissionDeniedException(
+                            new StatusRuntimeException(Status.PERMISSION_DENIED),
+                            GrpcStatusCode.of(Status.Code.PERMISSION_DENIED),
+                            false));
+        }
+
+        assertEquals(State.CLOSED, breaker.state("project"));
+    }
+
+    @Test
+    void closesAfterSuccessfulHalfOpenProbes() throws Exception {
+        var breaker = newBreaker(Duration.ofMillis(50));
+        for (int i = 0; i < 4; i++) {
+            fail(breaker, "project", new BigQueryException(429, "Too many requests"));
+        }
+        assertEquals(State.OPEN, breaker.state("project"));
+        Thread.sleep(100);
+
+        breaker.acquire("project");
+        breaker.acquire("project");
+        assertEquals(State.HALF_OPEN, breaker.state("project"));
+        // only as many probes as configured are let through
+        assertThrows(CircuitOpenException.class, () -> breaker.acquire("project"));
+        breaker.onSuccess("project");
+        breaker.onSuccess("project");
+
+        assertEquals(State.CLOSED, breaker.state("project"));
+        assertEquals(0.0, state("project"));
+    }
+
+    @Test
+    void reopensWhenAProbeFails() throws Exception {
+        var breaker = newBreaker(Duration.ofMillis(50));
+        for (int i = 0; i < 4; i++) {
+            fail(breaker, "project", new BigQueryException(500, "Internal error"));
+        }
+        Thread.sleep(100);
+
+        fail(breaker, "project", new BigQueryException(500, "Internal error"));
+
+        assertEquals(State.OPEN, breaker.state("project"));
+        assertThrows(CircuitOpenException.class, () -> breaker.acquire("project"));
+    }
+
+    @Test
+    void disabledBreakerNeverOpens() {
+        var breaker = new ProjectCircuitBreaker(
+                new CircuitBreakerConfig(false, 4, 4, 50, Duration.ofMinutes(1), 2), meterRegistry);
+
+        for (int i = 0; i < 10; i++) {
+            fail(breaker, "project", new BigQueryException(503, "Service unavailable"));
+        }
+
+        assertEquals(State.CLOSED, breaker.state("project"));
+        breaker.acquire("project");
+    }
+}
@@ -0,0 +1,180 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.witboost.provisioning.bigquery.config.JobJournalConfig;
+import com.witboost.provisioning.bigquery.model.JournalEntry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class ProvisioningJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private ProvisioningJournal open(Path path, Duration stepTtl) {
+        return new ProvisioningJournal(new JobJournalConfig(path.toString(), stepTtl, DataSize.ofMegabytes(16)));
+    }
+
+    @Test
+    void fileIsCompactedOnceItGrowsPastTheThreshold() throws IOException {
+        Path path = dir.resolve("journal.jsonl");
+        var journal = new ProvisioningJournal(
+                new JobJournalConfig(path.toString(), Duration.ofHours(1), DataSize.ofKilobytes(4)));
+
+        for (int i = 0; i < 200; i++) {
+            journal.stepCompleted("op-" + i, "dataset");
+            journal.operationCompleted("op-" + i);
+        }
+        journal.stepCompleted("op-live", "dataset");
+
+        assertTrue(Files.size(path) < DataSize.ofKilobytes(4).toBytes());
+        journal.close();
+        var reopened = open(path, Duration.ofHours(1));
+        assertTrue(reopened.isStepCompleted("op-live", "dataset"));
+        assertFalse(reopened.isStepCompleted("op-0", "dataset"));
+        reopened.close();
+    }
+
+    @Test
+    void journalInUseByAnotherInstanceIsRejected() throws IOException {
+        Path path = dir.resolve("journal.jsonl");
+        var journal = open(path, Duration.ofHours(1));
+
+        var ex = assertThrows(IllegalStateException.class, () -> open(path, Duration.ofHours(1)));
+        assertTrue(ex.getMessage().contains("in use by another instance"));
+
+        journal.close();
+        open(path, Duration.ofHours(1)).close();
+    }
+
+    @Test
+    void completedStepsSurviveARestart() throws IOException {
+        Path path = dir.resolve("journal.jsonl");
+        var journal = open(path, Duration.ofHours(1));
+        journal.stepCompleted("op-1", "dataset");
+        journal.stepCompleted("op-1", "table");
+        journal.close();
+
+        var reopened = open(path, Duration.ofHours(1));
+
+        assertTrue(reopened.isStepCompleted("op-1", "dataset"));
+        assertTrue(reopened.isStepCompleted("op-1", "table"));
+        assertFalse(reopened.isStepCompleted("op-1", "table-acls"));
+        assertFalse(reopened.isStepCompleted("op-2", "dataset"));
+        reopened.close();
+    }
+
+    @Test
+    void stepsAreForgottenOnceTheOperationCompletes() throws IOException {
+        Path path = dir.resolve("journal.jsonl");
+        var journal = open(path, Duration.ofHours(1));
+        journal.stepCompleted("op-1", "dataset");
+        journal.operationCompleted("op-1");
+        assertFalse(journal.isStepCompleted("op-1", "dataset"));
+        journal.close();
+
+        var reopened = open(path, Duration.ofHours(1));
+
+        assertFalse(reopened.isStepCompleted("op-1", "dataset"));
+        reopened.close();
+        assertEquals(List.of(), Files.readAllLines(path));
+    }
+
+    @Test
+    void expiredStepsAreRunAgain() throws IOException {
+        var journal = open(dir.resolve("journal.jsonl"), Duration.ZERO);
+
+        journal.stepCompleted("op-1", "dataset");
+
+        assertFalse(journal.isStepCompleted("op-1", "dataset"));
+        journal.close();
+    }
+
+    @Test
+    void pendingJobsSurviveARestartUntilFinished() throws IOException {
+        Path path = dir.resolve("journal.jsonl");
+        var journal = open(path, Duration.ofHours(1));
+        journal.jobSubmitted("token-1", "provision", "descriptor-1", false, List.of());
+        journal.jobSubmitted("token-2", "updateAcl", "descriptor-2", false, List.of("user:a_email.com"));
+        journal.jobFinished("token-1");
+        journal.close();
+
+        var reopened = open(path, Duration.ofHours(1));
+
+        var pending = reopened.pendingJobs();
+        assertEquals(1, pending.size());
+        assertEquals(JournalEntry.Type.JOB_SUBMITTED, pending.get(0).type());
+        assertEquals("token-2", pending.get(0).key());
+        assertEquals("updateAcl", pending.get(0).operation());
+        assertEquals("descriptor-2", pending.get(0).descriptor());
+        assertEquals(List.of("user:a_email.com"), pending.get(0).refs());
+        reopened.close();
+    }
+
+    @Test
+    void truncatedLinesAreSkipped() throws IOException {
+        Path path = dir.resolve("journal.jsonl");
+        var journal = open(path, Duration.ofHours(1));
+        journal.stepCompleted("op-1", "dataset");
+        journal.close();
+        Files.writeString(path, "{\"type\":\"STEP_COMPL", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        var reopened = open(path, Duration.ofHours(1));
+
+        assertTrue(reopened.isStepCompleted("op-1", "dataset"));
+        reopened.close();
+    }
+
+    @Test
+    void stepsOfEveryOperationInAScopeAreForgotten() throws IOException {
+        Path path = dir.resolve("journal.jsonl");
+        var journal = open(path, Duration.ofHours(1));
+        String first = ProvisioningJournal.operationKey("component-1", Map.of("table", "t1"))
+                .orElseThrow();
+        String second = ProvisioningJournal.operationKey("component-1", Map.of("table", "t2"))
+                .orElseThrow();
+        String other = ProvisioningJournal.operationKey("component-2", Map.of("table", "t1"))
+                .orElseThrow();
+        journal.stepCompleted(first, "table-acls");
+        journal.stepCompleted(second, "table-acls");
+        journal.stepCompleted(other, "table-acls");
+
+        journal.scopeCompleted("component-1");
+
+        assertFalse(journal.isStepCompleted(first, "table-acls"));
+        assertFalse(journal.isStepCompleted(second, "table-acls"));
+        assertTrue(journal.isStepCompleted(other, "table-acls"));
+        journal.close();
+        var reopened = open(path, Duration.ofHours(1));
+        assertFalse(reopened.isStepCompleted(first, "table-acls"));
+        assertTrue(reopened.isStepCompleted(other, "table-acls"));
+        reopened.close();
+    }
+
+    @Test
+    void operationKeyIsTheScopeAndTheHashOfTheRequest() {
+        var key = ProvisioningJournal.operationKey("component-1", Map.of("table", "t1"));
+
+        assertEquals("component-1/" + ContentHash.of(Map.of("table", "t1")).orElseThrow(), key.orElseThrow());
+    }
+
+    @Test
+    void journalWithoutPathIsKeptInMemory() throws IOException {
+        var journal = new ProvisioningJournal(new JobJournalConfig("", Duration.ofHours(1), DataSize.ofMegabytes(16)));
+
+        journal.stepCompleted("op-1", "dataset");
+
+        assertTrue(journal.isStepCompleted("op-1", "dataset"));
+        journal.close();
+    }
+}
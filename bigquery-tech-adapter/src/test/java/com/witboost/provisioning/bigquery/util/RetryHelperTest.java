@@ -4,9 +4,19 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import com.google.api.gax.grpc.GrpcStatusCode;
 import com.google.api.gax.rpc.AbortedException;
+import com.google.api.gax.rpc.UnavailableException;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
 import com.witboost.provisioning.bigquery.config.RetryConfig;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 
@@ -17,55 +27,240 @@ class RetryHelperTest {
                 new StatusRuntimeException(Status.ABORTED), GrpcStatusCode.of(Status.Code.ABORTED), true);
     }
 
+    private UnavailableException newUnavailableException() {
+        return new UnavailableException(
+                new StatusRuntimeException(Status.UNAVAILABLE), GrpcStatusCode.of(Status.Code.UNAVAILABLE), true);
+    }
+
     @Test
     void returnsImmediatelyOnSuccess() throws Exception {
-        var config = new RetryConfig(100, 200, 1000);
-        var helper = new RetryHelper(config);
+        var config = new RetryConfig(100, 200, 1000, 5, 3, 20, Map.of());
+        var helper = new RetryHelper(config, new SimpleMeterRegistry());
 
-        String result = helper.retryOnAbortedException(() -> "ok");
+        String result = helper.retry(RetryOperation.BIGQUERY_READ, () -> "ok");
 
         assertEquals("ok", result);
     }
 
     @Test
-    void retriesOnAbortedExceptionThenSucceeds() throws Exception {
-        var config = new RetryConfig(10, 50, 5000);
-        var helper = new RetryHelper(config);
+    void retriesTransientErrorsThenSucceeds() throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var config = new RetryConfig(10, 50, 5000, 5, 5, 20, Map.of());
+        var helper = new RetryHelper(config, meterRegistry);
         var counter = new AtomicInteger(0);
 
-        String result = helper.retryOnAbortedException(() -> {
-            if (counter.incrementAndGet() < 3) {
-                throw newAbortedException();
+        String result = helper.retry(RetryOperation.BIGQUERY_WRITE, () -> {
+            if (counter.incrementAndGet() == 1) {
+                throw new BigQueryException(503, "Service unavailable");
+            }
+            if (counter.get() == 2) {
+                throw newUnavailableException();
             }
             return "success";
         });
 
         assertEquals("success", result);
         assertEquals(3, counter.get());
+        assertEquals(
+                2.0,
+                meterRegistry
+                        .get("gcp.retry.attempts")
+                        .tag("operation", "bigquery-write")
+                        .tag("outcome", "retried")
+                        .counter()
+                        .count());
+        assertEquals(
+                3.0,
+                meterRegistry
+                        .get("gcp.calls.attempts")
+                        .tag("outcome", "success")
+                        .summary()
+                        .totalAmount());
     }
 
     @Test
-    void throwsAbortedExceptionWhenMaxTotalWaitExceeded() {
+    void retriesRateLimitedCalls() throws Exception {
+        var helper = new RetryHelper(new RetryConfig(10, 50, 5000, 5, 3, 20, Map.of()), new SimpleMeterRegistry());
+        var counter = new AtomicInteger(0);
+
+        String result = helper.retry(RetryOperation.TABLE_IAM, () -> {
+            if (counter.incrementAndGet() == 1) {
+                throw new BigQueryException(
+                        403, "Exceeded rate limits", new BigQueryError("rateLimitExceeded", "", ""));
+            }
+            return "success";
+        });
+
+        assertEquals("success", result);
+        assertEquals(2, counter.get());
+    }
+
+    @Test
+    void throwsWhenMaxTotalWaitExceeded() {
         // Very short maxTotalWaitMs so it gives up quickly
-        var config = new RetryConfig(10, 20, 1);
-        var helper = new RetryHelper(config);
+        var config = new RetryConfig(10, 20, 1, 5, 10, 20, Map.of());
+        var helper = new RetryHelper(config, new SimpleMeterRegistry());
 
         assertThrows(
-                AbortedException.class,
-                () -> helper.retryOnAbortedException(() -> {
-                    throw newAbortedException();
+                UnavailableException.class,
+                () -> helper.retry(RetryOperation.PROJECT_IAM, () -> {
+                    throw newUnavailableException();
                 }));
     }
 
     @Test
-    void propagatesNonAbortedExceptionImmediately() {
-        var config = new RetryConfig(10, 50, 5000);
-        var helper = new RetryHelper(config);
+    void givesUpAfterTheAttemptsOfTheOperationPolicy() {
+        var config = new RetryConfig(
+                10, 20, 5000, 5, 10, 20, Map.of("bigquery-read", new RetryConfig.Policy(2, null, null, null)));
+        var helper = new RetryHelper(config, new SimpleMeterRegistry());
+        var counter = new AtomicInteger(0);
+
+        assertThrows(
+                BigQueryException.class,
+                () -> helper.retry(RetryOperation.BIGQUERY_READ, () -> {
+                    counter.incrementAndGet();
+                    throw new BigQueryException(500, "Internal error");
+                }));
+
+        assertEquals(2, counter.get());
+    }
+
+    @Test
+    void stopsRetryingWhenTheRequestBudgetIsExhausted() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var helper = new RetryHelper(new RetryConfig(10, 20, 5000, 5, 10, 20, Map.of()), meterRegistry);
+        var counter = new AtomicInteger(0);
+
+        try (var ignored = new OperationContext(2).enter()) {
+            assertThrows(
+                    BigQueryException.class,
+                    () -> helper.retry(RetryOperation.BIGQUERY_WRITE, () -> {
+                        counter.incrementAndGet();
+                        throw new BigQueryException(503, "Service unavailable");
+                    }));
+        }
+
+        assertEquals(3, counter.get());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("gcp.retry.attempts")
+                        .tag("outcome", "budget_exhausted")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void retryAsyncSchedulesAttemptsWithoutBlockingTheCaller() throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var helper = new RetryHelper(new RetryConfig(200, 400, 5000, 5, 5, 20, Map.of()), meterRegistry);
+        var counter = new AtomicInteger(0);
+
+        long start = System.nanoTime();
+        CompletableFuture<String> result = helper.retryAsync(RetryOperation.BIGQUERY_WRITE, () -> {
+            if (counter.incrementAndGet() < 3) {
+                return CompletableFuture.failedFuture(new BigQueryException(503, "Service unavailable"));
+            }
+            return CompletableFuture.completedFuture("success");
+        });
+        long returnedAfterMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(returnedAfterMs < 200, "the caller waited " + returnedAfterMs + " ms");
+        assertEquals(1, counter.get());
+        assertEquals("success", result.get(5, TimeUnit.SECONDS));
+        assertEquals(3, counter.get());
+        assertEquals(
+                2.0,
+                meterRegistry
+                        .get("gcp.retry.attempts")
+                        .tag("outcome", "retried")
+                        .counter()
+                        .count());
+        helper.shutdown();
+    }
+
+    @Test
+    void retryAsyncCompletesWithTheLastErrorOnceExhausted() {
+        var config = new RetryConfig(
+                10, 20, 5000, 5, 10, 20, Map.of("bigquery-read", new RetryConfig.Policy(2, null, null, null)));
+        var helper = new RetryHelper(config, new SimpleMeterRegistry());
+        var counter = new AtomicInteger(0);
+
+        var result = helper.retryAsync(RetryOperation.BIGQUERY_READ, () -> {
+            counter.incrementAndGet();
+            return CompletableFuture.failedFuture(new BigQueryException(500, "Internal error"));
+        });
+
+        var ex = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(BigQueryException.class, ex.getCause());
+        assertEquals(2, counter.get());
+        helper.shutdown();
+    }
+
+    @Test
+    void retryAsyncRunsAttemptsWithinTheCallerContext() throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var helper = new RetryHelper(new RetryConfig(10, 20, 5000, 5, 10, 20, Map.of()), meterRegistry);
+        var context = new OperationContext(1);
+        var counter = new AtomicInteger(0);
+        var contexts = new CopyOnWriteArrayList<Object>();
+
+        CompletableFuture<String> result;
+        try (var ignored = context.enter()) {
+            result = helper.retryAsync(RetryOperation.BIGQUERY_WRITE, () -> {
+                counter.incrementAndGet();
+                contexts.add(OperationContext.current().orElse(null));
+                return CompletableFuture.failedFuture(new BigQueryException(503, "Service unavailable"));
+            });
+        }
+
+        assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertEquals(2, counter.get());
+        assertTrue(contexts.stream().allMatch(c -> c == context));
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("gcp.retry.attempts")
+                        .tag("outcome", "budget_exhausted")
+                        .counter()
+                        .count());
+        helper.shutdown();
+    }
+
+    @Test
+    void stopsRetryingWhenTheNextAttemptWouldMissTheDeadline() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var helper = new RetryHelper(new RetryConfig(200, 400, 5000, 5, 10, 20, Map.of()), meterRegistry);
+        var counter = new AtomicInteger(0);
+
+        try (var ignored = new OperationContext(20, Duration.ofMillis(100)).enter()) {
+            assertThrows(
+                    BigQueryException.class,
+                    () -> helper.retry(RetryOperation.BIGQUERY_WRITE, () -> {
+                        counter.incrementAndGet();
+                        throw new BigQueryException(503, "Service unavailable");
+                    }));
+        }
+
+        assertEquals(1, counter.get());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("gcp.retry.attempts")
+                        .tag("outcome", "deadline_exceeded")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void propagatesPermanentErrorsImmediately() {
+        var config = new RetryConfig(10, 50, 5000, 5, 3, 20, Map.of());
+        var helper = new RetryHelper(config, new SimpleMeterRegistry());
         var counter = new AtomicInteger(0);
 
         var thrown = assertThrows(
                 IllegalStateException.class,
-                () -> helper.retryOnAbortedException(() -> {
+                () -> helper.retry(RetryOperation.BIGQUERY_WRITE, () -> {
                     counter.incrementAndGet();
                     throw new IllegalStateException("not retryable");
                 }));
@@ -74,13 +269,148 @@ class RetryHelperTest {
         assertEquals(1, counter.get());
     }
 
+    @Test
+    void leavesConflictsToTheReadModifyWriteCycle() {
+        var helper = new RetryHelper(new RetryConfig(10, 50, 5000, 5, 3, 20, Map.of()), new SimpleMeterRegistry());
+        var counter = new AtomicInteger(0);
+
+        assertThrows(
+                AbortedException.class,
+                () -> helper.retry(RetryOperation.PROJECT_IAM, () -> {
+                    counter.incrementAndGet();
+                    throw newAbortedException();
+                }));
+
+        assertEquals(1, counter.get());
+    }
+
     @Test
     void returnsNullWhenCallableReturnsNull() throws Exception {
-        var config = new RetryConfig(10, 50, 5000);
-        var helper = new RetryHelper(config);
+        var config = new RetryConfig(10, 50, 5000, 5, 3, 20, Map.of());
+        var helper = new RetryHelper(config, new SimpleMeterRegistry());
 
-        Void result = helper.retryOnAbortedException(() -> null);
+        Void result = helper.retry(RetryOperation.BIGQUERY_READ, () -> null);
 
         assertNull(result);
     }
+
+    @Test
+    void retriesOnConflictUntilTheCycleSucceeds() throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var helper = new RetryHelper(new RetryConfig(10, 50, 5000, 5, 3, 20, Map.of()), meterRegistry);
+        var counter = new AtomicInteger(0);
+
+        String result = helper.retryOnConflict("test", RetryOperation.BIGQUERY_WRITE, () -> {
+            if (counter.incrementAndGet() < 3) {
+                throw new EtagMismatchException("resource", "etag-1", "etag-2");
+            }
+            return "merged";
+        });
+
+        assertEquals("merged", result);
+        assertEquals(3, counter.get());
+        assertEquals(
+                2.0,
+                meterRegistry
+                        .get("bigquery.write.conflicts")
+                        .tag("outcome", "retried")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void givesUpOnConflictAfterMaxAttempts() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var helper = new RetryHelper(new RetryConfig(10, 50, 5000, 3, 3, 20, Map.of()), meterRegistry);
+        var counter = new AtomicInteger(0);
+
+        assertThrows(
+                BigQueryException.class,
+                () -> helper.retryOnConflict("test", RetryOperation.BIGQUERY_WRITE, () -> {
+                    counter.incrementAndGet();
+                    throw new BigQueryException(409, "Conflict");
+                }));
+
+        assertEquals(3, counter.get());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("bigquery.write.conflicts")
+                        .tag("outcome", "exhausted")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void doesNotRetryNonConflictErrors() {
+        var helper = new RetryHelper(new RetryConfig(10, 50, 5000, 3, 3, 20, Map.of()), new SimpleMeterRegistry());
+        var counter = new AtomicInteger(0);
+
+        assertThrows(
+                BigQueryException.class,
+                () -> helper.retryOnConflict("test", RetryOperation.BIGQUERY_WRITE, () -> {
+                    counter.incrementAndGet();
+                    throw new BigQueryException(403, "Forbidden");
+                }));
+
+        assertEquals(1, counter.get());
+    }
+
+    @Test
+    void conflictingCyclesAreSpreadWithBackoff() throws Exception {
+        var helper = new RetryHelper(new RetryConfig(50, 100, 5000, 5, 3, 20, Map.of()), new SimpleMeterRegistry());
+        var counter = new AtomicInteger(0);
+        long start = System.nanoTime();
+
+        helper.retryOnConflict("test", RetryOperation.PROJECT_IAM, () -> {
+            if (counter.incrementAndGet() < 3) {
+                throw newAbortedException();
+            }
+            return "merged";
+        });
+
+        assertEquals(3, counter.get());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 100);
+    }
+
+    @Test
+    void conflictingCyclesStopAtTheDeadlineOfTheRequest() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var helper = new RetryHelper(new RetryConfig(500, 1000, 5000, 5, 3, 20, Map.of()), meterRegistry);
+        var counter = new AtomicInteger(0);
+
+        try (var ignored = new OperationContext(20, Duration.ofMillis(200)).enter()) {
+            assertThrows(
+                    AbortedException.class,
+                    () -> helper.retryOnConflict("test", RetryOperation.PROJECT_IAM, () -> {
+                        counter.incrementAndGet();
+                        throw newAbortedException();
+                    }));
+        }
+
+        assertEquals(1, counter.get());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("bigquery.write.conflicts")
+                        .tag("outcome", "deadline_exceeded")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void asyncConflictingCyclesAreRunAgainAfterABackoff() throws Exception {
+        var helper = new RetryHelper(new RetryConfig(20, 50, 5000, 5, 3, 20, Map.of()), new SimpleMeterRegistry());
+        var counter = new AtomicInteger(0);
+
+        var result = helper.retryOnConflictAsync(
+                "test",
+                RetryOperation.PROJECT_IAM,
+                () -> counter.incrementAndGet() < 3
+                        ? CompletableFuture.failedFuture(newAbortedException())
+                        : CompletableFuture.completedFuture("merged"));
+
+        assertEquals("merged", result.get(5, TimeUnit.SECONDS));
+        assertEquals(3, counter.get());
+    }
 }
@@ -0,0 +1,174 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.witboost.provisioning.bigquery.model.SchemaDifference;
+import com.witboost.provisioning.bigquery.model.SchemaDifference.Kind;
+import com.witboost.provisioning.model.Column;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class SchemaCompatibilityCheckerTest {
+
+    private final Schema table = Schema.of(
+            Field.newBuilder("id", StandardSQLTypeName.INT64)
+                    .setMode(Field.Mode.REQUIRED)
+                    .build(),
+            Field.of("name", StandardSQLTypeName.STRING),
+            Field.of(
+                    "address",
+                    StandardSQLTypeName.STRUCT,
+                    Field.of("city", StandardSQLTypeName.STRING),
+                    Field.of(
+                            "geo",
+                            StandardSQLTypeName.STRUCT,
+                            Field.of("lat", StandardSQLTypeName.FLOAT64),
+                            Field.of("lon", StandardSQLTypeName.FLOAT64))),
+            Field.newBuilder("tags", StandardSQLTypeName.STRUCT, Field.of("value", StandardSQLTypeName.STRING))
+                    .setMode(Field.Mode.REPEATED)
+                    .build());
+
+    @Test
+    public void testViewColumnsMatch() {
+        var columns = List.of(
+                column("ID", "INTEGER", "REQUIRED"), column("name", "STRING", null), column("address", null, null));
+
+        assertTrue(SchemaCompatibilityChecker.diffView(table, columns).isEmpty());
+    }
+
+    @Test
+    public void testViewColumnsDiffer() {
+        var columns = List.of(
+                column("id", "STRING", null),
+                column("name", null, "REQUIRED"),
+                column("missing", "STRING", null),
+                column("tags", "STRUCT", "NULLABLE"));
+
+        assertEquals(
+                List.of(
+                        new SchemaDifference(Kind.TYPE_MISMATCH, "id", "STRING", "INT64"),
+                        new SchemaDifference(Kind.MODE_MISMATCH, "name", "REQUIRED", "NULLABLE"),
+                        new SchemaDifference(Kind.MISSING_COLUMN, "missing", null, null),
+                        new SchemaDifference(Kind.MODE_MISMATCH, "tags", "NULLABLE", "REPEATED")),
+                SchemaCompatibilityChecker.diffView(table, columns));
+    }
+
+    @Test
+    public void testNestedViewSchema() {
+        var view = Schema.of(
+                Field.of(
+                        "address",
+                        LegacySQLTypeName.RECORD,
+                        Field.of("city", StandardSQLTypeName.BYTES),
+                        Field.of("zip", StandardSQLTypeName.STRING),
+                        Field.of("geo", StandardSQLTypeName.STRUCT, Field.of("lat", StandardSQLTypeName.FLOAT64))),
+                Field.of("other", StandardSQLTypeName.STRUCT, Field.of("field", StandardSQLTypeName.STRING)));
+
+        assertEquals(
+                List.of(
+                        new SchemaDifference(Kind.TYPE_MISMATCH, "address.city", "BYTES", "STRING"),
+                        new SchemaDifference(Kind.MISSING_COLUMN, "address.zip", null, null),
+                        new SchemaDifference(Kind.MISSING_COLUMN, "other", null, null)),
+                SchemaCompatibilityChecker.diffView(table, view));
+    }
+
+    @Test
+    public void testTableUpdateWithColumns() {
+        var columns = List.of(
+                column("id", "INT64", null),
+                column("name", "STRING", "REQUIRED"),
+                column("added", "DATE", null),
+                column("required_added", "DATE", "REQUIRED"));
+
+        assertEquals(
+                List.of(
+                        new SchemaDifference(Kind.MODE_MISMATCH, "name", "REQUIRED", "NULLABLE"),
+                        new SchemaDifference(Kind.MISSING_COLUMN, "address", null, null),
+                        new SchemaDifference(Kind.MISSING_COLUMN, "tags", null, null),
+                        new SchemaDifference(Kind.REQUIRED_COLUMN_ADDED, "required_added", null, null)),
+                SchemaCompatibilityChecker.diffTableUpdate(table, columns));
+    }
+
+    @Test
+    public void testTableUpdateWithRecordColumns() {
+        var columns = List.of(
+                column("id", "INT64", "REQUIRED"),
+                column("name", "STRING", null),
+                column("address", "STRUCT", null),
+                column("tags", "RECORD", "REPEATED"));
+
+        assertTrue(SchemaCompatibilityChecker.diffTableUpdate(table, columns).isEmpty());
+    }
+
+    @Test
+    public void testTableUpdateWithRecordColumnsDiffer() {
+        var columns = List.of(
+                column("id", "INT64", "REQUIRED"),
+                column("name", "STRING", null),
+                column("address", "STRING", null),
+                column("tags", "STRUCT", null));
+
+        assertEquals(
+                List.of(
+                        new SchemaDifference(Kind.TYPE_MISMATCH, "address", "STRING", "STRUCT"),
+                        new SchemaDifference(Kind.MODE_MISMATCH, "tags", "NULLABLE", "REPEATED")),
+                SchemaCompatibilityChecker.diffTableUpdate(table, columns));
+    }
+
+    @Test
+    public void testNestedTableUpdate() {
+        var desired = Schema.of(
+                Field.of("id", StandardSQLTypeName.INT64),
+                Field.of("name", StandardSQLTypeName.STRING),
+                Field.of(
+                        "address",
+                        StandardSQLTypeName.STRUCT,
+                        Field.of("city", StandardSQLTypeName.STRING),
+                        Field.of("geo", StandardSQLTypeName.STRING),
+                        Field.newBuilder("zip", StandardSQLTypeName.STRING)
+                                .setMode(Field.Mode.REQUIRED)
+                                .build()),
+                Field.newBuilder(
+                                "tags",
+                                StandardSQLTypeName.STRUCT,
+                                Field.of("value", StandardSQLTypeName.STRING),
+                                Field.of("weight", StandardSQLTypeName.INT64))
+                        .setMode(Field.Mode.REPEATED)
+                        .build(),
+                Field.of(
+                        "added",
+                        StandardSQLTypeName.STRUCT,
+                        Field.newBuilder("field", StandardSQLTypeName.STRING)
+                                .setMode(Field.Mode.REQUIRED)
+                                .build()));
+
+        assertEquals(
+                List.of(
+                        new SchemaDifference(Kind.TYPE_MISMATCH, "address.geo", "STRING", "STRUCT"),
+                        new SchemaDifference(Kind.REQUIRED_COLUMN_ADDED, "address.zip", null, null)),
+                SchemaCompatibilityChecker.diffTableUpdate(table, desired));
+    }
+
+    @Test
+    public void testDescriptions() {
+        assertEquals(
+                "column a.b is missing", new SchemaDifference(Kind.MISSING_COLUMN, "a.b", null, null).description());
+        assertEquals(
+                "column a is STRING, expected INT64",
+                new SchemaDifference(Kind.TYPE_MISMATCH, "a", "INT64", "STRING").description());
+    }
+
+    private static Column column(String name, String dataType, String constraint) {
+        var column = new Column();
+        column.setName(name);
+        column.setDataType(dataType);
+        column.setConstraint(Optional.ofNullable(constraint));
+        return column;
+    }
+}
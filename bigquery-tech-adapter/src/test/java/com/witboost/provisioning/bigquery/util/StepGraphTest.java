@@ -0,0 +1,122 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static io.vavr.control.Either.left;
+import static io.vavr.control.Either.right;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.vavr.control.Either;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class StepGraphTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static FailedOperation failure(String description) {
+        return new FailedOperation("error", List.of(new Problem(description, Optional.empty(), Set.of())));
+    }
+
+    @Test
+    void independentStepsRunConcurrently() {
+        var graph = new StepGraph(executor);
+        var bothRunning = new CountDownLatch(2);
+        // each step only completes once the other one has started as well
+        var first = graph.step("first", () -> awaitTogether(bothRunning, "a"));
+        var second = graph.step("second", () -> awaitTogether(bothRunning, "b"));
+        var joined = graph.step("joined", List.of(first, second), r -> right(r.get(first) + r.get(second)));
+
+        var result = graph.run();
+
+        assertTrue(result.isRight());
+        assertEquals("ab", result.get().get(joined));
+    }
+
+    @Test
+    void stepsNotStartedBeforeTheDeadlineAreCancelled() {
+        var graph = new StepGraph(executor);
+        var secondRan = new AtomicBoolean(false);
+        try (var ignored = new OperationContext(10, Duration.ofMillis(100)).enter()) {
+            var first = graph.step("first", () -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return right("done");
+            });
+            graph.step("second", List.of(first), r -> {
+                secondRan.set(true);
+                return right("never");
+            });
+        }
+
+        var result = graph.run();
+
+        assertFalse(secondRan.get());
+        assertTrue(result.isLeft());
+        assertEquals(1, result.getLeft().problems().size());
+        assertTrue(result.getLeft().problems().get(0).description().contains("step 'second' was not started"));
+    }
+
+    @Test
+    void dependentStepsAreSkippedAndFailuresMerged() {
+        var graph = new StepGraph(executor);
+        var dependentRan = new AtomicBoolean(false);
+        Either<FailedOperation, String> firstFailure = left(failure("first failed"));
+        var first = graph.step("first", () -> firstFailure);
+        graph.step("dependent", List.of(first), r -> {
+            dependentRan.set(true);
+            return right("never");
+        });
+        graph.step("independent", () -> left(failure("independent failed")));
+
+        var result = graph.run();
+
+        assertTrue(result.isLeft());
+        assertFalse(dependentRan.get());
+        assertEquals(
+                List.of("first failed", "independent failed"),
+                result.getLeft().problems().stream().map(Problem::description).toList());
+    }
+
+    @Test
+    void exceptionsAreReportedAsProblems() {
+        var graph = new StepGraph(executor);
+        graph.step("broken", () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        var result = graph.run();
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "Step 'broken' failed unexpectedly: boom",
+                result.getLeft().problems().get(0).description());
+    }
+
+    private static Either<FailedOperation, String> awaitTogether(CountDownLatch latch, String value) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS) ? right(value) : left(failure("steps did not overlap"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return left(failure("interrupted"));
+        }
+    }
+}
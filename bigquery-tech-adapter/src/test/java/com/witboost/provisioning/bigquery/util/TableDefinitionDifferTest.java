@@ -0,0 +1,99 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.ViewDefinition;
+import org.junit.jupiter.api.Test;
+
+class TableDefinitionDifferTest {
+
+    private Table tableWithSchema(Schema schema) {
+        Table table = mock(Table.class);
+        when(table.getDefinition()).thenReturn(StandardTableDefinition.of(schema));
+        return table;
+    }
+
+    @Test
+    void nullableModeMatchesUnsetMode() {
+        var existing = tableWithSchema(Schema.of(Field.newBuilder("id", StandardSQLTypeName.INT64)
+                .setMode(Field.Mode.NULLABLE)
+                .build()));
+
+        var differences =
+                TableDefinitionDiffer.diffTable(existing, Schema.of(Field.of("id", StandardSQLTypeName.INT64)));
+
+        assertTrue(differences.isEmpty());
+    }
+
+    @Test
+    void legacyTypeNamesMatchStandardOnes() {
+        var existing = tableWithSchema(Schema.of(Field.of("id", LegacySQLTypeName.INTEGER)));
+
+        var differences =
+                TableDefinitionDiffer.diffTable(existing, Schema.of(Field.of("id", StandardSQLTypeName.INT64)));
+
+        assertTrue(differences.isEmpty());
+    }
+
+    @Test
+    void detectsModePrecisionAndAddedColumns() {
+        var existing = tableWithSchema(Schema.of(Field.newBuilder("amount", StandardSQLTypeName.NUMERIC)
+                .setPrecision(10L)
+                .build()));
+
+        var changedField = TableDefinitionDiffer.diffTable(
+                existing,
+                Schema.of(Field.newBuilder("amount", StandardSQLTypeName.NUMERIC)
+                        .setPrecision(12L)
+                        .setMode(Field.Mode.REQUIRED)
+                        .build()));
+        var addedField = TableDefinitionDiffer.diffTable(
+                existing,
+                Schema.of(
+                        Field.newBuilder("amount", StandardSQLTypeName.NUMERIC)
+                                .setPrecision(10L)
+                                .build(),
+                        Field.of("currency", StandardSQLTypeName.STRING)));
+
+        assertEquals(2, changedField.size());
+        assertEquals(1, addedField.size());
+    }
+
+    @Test
+    void detectsQueryChangesOnViews() {
+        Table view = mock(Table.class);
+        when(view.getDefinition())
+                .thenReturn(ViewDefinition.newBuilder("SELECT a FROM p.d.t")
+                        .setUseLegacySql(false)
+                        .build());
+        when(view.getDescription()).thenReturn("desc");
+
+        assertTrue(TableDefinitionDiffer.diffView(view, "SELECT a FROM p.d.t", Schema.of(), "desc")
+                .isEmpty());
+        assertEquals(
+                1,
+                TableDefinitionDiffer.diffView(view, "SELECT a, b FROM p.d.t", Schema.of(), "desc")
+                        .size());
+    }
+
+    @Test
+    void legacySqlViewsAreAlwaysUpdated() {
+        Table view = mock(Table.class);
+        when(view.getDefinition())
+                .thenReturn(ViewDefinition.newBuilder("SELECT a FROM p.d.t")
+                        .setUseLegacySql(true)
+                        .build());
+        when(view.getDescription()).thenReturn("desc");
+
+        assertFalse(TableDefinitionDiffer.diffView(view, "SELECT a FROM p.d.t", Schema.of(), "desc")
+                .isEmpty());
+    }
+}
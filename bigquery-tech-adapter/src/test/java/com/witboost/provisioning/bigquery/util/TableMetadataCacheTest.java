@@ -0,0 +1,120 @@
+package com.witboost.provisioning.bigquery.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.witboost.provisioning.bigquery.config.TableMetadataCacheConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class TableMetadataCacheTest {
+
+    private final BigQuery bigQueryClient = mock(BigQuery.class);
+    private final TableId tableId = TableId.of("project", "dataset", "table");
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TableMetadataCache cacheWithTtl(Duration ttl) {
+        return new TableMetadataCache(new TableMetadataCacheConfig(ttl, Duration.ofMinutes(10), 100), meterRegistry);
+    }
+
+    private Table tableWithEtag(String etag) {
+        Table table = mock(Table.class);
+        when(table.getEtag()).thenReturn(etag);
+        return table;
+    }
+
+    @Test
+    void servesFreshEntryWithoutRemoteCall() {
+        Table table = mock(Table.class);
+        when(bigQueryClient.getTable(tableId)).thenReturn(table);
+        var cache = cacheWithTtl(Duration.ofMinutes(1));
+
+        assertSame(table, cache.get(bigQueryClient, tableId));
+        assertSame(table, cache.get(bigQueryClient, tableId));
+
+        verify(bigQueryClient, times(1)).getTable(tableId);
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .counter("bigquery.table.metadata.cache", "result", "hit")
+                        .count());
+    }
+
+    @Test
+    void revalidatesExpiredEntryWithEtag() {
+        Table table = tableWithEtag("etag-1");
+        Table probe = tableWithEtag("etag-1");
+        when(bigQueryClient.getTable(tableId)).thenReturn(table);
+        when(bigQueryClient.getTable(eq(tableId), any(BigQuery.TableOption.class)))
+                .thenReturn(probe);
+        var cache = cacheWithTtl(Duration.ZERO);
+
+        cache.get(bigQueryClient, tableId);
+        assertSame(table, cache.get(bigQueryClient, tableId));
+
+        verify(bigQueryClient, times(1)).getTable(tableId);
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .counter("bigquery.table.metadata.cache", "result", "revalidated")
+                        .count());
+    }
+
+    @Test
+    void refetchesWhenEtagChanged() {
+        Table table = tableWithEtag("etag-1");
+        Table updated = tableWithEtag("etag-2");
+        Table probe = tableWithEtag("etag-2");
+        when(bigQueryClient.getTable(tableId)).thenReturn(table, updated);
+        when(bigQueryClient.getTable(eq(tableId), any(BigQuery.TableOption.class)))
+                .thenReturn(probe);
+        var cache = cacheWithTtl(Duration.ZERO);
+
+        cache.get(bigQueryClient, tableId);
+        assertSame(updated, cache.get(bigQueryClient, tableId));
+
+        verify(bigQueryClient, times(2)).getTable(tableId);
+    }
+
+    @Test
+    void returnsNullWhenTableDisappears() {
+        Table table = tableWithEtag("etag-1");
+        when(bigQueryClient.getTable(tableId)).thenReturn(table);
+        when(bigQueryClient.getTable(eq(tableId), any(BigQuery.TableOption.class)))
+                .thenReturn(null);
+        var cache = cacheWithTtl(Duration.ZERO);
+
+        cache.get(bigQueryClient, tableId);
+
+        assertNull(cache.get(bigQueryClient, tableId));
+    }
+
+    @Test
+    void doesNotCacheMissingTables() {
+        when(bigQueryClient.getTable(tableId)).thenReturn(null);
+        var cache = cacheWithTtl(Duration.ofMinutes(1));
+
+        assertNull(cache.get(bigQueryClient, tableId));
+        assertNull(cache.get(bigQueryClient, tableId));
+
+        verify(bigQueryClient, times(2)).getTable(tableId);
+    }
+
+    @Test
+    void evictForcesRefetch() {
+        when(bigQueryClient.getTable(tableId)).thenReturn(mock(Table.class));
+        var cache = cacheWithTtl(Duration.ofMinutes(1));
+
+        cache.get(bigQueryClient, tableId);
+        cache.evict(tableId);
+        cache.get(bigQueryClient, tableId);
+
+        verify(bigQueryClient, times(2)).getTable(tableId);
+    }
+}